@@ -185,6 +185,176 @@ public class ShorthandProperties {
     /** The default interface that the JMXMP Connector Server will bind to */
     public static final String DEFAULT_AGENT_JMXMP_LISTENER_IFACE = "0.0.0.0";
     
+    /** The system property that enables the recording of the agent's self-telemetry as shorthand metrics */
+    public static final String TELEMETRY_RECORD_PROP = "shorthand.telemetry.record";
+    /** The default self-telemetry recording enablement */
+    public static final boolean DEFAULT_TELEMETRY_RECORD = false;
+    
+    /** The system property that defines the hard cap in bytes on the agent's off-heap memory. Zero or less is unlimited. */
+    public static final String OFFHEAP_MAX_PROP = "shorthand.offheap.max";
+    /** The default off-heap memory cap (unlimited) */
+    public static final long DEFAULT_OFFHEAP_MAX = 0L;
+    /** The system property that defines the policy applied when the off-heap cap is reached. One of <b><code>REFUSE</code></b> or <b><code>EVICT</code></b> */
+    public static final String OFFHEAP_POLICY_PROP = "shorthand.offheap.policy";
+    /** The default off-heap cap policy */
+    public static final String DEFAULT_OFFHEAP_POLICY = "REFUSE";
+    
+    /** The system property that defines the maximum number of active runtime resolved metric names per script. Zero or less is unlimited. */
+    public static final String CARDINALITY_SCRIPT_MAX_PROP = "shorthand.cardinality.script.max";
+    /** The default maximum number of active runtime resolved metric names per script */
+    public static final int DEFAULT_CARDINALITY_SCRIPT_MAX = 5000;
+    /** The system property that defines the maximum number of active runtime resolved metric names across all scripts. Zero or less is unlimited. */
+    public static final String CARDINALITY_GLOBAL_MAX_PROP = "shorthand.cardinality.global.max";
+    /** The default maximum number of active runtime resolved metric names across all scripts */
+    public static final int DEFAULT_CARDINALITY_GLOBAL_MAX = 50000;
+    
+    /** The system property that defines the elapsed time in ms. after which an unloaded metric with no activity is deleted from the store. Zero or less retains metrics forever. */
+    public static final String STORE_RETENTION_PROP = "shorthand.store.retention";
+    /** The default store retention in ms, which is 24 hours */
+    public static final long DEFAULT_STORE_RETENTION = 1000L * 60 * 60 * 24;
+    /** The system property that defines the ratio of deleted to total name index records that triggers a chronicle compaction */
+    public static final String STORE_COMPACT_RATIO_PROP = "shorthand.store.compact.ratio";
+    /** The default compaction trigger ratio */
+    public static final float DEFAULT_STORE_COMPACT_RATIO = 0.5f;
+    /** The system property that defines the minimum number of deleted name index records before a compaction is triggered */
+    public static final String STORE_COMPACT_MIN_PROP = "shorthand.store.compact.min";
+    /** The default minimum number of deleted name index records before a compaction is triggered */
+    public static final long DEFAULT_STORE_COMPACT_MIN = 1000L;
+    /** The system property that defines a stable service key naming the store directory so the store survives restarts. If not defined, the store directory is keyed by PID and discarded on restart. */
+    public static final String STORE_SERVICE_PROP = "shorthand.store.service";
+    /** The system property that defines the number of threads used to load an existing name index on startup */
+    public static final String STORE_LOAD_THREADS_PROP = "shorthand.store.load.threads";
+    /** The default number of name index loader threads */
+    public static final int DEFAULT_STORE_LOAD_THREADS = Runtime.getRuntime().availableProcessors();
+    /** The system property that defines the maximum number of new metric names appended to the name index in one batch */
+    public static final String STORE_NAME_BATCH_PROP = "shorthand.store.name.batch";
+    /** The default maximum number of new metric names appended in one batch */
+    public static final int DEFAULT_STORE_NAME_BATCH = 1024;
+    /** The system property that enables the trigram index narrowing the names evaluated when building regex indexes */
+    public static final String STORE_TRIGRAM_INDEX_PROP = "shorthand.store.index.trigrams";
+    /** The default trigram index enablement */
+    public static final boolean DEFAULT_STORE_TRIGRAM_INDEX = true;
+    /** The system property that defines the minimum number of name index records scanned by each parallel task building a regex index */
+    public static final String STORE_INDEX_SCAN_CHUNK_PROP = "shorthand.store.index.scan.chunk";
+    /** The default minimum number of name index records per regex index scan task */
+    public static final long DEFAULT_STORE_INDEX_SCAN_CHUNK = 10000L;
+    /** The system property that defines the capacity of the ring of new metric names pending indexing, rounded up to a power of 2 */
+    public static final String STORE_INDEX_RING_PROP = "shorthand.store.index.ring";
+    /** The default capacity of the ring of new metric names pending indexing */
+    public static final int DEFAULT_STORE_INDEX_RING = 8192;
+    /** The system property that defines the percentage of the period a listener has to process a period event before it is counted as an overrun */
+    public static final String PERIOD_BUDGET_PROP = "shorthand.period.budget";
+    /** The default period budget percentage */
+    public static final int DEFAULT_PERIOD_BUDGET = 80;
+    /** The system property that defines the policy applied to a new period for a listener still processing a prior one. The value supplied should be an enum member name from {@link com.heliosapm.shorthand.accumulator.PeriodOverrunPolicy} */
+    public static final String PERIOD_OVERRUN_PROP = "shorthand.period.overrun";
+    /** The default period overrun policy */
+    public static final String DEFAULT_PERIOD_OVERRUN = "MERGE";
+    /** The system property that defines the maximum number of periods queued for a listener under the EXTEND overrun policy */
+    public static final String PERIOD_PENDING_PROP = "shorthand.period.pending";
+    /** The default maximum number of periods queued for a listener */
+    public static final int DEFAULT_PERIOD_PENDING = 4;
+    /** The system property that defines the fast inner period in ms., between 100 and 1000, which feeds the live metric view. Zero or less disables it */
+    public static final String FAST_PERIOD_PROP = "shorthand.period.fast";
+    /** The default fast period, which is disabled */
+    public static final long DEFAULT_FAST_PERIOD = 0L;
+    /** The system property that defines the capacity of the queue of metric name events awaiting notification matching */
+    public static final String STORE_NOTIF_QUEUE_PROP = "shorthand.store.notif.queue";
+    /** The default metric name notification queue capacity */
+    public static final int DEFAULT_STORE_NOTIF_QUEUE = 65536;
+    /** The system property that defines the maximum number of metric names coalesced into one listener's notification batch */
+    public static final String STORE_NOTIF_BATCH_PROP = "shorthand.store.notif.batch";
+    /** The default maximum number of metric names per notification batch */
+    public static final int DEFAULT_STORE_NOTIF_BATCH = 10000;
+    /** The system property that defines the port of the OpenMetrics HTTP endpoint. Zero binds an ephemeral port and a negative value disables it */
+    public static final String HTTP_PORT_PROP = "shorthand.http.port";
+    /** The default OpenMetrics HTTP endpoint port, which is disabled */
+    public static final int DEFAULT_HTTP_PORT = -1;
+    /** The system property that defines the interface the OpenMetrics HTTP endpoint binds to */
+    public static final String HTTP_IFACE_PROP = "shorthand.http.iface";
+    /** The default OpenMetrics HTTP endpoint interface */
+    public static final String DEFAULT_HTTP_IFACE = "0.0.0.0";
+    /** The system property that defines the time in ms after which an idle OpenMetrics HTTP endpoint connection is closed. Zero or less disables the timeout */
+    public static final String HTTP_IDLE_TIMEOUT_PROP = "shorthand.http.idle.timeout";
+    /** The default OpenMetrics HTTP endpoint idle connection timeout in ms */
+    public static final long DEFAULT_HTTP_IDLE_TIMEOUT = 10000L;
+    /** The system property that enables the per-period binary metric broadcast */
+    public static final String BROADCAST_METRICS_PROP = "shorthand.broadcast.metrics";
+    /** The default per-period binary metric broadcast enablement, which is disabled */
+    public static final boolean DEFAULT_BROADCAST_METRICS = false;
+    /** The system property that defines the maximum size in bytes of a metric broadcast datagram */
+    public static final String BROADCAST_MTU_PROP = "shorthand.broadcast.mtu";
+    /** The default maximum metric broadcast datagram size, which fits an ethernet frame */
+    public static final int DEFAULT_BROADCAST_MTU = 1400;
+    /** The system property that defines the number of periods after which the full metric name dictionary is re-broadcast */
+    public static final String BROADCAST_DICTIONARY_PERIODS_PROP = "shorthand.broadcast.dictionary.periods";
+    /** The default number of periods between full metric name dictionary broadcasts */
+    public static final int DEFAULT_BROADCAST_DICTIONARY_PERIODS = 20;
+    /** The system property that defines the capacity of the broadcast send queue. Packets offered to a full queue are dropped */
+    public static final String BROADCAST_QUEUE_PROP = "shorthand.broadcast.queue";
+    /** The default broadcast send queue capacity */
+    public static final int DEFAULT_BROADCAST_QUEUE = 1024;
+    /** The system property that defines the interval in ms. of the agent's presence heartbeat broadcast. A value less than 1 disables the heartbeat */
+    public static final String BROADCAST_HEARTBEAT_PROP = "shorthand.broadcast.heartbeat";
+    /** The default heartbeat interval in ms. */
+    public static final int DEFAULT_BROADCAST_HEARTBEAT = 5000;
+    /** The system property that enables the per-period StatsD exporter */
+    public static final String STATSD_ENABLED_PROP = "shorthand.statsd.enabled";
+    /** The default StatsD exporter enablement, which is disabled */
+    public static final boolean DEFAULT_STATSD_ENABLED = false;
+    /** The system property that defines the StatsD daemon host */
+    public static final String STATSD_HOST_PROP = "shorthand.statsd.host";
+    /** The default StatsD daemon host */
+    public static final String DEFAULT_STATSD_HOST = "127.0.0.1";
+    /** The system property that defines the StatsD daemon port */
+    public static final String STATSD_PORT_PROP = "shorthand.statsd.port";
+    /** The default StatsD daemon port */
+    public static final int DEFAULT_STATSD_PORT = 8125;
+    /** The system property that defines the maximum size in bytes of a StatsD datagram */
+    public static final String STATSD_MTU_PROP = "shorthand.statsd.mtu";
+    /** The default maximum StatsD datagram size, which fits an ethernet frame */
+    public static final int DEFAULT_STATSD_MTU = 1432;
+    /** The system property that defines the prefix of the exported StatsD metric names */
+    public static final String STATSD_PREFIX_PROP = "shorthand.statsd.prefix";
+    /** The default StatsD metric name prefix */
+    public static final String DEFAULT_STATSD_PREFIX = "shorthand.";
+    /** The system property that enables DogStatsD output, where the metric name is sent as a tag */
+    public static final String STATSD_DOGSTATSD_PROP = "shorthand.statsd.dogstatsd";
+    /** The default DogStatsD enablement, which is plain StatsD */
+    public static final boolean DEFAULT_STATSD_DOGSTATSD = false;
+    /** The system property that defines comma separated tags added to every DogStatsD line */
+    public static final String STATSD_TAGS_PROP = "shorthand.statsd.tags";
+    /** The default DogStatsD tags */
+    public static final String DEFAULT_STATSD_TAGS = "";
+    /** The system property that defines the caster's memory-mapped aggregate store file */
+    public static final String CASTER_STORE_FILE_PROP = "shorthand.caster.store.file";
+    /** The default caster aggregate store file */
+    public static final String DEFAULT_CASTER_STORE_FILE = String.format("%scaster%saggregate.db", DEFAULT_CHRONICLE_DIR, File.separator);
+    /** The system property that defines the maximum number of metric names in the caster's aggregate store */
+    public static final String CASTER_STORE_CAPACITY_PROP = "shorthand.caster.store.capacity";
+    /** The default caster aggregate store capacity */
+    public static final int DEFAULT_CASTER_STORE_CAPACITY = 8192;
+    /** The system property that defines the number of periods of merged values the caster keeps per metric */
+    public static final String CASTER_STORE_PERIODS_PROP = "shorthand.caster.store.periods";
+    /** The default number of periods kept per metric by the caster */
+    public static final int DEFAULT_CASTER_STORE_PERIODS = 4;
+    /** The system property that defines the port of the caster's OpenMetrics HTTP endpoint. A negative value disables it */
+    public static final String CASTER_HTTP_PORT_PROP = "shorthand.caster.http.port";
+    /** The default caster OpenMetrics HTTP endpoint port */
+    public static final int DEFAULT_CASTER_HTTP_PORT = 9465;
+    /** The system property that defines the size of the pooled buffers the caster receives broadcast datagrams into. Longer datagrams are truncated */
+    public static final String CASTER_BROADCAST_RECV_SIZE_PROP = "shorthand.caster.broadcast.recvsize";
+    /** The default caster broadcast datagram receive buffer size */
+    public static final int DEFAULT_CASTER_BROADCAST_RECV_SIZE = 2048;
+    /** The system property that defines the phi value at which the caster considers an agent JVM down */
+    public static final String CASTER_PRESENCE_PHI_PROP = "shorthand.caster.presence.phi";
+    /** The default phi failure threshold, around two missed heartbeats for a steady agent */
+    public static final float DEFAULT_CASTER_PRESENCE_PHI = 8.0f;
+    /** The system property that defines how long in ms. the caster keeps a down agent JVM in its registry */
+    public static final String CASTER_PRESENCE_EXPIRY_PROP = "shorthand.caster.presence.expiry";
+    /** The default down agent expiry in ms. */
+    public static final long DEFAULT_CASTER_PRESENCE_EXPIRY = 600000;
+    
     
 //    -Dshorthand.broadcast.network=238.191.64.66,127.0.0.1
 //    		-Dshorthand.broadcast.port=25493,25494    
@@ -0,0 +1,43 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.accumulator;
+
+/**
+ * <p>Title: FastPeriodListener</p>
+ * <p>Description: Defines a listener called at the end of each fast inner period of the {@link PeriodClock}.
+ * Fast periods subdivide the persisted period and are called on the clock's fast tick thread, so implementations must return quickly.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.accumulator.FastPeriodListener</code></p>
+ */
+
+public interface FastPeriodListener {
+	/**
+	 * Callback when a fast period ends
+	 * @param startTime The start time in ms of the fast period that ended
+	 * @param endTime The end time in ms of the fast period that ended
+	 */
+	public void onFastPeriod(long startTime, long endTime);
+}
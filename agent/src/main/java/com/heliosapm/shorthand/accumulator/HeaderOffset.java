@@ -84,7 +84,7 @@ public enum HeaderOffset {
 		pos += UnsafeAdapter.INT_SIZE;				
 		UnsafeAdapter.putLong(pos,nameIndex);			// Name Index
 		pos += UnsafeAdapter.LONG_SIZE;
-		assert pos==HEADER_SIZE;
+		assert pos-address==HEADER_SIZE;
 	}		
 			
 	
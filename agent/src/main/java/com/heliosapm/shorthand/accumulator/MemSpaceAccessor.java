@@ -32,6 +32,7 @@ import com.heliosapm.shorthand.collectors.ICollector;
 import com.heliosapm.shorthand.datamapper.AbstractDataMapper;
 import com.heliosapm.shorthand.datamapper.IDataMapper;
 import com.heliosapm.shorthand.store.ChronicleOffset;
+import com.heliosapm.shorthand.util.unsafe.OffHeapSubsystem;
 import com.heliosapm.shorthand.util.unsafe.UnsafeAdapter;
 
 /**
@@ -133,7 +134,7 @@ public class MemSpaceAccessor<T extends Enum<T> & ICollector<T>>  {
 	 * @return a new reset mem-space copy of this mem-space 
 	 */
 	public long copy() {
-		long addr = UnsafeAdapter.allocateMemory(getMemSize());
+		long addr = UnsafeAdapter.allocateMemory(getMemSize(), OffHeapSubsystem.MEMSPACE);
 		UnsafeAdapter.copyMemory(address, addr, getMemSize());
 		long currentAddress = address;
 		setAddress(addr);
@@ -176,6 +177,14 @@ public class MemSpaceAccessor<T extends Enum<T> & ICollector<T>>  {
 		return HeaderOffset.NameIndex.get(address);
 	}
 	
+	/**
+	 * Sets the index of the metric in the store name index, used when the store is compacted
+	 * @param nameIndex the new name index
+	 */
+	public void setNameIndex(long nameIndex) {
+		HeaderOffset.NameIndex.set(address, nameIndex);
+	}
+	
 	/**
 	 * Returns the datapoints as an array of longs keyed in the sequence of the enabled metrics.
 	 * @return the datapoints
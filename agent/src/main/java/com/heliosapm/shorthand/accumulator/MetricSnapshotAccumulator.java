@@ -3,13 +3,16 @@
  */
 package com.heliosapm.shorthand.accumulator;
 
-import java.util.concurrent.atomic.AtomicLong;
 
 import com.heliosapm.shorthand.collectors.EnumCollectors;
 import com.heliosapm.shorthand.collectors.ICollector;
 import com.heliosapm.shorthand.datamapper.IDataMapper;
+import com.heliosapm.shorthand.export.MetricsHttpServer;
+import com.heliosapm.shorthand.export.StatsdExporter;
+import com.heliosapm.shorthand.instrumentor.shorthand.naming.CardinalityLimiter;
 import com.heliosapm.shorthand.store.ChronicleStore;
 import com.heliosapm.shorthand.store.IStore;
+import com.heliosapm.shorthand.telemetry.AgentTelemetry;
 import com.heliosapm.shorthand.util.jmx.ShorthandJMXConnectorServer;
 import com.heliosapm.shorthand.util.jmx.threadinfo.ExtendedThreadManager;
 import com.heliosapm.shorthand.util.unsafe.UnsafeAdapter;
@@ -38,9 +41,6 @@ public class MetricSnapshotAccumulator<T extends Enum<T> & ICollector<T>> implem
 	/** The store impl we're using  FIXME: Needs to be configurable */
 	protected final IStore<T> store = (IStore<T>) ChronicleStore.getInstance();
 	
-	/** The current total unsafely allocated memory  */
-	protected final AtomicLong unsafeMemoryAllocated = new AtomicLong();
-	
     /** The number of bytes in a byte */
     public static final int SIZE_OF_BYTE = 1;
 	
@@ -77,9 +77,7 @@ public class MetricSnapshotAccumulator<T extends Enum<T> & ICollector<T>> implem
 	 * @param address the address of the memory space to free
 	 */
 	private void freeMemory(long address) {
-//		long size = UnsafeAdapter.getLong(address + HeaderOffset.MemSize.offset);
 		UnsafeAdapter.freeMemory(address);
-//		unsafeMemoryAllocated.addAndGet(size*-1);
 	}
 	
 	/**
@@ -87,7 +85,7 @@ public class MetricSnapshotAccumulator<T extends Enum<T> & ICollector<T>> implem
 	 * @return the total allocated native memory in bytes
 	 */
 	public long getAllocatedMemory() {
-		return unsafeMemoryAllocated.get();
+		return UnsafeAdapter.getTotalAllocatedMemory();
 	}
 	
 	/**
@@ -95,7 +93,7 @@ public class MetricSnapshotAccumulator<T extends Enum<T> & ICollector<T>> implem
 	 * @return the total allocated native memory in KB
 	 */
 	public long getAllocatedMemoryKb() {
-		return unsafeMemoryAllocated.get()/1024;
+		return getAllocatedMemory()/1024;
 	}
 	
 	/**
@@ -113,6 +111,8 @@ public class MetricSnapshotAccumulator<T extends Enum<T> & ICollector<T>> implem
 		ShorthandJMXConnectorServer.getInstance();		
 		ExtendedThreadManager.install();
 		PeriodClock.getInstance().registerListener(this);
+		MetricsHttpServer.getInstance();
+		StatsdExporter.getInstance();
 		log("MetricSnapshotAccumulator Created");
 	}
 	
@@ -193,6 +193,8 @@ public class MetricSnapshotAccumulator<T extends Enum<T> & ICollector<T>> implem
 	public void onNewPeriod(final long newStartTime, final long newEndTime, final long priorStartTime, final long priorEndTime) {
 		store.flush(priorStartTime, priorEndTime);
 		AccumulatorThreadStats.reset();
+		CardinalityLimiter.onNewPeriod();
+		AgentTelemetry.getInstance().onPeriodFlushed(store);
 	}	
 	
 
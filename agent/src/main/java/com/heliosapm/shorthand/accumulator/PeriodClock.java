@@ -3,36 +3,49 @@ package com.heliosapm.shorthand.accumulator;
 
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.management.MBeanServer;
 
 import com.heliosapm.shorthand.ShorthandProperties;
 import com.heliosapm.shorthand.util.ConfigurationHelper;
 import com.heliosapm.shorthand.util.OrderedShutdownService;
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
 
 /**
  * <p>Title: PeriodClock</p>
  * <p>Description: A clock that provides the current start/end time of the current shorthand period, and 
  * emits period events to registered listeners.</p> 
+ * <p>Each listener has its own queue of pending periods, drained by one pool thread at a time, so the listeners run concurrently and a slow 
+ * listener never holds up the others or the clock. A listener that is still busy when the next period starts is handled by the 
+ * {@link PeriodOverrunPolicy}, and a period event completing later than the period budget is counted as an overrun. Completion listeners
+ * are called once every listener is done with a period.</p>
+ * <p>When a fast period is configured, a separate tick thread also calls the {@link FastPeriodListener}s at the end of each fast period, 
+ * which subdivides the persisted period. Fast ticks are scheduled against {@link System#nanoTime()} and re-anchored to the wall clock when they drift.</p>
  * <p>Company: Helios Development Group LLC</p>
  * @author Whitehead (nwhitehead AT heliosdev DOT org)
  * <p><code>com.heliosapm.shorthand.accumulator.PeriodClock</code></p>
  */
 
-public class PeriodClock implements ThreadFactory, Thread.UncaughtExceptionHandler, RejectedExecutionHandler, PeriodEventListener {
+public class PeriodClock implements ThreadFactory, Thread.UncaughtExceptionHandler, RejectedExecutionHandler, PeriodEventListener, PeriodClockMXBean {
 	
 	/** The thread mxbean */
 	protected static final ThreadMXBean tmx = ManagementFactory.getThreadMXBean();
@@ -53,6 +66,8 @@ public class PeriodClock implements ThreadFactory, Thread.UncaughtExceptionHandl
 	public final long periodMs;
 	/** The configured stale period in ms. */
 	public final long stalePeriodMs;
+	/** The configured fast period in ms., zero if disabled */
+	public final long fastPeriodMs;
 	
 	/** The shutdown hook */
 	private final Thread shutdownHook;
@@ -64,19 +79,54 @@ public class PeriodClock implements ThreadFactory, Thread.UncaughtExceptionHandl
 	
 	/** Indicates if the period clock is disabled */
 	private final boolean clockDisabled;
-	/** A map of Runnable wrapped period listeners keyed by the registered listener */
-	private final Map<PeriodEventListener, PeriodEventListenerWrapper> periodListeners = new ConcurrentHashMap<PeriodEventListener, PeriodEventListenerWrapper>();
-	/** A map of Runnable wrapped period completion listeners keyed by the registered listener */
-	private final Map<PeriodEventCompletionListener, PeriodEventCompletionListenerWrapper> periodCompletionListeners = new ConcurrentHashMap<PeriodEventCompletionListener, PeriodEventCompletionListenerWrapper>();
+	/** A map of listener period queues keyed by the registered listener */
+	private final Map<PeriodEventListener, ListenerChannel> periodListeners = new ConcurrentHashMap<PeriodEventListener, ListenerChannel>();
+	/** A map of period completion listeners keyed by the registered listener */
+	private final Map<PeriodEventCompletionListener, PeriodEventCompletionListener> periodCompletionListeners = new ConcurrentHashMap<PeriodEventCompletionListener, PeriodEventCompletionListener>();
+	
+	/** The time a listener has to process a period event before it is counted as an overrun, in ms. */
+	private final long budgetMs;
+	/** The maximum number of periods queued for a listener under the {@link PeriodOverrunPolicy#EXTEND} policy */
+	private final int maxPending;
+	/** The policy applied to a new period for a listener still processing a prior one */
+	private volatile PeriodOverrunPolicy overrunPolicy;
+	
+	/** The number of dispatched periods */
+	private final AtomicLong dispatchedPeriods = new AtomicLong(0L);
+	/** The number of dropped listener period events */
+	private final AtomicLong droppedPeriods = new AtomicLong(0L);
+	/** The number of merged listener period events */
+	private final AtomicLong mergedPeriods = new AtomicLong(0L);
+	/** The number of listener period events completed after the budget */
+	private final AtomicLong overruns = new AtomicLong(0L);
+	/** The highest listener lag in ms. */
+	private final AtomicLong maxLagMs = new AtomicLong(0L);
+	/** The slowest listener lag of the last completed period in ms. */
+	private volatile long lastLagMs = 0L;
+	/** The elapsed time from the switch to the completion of the last completed period in ms. */
+	private volatile long lastCompletionMs = 0L;
 	
-	/** Synch queue to hold the worker thread executing the flushes so the scheduler only has to calc the period and drop the barrier */
-	private final SynchronousQueue<long[]> periodHandOff = new SynchronousQueue<long[]>(true);
+	/** The registered fast period listeners */
+	private final Map<FastPeriodListener, FastPeriodListener> fastListeners = new ConcurrentHashMap<FastPeriodListener, FastPeriodListener>();
+	/** The running fast tick thread, null if stopped */
+	private volatile Thread fastTicker = null;
+	/** The number of fast ticks fired */
+	private final AtomicLong fastTicks = new AtomicLong(0L);
+	/** The number of fast ticks skipped because the prior tick overran */
+	private final AtomicLong skippedFastTicks = new AtomicLong(0L);
+	/** The number of times the fast ticks were re-anchored to the wall clock */
+	private final AtomicLong fastReanchors = new AtomicLong(0L);
+	/** The last measured drift of the wall clock from the fast tick schedule in ms. */
+	private volatile long fastDriftMs = 0L;
+	/** The lateness of the last fast tick in us. */
+	private volatile long fastTickLatenessUs = 0L;
 	
 	/**
 	 * Disables the period clock
 	 */
 	private void disablePeriodClock() {
 		if(!clockDisabled) {
+			stopFastTicker();
 			periodListeners.clear();
 			periodCompletionListeners.clear();
 			OrderedShutdownService.getInstance().remove(shutdownHook);
@@ -86,6 +136,7 @@ public class PeriodClock implements ThreadFactory, Thread.UncaughtExceptionHandl
 				scheduleHandle.set(null);
 			}
 			System.setProperty(ShorthandProperties.DISABLE_PERIOD_CLOCK_PROP, "true");
+			unregister();
 			instance = null;
 			getInstance();
 		}
@@ -97,10 +148,12 @@ public class PeriodClock implements ThreadFactory, Thread.UncaughtExceptionHandl
 	 */
 	private void enablePeriodClock() {
 		if(clockDisabled) {
+			stopFastTicker();
 			periodListeners.clear();
 			periodCompletionListeners.clear();
 			OrderedShutdownService.getInstance().remove(shutdownHook);
 			System.setProperty(ShorthandProperties.DISABLE_PERIOD_CLOCK_PROP, "false");
+			unregister();
 			instance = null;
 			getInstance();
 		}
@@ -108,6 +161,14 @@ public class PeriodClock implements ThreadFactory, Thread.UncaughtExceptionHandl
 	}
 	
 	
+	/**
+	 * Unregisters this clock's management interface so a replacement instance can register
+	 */
+	private void unregister() {
+		MBeanServer server = JMXHelper.getHeliosMBeanServer();
+		if(server.isRegistered(OBJECT_NAME)) JMXHelper.unregisterMBean(server, OBJECT_NAME);
+	}
+	
 	/**
 	 * Acquires the PeriodClock singleton instance
 	 * @return the PeriodClock singleton instance
@@ -131,10 +192,11 @@ public class PeriodClock implements ThreadFactory, Thread.UncaughtExceptionHandl
 	 */
 	public void registerListener(final PeriodEventListener listener) {
 		if(listener!=null) {
-			periodListeners.put(listener, new PeriodEventListenerWrapper(listener));
+			ListenerChannel prior = periodListeners.put(listener, new ListenerChannel(listener));
+			if(prior!=null) prior.close();
 			if(listener instanceof PeriodEventCompletionListener) {
 				PeriodEventCompletionListener completionListener = (PeriodEventCompletionListener)listener;
-				periodCompletionListeners.put(completionListener, new PeriodEventCompletionListenerWrapper(completionListener));
+				periodCompletionListeners.put(completionListener, completionListener);
 			}
 		}
 	}
@@ -145,11 +207,39 @@ public class PeriodClock implements ThreadFactory, Thread.UncaughtExceptionHandl
 	 */
 	public void removeListener(final PeriodEventListener listener) {
 		if(listener!=null) {
-			periodListeners.remove(listener);
+			ListenerChannel channel = periodListeners.remove(listener);
+			if(channel!=null) channel.close();
 			periodCompletionListeners.remove(listener);
 		}
 	}
 	
+	/**
+	 * Registers a new fast period listener. Listeners are only called when a fast period is configured.
+	 * @param listener the listener to register
+	 */
+	public void registerFastListener(final FastPeriodListener listener) {
+		if(listener!=null) fastListeners.put(listener, listener);
+	}
+	
+	/**
+	 * Unregisters a fast period listener
+	 * @param listener the listener to unregister
+	 */
+	public void removeFastListener(final FastPeriodListener listener) {
+		if(listener!=null) fastListeners.remove(listener);
+	}
+	
+	/**
+	 * Returns the current fast period
+	 * @param now The current timestamp in millis
+	 * @return a long array with <b><code>{startTime, endTime}</code></b>, or null if no fast period is configured
+	 */
+	public long[] getCurrentFastPeriod(long now) {
+		if(fastPeriodMs<1) return null;
+		long startTime = now - (now%fastPeriodMs);
+		return new long[]{startTime, startTime + fastPeriodMs};
+	}
+	
 	/**
 	 * Returns the current period 
 	 * @return a long array with <b><code>{newStartTime, newEndTime, priorStartTime, priorEndTime}</code></b>
@@ -189,6 +279,7 @@ public class PeriodClock implements ThreadFactory, Thread.UncaughtExceptionHandl
 		final int nonDaemonThreadCount = tmx.getThreadCount()-tmx.getDaemonThreadCount();
 		shutdownHook = new Thread("PeriodClockShutdownHook") {
 			public void run() {
+				stopFastTicker();
 				try { scheduler.shutdownNow(); } catch (Exception ex) {/* No Op */}
 				try { threadPool.shutdown(); } catch (Exception ex) {/* No Op */}
 				periodHandOffThreadGroup.interrupt();
@@ -207,8 +298,14 @@ public class PeriodClock implements ThreadFactory, Thread.UncaughtExceptionHandl
 		}
 		periodMs = getPeriod();
 		stalePeriodMs = ConfigurationHelper.getLongSystemThenEnvProperty(ShorthandProperties.STALE_PERIOD_PROP, ShorthandProperties.DEFAULT_STALE_PERIOD);
+		fastPeriodMs = getFastPeriod(periodMs);
+		int budgetPct = ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.PERIOD_BUDGET_PROP, ShorthandProperties.DEFAULT_PERIOD_BUDGET);
+		budgetMs = periodMs * Math.min(100, Math.max(1, budgetPct)) / 100;
+		maxPending = Math.max(1, ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.PERIOD_PENDING_PROP, ShorthandProperties.DEFAULT_PERIOD_PENDING));
+		overrunPolicy = PeriodOverrunPolicy.forName(ConfigurationHelper.getSystemThenEnvProperty(ShorthandProperties.PERIOD_OVERRUN_PROP, ShorthandProperties.DEFAULT_PERIOD_OVERRUN));
 		int cores = ManagementFactory.getOperatingSystemMXBean().getAvailableProcessors();
-		threadPool = new ThreadPoolExecutor(2,cores,(periodMs*2), TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(10, true), this, this);
+		// Each listener has at most one task in the pool, so the queue is bounded by the number of listeners
+		threadPool = new ThreadPoolExecutor(Math.max(2, cores),Math.max(2, cores),(periodMs*2), TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), this, this);
 		
 		
 		//registerListener(this);
@@ -230,31 +327,19 @@ public class PeriodClock implements ThreadFactory, Thread.UncaughtExceptionHandl
 					t.setDaemon(true);
 					t.start();
 				}
-				periodHandOff.offer(getCurrentPeriod());
+				dispatch(getCurrentPeriod());
 			}}, Math.abs(System.currentTimeMillis()-periodData[NEW_END]), periodMs, TimeUnit.MILLISECONDS));
 		}
 		threadPool.prestartAllCoreThreads();
-		threadPool.execute(new Runnable(){
-			public void run() {				
-				while(true) {
-					try {
-						long[] periods = periodHandOff.take();
-						log("Firing Period Event agains [%s] registered listeners", periodListeners.size());
-						long startTime = System.nanoTime();
-						for(PeriodEventListener listener: periodListeners.values()) {
-							listener.onNewPeriod(periods[0], periods[1], periods[2], periods[3]);
-						}						
-						threadPool.invokeAll(periodListeners.values());
-						long elapsedTime = System.nanoTime()-startTime;
-						for(PeriodEventCompletionListener listener: periodCompletionListeners.values()) { 
-							listener.periodEventComplete(periods, elapsedTime);
-						}
-					} catch (InterruptedException iex) {
-						if(threadPool.isTerminating() || threadPool.isTerminated()) break;
-					} catch (Exception ex) {/* No Op */}
-				}
-			}
-		});
+		if(!clockDisabled && fastPeriodMs>0) {
+			Thread t = new Thread(periodHandOffThreadGroup, new FastTicker(), "PeriodClockFastTickThread");
+			t.setDaemon(true);
+			t.setPriority(Thread.MAX_PRIORITY);
+			t.setUncaughtExceptionHandler(this);
+			fastTicker = t;
+			t.start();
+		}
+		JMXHelper.registerMBean(OBJECT_NAME, this);
 		if(!clockDisabled) log("Period Clock Created. \n\tPeriod is [%s] ms. \n\tCurrent Time: [%s] \n\tCurrent Period Start: [%s] \n\tCurrent Period End: [%s]", periodMs, new Date(periodData[TS]), new Date(periodData[NEW_START]), new Date(periodData[NEW_END]));
 		
 	}
@@ -267,7 +352,124 @@ public class PeriodClock implements ThreadFactory, Thread.UncaughtExceptionHandl
 		if(!clockDisabled) {
 			throw new RuntimeException("The period clock is enabled so manual flushes are not allowed");
 		}
-		periodHandOff.offer(period);
+		dispatch(period);
+	}
+	
+	/**
+	 * Queues a period event for each registered listener. Never blocks.
+	 * @param period The period (see {@link #getCurrentPeriod()})
+	 */
+	protected void dispatch(long[] period) {
+		List<ListenerChannel> channels = new ArrayList<ListenerChannel>(periodListeners.values());
+		dispatchedPeriods.incrementAndGet();
+		log("Firing Period Event against [%s] registered listeners", channels.size());
+		PeriodRound round = new PeriodRound(period, channels.size());
+		for(ListenerChannel channel: channels) {
+			channel.submit(period, round);
+		}
+	}
+	
+	/**
+	 * Stops the fast tick thread
+	 */
+	private void stopFastTicker() {
+		Thread t = fastTicker;
+		fastTicker = null;
+		if(t!=null) LockSupport.unpark(t);
+	}
+	
+	/**
+	 * <p>Title: FastTicker</p>
+	 * <p>Description: Fires the fast period ticks. Tick deadlines are computed from an anchor pairing a fast period boundary on the wall clock 
+	 * with a {@link System#nanoTime()} reading, so they do not accumulate scheduling error. When the wall clock drifts from the anchored schedule 
+	 * by more than the tolerance, for example after a clock adjustment, the schedule is re-anchored to the wall clock. 
+	 * Ticks missed because listeners overran are skipped, not fired late back to back.</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.accumulator.PeriodClock.FastTicker</code></p>
+	 */
+	private class FastTicker implements Runnable {
+		/** The fast period in ns. */
+		private final long fastNs = TimeUnit.MILLISECONDS.toNanos(fastPeriodMs);
+		/** The wall clock drift tolerated before re-anchoring in ms. */
+		private final long driftTolerance = Math.max(5L, fastPeriodMs/20);
+		/** The wall clock time of the anchor, a fast period boundary */
+		private long anchorMs;
+		/** The nano time of the anchor */
+		private long anchorNanos;
+		
+		/**
+		 * Anchors the schedule to the start of the current fast period
+		 */
+		private void anchor() {
+			long now = System.currentTimeMillis();
+			long nanos = System.nanoTime();
+			anchorMs = now - (now%fastPeriodMs);
+			anchorNanos = nanos - TimeUnit.MILLISECONDS.toNanos(now - anchorMs);
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			final Thread me = Thread.currentThread();
+			anchor();
+			long tick = 1;
+			while(fastTicker==me) {
+				final long deadline = anchorNanos + tick*fastNs;
+				long wait;
+				while((wait = deadline - System.nanoTime()) > 0) {
+					LockSupport.parkNanos(this, wait);
+					if(fastTicker!=me) return;
+				}
+				fastTickLatenessUs = TimeUnit.NANOSECONDS.toMicros(System.nanoTime()-deadline);
+				final long endTime = anchorMs + tick*fastPeriodMs;
+				for(FastPeriodListener listener: fastListeners.values()) {
+					try {
+						listener.onFastPeriod(endTime - fastPeriodMs, endTime);
+					} catch (Throwable t) {
+						uncaughtException(me, t);
+					}
+				}
+				fastTicks.incrementAndGet();
+				final long nanos = System.nanoTime();
+				final long drift = System.currentTimeMillis() - (anchorMs + TimeUnit.NANOSECONDS.toMillis(nanos - anchorNanos));
+				fastDriftMs = drift;
+				if(Math.abs(drift) > driftTolerance) {
+					fastReanchors.incrementAndGet();
+					anchor();
+					tick = 1;
+					continue;
+				}
+				final long due = (nanos - anchorNanos) / fastNs;
+				if(due > tick) {
+					skippedFastTicks.addAndGet(due - tick);
+					tick = due + 1;
+				} else {
+					tick++;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Calls the completion listeners for a period all listeners are done with
+	 * @param round The completed period round
+	 */
+	protected void complete(final PeriodRound round) {
+		final long elapsedNanos = System.nanoTime()-round.startNanos;
+		lastLagMs = round.maxLagMs;
+		lastCompletionMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+		for(final PeriodEventCompletionListener listener: periodCompletionListeners.values()) {
+			log("[" + listener.getClass().getSimpleName() + "] Period Event Complete in [%s] nanos", elapsedNanos);
+			threadPool.execute(new Runnable() {
+				public void run() {
+					listener.periodEventComplete(round.period, elapsedNanos);
+				}
+			});
+		}
 	}
 	
 	public static void main(String[] args) {
@@ -335,79 +537,437 @@ public class PeriodClock implements ThreadFactory, Thread.UncaughtExceptionHandl
 	}
 
 	/**
-	 * <p>Title: PeriodEventListenerWrapper</p>
-	 * <p>Description: A runnable wrapper for registered {@link PeriodEventListener}</p> 
+	 * <p>Title: PeriodRound</p>
+	 * <p>Description: Tracks the listeners still to process a dispatched period, so the completion listeners are called once all are done.
+	 * A listener that skips or merges the period counts as done with it when the event replacing it completes.</p> 
 	 * <p>Company: Helios Development Group LLC</p>
 	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
-	 * <p><code>com.heliosapm.shorthand.accumulator.PeriodClock.PeriodEventListenerWrapper</code></p>
+	 * <p><code>com.heliosapm.shorthand.accumulator.PeriodClock.PeriodRound</code></p>
 	 */
-	private class PeriodEventListenerWrapper implements PeriodEventListener, Callable<Void> {
-		/** The delegate listener */
-		protected final PeriodEventListener delegate;
-		/** the invocation values */
-		protected long[] values = null;
+	private class PeriodRound {
+		/** The dispatched period */
+		protected final long[] period;
+		/** The dispatch time in ns. */
+		protected final long startNanos = System.nanoTime();
+		/** The number of listeners still to process the period */
+		protected final AtomicInteger remaining;
+		/** The highest listener lag for the period in ms. */
+		protected volatile long maxLagMs = 0L;
+		
 		/**
-		 * Creates a new PeriodEventListenerWraper
-		 * @param delegate the delegate listener
+		 * Creates a new PeriodRound
+		 * @param period The dispatched period
+		 * @param listenerCount The number of listeners the period was dispatched to
 		 */
-		public PeriodEventListenerWrapper(PeriodEventListener delegate) {
-			this.delegate = delegate;
+		protected PeriodRound(long[] period, int listenerCount) {
+			this.period = period;
+			remaining = new AtomicInteger(listenerCount);
+			if(listenerCount==0) complete(this);
 		}
-
+		
 		/**
-		 * {@inheritDoc}
-		 * @see java.util.concurrent.Callable#call()
+		 * Records a listener's lag for the period
+		 * @param lagMs The lag in ms.
 		 */
-		@Override
-		public Void call() {
-			delegate.onNewPeriod(values[0], values[1], values[2], values[3]);
-			return null;			
+		protected void lag(long lagMs) {
+			if(lagMs > maxLagMs) maxLagMs = lagMs;
 		}
-
+		
 		/**
-		 * {@inheritDoc}
-		 * @see com.heliosapm.shorthand.accumulator.PeriodEventListener#onNewPeriod(long, long, long, long)
+		 * Called when a listener is done with the period
 		 */
-		@Override
-		public void onNewPeriod(long newStartTime, long newEndTime, long priorStartTime, long priorEndTime) {
-			values = new long[]{newStartTime, newEndTime, priorStartTime, priorEndTime};			
+		protected void release() {
+			if(remaining.decrementAndGet()==0) complete(this);
 		}
 	}
 	
-	private class PeriodEventCompletionListenerWrapper extends PeriodEventListenerWrapper implements PeriodEventCompletionListener {
+	/**
+	 * <p>Title: PendingPeriod</p>
+	 * <p>Description: A period waiting for a listener, with the rounds it stands for when periods were merged</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.accumulator.PeriodClock.PendingPeriod</code></p>
+	 */
+	private static class PendingPeriod {
+		/** The period passed to the listener */
+		protected final long[] period;
+		/** The dispatched rounds this event completes */
+		protected final List<PeriodRound> rounds = new ArrayList<PeriodRound>(1);
+		
 		/**
-		 * Creates a new PeriodEventCompletionListenerWrapper
-		 * @param delegate
+		 * Creates a new PendingPeriod
+		 * @param period The period passed to the listener
+		 * @param round The round the period was dispatched in
 		 */
-		public PeriodEventCompletionListenerWrapper(PeriodEventCompletionListener delegate) {
-			super(delegate);
+		protected PendingPeriod(long[] period, PeriodRound round) {
+			this.period = period;
+			rounds.add(round);
 		}
 		
+		/**
+		 * Releases the rounds this event stands for
+		 */
+		protected void release() {
+			for(PeriodRound round: rounds) round.release();
+		}
+	}
+	
+	/**
+	 * <p>Title: ListenerChannel</p>
+	 * <p>Description: The queue of periods pending for one listener. The queue is drained by a single pool task 
+	 * which is only submitted when the listener is idle, so the listener is never called concurrently and sees periods in order.</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.accumulator.PeriodClock.ListenerChannel</code></p>
+	 */
+	private class ListenerChannel implements Runnable {
+		/** The listener */
+		protected final PeriodEventListener delegate;
+		/** The listener's display name */
+		protected final String name;
+		/** The pending periods, guarded by this channel */
+		protected final ArrayDeque<PendingPeriod> pending = new ArrayDeque<PendingPeriod>();
+		/** Indicates a task is draining the pending periods, guarded by this channel */
+		protected boolean running = false;
+		/** Indicates the listener was unregistered, guarded by this channel */
+		protected boolean closed = false;
+		/** The lag of the listener's last period event in ms. */
+		protected volatile long lastLagMs = 0L;
+		/** The elapsed time of the listener's last period event in ms. */
+		protected volatile long lastElapsedMs = 0L;
 		
 		/**
-		 * {@inheritDoc}
-		 * @see com.heliosapm.shorthand.accumulator.PeriodClock.PeriodEventListenerWrapper#onNewPeriod(long, long, long, long)
+		 * Creates a new ListenerChannel
+		 * @param delegate The listener
 		 */
-		@Override
-		public void onNewPeriod(long newStartTime, long newEndTime, long priorStartTime, long priorEndTime) {
-			super.onNewPeriod(newStartTime, newEndTime, priorStartTime, priorEndTime);
-			
+		protected ListenerChannel(PeriodEventListener delegate) {
+			this.delegate = delegate;
+			name = delegate.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(delegate));
 		}
-
+		
 		/**
+		 * Queues a period for the listener, applying the overrun policy if the listener is busy
+		 * @param period The period
+		 * @param round The round the period was dispatched in
+		 */
+		protected void submit(long[] period, PeriodRound round) {
+			synchronized(this) {
+				if(closed) {
+					round.release();
+					return;
+				}
+				PendingPeriod last = pending.peekLast();
+				if(last==null) {
+					pending.add(new PendingPeriod(period, round));
+				} else {
+					switch(overrunPolicy) {
+						case SKIP:
+							droppedPeriods.addAndGet(pending.size());
+							PendingPeriod next = new PendingPeriod(period, round);
+							// The skipped rounds complete with the period replacing them 
+							for(PendingPeriod skipped: pending) next.rounds.addAll(skipped.rounds);
+							pending.clear();
+							pending.add(next);
+							break;
+						case MERGE:
+							// The merged period starts where the waiting period's prior period started
+							long[] merged = period.clone();
+							merged[PRIOR_START] = last.period[PRIOR_START];
+							PendingPeriod replacement = new PendingPeriod(merged, round);
+							replacement.rounds.addAll(0, last.rounds);
+							pending.pollLast();
+							pending.add(replacement);
+							mergedPeriods.incrementAndGet();
+							break;
+						default:
+							if(pending.size() >= maxPending) {
+								pending.poll().release();
+								droppedPeriods.incrementAndGet();
+							}
+							pending.add(new PendingPeriod(period, round));
+					}
+				}
+				if(running) return;
+				running = true;
+			}
+			threadPool.execute(this);
+		}
+		
+		/**
+		 * Drains the pending periods
 		 * {@inheritDoc}
-		 * @see com.heliosapm.shorthand.accumulator.PeriodEventCompletionListener#periodEventComplete(long[], long)
+		 * @see java.lang.Runnable#run()
 		 */
 		@Override
-		public void periodEventComplete(final long[] period, final long elapsedNanos) {
-			log("[" + getClass().getSimpleName() + "] Period Event Complete in [%s] nanos", elapsedNanos);
-			threadPool.execute(new Runnable() {
-				public void run() {
-					((PeriodEventCompletionListener)delegate).periodEventComplete(period, elapsedNanos);
+		public void run() {
+			while(true) {
+				PendingPeriod next = null;
+				synchronized(this) {
+					next = pending.poll();
+					if(next==null) {
+						running = false;
+						return;
+					}
 				}
-			});
+				final long[] period = next.period;
+				final long lag = Math.max(0L, System.currentTimeMillis() - period[TS]);
+				lastLagMs = lag;
+				for(PeriodRound round: next.rounds) round.lag(lag);
+				long max = maxLagMs.get();
+				while(lag > max && !maxLagMs.compareAndSet(max, lag)) max = maxLagMs.get();
+				final long startTime = System.nanoTime();
+				try {
+					delegate.onNewPeriod(period[NEW_START], period[NEW_END], period[PRIOR_START], period[PRIOR_END]);
+				} catch (Throwable t) {
+					uncaughtException(Thread.currentThread(), t);
+				} finally {
+					lastElapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-startTime);
+					if(System.currentTimeMillis() > period[TS] + budgetMs) {
+						overruns.incrementAndGet();
+						log("Listener [%s] overran the period budget of [%s] ms. Lag: [%s] ms, Elapsed: [%s] ms", name, budgetMs, lag, lastElapsedMs);
+					}
+					next.release();
+				}
+			}
 		}
 		
+		/**
+		 * Returns the number of pending periods
+		 * @return the number of pending periods
+		 */
+		protected synchronized int getPendingCount() {
+			return pending.size();
+		}
+		
+		/**
+		 * Stops accepting periods and releases the pending ones
+		 */
+		protected void close() {
+			List<PendingPeriod> dropped = null;
+			synchronized(this) {
+				closed = true;
+				dropped = new ArrayList<PendingPeriod>(pending);
+				pending.clear();
+			}
+			for(PendingPeriod p: dropped) p.release();
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getPeriodMs()
+	 */
+	@Override
+	public long getPeriodMs() {
+		return periodMs;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getBudgetMs()
+	 */
+	@Override
+	public long getBudgetMs() {
+		return budgetMs;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getOverrunPolicy()
+	 */
+	@Override
+	public String getOverrunPolicy() {
+		return overrunPolicy.name();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#setOverrunPolicy(java.lang.String)
+	 */
+	@Override
+	public void setOverrunPolicy(String policy) {
+		overrunPolicy = PeriodOverrunPolicy.forName(policy);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getListenerCount()
+	 */
+	@Override
+	public int getListenerCount() {
+		return periodListeners.size();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getDispatchedPeriodCount()
+	 */
+	@Override
+	public long getDispatchedPeriodCount() {
+		return dispatchedPeriods.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getDroppedPeriodCount()
+	 */
+	@Override
+	public long getDroppedPeriodCount() {
+		return droppedPeriods.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getMergedPeriodCount()
+	 */
+	@Override
+	public long getMergedPeriodCount() {
+		return mergedPeriods.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getOverrunCount()
+	 */
+	@Override
+	public long getOverrunCount() {
+		return overruns.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getPendingPeriodCount()
+	 */
+	@Override
+	public int getPendingPeriodCount() {
+		int count = 0;
+		for(ListenerChannel channel: periodListeners.values()) {
+			count += channel.getPendingCount();
+		}
+		return count;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getLastLagMs()
+	 */
+	@Override
+	public long getLastLagMs() {
+		return lastLagMs;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getMaxLagMs()
+	 */
+	@Override
+	public long getMaxLagMs() {
+		return maxLagMs.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getLastCompletionMs()
+	 */
+	@Override
+	public long getLastCompletionMs() {
+		return lastCompletionMs;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getListenerLagMs()
+	 */
+	@Override
+	public Map<String, Long> getListenerLagMs() {
+		Map<String, Long> map = new HashMap<String, Long>(periodListeners.size());
+		for(ListenerChannel channel: periodListeners.values()) {
+			map.put(channel.name, channel.lastLagMs);
+		}
+		return map;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getListenerElapsedMs()
+	 */
+	@Override
+	public Map<String, Long> getListenerElapsedMs() {
+		Map<String, Long> map = new HashMap<String, Long>(periodListeners.size());
+		for(ListenerChannel channel: periodListeners.values()) {
+			map.put(channel.name, channel.lastElapsedMs);
+		}
+		return map;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getFastPeriodMs()
+	 */
+	@Override
+	public long getFastPeriodMs() {
+		return fastPeriodMs;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getFastTickCount()
+	 */
+	@Override
+	public long getFastTickCount() {
+		return fastTicks.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getSkippedFastTickCount()
+	 */
+	@Override
+	public long getSkippedFastTickCount() {
+		return skippedFastTicks.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getFastReanchorCount()
+	 */
+	@Override
+	public long getFastReanchorCount() {
+		return fastReanchors.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getFastDriftMs()
+	 */
+	@Override
+	public long getFastDriftMs() {
+		return fastDriftMs;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#getFastTickLatenessUs()
+	 */
+	@Override
+	public long getFastTickLatenessUs() {
+		return fastTickLatenessUs;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodClockMXBean#resetStats()
+	 */
+	@Override
+	public void resetStats() {
+		dispatchedPeriods.set(0L);
+		droppedPeriods.set(0L);
+		mergedPeriods.set(0L);
+		overruns.set(0L);
+		maxLagMs.set(0L);
+		fastTicks.set(0L);
+		skippedFastTicks.set(0L);
+		fastReanchors.set(0L);
 	}
 
 	/**
@@ -424,6 +984,23 @@ public class PeriodClock implements ThreadFactory, Thread.UncaughtExceptionHandl
 		
 	}
 	
+	/**
+	 * Determines the fast period from system props. The fast period is bounded to 100 - 1000 ms. and adjusted to the nearest value in that range 
+	 * that divides the persisted period, so fast periods never straddle a persisted period switch.
+	 * @param periodMs The persisted period in ms.
+	 * @return the fast period in ms., zero if disabled
+	 */
+	private static long getFastPeriod(long periodMs) {
+		long p = ConfigurationHelper.getLongSystemThenEnvProperty(ShorthandProperties.FAST_PERIOD_PROP, ShorthandProperties.DEFAULT_FAST_PERIOD);
+		if(p < 1) return 0L;
+		p = Math.min(1000L, Math.max(100L, p));
+		for(long delta = 0; delta <= 900; delta++) {
+			if(p-delta >= 100 && periodMs%(p-delta)==0) return p-delta;
+			if(p+delta <= 1000 && periodMs%(p+delta)==0) return p+delta;
+		}
+		return p;
+	}
+	
 	/**
 	 * Determines the period from system props
 	 * @return the period in ms.
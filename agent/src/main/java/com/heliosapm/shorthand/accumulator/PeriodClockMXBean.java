@@ -0,0 +1,175 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.accumulator;
+
+import java.util.Map;
+
+import javax.management.ObjectName;
+
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+
+/**
+ * <p>Title: PeriodClockMXBean</p>
+ * <p>Description: JMX interface for the period clock's dispatch of period events to listeners</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.accumulator.PeriodClockMXBean</code></p>
+ */
+
+public interface PeriodClockMXBean {
+	/** The period clock JMX ObjectName */
+	public static final ObjectName OBJECT_NAME = JMXHelper.objectName("com.heliosapm.shorthand:service=PeriodClock");
+
+	/**
+	 * Returns the configured period in ms.
+	 * @return the period in ms.
+	 */
+	public long getPeriodMs();
+
+	/**
+	 * Returns the time a listener has to process a period event, after which the event is counted as an overrun, in ms.
+	 * @return the period budget in ms.
+	 */
+	public long getBudgetMs();
+
+	/**
+	 * Returns the name of the policy applied to a new period for a listener still processing a prior one
+	 * @return the overrun policy name
+	 */
+	public String getOverrunPolicy();
+
+	/**
+	 * Sets the policy applied to a new period for a listener still processing a prior one
+	 * @param policy A {@link PeriodOverrunPolicy} member name
+	 */
+	public void setOverrunPolicy(String policy);
+
+	/**
+	 * Returns the number of registered period listeners
+	 * @return the number of registered period listeners
+	 */
+	public int getListenerCount();
+
+	/**
+	 * Returns the number of periods dispatched to the listeners
+	 * @return the number of dispatched periods
+	 */
+	public long getDispatchedPeriodCount();
+
+	/**
+	 * Returns the number of listener period events dropped by the {@link PeriodOverrunPolicy#SKIP} policy or the pending period limit
+	 * @return the number of dropped listener period events
+	 */
+	public long getDroppedPeriodCount();
+
+	/**
+	 * Returns the number of listener period events merged into a later period by the {@link PeriodOverrunPolicy#MERGE} policy
+	 * @return the number of merged listener period events
+	 */
+	public long getMergedPeriodCount();
+
+	/**
+	 * Returns the number of listener period events that completed after the period budget
+	 * @return the number of overruns
+	 */
+	public long getOverrunCount();
+
+	/**
+	 * Returns the number of listener period events waiting for their listener
+	 * @return the number of pending listener period events
+	 */
+	public int getPendingPeriodCount();
+
+	/**
+	 * Returns the delay between the last period switch and the start of its processing by the slowest listener, in ms.
+	 * @return the last lag in ms.
+	 */
+	public long getLastLagMs();
+
+	/**
+	 * Returns the highest delay between a period switch and the start of its processing by a listener, in ms.
+	 * @return the highest lag in ms.
+	 */
+	public long getMaxLagMs();
+
+	/**
+	 * Returns the elapsed time between the last period switch and the completion of all listeners, in ms.
+	 * @return the last completion time in ms.
+	 */
+	public long getLastCompletionMs();
+
+	/**
+	 * Returns the lag of each listener's last period event in ms., keyed by the listener
+	 * @return the listener lags in ms.
+	 */
+	public Map<String, Long> getListenerLagMs();
+
+	/**
+	 * Returns the elapsed time of each listener's last period event in ms., keyed by the listener
+	 * @return the listener elapsed times in ms.
+	 */
+	public Map<String, Long> getListenerElapsedMs();
+
+	/**
+	 * Returns the fast inner period in ms.
+	 * @return the fast period in ms., zero if disabled
+	 */
+	public long getFastPeriodMs();
+
+	/**
+	 * Returns the number of fast ticks fired
+	 * @return the number of fast ticks
+	 */
+	public long getFastTickCount();
+
+	/**
+	 * Returns the number of fast ticks skipped because the fast period listeners overran
+	 * @return the number of skipped fast ticks
+	 */
+	public long getSkippedFastTickCount();
+
+	/**
+	 * Returns the number of times the fast tick schedule was re-anchored to the wall clock because of drift
+	 * @return the number of re-anchors
+	 */
+	public long getFastReanchorCount();
+
+	/**
+	 * Returns the last measured drift of the wall clock from the fast tick schedule in ms.
+	 * @return the fast tick drift in ms.
+	 */
+	public long getFastDriftMs();
+
+	/**
+	 * Returns how late the last fast tick fired after its deadline in us.
+	 * @return the fast tick lateness in us.
+	 */
+	public long getFastTickLatenessUs();
+
+	/**
+	 * Resets the counters and the highest lag
+	 */
+	public void resetStats();
+}
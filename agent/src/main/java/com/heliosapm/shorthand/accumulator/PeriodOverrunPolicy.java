@@ -0,0 +1,56 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.accumulator;
+
+/**
+ * <p>Title: PeriodOverrunPolicy</p>
+ * <p>Description: Defines what the {@link PeriodClock} does with a new period for a listener that is still processing a prior one</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.accumulator.PeriodOverrunPolicy</code></p>
+ */
+
+public enum PeriodOverrunPolicy {
+	/** Periods still waiting for the listener are dropped in favour of the new one */
+	SKIP,
+	/** The new period is merged with the period waiting for the listener, so the listener processes both in one call spanning from the waiting period's prior start */
+	MERGE,
+	/** The new period is queued and the listener processes the periods back to back, up to the configured pending period limit */
+	EXTEND;
+
+	/**
+	 * Decodes the passed name to a PeriodOverrunPolicy, defaulting to {@link #MERGE}
+	 * @param name The name to decode
+	 * @return the decoded policy
+	 */
+	public static PeriodOverrunPolicy forName(String name) {
+		if(name==null) return MERGE;
+		try {
+			return valueOf(name.trim().toUpperCase());
+		} catch (Exception ex) {
+			return MERGE;
+		}
+	}
+}
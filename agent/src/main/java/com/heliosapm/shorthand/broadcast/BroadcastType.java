@@ -40,7 +40,13 @@ import java.util.Map;
 
 public enum BroadcastType implements BroadcastPacketWriter, BroadcastPacketReader<BroadcastExecutable> {
 	/** Broadcast when a shorthand agent is started */
-	STARTUP(StartupBroadcastPacketHandler.INSTANCE, StartupBroadcastPacketHandler.INSTANCE);
+	STARTUP(StartupBroadcastPacketHandler.INSTANCE, StartupBroadcastPacketHandler.INSTANCE),
+	/** Broadcast when new metric names are first broadcast, and periodically thereafter, mapping name indexes to metric names */
+	NAMES(NameDictionaryBroadcastPacketHandler.INSTANCE, NameDictionaryBroadcastPacketHandler.INSTANCE),
+	/** Broadcast on each period close, carrying the closed period data points */
+	METRICS(MetricBroadcastPacketHandler.INSTANCE, MetricBroadcastPacketHandler.INSTANCE),
+	/** Broadcast periodically while a shorthand agent is running */
+	HEARTBEAT(HeartbeatBroadcastPacketHandler.INSTANCE, HeartbeatBroadcastPacketHandler.INSTANCE);
 	
 	/** A map of BroadcastTypes keyed by the ordinal */
 	public static final Map<Integer, BroadcastType> ORD2ENUM;
@@ -105,9 +111,12 @@ public enum BroadcastType implements BroadcastPacketWriter, BroadcastPacketReade
 		return packetWriter.buildPacket(args);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.broadcast.BroadcastPacketReader#unmarshallPacket(java.nio.ByteBuffer, java.net.InetSocketAddress)
+	 */
 	@Override
 	public BroadcastExecutable unmarshallPacket(ByteBuffer broadcast, InetSocketAddress sourceAddress) {
-		// TODO Auto-generated method stub
-		return null;
+		return packetReader.unmarshallPacket(broadcast, sourceAddress);
 	}
 }
@@ -27,43 +27,55 @@ package com.heliosapm.shorthand.broadcast;
 import static com.heliosapm.shorthand.ShorthandProperties.AGENT_BROADCAST_NETWORK_PROP;
 import static com.heliosapm.shorthand.ShorthandProperties.AGENT_BROADCAST_NIC_PROP;
 import static com.heliosapm.shorthand.ShorthandProperties.AGENT_BROADCAST_PORT_PROP;
+import static com.heliosapm.shorthand.ShorthandProperties.BROADCAST_QUEUE_PROP;
 import static com.heliosapm.shorthand.ShorthandProperties.DEFAULT_AGENT_BROADCAST_NETWORK;
 import static com.heliosapm.shorthand.ShorthandProperties.DEFAULT_AGENT_BROADCAST_NIC;
 import static com.heliosapm.shorthand.ShorthandProperties.DEFAULT_AGENT_BROADCAST_PORT;
+import static com.heliosapm.shorthand.ShorthandProperties.DEFAULT_BROADCAST_QUEUE;
 import static com.heliosapm.shorthand.ShorthandProperties.DEFAULT_DISABLE_BROADCAST_NETWORK;
 import static com.heliosapm.shorthand.ShorthandProperties.DISABLE_BROADCAST_NETWORK_PROP;
 
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.MulticastSocket;
 import java.net.NetworkInterface;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Map;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.heliosapm.shorthand.util.ConfigurationHelper;
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
 
 /**
  * <p>Title: Broadcaster</p>
- * <p>Description: The event broadcaster service</p> 
+ * <p>Description: The event broadcaster service. Packets are queued by the caller and sent by a single execution thread
+ * which drains the queue in batches, copying each packet once into a reused direct buffer and writing it to a
+ * {@link DatagramChannel} connected to each broadcast destination. Packets offered to a full queue are dropped and counted.</p> 
  * <p>Company: Helios Development Group LLC</p>
  * @author Whitehead (nwhitehead AT heliosdev DOT org)
  * <p><code>com.heliosapm.shorthand.broadcast.Broadcaster</code></p>
  */
 
-public class Broadcaster implements Runnable {
+public class Broadcaster implements Runnable, BroadcasterMBean {
 	/** The singleton instance */
 	private static volatile Broadcaster instance = null;
 	/** The singleton instance ctor lock */
 	private static final Object lock = new Object();
+	/** The maximum number of packets sent per drained batch */
+	public static final int MAX_BATCH = 64;
+	/** The maximum size of a UDP datagram payload */
+	public static final int MAX_PACKET_SIZE = 65507;
 	
 
-	/** A set of activated broadcast sockets */
-	protected final Map<DatagramSocket, InetSocketAddress> broadcastSockets = new ConcurrentHashMap<DatagramSocket, InetSocketAddress>();
+	/** The activated broadcast channels, each connected to its destination */
+	protected final List<DatagramChannel> broadcastChannels = new CopyOnWriteArrayList<DatagramChannel>();
 	/** Indicates if broadcasting is enabled */
 	protected final boolean enabled;
 	/** The network interface name to bind multicast sockets to */
@@ -72,51 +84,73 @@ public class Broadcaster implements Runnable {
 	protected final Thread executionThread;
 	/** The broadcast execution queue */
 	protected final BlockingQueue<byte[]> executionQueue;
+	/** The queue capacity */
+	protected final int queueCapacity;
+	/** The reused direct send buffer, only used by the execution thread */
+	protected final ByteBuffer sendBuffer;
+	/** The reused batch, only used by the execution thread */
+	protected final List<byte[]> batch = new ArrayList<byte[]>(MAX_BATCH);
+	
+	/** The number of packets sent, counted once per packet regardless of the number of destinations */
+	protected final AtomicLong sentPackets = new AtomicLong(0L);
+	/** The number of bytes sent, counted once per packet regardless of the number of destinations */
+	protected final AtomicLong sentBytes = new AtomicLong(0L);
+	/** The number of packets dropped because the queue was full */
+	protected final AtomicLong droppedPackets = new AtomicLong(0L);
+	/** The number of failed sends to a destination */
+	protected final AtomicLong sendErrors = new AtomicLong(0L);
+	/** The number of batches drained */
+	protected final AtomicLong batches = new AtomicLong(0L);
 	
 	private Broadcaster() {
 		enabled = !ConfigurationHelper.getBooleanSystemThenEnvProperty(DISABLE_BROADCAST_NETWORK_PROP, DEFAULT_DISABLE_BROADCAST_NETWORK);
+		queueCapacity = ConfigurationHelper.getIntSystemThenEnvProperty(BROADCAST_QUEUE_PROP, DEFAULT_BROADCAST_QUEUE);
 		if(enabled) {
 			nic = ConfigurationHelper.getSystemThenEnvProperty(AGENT_BROADCAST_NIC_PROP, DEFAULT_AGENT_BROADCAST_NIC);
-			executionQueue = new ArrayBlockingQueue<byte[]>(128, false);
+			executionQueue = new ArrayBlockingQueue<byte[]>(queueCapacity, false);
+			sendBuffer = ByteBuffer.allocateDirect(MAX_PACKET_SIZE);
 			executionThread = new Thread(this, "BroadcastExecutionThread");
 			executionThread.setDaemon(true);
-			initSockets();
+			initChannels();
 			executionThread.start();
 			log("\n\t=====================\n\tBroadcaster Started\n\t=====================");
 		} else {
 			nic = null;
 			executionThread = null;
 			executionQueue = null;
+			sendBuffer = null;
 		}
+		JMXHelper.registerMBean(OBJECT_NAME, this);
 	}
 	
 	/**
-	 * Initializes the broadcast sockets 
+	 * Initializes the broadcast channels 
 	 */
-	private void initSockets() {
+	private void initChannels() {
 		String[] addresses = ConfigurationHelper.getSystemThenEnvPropertyArray(AGENT_BROADCAST_NETWORK_PROP, DEFAULT_AGENT_BROADCAST_NETWORK);
 		int[] ports = ConfigurationHelper.getIntSystemThenEnvPropertyArray(AGENT_BROADCAST_PORT_PROP, "" + DEFAULT_AGENT_BROADCAST_PORT);
 		if(addresses.length!=ports.length) {
 			throw new RuntimeException("Invalid broadcast configuration. Number of addresses != Number of ports. Addresses:" + Arrays.toString(addresses) + " Ports:" + Arrays.toString(ports));
 		}
 		for(int i = 0; i < addresses.length; i++) {
+			DatagramChannel channel = null;
 			try {
 				InetAddress address = InetAddress.getByName(addresses[i]);
+				channel = DatagramChannel.open();
 				if(address.isMulticastAddress()) {
-					MulticastSocket msocket = new MulticastSocket(ports[i]);
 					try {
 						NetworkInterface ni = NetworkInterface.getByName(nic);
-						msocket.setNetworkInterface(ni);
+						if(ni!=null) channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, ni);
 					} catch (Exception ex) {/* No Op */}
-					msocket.joinGroup(address);
-					broadcastSockets.put(msocket, new InetSocketAddress(address, ports[i]));
 				} else {
-					DatagramSocket dsocket = new DatagramSocket(ports[i], address);
-					broadcastSockets.put(dsocket, new InetSocketAddress(address, ports[i]));
+					channel.setOption(StandardSocketOptions.SO_BROADCAST, true);
 				}
-				log("Connected broadcast socket [%s:%s]", addresses[i], ports[i]);
+				channel.connect(new InetSocketAddress(address, ports[i]));
+				broadcastChannels.add(channel);
+				log("Connected broadcast channel [%s:%s]", addresses[i], ports[i]);
 			} catch (Exception ex) {
-				loge("Failed to connect broadcast socket [%s:%s]", ex, addresses[i], ports[i]);
+				if(channel!=null) try { channel.close(); } catch (Exception x) {/* No Op */}
+				loge("Failed to connect broadcast channel [%s:%s]", ex, addresses[i], ports[i]);
 			}
 		}
 	}
@@ -137,15 +171,18 @@ public class Broadcaster implements Runnable {
 	}
 	
 	/**
-	 * Sends the passed broadcast message to all broadcast sockets
+	 * Queues the passed broadcast message to be sent to all broadcast destinations.
+	 * The packet is dropped if the queue is full.
 	 * @param packet The packet content to send
+	 * @return true if the packet was queued, false if broadcasting is disabled or the packet was dropped
 	 */
-	public void send(byte[] packet) {
-		if(packet!=null && enabled) {
-			if(!executionQueue.offer(packet)) {
-				loge("Failed to enqueue broadcast packet");
-			}
+	public boolean send(byte[] packet) {
+		if(packet==null || !enabled) return false;
+		if(packet.length > MAX_PACKET_SIZE || !executionQueue.offer(packet)) {
+			droppedPackets.incrementAndGet();
+			return false;
 		}
+		return true;
 	}
 	
 	/**
@@ -157,27 +194,128 @@ public class Broadcaster implements Runnable {
 		log("Started Broadcaster Execution Thread");
 		while(true) {
 			try {
-				byte[] packet = executionQueue.take();
-				if(packet!=null) {
-					DatagramPacket dp = new DatagramPacket(packet, packet.length);
-					for(Map.Entry<DatagramSocket, InetSocketAddress> entry: broadcastSockets.entrySet()) {
-						DatagramSocket ds = entry.getKey();
-						InetSocketAddress inet = entry.getValue();
-						try {
-							log("Interface [%s] Port [%s] Size [%s]", inet.getAddress() , inet.getPort(), packet.length);
-							ds.send(new DatagramPacket(packet, packet.length, entry.getValue().getAddress(), entry.getValue().getPort()));
-							log("Sent Broadcast to [%s]", inet);
-						} catch (Exception ex) {
-							loge("Failed to send broadcast to [%s]", ex, inet);
-						}
-					}
+				batch.add(executionQueue.take());
+				executionQueue.drainTo(batch, MAX_BATCH-1);
+				for(int i = 0, n = batch.size(); i < n; i++) {
+					write(batch.get(i));
 				}
-			} catch (Exception ex) {
+				batches.incrementAndGet();
+			} catch (InterruptedException iex) {
 				/* No Op */
+			} catch (Exception ex) {
+				loge("Broadcaster Execution Thread failure", ex);
+			} finally {
+				batch.clear();
 			}
 		}
 	}
 	
+	/**
+	 * Writes a packet to all the broadcast channels
+	 * @param packet The packet to write
+	 */
+	protected void write(byte[] packet) {
+		sendBuffer.clear();
+		sendBuffer.put(packet);
+		sendBuffer.flip();
+		for(int i = 0, n = broadcastChannels.size(); i < n; i++) {
+			try {
+				sendBuffer.rewind();
+				broadcastChannels.get(i).write(sendBuffer);
+			} catch (IOException iex) {
+				// Includes port unreachable errors from unicast destinations with no listener
+				sendErrors.incrementAndGet();
+			}
+		}
+		sentPackets.incrementAndGet();
+		sentBytes.addAndGet(packet.length);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.broadcast.BroadcasterMBean#isEnabled()
+	 */
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.broadcast.BroadcasterMBean#getDestinations()
+	 */
+	@Override
+	public String[] getDestinations() {
+		List<String> destinations = new ArrayList<String>(broadcastChannels.size());
+		for(DatagramChannel channel: broadcastChannels) {
+			destinations.add(String.valueOf(channel.socket().getRemoteSocketAddress()));
+		}
+		return destinations.toArray(new String[destinations.size()]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.broadcast.BroadcasterMBean#getQueueDepth()
+	 */
+	@Override
+	public int getQueueDepth() {
+		return enabled ? executionQueue.size() : 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.broadcast.BroadcasterMBean#getQueueCapacity()
+	 */
+	@Override
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.broadcast.BroadcasterMBean#getSentPacketCount()
+	 */
+	@Override
+	public long getSentPacketCount() {
+		return sentPackets.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.broadcast.BroadcasterMBean#getSentByteCount()
+	 */
+	@Override
+	public long getSentByteCount() {
+		return sentBytes.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.broadcast.BroadcasterMBean#getDroppedPacketCount()
+	 */
+	@Override
+	public long getDroppedPacketCount() {
+		return droppedPackets.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.broadcast.BroadcasterMBean#getSendErrorCount()
+	 */
+	@Override
+	public long getSendErrorCount() {
+		return sendErrors.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.broadcast.BroadcasterMBean#getBatchCount()
+	 */
+	@Override
+	public long getBatchCount() {
+		return batches.get();
+	}
+	
 	/**
 	 * Simple out formatted logger
 	 * @param fmt The format of the message
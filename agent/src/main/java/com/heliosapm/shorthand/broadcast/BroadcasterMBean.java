@@ -0,0 +1,96 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.broadcast;
+
+import javax.management.ObjectName;
+
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+
+/**
+ * <p>Title: BroadcasterMBean</p>
+ * <p>Description: JMX interface for the event broadcaster service</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.broadcast.BroadcasterMBean</code></p>
+ */
+
+public interface BroadcasterMBean {
+	/** The broadcaster JMX ObjectName */
+	public static final ObjectName OBJECT_NAME = JMXHelper.objectName("com.heliosapm.shorthand.broadcast:service=Broadcaster");
+	
+	/**
+	 * Indicates if broadcasting is enabled
+	 * @return true if broadcasting is enabled
+	 */
+	public boolean isEnabled();
+	
+	/**
+	 * Returns the broadcast destinations
+	 * @return the broadcast destinations
+	 */
+	public String[] getDestinations();
+	
+	/**
+	 * Returns the number of packets waiting to be sent
+	 * @return the send queue depth
+	 */
+	public int getQueueDepth();
+	
+	/**
+	 * Returns the capacity of the send queue
+	 * @return the send queue capacity
+	 */
+	public int getQueueCapacity();
+	
+	/**
+	 * Returns the number of packets sent
+	 * @return the number of packets sent
+	 */
+	public long getSentPacketCount();
+	
+	/**
+	 * Returns the number of bytes sent
+	 * @return the number of bytes sent
+	 */
+	public long getSentByteCount();
+	
+	/**
+	 * Returns the number of packets dropped because the send queue was full
+	 * @return the number of dropped packets
+	 */
+	public long getDroppedPacketCount();
+	
+	/**
+	 * Returns the number of failed sends to a destination
+	 * @return the number of failed sends
+	 */
+	public long getSendErrorCount();
+	
+	/**
+	 * Returns the number of batches drained from the send queue
+	 * @return the number of batches
+	 */
+	public long getBatchCount();
+}
@@ -0,0 +1,132 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.broadcast;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+import com.heliosapm.shorthand.ShorthandProperties;
+
+/**
+ * <p>Title: HeartbeatBroadcastPacketHandler</p>
+ * <p>Description: Packet handler for the agent presence heartbeat. Each heartbeat carries everything a receiver needs to register
+ * the JVM, so a receiver started after the agent does not depend on having seen the {@link BroadcastType#STARTUP} broadcast. Packet layout:<pre>
+ * type: 1 (byte)
+ * pid: 4 (int)
+ * jmxmp port: 4 (int)
+ * heartbeat interval ms: 4 (int)
+ * sequence: 4 (int)
+ * live compiled script count: 4 (int)
+ * </pre></p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.broadcast.HeartbeatBroadcastPacketHandler</code></p>
+ */
+
+public class HeartbeatBroadcastPacketHandler implements BroadcastPacketWriter, BroadcastPacketReader<BroadcastExecutable> {
+	/** A static re-usable instance */
+	public static final HeartbeatBroadcastPacketHandler INSTANCE = new HeartbeatBroadcastPacketHandler();
+	/** The size of a heartbeat packet */
+	public static final int PACKET_SIZE = 21;
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>Expects the jmxmp port, the heartbeat interval, the sequence and the live compiled script count as arguments.</p>
+	 * @see com.heliosapm.shorthand.broadcast.BroadcastPacketWriter#buildPacket(java.lang.Object[])
+	 */
+	@Override
+	public byte[] buildPacket(Object... args) {
+		ByteBuffer buf = ByteBuffer.allocate(PACKET_SIZE);
+		buf.put((byte)BroadcastType.HEARTBEAT.ordinal());
+		buf.putInt(ShorthandProperties.IPID);
+		for(int i = 0; i < 4; i++) {
+			buf.putInt(((Number)args[i]).intValue());
+		}
+		return buf.array();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.broadcast.BroadcastPacketReader#unmarshallPacket(java.nio.ByteBuffer, java.net.InetSocketAddress)
+	 */
+	@Override
+	public HeartbeatBroadcast unmarshallPacket(ByteBuffer broadcast, InetSocketAddress sourceAddress) {
+		return new HeartbeatBroadcast().read(broadcast, sourceAddress);
+	}
+	
+	/**
+	 * <p>Title: HeartbeatBroadcast</p>
+	 * <p>Description: An unmarshalled heartbeat broadcast packet. An instance can be re-used through {@link #read(ByteBuffer, InetSocketAddress)}.</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.broadcast.HeartbeatBroadcastPacketHandler.HeartbeatBroadcast</code></p>
+	 */
+	public static class HeartbeatBroadcast implements BroadcastExecutable {
+		/** The process id of the broadcasting JVM */
+		public int pid;
+		/** The address of the broadcasting agent */
+		public InetSocketAddress source;
+		/** The JMXMP port the agent is listening on */
+		public int jmxmpPort;
+		/** The agent's heartbeat interval in ms. */
+		public int interval;
+		/** The heartbeat sequence, incremented on each heartbeat */
+		public int sequence;
+		/** The number of scripts compiled into the agent's JVM whose instrumentation is still live */
+		public int scriptCount;
+		
+		/**
+		 * Decodes a heartbeat packet into this instance
+		 * @param broadcast The packet content, positioned after the broadcast type
+		 * @param sourceAddress The address the packet was received from
+		 * @return this instance
+		 * @throws java.nio.BufferUnderflowException thrown if the packet is truncated
+		 */
+		public HeartbeatBroadcast read(ByteBuffer broadcast, InetSocketAddress sourceAddress) {
+			source = sourceAddress;
+			pid = broadcast.getInt();
+			jmxmpPort = broadcast.getInt();
+			interval = broadcast.getInt();
+			sequence = broadcast.getInt();
+			scriptCount = broadcast.getInt();
+			return this;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append("HeartbeatBroadcast [pid=").append(pid)
+					.append(", source=").append(source)
+					.append(", jmxmpPort=").append(jmxmpPort)
+					.append(", sequence=").append(sequence).append("]");
+			return builder.toString();
+		}
+
+		@Override
+		public void run() {
+			/* No Op. Delivered to presence listeners by the receiver */
+		}
+	}
+}
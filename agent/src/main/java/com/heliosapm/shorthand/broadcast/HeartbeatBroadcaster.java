@@ -0,0 +1,122 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.broadcast;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.heliosapm.shorthand.ShorthandProperties;
+import com.heliosapm.shorthand.telemetry.AgentTelemetry;
+import com.heliosapm.shorthand.util.ConfigurationHelper;
+import com.heliosapm.shorthand.util.jmx.ShorthandJMXConnectorServer;
+
+/**
+ * <p>Title: HeartbeatBroadcaster</p>
+ * <p>Description: Periodically broadcasts a {@link BroadcastType#HEARTBEAT} so receivers can tell a running agent with nothing to report 
+ * from one that has gone away, without polling it.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.broadcast.HeartbeatBroadcaster</code></p>
+ */
+
+public class HeartbeatBroadcaster implements Runnable, ThreadFactory {
+	/** The singleton instance */
+	private static volatile HeartbeatBroadcaster instance = null;
+	/** The singleton instance ctor lock */
+	private static final Object lock = new Object();
+	
+	/** The heartbeat interval in ms. */
+	protected final int interval;
+	/** The heartbeat sequence */
+	protected final AtomicInteger sequence = new AtomicInteger();
+	/** The heartbeat scheduler */
+	protected final ScheduledExecutorService scheduler;
+	
+	/**
+	 * Starts the heartbeat if it is enabled and broadcasting is enabled. Subsequent calls are ignored.
+	 * @return the heartbeat broadcaster or null if the heartbeat is disabled
+	 */
+	public static HeartbeatBroadcaster install() {
+		if(instance==null) {
+			synchronized(lock) {
+				if(instance==null) {
+					int interval = ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.BROADCAST_HEARTBEAT_PROP, ShorthandProperties.DEFAULT_BROADCAST_HEARTBEAT);
+					if(interval < 1 || !Broadcaster.getInstance().isEnabled()) return null;
+					instance = new HeartbeatBroadcaster(interval);
+				}
+			}
+		}
+		return instance;
+	}
+	
+	/**
+	 * Creates a new HeartbeatBroadcaster and schedules the heartbeat
+	 * @param interval The heartbeat interval in ms.
+	 */
+	private HeartbeatBroadcaster(int interval) {
+		this.interval = interval;
+		scheduler = Executors.newSingleThreadScheduledExecutor(this);
+		scheduler.scheduleAtFixedRate(this, 0, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sends a heartbeat
+	 * {@inheritDoc}
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		try {
+			Broadcaster.getInstance().send(BroadcastType.HEARTBEAT.buildPacket(
+					ShorthandJMXConnectorServer.getInstance().port, interval, sequence.incrementAndGet(), 
+					(int)AgentTelemetry.getInstance().getScriptCount()));
+		} catch (Exception ex) {
+			// an exception would cancel the schedule
+			Broadcaster.loge("Failed to send heartbeat", ex);
+		}
+	}
+	
+	/**
+	 * Returns the number of heartbeats sent
+	 * @return the number of heartbeats
+	 */
+	public int getSequence() {
+		return sequence.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+	 */
+	@Override
+	public Thread newThread(Runnable r) {
+		Thread t = new Thread(r, "ShorthandHeartbeatThread");
+		t.setDaemon(true);
+		return t;
+	}
+}
@@ -0,0 +1,266 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.broadcast;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.heliosapm.shorthand.ShorthandProperties;
+
+/**
+ * <p>Title: MetricBroadcastPacketHandler</p>
+ * <p>Description: Packet handler for the closed period metric broadcast. Metrics are identified by the broadcasting agent's
+ * name index, resolved through {@link BroadcastType#NAMES} packets of the same store generation. Packet layout:<pre>
+ * type: 1 (byte)
+ * pid: 4 (int)
+ * store generation: 8 (long)
+ * period start: 8 (long)
+ * period end: 8 (long)
+ * entry count: 2 (unsigned short)
+ * entries:
+ *    name index (varint)
+ *    data point count (varint)
+ *    data points:
+ *       collector ordinal (varint)
+ *       value count (varint)
+ *       values (zig-zag varint)
+ * </pre></p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.broadcast.MetricBroadcastPacketHandler</code></p>
+ */
+
+public class MetricBroadcastPacketHandler implements BroadcastPacketWriter, BroadcastPacketReader<BroadcastExecutable> {
+	/** A static re-usable instance */
+	public static final MetricBroadcastPacketHandler INSTANCE = new MetricBroadcastPacketHandler();
+	/** The offset of the period start in the packet */
+	public static final int PERIOD_START_OFFSET = 13;
+	/** The offset of the period end in the packet */
+	public static final int PERIOD_END_OFFSET = 21;
+	/** The offset of the entry count in the packet */
+	public static final int COUNT_OFFSET = 29;
+	/** The size of the packet header */
+	public static final int HEADER_SIZE = 31;
+	
+	/**
+	 * Resets the passed buffer and writes an empty packet header into it
+	 * @param buf The packet buffer
+	 * @param generation The generation of the store the name indexes were read from
+	 * @param periodStart The start time of the broadcast period
+	 * @param periodEnd The end time of the broadcast period
+	 */
+	public void start(ByteBuffer buf, long generation, long periodStart, long periodEnd) {
+		buf.clear();
+		buf.put((byte)BroadcastType.METRICS.ordinal());
+		buf.putInt(ShorthandProperties.IPID);
+		buf.putLong(generation);
+		buf.putLong(periodStart);
+		buf.putLong(periodEnd);
+		buf.putShort((short)0);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>Completes a packet started with {@link #start(ByteBuffer, long, long, long)} to which entries have been appended.
+	 * Expects the packet buffer and the number of appended entries as arguments.</p>
+	 * @see com.heliosapm.shorthand.broadcast.BroadcastPacketWriter#buildPacket(java.lang.Object[])
+	 */
+	@Override
+	public byte[] buildPacket(Object... args) {
+		ByteBuffer buf = (ByteBuffer)args[0];
+		buf.putShort(COUNT_OFFSET, ((Number)args[1]).shortValue());
+		return Arrays.copyOf(buf.array(), buf.position());
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>Returns a new {@link MetricBroadcast}. Receivers decoding at high rates should re-use an instance
+	 * through {@link MetricBroadcast#read(ByteBuffer, InetSocketAddress)} instead.</p>
+	 * @see com.heliosapm.shorthand.broadcast.BroadcastPacketReader#unmarshallPacket(java.nio.ByteBuffer, java.net.InetSocketAddress)
+	 */
+	@Override
+	public MetricBroadcast unmarshallPacket(ByteBuffer broadcast, InetSocketAddress sourceAddress) {
+		return new MetricBroadcast().read(broadcast, sourceAddress);
+	}
+	
+	/**
+	 * <p>Title: MetricBroadcast</p>
+	 * <p>Description: An unmarshalled closed period metric broadcast packet. The entries are held in flat arrays
+	 * which are grown as needed and kept across calls to {@link #read(ByteBuffer, InetSocketAddress)}, so one instance
+	 * can decode any number of packets without allocating once it has reached the size of the largest packet.
+	 * A re-used instance is overwritten by the next read, so consumers must copy anything they need to keep.</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.broadcast.MetricBroadcastPacketHandler.MetricBroadcast</code></p>
+	 */
+	public static class MetricBroadcast implements BroadcastExecutable {
+		/** The process id of the broadcasting JVM */
+		public int pid;
+		/** The address of the broadcasting agent */
+		public InetSocketAddress source;
+		/** The generation of the broadcasting agent's store. The name indexes of one generation mean nothing in another. */
+		public long generation;
+		/** The start time of the period */
+		public long periodStart;
+		/** The end time of the period */
+		public long periodEnd;
+		/** The number of entries */
+		private int count = 0;
+		/** The name indexes of the entries */
+		private long[] nameIndexes = new long[32];
+		/** The offset of each entry's first data point, with the end offset of the last entry at <code>count</code> */
+		private int[] pointOffsets = new int[33];
+		/** The collector ordinals of all the data points */
+		private int[] ordinals = new int[128];
+		/** The offset of each data point's first value, with the end offset of the last data point at the data point count */
+		private int[] valueOffsets = new int[129];
+		/** The values of all the data points */
+		private long[] values = new long[256];
+		
+		/**
+		 * Decodes a metric broadcast packet into this instance, replacing the prior content
+		 * @param broadcast The packet content, positioned after the broadcast type
+		 * @param sourceAddress The address the packet was received from
+		 * @return this instance
+		 * @throws java.nio.BufferUnderflowException thrown if the packet is truncated
+		 * @throws IllegalArgumentException thrown if the packet contains a malformed variable length value
+		 */
+		public MetricBroadcast read(ByteBuffer broadcast, InetSocketAddress sourceAddress) {
+			count = 0;
+			source = sourceAddress;
+			pid = broadcast.getInt();
+			generation = broadcast.getLong();
+			periodStart = broadcast.getLong();
+			periodEnd = broadcast.getLong();
+			final int entries = broadcast.getShort() & 0xFFFF;
+			if(nameIndexes.length < entries) {
+				nameIndexes = new long[entries];
+				pointOffsets = new int[entries+1];
+			}
+			int point = 0, value = 0;
+			for(int i = 0; i < entries; i++) {
+				nameIndexes[i] = VarInt.getVarLong(broadcast);
+				pointOffsets[i] = point;
+				int points = (int)VarInt.getVarLong(broadcast);
+				if(points < 0 || points > broadcast.remaining()) throw new IllegalArgumentException("Invalid data point count [" + points + "]");
+				if(ordinals.length < point + points) {
+					ordinals = Arrays.copyOf(ordinals, Math.max(ordinals.length * 2, point + points));
+					valueOffsets = Arrays.copyOf(valueOffsets, ordinals.length + 1);
+				}
+				for(int p = 0; p < points; p++, point++) {
+					ordinals[point] = (int)VarInt.getVarLong(broadcast);
+					valueOffsets[point] = value;
+					int valueCount = (int)VarInt.getVarLong(broadcast);
+					if(valueCount < 0 || valueCount > broadcast.remaining()) throw new IllegalArgumentException("Invalid value count [" + valueCount + "]");
+					if(values.length < value + valueCount) {
+						values = Arrays.copyOf(values, Math.max(values.length * 2, value + valueCount));
+					}
+					for(int v = 0; v < valueCount; v++) {
+						values[value++] = VarInt.getZigZag(broadcast);
+					}
+				}
+			}
+			pointOffsets[entries] = point;
+			valueOffsets[point] = value;
+			count = entries;
+			return this;
+		}
+		
+		/**
+		 * Returns the number of entries in this broadcast
+		 * @return the number of entries
+		 */
+		public int size() {
+			return count;
+		}
+		
+		/**
+		 * Returns the name index of an entry
+		 * @param entry The entry index
+		 * @return the name index
+		 */
+		public long nameIndex(int entry) {
+			return nameIndexes[entry];
+		}
+		
+		/**
+		 * Returns the number of data points in an entry
+		 * @param entry The entry index
+		 * @return the number of data points
+		 */
+		public int pointCount(int entry) {
+			return pointOffsets[entry+1] - pointOffsets[entry];
+		}
+		
+		/**
+		 * Returns the collector ordinal of an entry's data point
+		 * @param entry The entry index
+		 * @param point The data point index within the entry
+		 * @return the collector ordinal
+		 */
+		public int ordinal(int entry, int point) {
+			return ordinals[pointOffsets[entry] + point];
+		}
+		
+		/**
+		 * Returns the number of values in an entry's data point
+		 * @param entry The entry index
+		 * @param point The data point index within the entry
+		 * @return the number of values
+		 */
+		public int valueCount(int entry, int point) {
+			int p = pointOffsets[entry] + point;
+			return valueOffsets[p+1] - valueOffsets[p];
+		}
+		
+		/**
+		 * Returns a value of an entry's data point
+		 * @param entry The entry index
+		 * @param point The data point index within the entry
+		 * @param sub The value index within the data point
+		 * @return the value
+		 */
+		public long value(int entry, int point, int sub) {
+			return values[valueOffsets[pointOffsets[entry] + point] + sub];
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append("MetricBroadcast [pid=").append(pid)
+					.append(", source=").append(source)
+					.append(", generation=").append(generation)
+					.append(", periodEnd=").append(periodEnd)
+					.append(", entries=").append(count).append("]");
+			return builder.toString();
+		}
+
+		@Override
+		public void run() {
+			/* No Op. Delivered to metric feed listeners by the receiver */
+		}
+	}
+}
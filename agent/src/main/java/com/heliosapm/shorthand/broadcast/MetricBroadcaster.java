@@ -0,0 +1,350 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.broadcast;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Notification;
+import javax.management.NotificationListener;
+
+import com.heliosapm.shorthand.ShorthandProperties;
+import com.heliosapm.shorthand.collectors.EnumCollectors;
+import com.heliosapm.shorthand.store.ChronicleDataOffset;
+import com.heliosapm.shorthand.store.ChronicleOffset;
+import com.heliosapm.shorthand.store.ChronicleStore;
+import com.heliosapm.shorthand.util.ConfigurationHelper;
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+import com.higherfrequencytrading.chronicle.Excerpt;
+
+/**
+ * <p>Title: MetricBroadcaster</p>
+ * <p>Description: Broadcasts the data points of each closed period as {@link BroadcastType#METRICS} datagrams packed up to the configured MTU,
+ * read straight from the name index and tier 1 chronicles once the store has flushed. Metrics are identified by name index and the 
+ * names are sent in {@link BroadcastType#NAMES} datagrams, ahead of the first metric packet that refers to them, and again in full every
+ * {@link ShorthandProperties#BROADCAST_DICTIONARY_PERIODS_PROP} periods for receivers that joined late or lost a packet.
+ * Both packet types carry the store generation, and a new generation is announced in full.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.broadcast.MetricBroadcaster</code></p>
+ */
+
+public class MetricBroadcaster implements NotificationListener, MetricBroadcasterMBean {
+	/** The store to read from */
+	protected final ChronicleStore<?> store;
+	/** The metric packet buffer */
+	protected final ByteBuffer metricBuf;
+	/** The name dictionary packet buffer */
+	protected final ByteBuffer nameBuf;
+	/** The number of periods between full name dictionary broadcasts */
+	protected final int dictionaryPeriods;
+	/** The name indexes already broadcast in the name dictionary */
+	protected final BitSet announced = new BitSet();
+	/** The name indexes in the pending name dictionary packet, announced once the packet is queued */
+	protected final BitSet pending = new BitSet();
+	/** The encoded collector class names keyed by enum index */
+	protected final Map<Integer, byte[]> collectorTypes = new HashMap<Integer, byte[]>();
+	/** The number of entries in the current metric packet */
+	protected int metricEntries = 0;
+	/** The number of entries in the current name dictionary packet */
+	protected int nameEntries = 0;
+	/** The number of periods since the last full name dictionary broadcast */
+	protected int periodsSinceDictionary = 0;
+	/** The store generation the announced name indexes belong to */
+	protected long generation = -1L;
+	
+	/** The number of metric packets sent */
+	protected final AtomicLong metricPackets = new AtomicLong(0L);
+	/** The number of name dictionary packets sent */
+	protected final AtomicLong namePackets = new AtomicLong(0L);
+	/** The number of metrics broadcast */
+	protected final AtomicLong metricCount = new AtomicLong(0L);
+	/** The number of metrics too large to fit in a packet */
+	protected final AtomicLong droppedCount = new AtomicLong(0L);
+	
+	/**
+	 * Installs a metric broadcaster on the passed store if metric broadcasting is enabled
+	 * @param store The store to broadcast the closed periods of
+	 * @return the installed broadcaster or null if metric broadcasting is disabled
+	 */
+	public static MetricBroadcaster install(ChronicleStore<?> store) {
+		if(!ConfigurationHelper.getBooleanSystemThenEnvProperty(ShorthandProperties.BROADCAST_METRICS_PROP, ShorthandProperties.DEFAULT_BROADCAST_METRICS)) return null;
+		MetricBroadcaster broadcaster = new MetricBroadcaster(store, 
+				ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.BROADCAST_MTU_PROP, ShorthandProperties.DEFAULT_BROADCAST_MTU),
+				ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.BROADCAST_DICTIONARY_PERIODS_PROP, ShorthandProperties.DEFAULT_BROADCAST_DICTIONARY_PERIODS));
+		store.addNotificationListener(broadcaster, null, null);
+		JMXHelper.registerMBean(OBJECT_NAME, broadcaster);
+		return broadcaster;
+	}
+	
+	/**
+	 * Creates a new MetricBroadcaster
+	 * @param store The store to broadcast the closed periods of
+	 * @param mtu The maximum datagram size in bytes
+	 * @param dictionaryPeriods The number of periods between full name dictionary broadcasts
+	 */
+	public MetricBroadcaster(ChronicleStore<?> store, int mtu, int dictionaryPeriods) {
+		if(mtu < 256) throw new IllegalArgumentException("The broadcast MTU [" + mtu + "] is less than 256");
+		this.store = store;
+		this.dictionaryPeriods = Math.max(1, dictionaryPeriods);
+		metricBuf = ByteBuffer.allocate(mtu);
+		nameBuf = ByteBuffer.allocate(mtu);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see javax.management.NotificationListener#handleNotification(javax.management.Notification, java.lang.Object)
+	 */
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+		if(ChronicleStore.NOTIF_PERIOD_END.equals(notification.getType())) {
+			try {
+				broadcastPeriod();
+			} catch (Exception ex) {
+				Broadcaster.loge("Failed to broadcast closed period metrics", ex);
+			}
+		}
+	}
+	
+	/**
+	 * Broadcasts the metrics of the last closed period
+	 * @return the number of metrics broadcast
+	 */
+	public synchronized int broadcastPeriod() {
+		final long periodEnd = store.getLastFlushedPeriodEnd();
+		if(periodEnd==-1L) return 0;
+		final long gen = store.getGeneration();
+		if(gen!=generation || ++periodsSinceDictionary >= dictionaryPeriods) {
+			// Compaction and clear renumber the name index, so a new generation gets a full dictionary
+			announced.clear();
+			periodsSinceDictionary = 0;
+			generation = gen;
+		}
+		metricEntries = 0;
+		nameEntries = 0;
+		pending.clear();
+		NameDictionaryBroadcastPacketHandler.INSTANCE.start(nameBuf, generation);
+		int broadcast = 0;
+		Excerpt nameEx = store.getNameIndexExcerpt();
+		Excerpt dataEx = store.getDataIndexExcerpt();
+		try {
+			final long names = store.getMetricNameCount();
+			// Entry 0 of the name index is the zero record
+			for(long index = 1; index < names; index++) {
+				if(ChronicleOffset.isDeleted(index, nameEx)) continue;
+				if(ChronicleOffset.PeriodEnd.get(index, nameEx)!=periodEnd) continue;
+				if(metricEntries==0) {
+					MetricBroadcastPacketHandler.INSTANCE.start(metricBuf, generation, ChronicleOffset.PeriodStart.get(index, nameEx), periodEnd);
+				}
+				if(!announced.get((int)index)) {
+					announce(index, nameEx);
+				}
+				if(appendMetric(index, nameEx, dataEx)) broadcast++;
+			}
+			flushMetrics();
+		} finally {
+			nameEx.close();
+			dataEx.close();
+		}
+		metricCount.addAndGet(broadcast);
+		return broadcast;
+	}
+	
+	/**
+	 * Appends the name dictionary entry of the metric at the passed name index to the name dictionary packet
+	 * @param index The name index
+	 * @param nameEx The name index excerpt
+	 */
+	protected void announce(long index, Excerpt nameEx) {
+		final int enumIndex = (int)ChronicleOffset.EnumIndex.get(index, nameEx);
+		final int bitMask = (int)ChronicleOffset.BitMask.get(index, nameEx);
+		byte[] collectorType = collectorTypes.get(enumIndex);
+		if(collectorType==null) {
+			collectorType = EnumCollectors.getInstance().type(enumIndex).getName().getBytes(NameDictionaryBroadcastPacketHandler.UTF8);
+			collectorTypes.put(enumIndex, collectorType);
+		}
+		byte[] name = ChronicleOffset.getName(index, nameEx).getBytes(NameDictionaryBroadcastPacketHandler.UTF8);
+		for(int attempt = 0; attempt < 2; attempt++) {
+			int mark = nameBuf.position();
+			try {
+				NameDictionaryBroadcastPacketHandler.INSTANCE.append(nameBuf, index, bitMask, collectorType, name);
+				nameEntries++;
+				pending.set((int)index);
+				return;
+			} catch (BufferOverflowException bex) {
+				nameBuf.position(mark);
+				if(nameEntries==0) break;
+				flushNames();
+			}
+		}
+		droppedCount.incrementAndGet();
+	}
+	
+	/**
+	 * Appends the closed period data points of the metric at the passed name index to the metric packet
+	 * @param index The name index
+	 * @param nameEx The name index excerpt
+	 * @param dataEx The tier 1 excerpt
+	 * @return true if the metric was appended, false if it does not fit in a packet
+	 */
+	protected boolean appendMetric(long index, Excerpt nameEx, Excerpt dataEx) {
+		for(int attempt = 0; attempt < 2; attempt++) {
+			int mark = metricBuf.position();
+			try {
+				writeMetric(index, nameEx, dataEx);
+				metricEntries++;
+				return true;
+			} catch (BufferOverflowException bex) {
+				metricBuf.position(mark);
+				if(metricEntries==0) break;
+				long periodStart = metricBuf.getLong(MetricBroadcastPacketHandler.PERIOD_START_OFFSET);
+				long periodEnd = metricBuf.getLong(MetricBroadcastPacketHandler.PERIOD_END_OFFSET);
+				flushMetrics();
+				MetricBroadcastPacketHandler.INSTANCE.start(metricBuf, generation, periodStart, periodEnd);
+			}
+		}
+		droppedCount.incrementAndGet();
+		return false;
+	}
+	
+	/**
+	 * Writes a metric entry, reading the tier 1 indexes in place from the name record
+	 * @param index The name index
+	 * @param nameEx The name index excerpt
+	 * @param dataEx The tier 1 excerpt
+	 */
+	protected void writeMetric(long index, Excerpt nameEx, Excerpt dataEx) {
+		nameEx.index(index);
+		nameEx.position(ChronicleOffset.NameSize.offset);
+		final int nameSize = nameEx.readInt();
+		final int indexCount = nameEx.readInt();
+		final int indexesOffset = ChronicleOffset.NameSize.offset + 8 + nameSize;
+		int points = 0;
+		nameEx.position(indexesOffset);
+		for(int i = 0; i < indexCount; i++) {
+			if(nameEx.readLong() > 0) points++;
+		}
+		VarInt.putVarLong(metricBuf, index);
+		VarInt.putVarLong(metricBuf, points);
+		nameEx.position(indexesOffset);
+		for(int i = 0; i < indexCount; i++) {
+			long dataIndex = nameEx.readLong();
+			if(dataIndex < 1) continue;
+			dataEx.index(dataIndex);
+			int ordinal = dataEx.readInt(ChronicleDataOffset.EnumOrdinal.offset);
+			int subCount = dataEx.readInt(ChronicleDataOffset.SubCount.offset);
+			VarInt.putVarLong(metricBuf, ordinal);
+			VarInt.putVarLong(metricBuf, subCount);
+			for(int sub = 0; sub < subCount; sub++) {
+				VarInt.putZigZag(metricBuf, dataEx.readLong(ChronicleDataOffset.HEADER_SIZE + (sub * 8)));
+			}
+		}
+	}
+	
+	/**
+	 * Sends the pending name dictionary packet, if it has any entries.
+	 * The packet's names are only marked announced if the packet is queued, so dropped names are resent in the next period.
+	 */
+	protected void flushNames() {
+		if(nameEntries==0) return;
+		if(send(NameDictionaryBroadcastPacketHandler.INSTANCE.buildPacket(nameBuf, nameEntries))) {
+			announced.or(pending);
+			namePackets.incrementAndGet();
+		}
+		pending.clear();
+		nameEntries = 0;
+		NameDictionaryBroadcastPacketHandler.INSTANCE.start(nameBuf, generation);
+	}
+	
+	/**
+	 * Sends the pending metric packet, if it has any entries, preceded by any pending name dictionary packet
+	 */
+	protected void flushMetrics() {
+		flushNames();
+		if(metricEntries==0) return;
+		if(send(MetricBroadcastPacketHandler.INSTANCE.buildPacket(metricBuf, metricEntries))) {
+			metricPackets.incrementAndGet();
+		}
+		metricEntries = 0;
+	}
+	
+	/**
+	 * Sends a completed packet
+	 * @param packet The packet to send
+	 * @return true if the packet was queued, false if it was dropped
+	 */
+	protected boolean send(byte[] packet) {
+		return Broadcaster.getInstance().send(packet);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.broadcast.MetricBroadcasterMBean#getMtu()
+	 */
+	@Override
+	public int getMtu() {
+		return metricBuf.capacity();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.broadcast.MetricBroadcasterMBean#getMetricPacketCount()
+	 */
+	@Override
+	public long getMetricPacketCount() {
+		return metricPackets.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.broadcast.MetricBroadcasterMBean#getNamePacketCount()
+	 */
+	@Override
+	public long getNamePacketCount() {
+		return namePackets.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.broadcast.MetricBroadcasterMBean#getMetricCount()
+	 */
+	@Override
+	public long getMetricCount() {
+		return metricCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.broadcast.MetricBroadcasterMBean#getDroppedCount()
+	 */
+	@Override
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.broadcast;
+
+import javax.management.ObjectName;
+
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+
+/**
+ * <p>Title: MetricBroadcasterMBean</p>
+ * <p>Description: JMX interface for the closed period metric broadcaster</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.broadcast.MetricBroadcasterMBean</code></p>
+ */
+
+public interface MetricBroadcasterMBean {
+	/** The metric broadcaster JMX ObjectName */
+	public static final ObjectName OBJECT_NAME = JMXHelper.objectName("com.heliosapm.shorthand.broadcast:service=MetricBroadcaster");
+	
+	/**
+	 * Returns the maximum datagram size in bytes
+	 * @return the maximum datagram size
+	 */
+	public int getMtu();
+	
+	/**
+	 * Returns the number of metric packets sent
+	 * @return the number of metric packets sent
+	 */
+	public long getMetricPacketCount();
+	
+	/**
+	 * Returns the number of name dictionary packets sent
+	 * @return the number of name dictionary packets sent
+	 */
+	public long getNamePacketCount();
+	
+	/**
+	 * Returns the number of metrics broadcast
+	 * @return the number of metrics broadcast
+	 */
+	public long getMetricCount();
+	
+	/**
+	 * Returns the number of metrics or names too large to fit in a packet
+	 * @return the number of dropped metrics
+	 */
+	public long getDroppedCount();
+}
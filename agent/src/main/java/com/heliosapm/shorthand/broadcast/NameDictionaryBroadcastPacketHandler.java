@@ -0,0 +1,207 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.broadcast;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.heliosapm.shorthand.ShorthandProperties;
+
+/**
+ * <p>Title: NameDictionaryBroadcastPacketHandler</p>
+ * <p>Description: Packet handler for the metric name dictionary broadcast, which maps the name indexes used in 
+ * {@link BroadcastType#METRICS} packets to metric names. A change of store generation invalidates all the mappings 
+ * received for the prior generation. Packet layout:<pre>
+ * type: 1 (byte)
+ * pid: 4 (int)
+ * store generation: 8 (long)
+ * entry count: 2 (unsigned short)
+ * entries:
+ *    name index (varint)
+ *    bit mask (varint)
+ *    collector class name length (varint), collector class name (UTF-8)
+ *    metric name length (varint), metric name (UTF-8)
+ * </pre></p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.broadcast.NameDictionaryBroadcastPacketHandler</code></p>
+ */
+
+public class NameDictionaryBroadcastPacketHandler implements BroadcastPacketWriter, BroadcastPacketReader<BroadcastExecutable> {
+	/** A static re-usable instance */
+	public static final NameDictionaryBroadcastPacketHandler INSTANCE = new NameDictionaryBroadcastPacketHandler();
+	/** The UTF-8 character set */
+	public static final Charset UTF8 = Charset.forName("UTF-8");
+	/** The offset of the entry count in the packet */
+	public static final int COUNT_OFFSET = 13;
+	/** The size of the packet header */
+	public static final int HEADER_SIZE = 15;
+	
+	/**
+	 * Resets the passed buffer and writes an empty packet header into it
+	 * @param buf The packet buffer
+	 * @param generation The generation of the store the name indexes were read from
+	 */
+	public void start(ByteBuffer buf, long generation) {
+		buf.clear();
+		buf.put((byte)BroadcastType.NAMES.ordinal());
+		buf.putInt(ShorthandProperties.IPID);
+		buf.putLong(generation);
+		buf.putShort((short)0);
+	}
+	
+	/**
+	 * Appends a dictionary entry to a started packet
+	 * @param buf The packet buffer
+	 * @param nameIndex The metric name index
+	 * @param bitMask The metric bit mask
+	 * @param collectorType The encoded collector class name
+	 * @param name The encoded metric name
+	 * @throws java.nio.BufferOverflowException thrown if the packet does not have enough space remaining
+	 */
+	public void append(ByteBuffer buf, long nameIndex, int bitMask, byte[] collectorType, byte[] name) {
+		VarInt.putVarLong(buf, nameIndex);
+		VarInt.putVarLong(buf, bitMask & 0xFFFFFFFFL);
+		VarInt.putVarLong(buf, collectorType.length);
+		buf.put(collectorType);
+		VarInt.putVarLong(buf, name.length);
+		buf.put(name);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>Completes a packet assembled with {@link #start(ByteBuffer, long)} and {@link #append(ByteBuffer, long, int, byte[], byte[])}.
+	 * Expects the packet buffer and the number of appended entries as arguments.</p>
+	 * @see com.heliosapm.shorthand.broadcast.BroadcastPacketWriter#buildPacket(java.lang.Object[])
+	 */
+	@Override
+	public byte[] buildPacket(Object... args) {
+		ByteBuffer buf = (ByteBuffer)args[0];
+		buf.putShort(COUNT_OFFSET, ((Number)args[1]).shortValue());
+		return Arrays.copyOf(buf.array(), buf.position());
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.broadcast.BroadcastPacketReader#unmarshallPacket(java.nio.ByteBuffer, java.net.InetSocketAddress)
+	 */
+	@Override
+	public NameDictionaryBroadcast unmarshallPacket(ByteBuffer broadcast, InetSocketAddress sourceAddress) {
+		int pid = broadcast.getInt();
+		long generation = broadcast.getLong();
+		int count = broadcast.getShort() & 0xFFFF;
+		long[] nameIndexes = new long[count];
+		int[] bitMasks = new int[count];
+		String[] collectorTypes = new String[count];
+		String[] names = new String[count];
+		for(int i = 0; i < count; i++) {
+			nameIndexes[i] = VarInt.getVarLong(broadcast);
+			bitMasks[i] = (int)VarInt.getVarLong(broadcast);
+			collectorTypes[i] = readString(broadcast);
+			names[i] = readString(broadcast);
+		}
+		return new NameDictionaryBroadcast(pid, sourceAddress, generation, nameIndexes, bitMasks, collectorTypes, names);
+	}
+	
+	/**
+	 * Reads a length prefixed UTF-8 string
+	 * @param buf The buffer to read from
+	 * @return the read string
+	 */
+	private static String readString(ByteBuffer buf) {
+		byte[] bytes = new byte[(int)VarInt.getVarLong(buf)];
+		buf.get(bytes);
+		return new String(bytes, UTF8);
+	}
+	
+	/**
+	 * <p>Title: NameDictionaryBroadcast</p>
+	 * <p>Description: An unmarshalled metric name dictionary broadcast packet</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.broadcast.NameDictionaryBroadcastPacketHandler.NameDictionaryBroadcast</code></p>
+	 */
+	public static class NameDictionaryBroadcast implements BroadcastExecutable {
+		/** The process id of the broadcasting JVM */
+		public final int pid;
+		/** The address of the broadcasting agent */
+		public final InetSocketAddress source;
+		/** The generation of the broadcasting agent's store */
+		public final long generation;
+		/** The name indexes of the entries */
+		public final long[] nameIndexes;
+		/** The bit masks of the entries */
+		public final int[] bitMasks;
+		/** The collector class names of the entries */
+		public final String[] collectorTypes;
+		/** The metric names of the entries */
+		public final String[] names;
+		
+		/**
+		 * Creates a new NameDictionaryBroadcast
+		 * @param pid The process id of the broadcasting JVM
+		 * @param source The address of the broadcasting agent
+		 * @param generation The generation of the broadcasting agent's store
+		 * @param nameIndexes The name indexes of the entries
+		 * @param bitMasks The bit masks of the entries
+		 * @param collectorTypes The collector class names of the entries
+		 * @param names The metric names of the entries
+		 */
+		public NameDictionaryBroadcast(int pid, InetSocketAddress source, long generation, long[] nameIndexes, int[] bitMasks, String[] collectorTypes, String[] names) {
+			this.pid = pid;
+			this.source = source;
+			this.generation = generation;
+			this.nameIndexes = nameIndexes;
+			this.bitMasks = bitMasks;
+			this.collectorTypes = collectorTypes;
+			this.names = names;
+		}
+
+		/**
+		 * Returns the number of entries in this broadcast
+		 * @return the number of entries
+		 */
+		public int size() {
+			return nameIndexes.length;
+		}
+		
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append("NameDictionaryBroadcast [pid=").append(pid)
+					.append(", source=").append(source)
+					.append(", generation=").append(generation)
+					.append(", entries=").append(nameIndexes.length).append("]");
+			return builder.toString();
+		}
+
+		@Override
+		public void run() {
+			/* No Op. Delivered to metric feed listeners by the receiver */
+		}
+	}
+}
@@ -101,8 +101,7 @@ public class StartupBroadcastPacketHandler implements BroadcastPacketWriter, Bro
 
 		@Override
 		public void run() {
-			// TODO: Enroll the broadcasting JVM if not already enrolled
-			
+			/* No Op. Delivered to presence listeners by the receiver */
 		}
 	}
 
@@ -0,0 +1,108 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.broadcast;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Title: VarInt</p>
+ * <p>Description: Static helpers for the variable length integer encoding used in binary broadcast packets.
+ * Values are written 7 bits at a time, least significant group first, with the high bit set on all but the last byte.
+ * Signed values are zig-zag encoded first so small negative values stay small.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.broadcast.VarInt</code></p>
+ */
+
+public class VarInt {
+	/** The maximum number of bytes in an encoded long */
+	public static final int MAX_VARLONG_SIZE = 10;
+	
+	/**
+	 * Writes an unsigned variable length long
+	 * @param buf The buffer to write to
+	 * @param value The value to write, treated as unsigned
+	 * @throws java.nio.BufferOverflowException thrown if the buffer does not have enough space remaining
+	 */
+	public static void putVarLong(ByteBuffer buf, long value) {
+		while((value & ~0x7FL)!=0L) {
+			buf.put((byte)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buf.put((byte)value);
+	}
+	
+	/**
+	 * Reads an unsigned variable length long
+	 * @param buf The buffer to read from
+	 * @return the read value
+	 * @throws IllegalArgumentException thrown if the encoding is longer than {@link #MAX_VARLONG_SIZE}
+	 */
+	public static long getVarLong(ByteBuffer buf) {
+		long value = 0L;
+		for(int shift = 0; shift < 64; shift += 7) {
+			byte b = buf.get();
+			value |= (long)(b & 0x7F) << shift;
+			if((b & 0x80)==0) return value;
+		}
+		throw new IllegalArgumentException("Malformed variable length long");
+	}
+	
+	/**
+	 * Writes a signed variable length long
+	 * @param buf The buffer to write to
+	 * @param value The value to write
+	 * @throws java.nio.BufferOverflowException thrown if the buffer does not have enough space remaining
+	 */
+	public static void putZigZag(ByteBuffer buf, long value) {
+		putVarLong(buf, (value << 1) ^ (value >> 63));
+	}
+	
+	/**
+	 * Reads a signed variable length long
+	 * @param buf The buffer to read from
+	 * @return the read value
+	 */
+	public static long getZigZag(ByteBuffer buf) {
+		long value = getVarLong(buf);
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	/**
+	 * Returns the number of bytes the passed value takes when written with {@link #putVarLong(ByteBuffer, long)}
+	 * @param value The value
+	 * @return the encoded size in bytes
+	 */
+	public static int sizeOf(long value) {
+		int size = 1;
+		while((value & ~0x7FL)!=0L) {
+			size++;
+			value >>>= 7;
+		}
+		return size;
+	}
+	
+	private VarInt() {}
+}
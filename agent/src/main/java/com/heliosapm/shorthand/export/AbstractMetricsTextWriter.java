@@ -0,0 +1,262 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.export;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * <p>Title: AbstractMetricsTextWriter</p>
+ * <p>Description: Base class for renderers of metrics text exposition, providing allocation free writes of ASCII, escaped UTF-8 and decimal numbers into a reused, growable byte buffer.</p>
+ * <p>Metric name patterns are length limited, compiled into a small LRU cache that is never persisted, and each name evaluation is bounded by
+ * {@link #MATCH_BUDGET} character reads so a pattern with catastrophic backtracking fails the render rather than stalling it.</p>
+ * <p>Not thread safe.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.export.AbstractMetricsTextWriter</code></p>
+ */
+
+public abstract class AbstractMetricsTextWriter implements MetricsRenderer {
+	/** The maximum length of a metric name pattern */
+	public static final int MAX_PATTERN_LENGTH = 256;
+	/** The maximum number of compiled metric name patterns cached by each writer */
+	public static final int MAX_CACHED_PATTERNS = 16;
+	/** The maximum number of metric name characters a pattern may read to evaluate one name */
+	public static final int MATCH_BUDGET = 100000;
+	
+	/** The output buffer */
+	protected byte[] buf = new byte[64 * 1024];
+	/** The number of bytes written to the output buffer */
+	protected int size = 0;
+	/** The digit scratch buffer */
+	private final byte[] digits = new byte[20];
+	/** The compiled metric name patterns, least recently used first */
+	private final Map<String, Pattern> patterns = new LinkedHashMap<String, Pattern>(MAX_CACHED_PATTERNS, 0.75f, true) {
+		private static final long serialVersionUID = -4372096416839260537L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+			return size() > MAX_CACHED_PATTERNS;
+		}
+	};
+	/** The budgeted view of the metric names being matched */
+	private final BudgetedCharSequence budgeted = new BudgetedCharSequence();
+	
+	/**
+	 * Returns a matcher for the passed metric name pattern, to be used with {@link #matches(Matcher, CharSequence)}
+	 * @param pattern The metric name regex
+	 * @return the matcher, or null if the pattern is null or empty and all metrics match
+	 * @throws PatternSyntaxException thrown if the pattern is invalid or longer than {@link #MAX_PATTERN_LENGTH}
+	 */
+	protected Matcher matcher(String pattern) {
+		if(pattern==null || pattern.trim().isEmpty()) return null;
+		if(pattern.length() > MAX_PATTERN_LENGTH) throw new PatternSyntaxException("Pattern longer than " + MAX_PATTERN_LENGTH + " characters", pattern.substring(0, MAX_PATTERN_LENGTH), MAX_PATTERN_LENGTH);
+		Pattern p = patterns.get(pattern);
+		if(p==null) {
+			p = Pattern.compile(pattern);
+			patterns.put(pattern, p);
+		}
+		return p.matcher(budgeted);
+	}
+	
+	/**
+	 * Determines if the passed metric name matches
+	 * @param matcher The matcher returned by {@link #matcher(String)}
+	 * @param name The metric name
+	 * @return true if the name matches
+	 * @throws MatchBudgetExceededException thrown if evaluating the name reads more than {@link #MATCH_BUDGET} characters
+	 */
+	protected boolean matches(Matcher matcher, CharSequence name) {
+		budgeted.bind(name);
+		return matcher.reset(budgeted).matches();
+	}
+	
+	/**
+	 * Returns the output buffer. Only the first {@link #size()} bytes are valid.
+	 * @return the output buffer
+	 */
+	@Override
+	public byte[] buffer() {
+		return buf;
+	}
+	
+	/**
+	 * Returns the number of bytes rendered into the output buffer
+	 * @return the number of rendered bytes
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Ensures the output buffer can take the passed number of additional bytes
+	 * @param bytes The number of additional bytes
+	 */
+	protected void ensure(int bytes) {
+		if(size + bytes > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + bytes));
+		}
+	}
+	
+	/**
+	 * Writes an ASCII string
+	 * @param s The string to write
+	 * @return this writer
+	 */
+	protected AbstractMetricsTextWriter ascii(String s) {
+		final int len = s.length();
+		ensure(len);
+		for(int i = 0; i < len; i++) {
+			buf[size++] = (byte)s.charAt(i);
+		}
+		return this;
+	}
+	
+	/**
+	 * Writes the passed characters UTF-8 encoded
+	 * @param cs The characters to write
+	 * @param label true to escape the characters for a label value, false to escape them for help text
+	 * @return this writer
+	 */
+	protected AbstractMetricsTextWriter utf8(CharSequence cs, boolean label) {
+		final int len = cs.length();
+		ensure(len * 4);
+		for(int i = 0; i < len; i++) {
+			char c = cs.charAt(i);
+			if(c=='\\') {
+				buf[size++] = '\\'; buf[size++] = '\\';
+			} else if(c=='\n') {
+				buf[size++] = '\\'; buf[size++] = 'n';
+			} else if(c=='"' && label) {
+				buf[size++] = '\\'; buf[size++] = '"';
+			} else if(c < 0x80) {
+				buf[size++] = (byte)c;
+			} else if(c < 0x800) {
+				buf[size++] = (byte)(0xC0 | (c >> 6));
+				buf[size++] = (byte)(0x80 | (c & 0x3F));
+			} else if(Character.isHighSurrogate(c) && i+1 < len && Character.isLowSurrogate(cs.charAt(i+1))) {
+				int cp = Character.toCodePoint(c, cs.charAt(++i));
+				buf[size++] = (byte)(0xF0 | (cp >> 18));
+				buf[size++] = (byte)(0x80 | ((cp >> 12) & 0x3F));
+				buf[size++] = (byte)(0x80 | ((cp >> 6) & 0x3F));
+				buf[size++] = (byte)(0x80 | (cp & 0x3F));
+			} else {
+				buf[size++] = (byte)(0xE0 | (c >> 12));
+				buf[size++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+				buf[size++] = (byte)(0x80 | (c & 0x3F));
+			}
+		}
+		return this;
+	}
+	
+	/**
+	 * Writes a long in decimal
+	 * @param value The value to write
+	 * @return this writer
+	 */
+	protected AbstractMetricsTextWriter number(long value) {
+		if(value==Long.MIN_VALUE) return ascii(Long.toString(value));
+		ensure(20);
+		if(value < 0) {
+			buf[size++] = '-';
+			value = -value;
+		}
+		int d = 0;
+		do {
+			digits[d++] = (byte)('0' + (value % 10));
+			value /= 10;
+		} while(value > 0);
+		while(d > 0) {
+			buf[size++] = digits[--d];
+		}
+		return this;
+	}
+	
+	/**
+	 * <p>Title: BudgetedCharSequence</p>
+	 * <p>Description: A view of a metric name that fails the match once the pattern has read more than {@link AbstractMetricsTextWriter#MATCH_BUDGET} characters</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.export.AbstractMetricsTextWriter.BudgetedCharSequence</code></p>
+	 */
+	private static class BudgetedCharSequence implements CharSequence {
+		/** The metric name */
+		private CharSequence name = "";
+		/** The number of characters left to read */
+		private int remaining = 0;
+		
+		/**
+		 * Binds this view to a metric name and resets the budget
+		 * @param name The metric name
+		 */
+		void bind(CharSequence name) {
+			this.name = name;
+			remaining = MATCH_BUDGET;
+		}
+		
+		@Override
+		public int length() {
+			return name.length();
+		}
+		
+		@Override
+		public char charAt(int index) {
+			if(--remaining < 0) throw new MatchBudgetExceededException();
+			return name.charAt(index);
+		}
+		
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return name.subSequence(start, end);
+		}
+		
+		@Override
+		public String toString() {
+			return name.toString();
+		}
+	}
+	
+	/**
+	 * <p>Title: MatchBudgetExceededException</p>
+	 * <p>Description: Thrown when a metric name pattern reads more than {@link AbstractMetricsTextWriter#MATCH_BUDGET} characters evaluating one name</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.export.AbstractMetricsTextWriter.MatchBudgetExceededException</code></p>
+	 */
+	public static class MatchBudgetExceededException extends RuntimeException {
+		private static final long serialVersionUID = 2385541079871036275L;
+		
+		/**
+		 * Creates a new MatchBudgetExceededException
+		 */
+		public MatchBudgetExceededException() {
+			super("Metric name pattern exceeded the evaluation budget of " + MATCH_BUDGET + " characters per name");
+		}
+	}
+}
@@ -0,0 +1,582 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.PatternSyntaxException;
+import java.util.zip.GZIPOutputStream;
+
+import com.heliosapm.shorthand.ShorthandProperties;
+import com.heliosapm.shorthand.store.ChronicleStore;
+import com.heliosapm.shorthand.util.ConfigurationHelper;
+import com.heliosapm.shorthand.util.OrderedShutdownService;
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+
+/**
+ * <p>Title: MetricsHttpServer</p>
+ * <p>Description: An embedded single threaded NIO HTTP endpoint serving the last closed period to Prometheus scrapers at <code>/metrics</code>.
+ * Supports an optional <code>match</code> query parameter holding a metric name regex, gzip content encoding and
+ * OpenMetrics or Prometheus text rendering negotiated from the <code>Accept</code> header. Each connection serves one request,
+ * and connections that make no progress for longer than the idle timeout are closed.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.export.MetricsHttpServer</code></p>
+ */
+
+public class MetricsHttpServer implements Runnable, MetricsHttpServerMBean {
+	/** The singleton instance */
+	private static volatile MetricsHttpServer instance = null;
+	/** The singleton instance ctor lock */
+	private static final Object lock = new Object();
+	/** The maximum size of a request head */
+	public static final int MAX_REQUEST_SIZE = 8192;
+	/** The scrape path */
+	public static final String METRICS_PATH = "/metrics";
+	
+	/** The renderer, only used by the server thread */
+	protected final MetricsRenderer writer;
+	/** The server socket channel */
+	protected final ServerSocketChannel serverChannel;
+	/** The selector */
+	protected final Selector selector;
+	/** The port the server is listening on */
+	protected final int port;
+	/** The time after which an idle connection is closed in ms, zero or less if disabled */
+	protected final long idleTimeout;
+	/** The time of the last idle connection sweep, only used by the server thread */
+	protected long lastSweep = System.currentTimeMillis();
+	/** The gzip buffer, only used by the server thread */
+	protected final ByteArrayOutputStream gzipBuffer = new ByteArrayOutputStream(64 * 1024);
+	/** The server thread */
+	protected Thread serverThread = null;
+	/** The run flag */
+	protected volatile boolean running = false;
+	
+	/** The number of scrapes served */
+	protected final AtomicLong scrapes = new AtomicLong(0L);
+	/** The number of rejected requests */
+	protected final AtomicLong rejected = new AtomicLong(0L);
+	/** The number of connections closed by the idle timeout */
+	protected final AtomicLong timedOut = new AtomicLong(0L);
+	/** The number of samples rendered by the last scrape */
+	protected volatile int lastSamples = 0;
+	/** The number of body bytes sent by the last scrape */
+	protected volatile int lastBytes = 0;
+	/** The elapsed time rendering the last scrape in ns. */
+	protected volatile long lastNanos = 0L;
+	
+	/**
+	 * Acquires the MetricsHttpServer singleton, starting it on the configured port on first call
+	 * @return the MetricsHttpServer singleton, or null if the endpoint is disabled or failed to start
+	 */
+	public static MetricsHttpServer getInstance() {
+		if(instance==null) {
+			synchronized(lock) {
+				if(instance==null) {
+					int port = ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.HTTP_PORT_PROP, ShorthandProperties.DEFAULT_HTTP_PORT);
+					if(port < 0) return null;
+					String iface = ConfigurationHelper.getSystemThenEnvProperty(ShorthandProperties.HTTP_IFACE_PROP, ShorthandProperties.DEFAULT_HTTP_IFACE);
+					try {
+						final MetricsHttpServer server = new MetricsHttpServer(ChronicleStore.getInstance(), iface, port);
+						server.start();
+						JMXHelper.registerMBean(OBJECT_NAME, server);
+						OrderedShutdownService.getInstance().add(new Thread("MetricsHttpServerShutdownHook") {
+							@Override
+							public void run() {
+								server.stop();
+							}
+						});
+						log("Metrics HTTP endpoint listening on [%s:%s%s]", iface, server.port, METRICS_PATH);
+						instance = server;
+					} catch (Exception ex) {
+						loge("Failed to start metrics HTTP endpoint on [%s:%s]", iface, port);
+						ex.printStackTrace(System.err);
+						return null;
+					}
+				}
+			}
+		}
+		return instance;
+	}
+	
+	/**
+	 * Creates a new MetricsHttpServer bound to the passed interface and port
+	 * @param store The store to serve
+	 * @param iface The interface to bind to
+	 * @param port The port to bind to, zero for an ephemeral port
+	 * @throws IOException thrown if the server socket cannot be bound
+	 */
+	public MetricsHttpServer(ChronicleStore<?> store, String iface, int port) throws IOException {
+		this(new OpenMetricsWriter(store), iface, port);
+	}
+	
+	/**
+	 * Creates a new MetricsHttpServer serving the passed renderer, bound to the passed interface and port
+	 * @param renderer The renderer of the served metrics
+	 * @param iface The interface to bind to
+	 * @param port The port to bind to, zero for an ephemeral port
+	 * @throws IOException thrown if the server socket cannot be bound
+	 */
+	public MetricsHttpServer(MetricsRenderer renderer, String iface, int port) throws IOException {
+		this(renderer, iface, port, ConfigurationHelper.getLongSystemThenEnvProperty(ShorthandProperties.HTTP_IDLE_TIMEOUT_PROP, ShorthandProperties.DEFAULT_HTTP_IDLE_TIMEOUT));
+	}
+	
+	/**
+	 * Creates a new MetricsHttpServer serving the passed renderer, bound to the passed interface and port
+	 * @param renderer The renderer of the served metrics
+	 * @param iface The interface to bind to
+	 * @param port The port to bind to, zero for an ephemeral port
+	 * @param idleTimeout The time after which an idle connection is closed in ms, zero or less to disable
+	 * @throws IOException thrown if the server socket cannot be bound
+	 */
+	public MetricsHttpServer(MetricsRenderer renderer, String iface, int port, long idleTimeout) throws IOException {
+		writer = renderer;
+		this.idleTimeout = idleTimeout;
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		try {
+			serverChannel.socket().setReuseAddress(true);
+			serverChannel.socket().bind(new InetSocketAddress(iface, port));
+			serverChannel.configureBlocking(false);
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException ex) {
+			try { serverChannel.close(); } catch (Exception x) {/* No Op */}
+			try { selector.close(); } catch (Exception x) {/* No Op */}
+			throw ex;
+		}
+		this.port = serverChannel.socket().getLocalPort();
+	}
+	
+	/**
+	 * Starts the server thread
+	 */
+	public synchronized void start() {
+		if(running) return;
+		running = true;
+		serverThread = new Thread(this, "MetricsHttpServer-" + port);
+		serverThread.setDaemon(true);
+		serverThread.start();
+	}
+	
+	/**
+	 * Stops the server and closes the server socket
+	 */
+	public synchronized void stop() {
+		if(!running) return;
+		running = false;
+		selector.wakeup();
+		try { serverThread.join(5000); } catch (InterruptedException iex) {/* No Op */}
+		for(SelectionKey key: selector.keys()) {
+			try { key.channel().close(); } catch (Exception x) {/* No Op */}
+		}
+		try { selector.close(); } catch (Exception x) {/* No Op */}
+		try { serverChannel.close(); } catch (Exception x) {/* No Op */}
+	}
+	
+	/**
+	 * The selector loop
+	 * {@inheritDoc}
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		while(running) {
+			try {
+				selector.select(idleTimeout > 0 ? idleTimeout : 0);
+				Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+				while(iter.hasNext()) {
+					SelectionKey key = iter.next();
+					iter.remove();
+					try {
+						if(!key.isValid()) continue;
+						if(key.isAcceptable()) {
+							accept();
+						} else if(key.isReadable()) {
+							read(key);
+						} else if(key.isWritable()) {
+							write(key);
+						}
+					} catch (IOException iex) {
+						close(key);
+					}
+				}
+				if(idleTimeout > 0) closeIdle(System.currentTimeMillis());
+			} catch (Exception ex) {
+				if(running) {
+					loge("Metrics HTTP endpoint selector failure: %s", ex);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Closes the connections that have made no progress for longer than the idle timeout.
+	 * Sweeps at most once per half of the idle timeout.
+	 * @param now The current time in ms
+	 */
+	protected void closeIdle(long now) {
+		if(now - lastSweep < idleTimeout/2) return;
+		lastSweep = now;
+		for(SelectionKey key: selector.keys()) {
+			Object attachment = key.attachment();
+			if(!key.isValid() || !(attachment instanceof Connection)) continue;
+			if(now - ((Connection)attachment).lastActive > idleTimeout) {
+				timedOut.incrementAndGet();
+				close(key);
+			}
+		}
+	}
+	
+	/**
+	 * Accepts pending connections
+	 * @throws IOException thrown on any IO error
+	 */
+	protected void accept() throws IOException {
+		SocketChannel channel = null;
+		while((channel = serverChannel.accept())!=null) {
+			channel.configureBlocking(false);
+			channel.register(selector, SelectionKey.OP_READ, new Connection(ByteBuffer.allocate(MAX_REQUEST_SIZE)));
+		}
+	}
+	
+	/**
+	 * Reads from a connection until the request head is complete, then prepares the response
+	 * @param key The connection's selection key
+	 * @throws IOException thrown on any IO error
+	 */
+	protected void read(SelectionKey key) throws IOException {
+		SocketChannel channel = (SocketChannel)key.channel();
+		Connection conn = (Connection)key.attachment();
+		ByteBuffer in = conn.buffer;
+		int read = channel.read(in);
+		if(read < 0) {
+			close(key);
+			return;
+		}
+		if(read > 0) conn.lastActive = System.currentTimeMillis();
+		int headEnd = headEnd(in);
+		if(headEnd==-1) {
+			if(!in.hasRemaining()) respond(key, error(431, "Request Header Fields Too Large", "Request head exceeds " + MAX_REQUEST_SIZE + " bytes"));
+			return;
+		}
+		respond(key, handle(new String(in.array(), 0, headEnd, "ISO-8859-1")));
+	}
+	
+	/**
+	 * Sets the response on a connection and switches it to writing
+	 * @param key The connection's selection key
+	 * @param response The response
+	 * @throws IOException thrown on any IO error
+	 */
+	protected void respond(SelectionKey key, ByteBuffer response) throws IOException {
+		((Connection)key.attachment()).buffer = response;
+		key.interestOps(SelectionKey.OP_WRITE);
+		write(key);
+	}
+	
+	/**
+	 * Writes the response of a connection, closing it once fully written
+	 * @param key The connection's selection key
+	 * @throws IOException thrown on any IO error
+	 */
+	protected void write(SelectionKey key) throws IOException {
+		Connection conn = (Connection)key.attachment();
+		ByteBuffer out = conn.buffer;
+		if(((SocketChannel)key.channel()).write(out) > 0) conn.lastActive = System.currentTimeMillis();
+		if(!out.hasRemaining()) close(key);
+	}
+	
+	/**
+	 * Closes a connection
+	 * @param key The connection's selection key
+	 */
+	protected void close(SelectionKey key) {
+		key.cancel();
+		try { key.channel().close(); } catch (Exception x) {/* No Op */}
+	}
+	
+	/**
+	 * Finds the end of the request head in the passed buffer
+	 * @param in The buffer holding the bytes read so far
+	 * @return the offset of the blank line ending the head, or -1 if not yet read
+	 */
+	protected static int headEnd(ByteBuffer in) {
+		byte[] bytes = in.array();
+		for(int i = 3; i < in.position(); i++) {
+			if(bytes[i]=='\n' && bytes[i-1]=='\r' && bytes[i-2]=='\n' && bytes[i-3]=='\r') return i-3;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Handles a request
+	 * @param head The request head
+	 * @return the response
+	 */
+	protected ByteBuffer handle(String head) {
+		String[] lines = head.split("\r\n");
+		String[] requestLine = lines[0].split(" ");
+		if(requestLine.length!=3) return error(400, "Bad Request", "Malformed request line");
+		boolean headOnly = "HEAD".equals(requestLine[0]);
+		if(!headOnly && !"GET".equals(requestLine[0])) return error(405, "Method Not Allowed", "Only GET and HEAD are supported");
+		String target = requestLine[1];
+		int q = target.indexOf('?');
+		String path = q==-1 ? target : target.substring(0, q);
+		if(!METRICS_PATH.equals(path) && !"/".equals(path)) return error(404, "Not Found", "No resource at " + path);
+		String pattern = null;
+		try {
+			if(q!=-1) {
+				for(String param: target.substring(q+1).split("&")) {
+					if(param.startsWith("match=")) pattern = URLDecoder.decode(param.substring(6), "UTF-8");
+				}
+			}
+		} catch (Exception ex) {
+			return error(400, "Bad Request", "Malformed query string");
+		}
+		boolean gzip = false, openMetrics = false;
+		for(int i = 1; i < lines.length; i++) {
+			int colon = lines[i].indexOf(':');
+			if(colon==-1) continue;
+			String name = lines[i].substring(0, colon).trim();
+			String value = lines[i].substring(colon+1).toLowerCase();
+			if("Accept-Encoding".equalsIgnoreCase(name)) {
+				gzip = value.contains("gzip");
+			} else if("Accept".equalsIgnoreCase(name)) {
+				openMetrics = value.contains("application/openmetrics-text");
+			}
+		}
+		return scrape(pattern, openMetrics, gzip, headOnly);
+	}
+	
+	/**
+	 * Renders a scrape response
+	 * @param pattern The metric name regex, or null for all metrics
+	 * @param openMetrics true to render OpenMetrics text, false to render the Prometheus text format
+	 * @param gzip true to gzip the body
+	 * @param headOnly true to send the headers only
+	 * @return the response
+	 */
+	protected ByteBuffer scrape(String pattern, boolean openMetrics, boolean gzip, boolean headOnly) {
+		final long start = System.nanoTime();
+		int samples;
+		try {
+			samples = writer.render(pattern, openMetrics);
+		} catch (PatternSyntaxException pex) {
+			return error(400, "Bad Request", "Invalid match pattern: " + pex.getDescription());
+		} catch (AbstractMetricsTextWriter.MatchBudgetExceededException mex) {
+			return error(400, "Bad Request", "Invalid match pattern: " + mex.getMessage());
+		}
+		byte[] body = writer.buffer();
+		int length = writer.size();
+		if(gzip) {
+			try {
+				gzipBuffer.reset();
+				GZIPOutputStream gz = new GZIPOutputStream(gzipBuffer, 8192);
+				gz.write(body, 0, length);
+				gz.finish();
+				body = gzipBuffer.toByteArray();
+				length = body.length;
+			} catch (IOException iex) {
+				// Cannot happen writing to memory, fall back to identity
+				gzip = false;
+				body = writer.buffer();
+				length = writer.size();
+			}
+		}
+		lastNanos = System.nanoTime()-start;
+		lastSamples = samples;
+		lastBytes = length;
+		scrapes.incrementAndGet();
+		StringBuilder b = new StringBuilder(160);
+		b.append("HTTP/1.1 200 OK\r\nContent-Type: ").append(openMetrics ? OpenMetricsWriter.OPENMETRICS_CONTENT_TYPE : OpenMetricsWriter.TEXT_CONTENT_TYPE);
+		b.append("\r\nContent-Length: ").append(length);
+		if(gzip) b.append("\r\nContent-Encoding: gzip");
+		b.append("\r\nConnection: close\r\n\r\n");
+		byte[] header = ascii(b);
+		ByteBuffer response = ByteBuffer.allocate(header.length + (headOnly ? 0 : length));
+		response.put(header);
+		if(!headOnly) response.put(body, 0, length);
+		response.flip();
+		return response;
+	}
+	
+	/**
+	 * Builds an error response
+	 * @param status The HTTP status code
+	 * @param reason The HTTP reason phrase
+	 * @param message The plain text body
+	 * @return the response
+	 */
+	protected ByteBuffer error(int status, String reason, String message) {
+		rejected.incrementAndGet();
+		byte[] body = ascii(new StringBuilder(message).append('\n'));
+		StringBuilder b = new StringBuilder(128);
+		b.append("HTTP/1.1 ").append(status).append(' ').append(reason);
+		b.append("\r\nContent-Type: text/plain; charset=utf-8\r\nContent-Length: ").append(body.length);
+		b.append("\r\nConnection: close\r\n\r\n");
+		byte[] header = ascii(b);
+		ByteBuffer response = ByteBuffer.allocate(header.length + body.length);
+		response.put(header).put(body);
+		response.flip();
+		return response;
+	}
+	
+	/**
+	 * Encodes the passed characters, replacing anything outside ASCII
+	 * @param cs The characters to encode
+	 * @return the encoded bytes
+	 */
+	private static byte[] ascii(CharSequence cs) {
+		byte[] bytes = new byte[cs.length()];
+		for(int i = 0; i < bytes.length; i++) {
+			char c = cs.charAt(i);
+			bytes[i] = c < 0x80 ? (byte)c : (byte)'?';
+		}
+		return bytes;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.MetricsHttpServerMBean#getPort()
+	 */
+	@Override
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.MetricsHttpServerMBean#getScrapeCount()
+	 */
+	@Override
+	public long getScrapeCount() {
+		return scrapes.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.MetricsHttpServerMBean#getLastScrapeSamples()
+	 */
+	@Override
+	public int getLastScrapeSamples() {
+		return lastSamples;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.MetricsHttpServerMBean#getLastScrapeBytes()
+	 */
+	@Override
+	public int getLastScrapeBytes() {
+		return lastBytes;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.MetricsHttpServerMBean#getLastScrapeTimeUs()
+	 */
+	@Override
+	public long getLastScrapeTimeUs() {
+		return TimeUnit.NANOSECONDS.toMicros(lastNanos);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.MetricsHttpServerMBean#getRejectedCount()
+	 */
+	@Override
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.MetricsHttpServerMBean#getTimedOutCount()
+	 */
+	@Override
+	public long getTimedOutCount() {
+		return timedOut.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.MetricsHttpServerMBean#getIdleTimeout()
+	 */
+	@Override
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+	
+	/**
+	 * <p>Title: Connection</p>
+	 * <p>Description: The state of a client connection, holding the request buffer until the request head is read and the response buffer after</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.export.MetricsHttpServer.Connection</code></p>
+	 */
+	protected static class Connection {
+		/** The request or response buffer */
+		ByteBuffer buffer;
+		/** The time of the last read or write progress in ms */
+		long lastActive = System.currentTimeMillis();
+		
+		/**
+		 * Creates a new Connection
+		 * @param buffer The request buffer
+		 */
+		Connection(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+	}
+	
+	/**
+	 * Simple out formatted logger
+	 * @param fmt The format of the message
+	 * @param args The message arguments
+	 */
+	public static void log(String fmt, Object...args) {
+		System.out.println(String.format("[MetricsHttpServer]" + fmt, args));
+	}
+	
+	/**
+	 * Simple err formatted logger
+	 * @param fmt The format of the message
+	 * @param args The message arguments
+	 */
+	public static void loge(String fmt, Object...args) {
+		System.err.println(String.format("[MetricsHttpServer]" + fmt, args));
+	}
+}
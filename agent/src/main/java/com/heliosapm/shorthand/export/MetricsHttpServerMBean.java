@@ -0,0 +1,90 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.export;
+
+import javax.management.ObjectName;
+
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+
+/**
+ * <p>Title: MetricsHttpServerMBean</p>
+ * <p>Description: JMX interface for the OpenMetrics HTTP endpoint</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.export.MetricsHttpServerMBean</code></p>
+ */
+
+public interface MetricsHttpServerMBean {
+	/** The OpenMetrics HTTP endpoint JMX ObjectName */
+	public static final ObjectName OBJECT_NAME = JMXHelper.objectName("com.heliosapm.shorthand.export:service=MetricsHttpServer");
+	
+	/**
+	 * Returns the port the endpoint is listening on
+	 * @return the listening port
+	 */
+	public int getPort();
+	
+	/**
+	 * Returns the number of scrapes served
+	 * @return the number of scrapes
+	 */
+	public long getScrapeCount();
+	
+	/**
+	 * Returns the number of samples rendered by the last scrape
+	 * @return the number of samples
+	 */
+	public int getLastScrapeSamples();
+	
+	/**
+	 * Returns the number of body bytes sent by the last scrape
+	 * @return the number of bytes
+	 */
+	public int getLastScrapeBytes();
+	
+	/**
+	 * Returns the elapsed time rendering the last scrape in us.
+	 * @return the elapsed time in us.
+	 */
+	public long getLastScrapeTimeUs();
+	
+	/**
+	 * Returns the number of requests rejected as malformed, for unknown paths or for unsupported methods
+	 * @return the number of rejected requests
+	 */
+	public long getRejectedCount();
+	
+	/**
+	 * Returns the number of connections closed after idling longer than the idle timeout
+	 * @return the number of timed out connections
+	 */
+	public long getTimedOutCount();
+	
+	/**
+	 * Returns the time after which an idle connection is closed
+	 * @return the idle timeout in ms, zero or less if disabled
+	 */
+	public long getIdleTimeout();
+}
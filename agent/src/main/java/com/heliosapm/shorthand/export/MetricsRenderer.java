@@ -0,0 +1,55 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.export;
+
+/**
+ * <p>Title: MetricsRenderer</p>
+ * <p>Description: Defines a renderer of the last closed period into Prometheus / OpenMetrics text, as served by the {@link MetricsHttpServer}</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.export.MetricsRenderer</code></p>
+ */
+
+public interface MetricsRenderer {
+	/**
+	 * Renders the metrics of the last closed period into this renderer's buffer
+	 * @param pattern An optional metric name regex. Null or empty renders all metrics
+	 * @param openMetrics true to render OpenMetrics text, false to render the Prometheus text format
+	 * @return the number of samples rendered
+	 */
+	public int render(String pattern, boolean openMetrics);
+	
+	/**
+	 * Returns the output buffer. Only the first {@link #size()} bytes are valid.
+	 * @return the output buffer
+	 */
+	public byte[] buffer();
+	
+	/**
+	 * Returns the number of bytes rendered into the output buffer
+	 * @return the number of rendered bytes
+	 */
+	public int size();
+}
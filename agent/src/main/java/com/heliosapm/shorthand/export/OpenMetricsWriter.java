@@ -0,0 +1,265 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.export;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+
+import com.heliosapm.shorthand.collectors.EnumCollectors;
+import com.heliosapm.shorthand.collectors.ICollector;
+import com.heliosapm.shorthand.store.ChronicleDataOffset;
+import com.heliosapm.shorthand.store.ChronicleOffset;
+import com.heliosapm.shorthand.store.ChronicleStore;
+import com.heliosapm.shorthand.store.ExcerptCharSequence;
+import com.higherfrequencytrading.chronicle.Excerpt;
+
+/**
+ * <p>Title: OpenMetricsWriter</p>
+ * <p>Description: Renders the metrics of the last closed period from the name index and tier 1 chronicles into
+ * Prometheus / OpenMetrics text. Each collector data point is a gauge family named from the collector's short name and sub-metric name,
+ * with the metric name as the <code>metric</code> label. A first pass buckets the tier 1 records by family and a second pass streams
+ * each family's samples, reading names and values straight from the excerpts into a reused byte buffer, so rendering allocates nothing per metric.
+ * A metric name pattern is evaluated against the names of the metrics active in the period as they are scanned, so a scrape never builds a regex index.</p>
+ * <p>Not thread safe. Each rendering thread should use its own writer.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.export.OpenMetricsWriter</code></p>
+ */
+
+public class OpenMetricsWriter extends AbstractMetricsTextWriter {
+	/** The family name prefix */
+	public static final String FAMILY_PREFIX = "shorthand_";
+	/** The OpenMetrics content type */
+	public static final String OPENMETRICS_CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+	/** The Prometheus text format content type */
+	public static final String TEXT_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	
+	/** The store to read from */
+	protected final ChronicleStore<?> store;
+	/** The families keyed by family name, in name order */
+	protected final Map<String, Family> families = new TreeMap<String, Family>();
+	/** The family of each data point keyed by enum index and collector ordinal */
+	protected final Map<Long, Family[]> familiesByCollector = new HashMap<Long, Family[]>();
+	/** The name view */
+	protected final ExcerptCharSequence nameView = new ExcerptCharSequence();
+	/**
+	 * Creates a new OpenMetricsWriter
+	 * @param store The store to read from
+	 */
+	public OpenMetricsWriter(ChronicleStore<?> store) {
+		this.store = store;
+	}
+	
+	/**
+	 * Renders the metrics of the last closed period into this writer's buffer
+	 * @param pattern An optional metric name regex. Null or empty renders all metrics
+	 * @param openMetrics true to render OpenMetrics text, false to render the Prometheus text format
+	 * @return the number of samples rendered
+	 */
+	@Override
+	public int render(String pattern, boolean openMetrics) {
+		size = 0;
+		for(Family family: families.values()) {
+			family.count = 0;
+		}
+		final long periodEnd = store.getLastFlushedPeriodEnd();
+		final Matcher matcher = matcher(pattern);
+		int samples = 0;
+		Excerpt nameEx = store.getNameIndexExcerpt();
+		Excerpt dataEx = store.getDataIndexExcerpt();
+		try {
+			if(periodEnd!=-1L) {
+				final long names = store.getMetricNameCount();
+				// Entry 0 of the name index is the zero record
+				for(long index = 1; index < names; index++) {
+					bucket(index, periodEnd, matcher, nameEx, dataEx);
+				}
+				for(Family family: families.values()) {
+					if(family.count==0) continue;
+					samples += family.count;
+					writeFamily(family, nameEx, dataEx);
+				}
+			}
+			if(openMetrics) ascii("# EOF\n");
+			return samples;
+		} finally {
+			nameEx.close();
+			dataEx.close();
+		}
+	}
+	
+	/**
+	 * Adds the tier 1 records of the metric at the passed name index to their families if it was active in the passed period and its name matches
+	 * @param index The name index
+	 * @param periodEnd The end time of the last closed period
+	 * @param matcher The metric name matcher, or null to match all names
+	 * @param nameEx The name index excerpt
+	 * @param dataEx The tier 1 excerpt
+	 */
+	protected void bucket(long index, long periodEnd, Matcher matcher, Excerpt nameEx, Excerpt dataEx) {
+		if(ChronicleOffset.isDeleted(index, nameEx)) return;
+		if(ChronicleOffset.PeriodEnd.get(index, nameEx)!=periodEnd) return;
+		if(matcher!=null && !matches(matcher, ChronicleOffset.getName(index, nameEx, nameView))) return;
+		final int enumIndex = (int)ChronicleOffset.EnumIndex.get(index, nameEx);
+		// Read the tier 1 indexes in place, the excerpt stays on the name record
+		nameEx.position(ChronicleOffset.NameSize.offset);
+		int nameSize = nameEx.readInt();
+		int indexCount = nameEx.readInt();
+		nameEx.skipBytes(nameSize);
+		for(int i = 0; i < indexCount; i++) {
+			long dataIndex = nameEx.readLong();
+			if(dataIndex < 1) continue;
+			dataEx.index(dataIndex);
+			int ordinal = dataEx.readInt(ChronicleDataOffset.EnumOrdinal.offset);
+			int subCount = dataEx.readInt(ChronicleDataOffset.SubCount.offset);
+			Family[] subFamilies = families(enumIndex, ordinal);
+			for(int sub = 0; sub < subCount && sub < subFamilies.length; sub++) {
+				subFamilies[sub].add(dataIndex, sub);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the families of the data points of the passed collector, creating them on first use
+	 * @param enumIndex The enum collector index
+	 * @param ordinal The collector ordinal
+	 * @return the families, one per sub-metric
+	 */
+	protected Family[] families(int enumIndex, int ordinal) {
+		final Long key = ((long)enumIndex << 32) | ordinal;
+		Family[] subFamilies = familiesByCollector.get(key);
+		if(subFamilies==null) {
+			ICollector<?> collector = (ICollector<?>)EnumCollectors.getInstance().type(enumIndex).getEnumConstants()[ordinal];
+			String[] subNames = collector.getSubMetricNames();
+			subFamilies = new Family[subNames.length];
+			for(int i = 0; i < subNames.length; i++) {
+				String name = familyName(collector.getShortName(), subNames.length==1 ? null : subNames[i]);
+				Family family = families.get(name);
+				if(family==null) {
+					family = new Family(name, subNames.length==1 ? collector.getDescription() : collector.getDescription() + " " + subNames[i]);
+					families.put(name, family);
+				}
+				subFamilies[i] = family;
+			}
+			familiesByCollector.put(key, subFamilies);
+		}
+		return subFamilies;
+	}
+	
+	/**
+	 * Builds a family name from the passed collector short name and sub-metric name
+	 * @param shortName The collector short name
+	 * @param subName The sub-metric name, or null for single value collectors
+	 * @return the family name
+	 */
+	public static String familyName(String shortName, String subName) {
+		StringBuilder b = new StringBuilder(FAMILY_PREFIX);
+		sanitize(b, shortName);
+		if(subName!=null) {
+			b.append('_');
+			sanitize(b, subName);
+		}
+		return b.toString();
+	}
+	
+	/**
+	 * Appends the passed name lower cased, replacing characters not allowed in a metric family name with underscores
+	 * @param b The buffer to append to
+	 * @param name The name to append
+	 */
+	private static void sanitize(StringBuilder b, String name) {
+		for(int i = 0; i < name.length(); i++) {
+			char c = Character.toLowerCase(name.charAt(i));
+			b.append((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c=='_' ? c : '_');
+		}
+	}
+	
+	/**
+	 * Writes a family's metadata and samples
+	 * @param family The family
+	 * @param nameEx The name index excerpt
+	 * @param dataEx The tier 1 excerpt
+	 */
+	protected void writeFamily(Family family, Excerpt nameEx, Excerpt dataEx) {
+		ascii("# TYPE ").ascii(family.name).ascii(" gauge\n");
+		ascii("# HELP ").ascii(family.name).ascii(" ").utf8(family.help, false).ascii("\n");
+		final long[] entries = family.entries;
+		for(int i = 0; i < family.count; i++) {
+			long dataIndex = entries[i*2];
+			int sub = (int)entries[i*2+1];
+			dataEx.index(dataIndex);
+			long nameIndex = dataEx.readLong(ChronicleDataOffset.NameIndex.offset);
+			long value = dataEx.readLong(ChronicleDataOffset.HEADER_SIZE + (sub * 8));
+			ascii(family.name).ascii("{metric=\"");
+			utf8(ChronicleOffset.getName(nameIndex, nameEx, nameView), true);
+			ascii("\"} ").number(value).ascii("\n");
+		}
+	}
+	
+	/**
+	 * <p>Title: Family</p>
+	 * <p>Description: A metric family and the tier 1 records bucketed into it for the current rendering</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.export.OpenMetricsWriter.Family</code></p>
+	 */
+	protected static class Family {
+		/** The family name */
+		final String name;
+		/** The family help text */
+		final String help;
+		/** The bucketed tier 1 record indexes and sub-metric indexes, in pairs */
+		long[] entries = new long[64];
+		/** The number of bucketed entries */
+		int count = 0;
+		
+		/**
+		 * Creates a new Family
+		 * @param name The family name
+		 * @param help The family help text
+		 */
+		Family(String name, String help) {
+			this.name = name;
+			this.help = help;
+		}
+		
+		/**
+		 * Adds a sample to this family
+		 * @param dataIndex The tier 1 record index
+		 * @param sub The sub-metric index
+		 */
+		void add(long dataIndex, int sub) {
+			if((count+1)*2 > entries.length) {
+				entries = Arrays.copyOf(entries, entries.length * 2);
+			}
+			entries[count*2] = dataIndex;
+			entries[count*2+1] = sub;
+			count++;
+		}
+	}
+}
@@ -0,0 +1,556 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.export;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.heliosapm.shorthand.ShorthandProperties;
+import com.heliosapm.shorthand.accumulator.PeriodClock;
+import com.heliosapm.shorthand.accumulator.PeriodEventCompletionListener;
+import com.heliosapm.shorthand.collectors.EnumCollectors;
+import com.heliosapm.shorthand.collectors.ICollector;
+import com.heliosapm.shorthand.store.ChronicleDataOffset;
+import com.heliosapm.shorthand.store.ChronicleOffset;
+import com.heliosapm.shorthand.store.ChronicleStore;
+import com.heliosapm.shorthand.store.ExcerptCharSequence;
+import com.heliosapm.shorthand.util.ConfigurationHelper;
+import com.heliosapm.shorthand.util.OrderedShutdownService;
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+import com.higherfrequencytrading.chronicle.Excerpt;
+
+/**
+ * <p>Title: StatsdExporter</p>
+ * <p>Description: Exports the data points of each closed period to a StatsD or DogStatsD daemon as gauges.
+ * The exporter is a period completion listener, so it runs once the accumulator has flushed the period, and reads the 
+ * data points straight from the name index and tier 1 chronicles. Lines are written into a reused direct buffer which is
+ * sent through a connected, non-blocking {@link DatagramChannel} each time the next line would overflow the configured MTU.
+ * Metric names and collector suffixes are encoded once and cached, so an export allocates nothing per data point.
+ * A datagram the channel cannot take immediately is dropped and counted, never retried.</p>
+ * <p>StatsD lines are <code>&lt;prefix&gt;&lt;metric&gt;.&lt;collector&gt;[.&lt;sub&gt;]:&lt;value&gt;|g</code> and 
+ * DogStatsD lines are <code>&lt;prefix&gt;&lt;collector&gt;[.&lt;sub&gt;]:&lt;value&gt;|g|#metric:&lt;metric&gt;[,&lt;tags&gt;]</code>.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.export.StatsdExporter</code></p>
+ */
+
+public class StatsdExporter implements PeriodEventCompletionListener, StatsdExporterMBean {
+	/** The singleton instance */
+	private static volatile StatsdExporter instance = null;
+	/** The singleton instance ctor lock */
+	private static final Object lock = new Object();
+	/** The charset names and tags are encoded in */
+	public static final Charset UTF8 = Charset.forName("UTF-8");
+	/** The gauge type */
+	private static final byte[] GAUGE = {'|', 'g'};
+	/** The DogStatsD metric name tag */
+	private static final byte[] METRIC_TAG = "|#metric:".getBytes(UTF8);
+	
+	/** The store to read from */
+	protected final ChronicleStore<?> store;
+	/** The StatsD daemon address */
+	protected final InetSocketAddress address;
+	/** The connected channel */
+	protected final DatagramChannel channel;
+	/** The datagram buffer */
+	protected final ByteBuffer buf;
+	/** The encoded metric name prefix */
+	protected final byte[] prefix;
+	/** The encoded DogStatsD tags, including the leading comma, or an empty array */
+	protected final byte[] tags;
+	/** Indicates if DogStatsD lines are written */
+	protected final boolean dogStatsd;
+	/** The encoded metric names keyed by name index */
+	protected byte[][] names = new byte[1024][];
+	/** The chronicle generation the cached names were read from */
+	protected long namesGeneration = -1L;
+	/** The encoded collector suffixes, one per sub-metric, keyed by enum index and collector ordinal */
+	protected final Map<Long, byte[][]> suffixes = new HashMap<Long, byte[][]>();
+	/** The name view */
+	protected final ExcerptCharSequence nameView = new ExcerptCharSequence();
+	/** The digit scratch buffer */
+	private final byte[] digits = new byte[20];
+	/** The number of lines in the pending datagram */
+	protected int pendingLines = 0;
+	/** The end time of the last exported period */
+	protected long lastExported = -1L;
+	
+	/** The number of datagrams sent */
+	protected final AtomicLong packets = new AtomicLong(0L);
+	/** The number of bytes sent */
+	protected final AtomicLong bytes = new AtomicLong(0L);
+	/** The number of lines sent */
+	protected final AtomicLong lines = new AtomicLong(0L);
+	/** The number of datagrams dropped */
+	protected final AtomicLong droppedPackets = new AtomicLong(0L);
+	/** The number of lines dropped */
+	protected final AtomicLong droppedLines = new AtomicLong(0L);
+	/** The number of failed sends */
+	protected final AtomicLong errors = new AtomicLong(0L);
+	/** The elapsed time of the last export in ns. */
+	protected volatile long lastNanos = 0L;
+	
+	/**
+	 * Acquires the StatsdExporter singleton, registering it with the period clock on first call
+	 * @return the StatsdExporter singleton, or null if the exporter is disabled or failed to start
+	 */
+	public static StatsdExporter getInstance() {
+		if(instance==null) {
+			synchronized(lock) {
+				if(instance==null) {
+					if(!ConfigurationHelper.getBooleanSystemThenEnvProperty(ShorthandProperties.STATSD_ENABLED_PROP, ShorthandProperties.DEFAULT_STATSD_ENABLED)) return null;
+					String host = ConfigurationHelper.getSystemThenEnvProperty(ShorthandProperties.STATSD_HOST_PROP, ShorthandProperties.DEFAULT_STATSD_HOST);
+					int port = ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.STATSD_PORT_PROP, ShorthandProperties.DEFAULT_STATSD_PORT);
+					try {
+						final StatsdExporter exporter = new StatsdExporter(ChronicleStore.getInstance(), new InetSocketAddress(host, port), 
+								ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.STATSD_MTU_PROP, ShorthandProperties.DEFAULT_STATSD_MTU),
+								ConfigurationHelper.getSystemThenEnvProperty(ShorthandProperties.STATSD_PREFIX_PROP, ShorthandProperties.DEFAULT_STATSD_PREFIX),
+								ConfigurationHelper.getBooleanSystemThenEnvProperty(ShorthandProperties.STATSD_DOGSTATSD_PROP, ShorthandProperties.DEFAULT_STATSD_DOGSTATSD),
+								ConfigurationHelper.getSystemThenEnvPropertyArray(ShorthandProperties.STATSD_TAGS_PROP, ShorthandProperties.DEFAULT_STATSD_TAGS));
+						PeriodClock.getInstance().registerListener(exporter);
+						JMXHelper.registerMBean(OBJECT_NAME, exporter);
+						OrderedShutdownService.getInstance().add(new Thread("StatsdExporterShutdownHook") {
+							@Override
+							public void run() {
+								exporter.close();
+							}
+						});
+						log("StatsD exporter sending to [%s:%s]", host, port);
+						instance = exporter;
+					} catch (Exception ex) {
+						loge("Failed to start StatsD exporter to [%s:%s]", host, port);
+						ex.printStackTrace(System.err);
+						return null;
+					}
+				}
+			}
+		}
+		return instance;
+	}
+	
+	/**
+	 * Creates a new StatsdExporter. The exporter is not registered with the period clock.
+	 * @param store The store to export the closed periods of
+	 * @param address The StatsD daemon address
+	 * @param mtu The maximum datagram size in bytes
+	 * @param prefix The metric name prefix, or null for none
+	 * @param dogStatsd true to write DogStatsD lines, false for plain StatsD
+	 * @param tags Tags added to every DogStatsD line, ignored for plain StatsD
+	 * @throws IOException thrown if the channel cannot be opened or connected
+	 */
+	public StatsdExporter(ChronicleStore<?> store, InetSocketAddress address, int mtu, String prefix, boolean dogStatsd, String...tags) throws IOException {
+		if(mtu < 256) throw new IllegalArgumentException("The StatsD MTU [" + mtu + "] is less than 256");
+		if(address.isUnresolved()) throw new IllegalArgumentException("Could not resolve StatsD host [" + address.getHostName() + "]");
+		this.store = store;
+		this.address = address;
+		this.dogStatsd = dogStatsd;
+		this.prefix = encode(prefix==null ? "" : prefix, false);
+		StringBuilder b = new StringBuilder();
+		if(dogStatsd && tags!=null) {
+			for(String tag: tags) {
+				if(tag==null || tag.trim().isEmpty()) continue;
+				b.append(',').append(tag.trim());
+			}
+		}
+		this.tags = encode(b, true);
+		buf = ByteBuffer.allocateDirect(mtu);
+		channel = DatagramChannel.open();
+		try {
+			channel.configureBlocking(false);
+			channel.connect(address);
+		} catch (IOException iex) {
+			try { channel.close(); } catch (Exception x) {}
+			throw iex;
+		}
+	}
+	
+	/**
+	 * Closes the channel
+	 */
+	public void close() {
+		try { channel.close(); } catch (Exception x) {}
+	}
+	
+	/**
+	 * The accumulator flushes the closed period in its own listener, so the export waits for {@link #periodEventComplete(long[], long)}
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodEventListener#onNewPeriod(long, long, long, long)
+	 */
+	@Override
+	public void onNewPeriod(long newStartTime, long newEndTime, long priorStartTime, long priorEndTime) {
+		/* No Op */
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.PeriodEventCompletionListener#periodEventComplete(long[], long)
+	 */
+	@Override
+	public void periodEventComplete(long[] period, long elapsedNanos) {
+		try {
+			exportPeriod();
+		} catch (Exception ex) {
+			loge("Failed to export closed period metrics: %s", ex);
+		}
+	}
+	
+	/**
+	 * Exports the data points of the last closed period, unless it has already been exported
+	 * @return the number of lines written
+	 */
+	public synchronized int exportPeriod() {
+		final long periodEnd = store.getLastFlushedPeriodEnd();
+		if(periodEnd==-1L || periodEnd==lastExported || !channel.isOpen()) return 0;
+		lastExported = periodEnd;
+		final long start = System.nanoTime();
+		final long generation = store.getGeneration();
+		if(generation!=namesGeneration) {
+			// Compaction renumbers the name index
+			Arrays.fill(names, null);
+			namesGeneration = generation;
+		}
+		buf.clear();
+		pendingLines = 0;
+		int written = 0;
+		Excerpt nameEx = store.getNameIndexExcerpt();
+		Excerpt dataEx = store.getDataIndexExcerpt();
+		try {
+			final long nameCount = store.getMetricNameCount();
+			// Entry 0 of the name index is the zero record
+			for(long index = 1; index < nameCount; index++) {
+				if(ChronicleOffset.isDeleted(index, nameEx)) continue;
+				if(ChronicleOffset.PeriodEnd.get(index, nameEx)!=periodEnd) continue;
+				written += exportMetric(index, nameEx, dataEx);
+			}
+			flush();
+		} finally {
+			nameEx.close();
+			dataEx.close();
+		}
+		lastNanos = System.nanoTime() - start;
+		return written;
+	}
+	
+	/**
+	 * Writes the lines of the closed period data points of the metric at the passed name index
+	 * @param index The name index
+	 * @param nameEx The name index excerpt
+	 * @param dataEx The tier 1 excerpt
+	 * @return the number of lines written
+	 */
+	protected int exportMetric(long index, Excerpt nameEx, Excerpt dataEx) {
+		final byte[] name = name(index, nameEx);
+		final int enumIndex = (int)ChronicleOffset.EnumIndex.get(index, nameEx);
+		// Read the tier 1 indexes in place, the excerpt stays on the name record
+		nameEx.position(ChronicleOffset.NameSize.offset);
+		final int nameSize = nameEx.readInt();
+		final int indexCount = nameEx.readInt();
+		nameEx.skipBytes(nameSize);
+		int written = 0;
+		for(int i = 0; i < indexCount; i++) {
+			long dataIndex = nameEx.readLong();
+			if(dataIndex < 1) continue;
+			dataEx.index(dataIndex);
+			int ordinal = dataEx.readInt(ChronicleDataOffset.EnumOrdinal.offset);
+			int subCount = dataEx.readInt(ChronicleDataOffset.SubCount.offset);
+			byte[][] subSuffixes = suffixes(enumIndex, ordinal);
+			for(int sub = 0; sub < subCount && sub < subSuffixes.length; sub++) {
+				long value = dataEx.readLong(ChronicleDataOffset.HEADER_SIZE + (sub * 8));
+				// A signed StatsD gauge is a delta, so a negative value is sent as a reset to zero followed by the delta
+				if(value < 0 && !dogStatsd) {
+					if(!line(name, subSuffixes[sub], 0L)) continue;
+				}
+				if(line(name, subSuffixes[sub], value)) written++;
+			}
+		}
+		return written;
+	}
+	
+	/**
+	 * Appends a line to the pending datagram, sending the datagram first if the line does not fit
+	 * @param name The encoded metric name
+	 * @param suffix The encoded collector suffix
+	 * @param value The value
+	 * @return true if the line was appended, false if it is too long for a datagram
+	 */
+	protected boolean line(byte[] name, byte[] suffix, long value) {
+		final int digitCount = digits(value);
+		int length = prefix.length + name.length + suffix.length + 1 + digitCount + GAUGE.length;
+		if(dogStatsd) length += METRIC_TAG.length + tags.length;
+		if(length > buf.capacity()) {
+			droppedLines.incrementAndGet();
+			return false;
+		}
+		if(pendingLines > 0 && buf.remaining() < length + 1) flush();
+		if(pendingLines > 0) buf.put((byte)'\n');
+		buf.put(prefix);
+		if(dogStatsd) {
+			buf.put(suffix, 1, suffix.length-1);
+		} else {
+			buf.put(name).put(suffix);
+		}
+		buf.put((byte)':');
+		for(int d = digitCount; d > 0; d--) {
+			buf.put(digits[d-1]);
+		}
+		buf.put(GAUGE);
+		if(dogStatsd) {
+			buf.put(METRIC_TAG).put(name).put(tags);
+		}
+		pendingLines++;
+		return true;
+	}
+	
+	/**
+	 * Writes the decimal digits of the passed value into the digit scratch buffer in reverse order
+	 * @param value The value
+	 * @return the number of digits, including any sign
+	 */
+	private int digits(long value) {
+		final boolean negative = value < 0;
+		int d = 0;
+		do {
+			digits[d++] = (byte)('0' + Math.abs(value % 10));
+			value /= 10;
+		} while(value!=0);
+		if(negative) digits[d++] = '-';
+		return d;
+	}
+	
+	/**
+	 * Sends the pending datagram, if it has any lines. A datagram the channel does not take immediately is dropped.
+	 */
+	protected void flush() {
+		if(pendingLines==0) return;
+		buf.flip();
+		try {
+			int sent = channel.write(buf);
+			if(sent > 0) {
+				packets.incrementAndGet();
+				bytes.addAndGet(sent);
+				lines.addAndGet(pendingLines);
+			} else {
+				droppedPackets.incrementAndGet();
+				droppedLines.addAndGet(pendingLines);
+			}
+		} catch (IOException iex) {
+			// Includes the port unreachable errors a connected channel reports when nothing is listening
+			errors.incrementAndGet();
+			droppedPackets.incrementAndGet();
+			droppedLines.addAndGet(pendingLines);
+		} finally {
+			buf.clear();
+			pendingLines = 0;
+		}
+	}
+	
+	/**
+	 * Returns the encoded name of the metric at the passed name index, encoding and caching it on first use
+	 * @param index The name index
+	 * @param nameEx The name index excerpt
+	 * @return the encoded name
+	 */
+	protected byte[] name(long index, Excerpt nameEx) {
+		if(index >= names.length) {
+			names = Arrays.copyOf(names, (int)Math.max(names.length * 2, index + 1));
+		}
+		byte[] name = names[(int)index];
+		if(name==null) {
+			name = encode(ChronicleOffset.getName(index, nameEx, nameView), false);
+			names[(int)index] = name;
+		}
+		return name;
+	}
+	
+	/**
+	 * Returns the encoded suffixes of the data points of the passed collector, encoding them on first use.
+	 * Each suffix starts with the <code>.</code> separator.
+	 * @param enumIndex The enum collector index
+	 * @param ordinal The collector ordinal
+	 * @return the encoded suffixes, one per sub-metric
+	 */
+	protected byte[][] suffixes(int enumIndex, int ordinal) {
+		final Long key = ((long)enumIndex << 32) | ordinal;
+		byte[][] subSuffixes = suffixes.get(key);
+		if(subSuffixes==null) {
+			ICollector<?> collector = (ICollector<?>)EnumCollectors.getInstance().type(enumIndex).getEnumConstants()[ordinal];
+			String[] subNames = collector.getSubMetricNames();
+			subSuffixes = new byte[subNames.length][];
+			for(int i = 0; i < subNames.length; i++) {
+				StringBuilder b = new StringBuilder(".").append(collector.getShortName().toLowerCase());
+				if(subNames.length > 1) b.append('.').append(subNames[i].toLowerCase());
+				subSuffixes[i] = encode(b, false);
+			}
+			suffixes.put(key, subSuffixes);
+		}
+		return subSuffixes;
+	}
+	
+	/**
+	 * Encodes the passed characters, replacing those that would break a StatsD line or a DogStatsD tag with underscores
+	 * @param cs The characters to encode
+	 * @param tags true to keep the <code>:</code> and <code>,</code> of a DogStatsD tag list
+	 * @return the encoded bytes
+	 */
+	public static byte[] encode(CharSequence cs, boolean tags) {
+		final int len = cs.length();
+		byte[] b = new byte[len];
+		for(int i = 0; i < len; i++) {
+			char c = cs.charAt(i);
+			b[i] = (byte)((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c=='.' || c=='_' || c=='-' || c=='/' || (tags && (c==',' || c==':')) ? c : '_');
+		}
+		return b;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.StatsdExporterMBean#getAddress()
+	 */
+	@Override
+	public String getAddress() {
+		return address.getAddress().getHostAddress() + ":" + address.getPort();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.StatsdExporterMBean#getMtu()
+	 */
+	@Override
+	public int getMtu() {
+		return buf.capacity();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.StatsdExporterMBean#isDogStatsd()
+	 */
+	@Override
+	public boolean isDogStatsd() {
+		return dogStatsd;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.StatsdExporterMBean#getPacketCount()
+	 */
+	@Override
+	public long getPacketCount() {
+		return packets.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.StatsdExporterMBean#getByteCount()
+	 */
+	@Override
+	public long getByteCount() {
+		return bytes.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.StatsdExporterMBean#getLineCount()
+	 */
+	@Override
+	public long getLineCount() {
+		return lines.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.StatsdExporterMBean#getDroppedPacketCount()
+	 */
+	@Override
+	public long getDroppedPacketCount() {
+		return droppedPackets.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.StatsdExporterMBean#getDroppedLineCount()
+	 */
+	@Override
+	public long getDroppedLineCount() {
+		return droppedLines.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.StatsdExporterMBean#getErrorCount()
+	 */
+	@Override
+	public long getErrorCount() {
+		return errors.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.StatsdExporterMBean#getLastExportTimeUs()
+	 */
+	@Override
+	public long getLastExportTimeUs() {
+		return TimeUnit.NANOSECONDS.toMicros(lastNanos);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.StatsdExporterMBean#reset()
+	 */
+	@Override
+	public void reset() {
+		packets.set(0L);
+		bytes.set(0L);
+		lines.set(0L);
+		droppedPackets.set(0L);
+		droppedLines.set(0L);
+		errors.set(0L);
+	}
+	
+	/**
+	 * Simple out formatted logger
+	 * @param fmt The format of the message
+	 * @param args The message arguments
+	 */
+	public static void log(String fmt, Object...args) {
+		System.out.println(String.format("[StatsdExporter]" + fmt, args));
+	}
+	
+	/**
+	 * Simple err formatted logger
+	 * @param fmt The format of the message
+	 * @param args The message arguments
+	 */
+	public static void loge(String fmt, Object...args) {
+		System.err.println(String.format("[StatsdExporter]" + fmt, args));
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.export;
+
+import javax.management.ObjectName;
+
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+
+/**
+ * <p>Title: StatsdExporterMBean</p>
+ * <p>Description: JMX interface for the closed period StatsD exporter</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.export.StatsdExporterMBean</code></p>
+ */
+
+public interface StatsdExporterMBean {
+	/** The StatsD exporter JMX ObjectName */
+	public static final ObjectName OBJECT_NAME = JMXHelper.objectName("com.heliosapm.shorthand.export:service=StatsdExporter");
+	
+	/**
+	 * Returns the StatsD daemon address the exporter sends to
+	 * @return the StatsD daemon address
+	 */
+	public String getAddress();
+	
+	/**
+	 * Returns the maximum datagram size in bytes
+	 * @return the maximum datagram size
+	 */
+	public int getMtu();
+	
+	/**
+	 * Indicates if the exporter writes DogStatsD lines
+	 * @return true for DogStatsD, false for plain StatsD
+	 */
+	public boolean isDogStatsd();
+	
+	/**
+	 * Returns the number of datagrams sent
+	 * @return the number of datagrams sent
+	 */
+	public long getPacketCount();
+	
+	/**
+	 * Returns the number of bytes sent
+	 * @return the number of bytes sent
+	 */
+	public long getByteCount();
+	
+	/**
+	 * Returns the number of data point lines sent
+	 * @return the number of lines sent
+	 */
+	public long getLineCount();
+	
+	/**
+	 * Returns the number of datagrams dropped because the socket send buffer was full or the send failed
+	 * @return the number of dropped datagrams
+	 */
+	public long getDroppedPacketCount();
+	
+	/**
+	 * Returns the number of data point lines dropped, in dropped datagrams or too long to fit in one
+	 * @return the number of dropped lines
+	 */
+	public long getDroppedLineCount();
+	
+	/**
+	 * Returns the number of failed sends
+	 * @return the number of failed sends
+	 */
+	public long getErrorCount();
+	
+	/**
+	 * Returns the elapsed time of the last closed period export in us.
+	 * @return the elapsed time in us.
+	 */
+	public long getLastExportTimeUs();
+	
+	/**
+	 * Resets the counters
+	 */
+	public void reset();
+}
@@ -18,8 +18,10 @@ import java.security.ProtectionDomain;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -41,14 +43,17 @@ import org.cliffc.high_scale_lib.NonBlockingHashMapLong;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
 import com.heliosapm.shorthand.accumulator.MetricSnapshotAccumulator;
 import com.heliosapm.shorthand.attach.vm.agent.LocalAgentInstaller;
 import com.heliosapm.shorthand.datamapper.DataMapperBuilder;
 import com.heliosapm.shorthand.datamapper.IDataMapper;
+import com.heliosapm.shorthand.instrumentor.shorthand.naming.CardinalityLimiter;
 import com.heliosapm.shorthand.instrumentor.shorthand.naming.MetricNameCompiler;
 import com.heliosapm.shorthand.instrumentor.shorthand.naming.MetricNameProvider;
+import com.heliosapm.shorthand.telemetry.AgentTelemetry;
 import com.heliosapm.shorthand.util.StringHelper;
 import com.heliosapm.shorthand.util.unsafe.UnsafeAdapter;
 
@@ -70,8 +75,10 @@ public class ShorthandCompiler implements RemovalListener<String, ShorthandStati
 	/** The Javassist Debug Directory */
 	public static final String JS_DEBUG = System.getProperty("java.io.tmpdir") + File.separator + "js";
 
-	/** A cache of interceptors keyed by class name */
+	/** A cache of interceptors keyed by class name, weakly referenced so an entry goes when its instrumentor class is unloaded */
 	protected final Cache<String, ShorthandStaticInterceptor> interceptorCache = CacheBuilder.newBuilder().weakValues().removalListener(this).build();
+	/** What each live interceptor instrumented, keyed like the interceptor cache. Kept strongly since a collected value cannot be inspected. */
+	protected final Map<String, Instrumented> instrumented = new ConcurrentHashMap<String, Instrumented>();
 	/** A cache of private invokers keyed by class name and method name/sig */
 	protected final Cache<String, PrivateMethodInvoker> privateInvokerCache = CacheBuilder.newBuilder().weakValues().build();
 	
@@ -99,6 +106,24 @@ public class ShorthandCompiler implements RemovalListener<String, ShorthandStati
 	@Override
 	public void onRemoval(RemovalNotification<String, ShorthandStaticInterceptor> notification) {
 		log("Removed ShorthandStaticInterceptor [%s]. Cause: [%s]", notification.getKey(), notification.getCause().name());
+		// Replacements are released by the compile that replaced the interceptor
+		if(notification.getCause()!=RemovalCause.REPLACED) {
+			Instrumented gone = instrumented.remove(notification.getKey());
+			if(gone!=null) gone.release();
+		}
+	}
+	
+	/**
+	 * Registers the interceptor of a newly instrumented class, releasing whatever the interceptor it replaces had instrumented
+	 * @param key The interceptor key
+	 * @param interceptor The new interceptor
+	 * @param record What the new interceptor instrumented
+	 */
+	protected void register(String key, ShorthandStaticInterceptor interceptor, Instrumented record) {
+		// A collected prior interceptor is released by the removal listener during the put, before the record is replaced
+		interceptorCache.put(key, interceptor);
+		Instrumented prior = instrumented.put(key, record);
+		if(prior!=null) prior.release();
 	}
 	
 	/** A serial number for assigning to instrumentor classes */
@@ -115,6 +140,9 @@ public class ShorthandCompiler implements RemovalListener<String, ShorthandStati
 			final int enumIndex = script.getEnumIndex();
 			final int bitMask = script.getBitMask();
 			final IDataMapper dataMapper = DataMapperBuilder.getInstance().getIDataMapper(enumIndex, bitMask);
+			long limiterId = -1L;
+			// Held by this compile until every class is registered, then by the interceptors
+			final AtomicInteger scriptRefs = new AtomicInteger(1);
 			for(Map.Entry<Class<?>, Set<Member>> entry: script.getTargetMembers().entrySet()) {
 				Class<?> targetClass = entry.getKey();
 				final long classSerial = INSTRUMENTOR_SERIAL.incrementAndGet();
@@ -131,6 +159,10 @@ public class ShorthandCompiler implements RemovalListener<String, ShorthandStati
 				CtField ctField = new CtField(iDataMapperCtClass,  "dataMapper", ctInstrumentClass);
 				ctField.setModifiers(ctField.getModifiers() | Modifier.FINAL | Modifier.PROTECTED | Modifier.STATIC);
 				ctInstrumentClass.addField(ctField, CtField.Initializer.byExpr(String.format("DataMapperBuilder.getInstance().getIDataMapper(%s, %s)", enumIndex, bitMask))); 
+				// The interceptor instance, which lives as long as the instrumentor class
+				ctField = new CtField(staticInterceptorCtClass,  "interceptor", ctInstrumentClass);
+				ctField.setModifiers(Modifier.FINAL | Modifier.PUBLIC | Modifier.STATIC);
+				ctInstrumentClass.addField(ctField, CtField.Initializer.byNew(ctInstrumentClass));
 				
 //				// ===============================================================================================
 //				//		Generate static instrumentor methods
@@ -163,7 +195,8 @@ public class ShorthandCompiler implements RemovalListener<String, ShorthandStati
 //				ctInstrumentClass.addMethod(methodError);
 //				
 //				// ===============================================================================================
-				
+				boolean limiterField = false;
+				int instrumentedCount = 0;
 				for(Member member: entry.getValue()) {
 					final String signatureString = StringHelper.getMemberDescriptor(member);
 					final long methodSerial = INSTRUMENTOR_METHOD_SERIAL.incrementAndGet();
@@ -204,8 +237,18 @@ public class ShorthandCompiler implements RemovalListener<String, ShorthandStati
 						targetBehavior.insertAfter(String.format("ShorthandStaticInterceptor.methodExit(\"%s\", %s.%s, %s.dataMapper);", naming[0], instumentorClassName, valueStackFieldName, instumentorClassName));
 						targetBehavior.addCatch(String.format("ShorthandStaticInterceptor.methodError(\"%s\", %s.%s, %s.dataMapper); UnsafeAdapter.throwException($e); throw new RuntimeException();", naming[0], instumentorClassName, valueStackFieldName, instumentorClassName),  throwableCtClass, "$e");
 					} else {
-						targetBehavior.insertAfter(String.format("ShorthandStaticInterceptor.methodExit(String.format(\"%s\", new Object[]{%s}), %s.%s, %s.dataMapper);", naming[0], naming[1], instumentorClassName, valueStackFieldName, instumentorClassName));
-						targetBehavior.addCatch(String.format("$e.printStackTrace(System.err); ShorthandStaticInterceptor.methodError(String.format(\"%s\", new Object[]{%s}), %s.%s, %s.dataMapper); UnsafeAdapter.throwException($e); throw new RuntimeException();", naming[0], naming[1], instumentorClassName, valueStackFieldName, instumentorClassName),  throwableCtClass, "$e");
+						// Runtime resolved names are admitted through the script's cardinality limiter
+						if(limiterId==-1L) limiterId = CardinalityLimiter.newLimiter(script.getMetricNameTemplate());
+						if(!limiterField) {
+							ctField = new CtField(cardinalityLimiterCtClass,  "cardinalityLimiter", ctInstrumentClass);
+							ctField.setModifiers(ctField.getModifiers() | Modifier.FINAL | Modifier.PROTECTED | Modifier.STATIC);
+							ctInstrumentClass.addField(ctField, CtField.Initializer.byExpr(String.format("CardinalityLimiter.getLimiter(%sL)", limiterId)));
+							limiterField = true;
+						}
+						final String overflowName = CardinalityLimiter.overflowName(naming[0]);
+						final String nameExpr = String.format("%s.cardinalityLimiter.admit(String.format(\"%s\", new Object[]{%s}), \"%s\")", instumentorClassName, naming[0], naming[1], overflowName);
+						targetBehavior.insertAfter(String.format("ShorthandStaticInterceptor.methodExit(%s, %s.%s, %s.dataMapper);", nameExpr, instumentorClassName, valueStackFieldName, instumentorClassName));
+						targetBehavior.addCatch(String.format("ShorthandStaticInterceptor.methodError(%s, %s.%s, %s.dataMapper); UnsafeAdapter.throwException($e); throw new RuntimeException();", nameExpr, instumentorClassName, valueStackFieldName, instumentorClassName),  throwableCtClass, "$e");
 //						targetBehavior.insertAfter(String.format("ShorthandStaticInterceptor.snap(String.format(\"%s\", new Object[]{%s}), %s.dataMapper, values);", naming[0], naming[1], instumentorClassName, valueStackFieldName));
 //						targetBehavior.addCatch(String.format("ShorthandStaticInterceptor.snap(String.format(\"%s\", new Object[]{%s}), %s.dataMapper, (long[])%s.%s.get()); UnsafeAdapter.throwException($e); throw new RuntimeException();", naming[0], naming[1], instumentorClassName, instumentorClassName, valueStackFieldName), throwableCtClass, "$e");
 						
@@ -217,7 +260,7 @@ public class ShorthandCompiler implements RemovalListener<String, ShorthandStati
 						ctTargetClass.addMethod((CtMethod)targetBehavior);
 						
 					}
-										
+					instrumentedCount++;
 				}
 				classPool.get(instrumentation.getClass().getName()).writeFile(JS_DEBUG);
 				MetricSnapshotAccumulator.getInstance();
@@ -248,12 +291,17 @@ public class ShorthandCompiler implements RemovalListener<String, ShorthandStati
 				instrumentation.addTransformer(cft, true);
 				try {
 					instrumentation.retransformClasses(targetClass);
+					AgentTelemetry.getInstance().instrumented(instrumentedCount);
+					ShorthandStaticInterceptor interceptor = (ShorthandStaticInterceptor)Class.forName(instumentorClassName, true, classLoader).getField("interceptor").get(null);
+					register(instumentorKey, interceptor, new Instrumented(instrumentedCount, limiterField ? limiterId : -1L, scriptRefs));
 					//instrumentation.redefineClasses(new ClassDefinition(targetClass, ctTargetBytes));
 				} finally {
 					instrumentation.removeTransformer(cft);
 				}				
 			}
-			
+			AgentTelemetry.getInstance().scriptCompiled();
+			// Drop the compile's own reference, so the script is released with its last interceptor, or now if it instrumented nothing
+			if(scriptRefs.decrementAndGet()==0) AgentTelemetry.getInstance().scriptReleased();
 		} catch (Exception ex) {
 			ex.printStackTrace(System.err);
 		}
@@ -380,6 +428,8 @@ public class ShorthandCompiler implements RemovalListener<String, ShorthandStati
 	protected final CtClass nonBlockingHashMapLongCtClass;
 	/** The non-blocking hashmap ct-class */
 	protected final CtClass nonBlockingHashMapCtClass;
+	/** The cardinality limiter ct-class */
+	protected final CtClass cardinalityLimiterCtClass;
 	
 	/** The {@link ClassLoader#} define class method */
 	protected final Method defineClassMethod;
@@ -399,6 +449,7 @@ public class ShorthandCompiler implements RemovalListener<String, ShorthandStati
 			threadLocalCtClass = classPool.get(ThreadLocal.class.getName());
 			nonBlockingHashMapLongCtClass = classPool.get(NonBlockingHashMapLong.class.getName());
 			nonBlockingHashMapCtClass = classPool.get(NonBlockingHashMap.class.getName());
+			cardinalityLimiterCtClass = classPool.get(CardinalityLimiter.class.getName());
 			
 			
 			classPool.appendClassPath(new ClassClassPath(UnsafeAdapter.class));
@@ -407,6 +458,7 @@ public class ShorthandCompiler implements RemovalListener<String, ShorthandStati
 			classPool.importPackage(NonBlockingHashMap.class.getPackage().getName());
 			classPool.importPackage(DataMapperBuilder.class.getPackage().getName());
 			classPool.importPackage(ShorthandStaticInterceptor.class.getPackage().getName());
+			classPool.importPackage(CardinalityLimiter.class.getPackage().getName());
 		} catch (Exception ex) {
 			throw new RuntimeException(ex);
 		}
@@ -481,5 +533,43 @@ public class ShorthandCompiler implements RemovalListener<String, ShorthandStati
 		t.printStackTrace(System.err);
 	}
 
+	/**
+	 * <p>Title: Instrumented</p>
+	 * <p>Description: What one compiled interceptor instrumented, released when the interceptor is replaced or its class is unloaded</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.instrumentor.shorthand.ShorthandCompiler.Instrumented</code></p>
+	 */
+	protected static class Instrumented {
+		/** The number of instrumented methods and constructors */
+		final int methodCount;
+		/** The id of the cardinality limiter the instrumentor class references, or -1 if it has none */
+		final long limiterId;
+		/** The live references to the compiled script, shared by the interceptors of all the classes it instrumented */
+		final AtomicInteger scriptRefs;
+		
+		/**
+		 * Creates a new Instrumented, retaining the referenced cardinality limiter and the compiled script
+		 * @param methodCount The number of instrumented methods and constructors
+		 * @param limiterId The id of the cardinality limiter the instrumentor class references, or -1 if it has none
+		 * @param scriptRefs The live references to the compiled script
+		 */
+		Instrumented(int methodCount, long limiterId, AtomicInteger scriptRefs) {
+			this.methodCount = methodCount;
+			this.limiterId = limiterId;
+			this.scriptRefs = scriptRefs;
+			scriptRefs.incrementAndGet();
+			if(limiterId!=-1L) CardinalityLimiter.retain(limiterId);
+		}
+		
+		/**
+		 * Releases the telemetry, the cardinality limiter and the script reference of the replaced or unloaded instrumentation
+		 */
+		void release() {
+			AgentTelemetry.getInstance().instrumented(-methodCount);
+			if(limiterId!=-1L) CardinalityLimiter.release(limiterId);
+			if(scriptRefs.decrementAndGet()==0) AgentTelemetry.getInstance().scriptReleased();
+		}
+	}
 }
 
@@ -24,7 +24,6 @@
  */
 package com.heliosapm.shorthand.instrumentor.shorthand;
 
-import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.cliffc.high_scale_lib.Counter;
@@ -60,14 +59,13 @@ public class ShorthandStaticInterceptor {
 	 */
 	protected static void snap(String metricName, IDataMapper<?> dataMapper, long[] collectedValues) {
 		accumulator.snap(metricName, dataMapper, collectedValues);
-		System.err.println(String.format("====[%s] >> %s <<", metricName, Arrays.toString(collectedValues)));
 	}
 	
 	  /**
 	 * @param valueStack
 	 * @param dataMapper
 	 */
-	protected static final void methodEnter(NonBlockingHashMapLong<long[]> valueStack, IDataMapper<?> dataMapper) {	        
+	public static final void methodEnter(NonBlockingHashMapLong<long[]> valueStack, IDataMapper<?> dataMapper) {	        
 	        valueStack.put(Thread.currentThread().getId(), dataMapper.methodEnter());
 	    }
 
@@ -76,7 +74,7 @@ public class ShorthandStaticInterceptor {
 	     * @param valueStack
 	     * @param dataMapper
 	     */
-	    protected static final void methodExit(String metricName, NonBlockingHashMapLong<long[]> valueStack, IDataMapper<?> dataMapper) {
+	    public static final void methodExit(String metricName, NonBlockingHashMapLong<long[]> valueStack, IDataMapper<?> dataMapper) {
 	        ShorthandStaticInterceptor.snap(metricName, dataMapper, dataMapper.methodExit(valueStack.get(Thread.currentThread().getId())));
 	    }
 
@@ -85,7 +83,7 @@ public class ShorthandStaticInterceptor {
 	     * @param valueStack
 	     * @param dataMapper
 	     */
-	    protected static final void methodError(String metricName, NonBlockingHashMapLong<long[]> valueStack, IDataMapper<?> dataMapper) {
+	    public static final void methodError(String metricName, NonBlockingHashMapLong<long[]> valueStack, IDataMapper<?> dataMapper) {
 	    	ShorthandStaticInterceptor.snap(metricName, dataMapper, dataMapper.methodException(valueStack.get(Thread.currentThread().getId())));
 	    }
 	
@@ -95,7 +93,7 @@ public class ShorthandStaticInterceptor {
 	 * @param obj The object to evaluate
 	 * @return the string value
 	 */
-	protected static String nvl(Object obj) {
+	public static String nvl(Object obj) {
 		return (obj==null ? "" : obj.toString());
 	}
 	
@@ -105,7 +103,7 @@ public class ShorthandStaticInterceptor {
 	 * @param defaultValue The default value which will evaluate to a zero length string if null
 	 * @return the string value
 	 */
-	protected static String nvl(Object obj, CharSequence defaultValue) {
+	public static String nvl(Object obj, CharSequence defaultValue) {
 		return (obj==null ? nvl(defaultValue) : obj.toString());
 	}
 	
@@ -0,0 +1,409 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.instrumentor.shorthand.naming;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+
+import org.cliffc.high_scale_lib.NonBlockingHashMap;
+import org.cliffc.high_scale_lib.NonBlockingHashMapLong;
+
+import com.heliosapm.shorthand.ShorthandProperties;
+import com.heliosapm.shorthand.util.ConfigurationHelper;
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+
+/**
+ * <p>Title: CardinalityLimiter</p>
+ * <p>Description: Bounds the number of distinct metric names a script's runtime naming tokens (e.g. <b><code>${arg[0]}</code></b>) can generate.
+ * Each compiled script with runtime tokens gets its own limiter, and all limiters share a global limit. Names that cannot be admitted
+ * are redirected to the member's overflow name, where the runtime tokens are replaced with {@link #OVERFLOW_TOKEN}.</p>
+ * <p>When a limit is reached, the limiter sweeps a clock hand over a few of its own names and evicts the first one not seen
+ * in the current period (approximate LRU). Names active in the current period are never evicted, so a hot key set is not churned
+ * by a burst of one-off names. When only the global limit is reached and the limiter has no idle names of its own, a global
+ * clock hand moves over the other limiters looking for one with an idle name to give up.</p>
+ * <p>A limiter is retained by each instrumentor class that references it and is unregistered, releasing its names from the global count,
+ * when the last of them is released.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.instrumentor.shorthand.naming.CardinalityLimiter</code></p>
+ */
+
+public class CardinalityLimiter implements CardinalityLimiterMBean {
+	/** The token substituted for runtime naming tokens in overflow metric names */
+	public static final String OVERFLOW_TOKEN = "other";
+	/** The number of names the clock hand inspects looking for an eviction candidate */
+	public static final int EVICTION_SAMPLE = 16;
+
+	/** The limiters keyed by id */
+	private static final NonBlockingHashMapLong<CardinalityLimiter> limiters = new NonBlockingHashMapLong<CardinalityLimiter>();
+	/** The limiter id serial */
+	private static final AtomicLong serial = new AtomicLong(0);
+	/** The number of active names across all limiters */
+	private static final AtomicInteger globalActive = new AtomicInteger(0);
+	/** The number of names rejected across all limiters */
+	private static final AtomicLong globalRejected = new AtomicLong(0);
+	/** The maximum number of active names across all limiters */
+	private static volatile int globalMax = ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.CARDINALITY_GLOBAL_MAX_PROP, ShorthandProperties.DEFAULT_CARDINALITY_GLOBAL_MAX);
+	/** The current period generation, incremented on each period roll */
+	private static volatile long generation = 0;
+	/** The global clock hand over the limiters, guarded by {@link #globalHandLock} */
+	private static Iterator<CardinalityLimiter> globalHand = null;
+	/** The lock guarding the global clock hand */
+	private static final Object globalHandLock = new Object();
+
+	/** The limiter id */
+	protected final long id;
+	/** The metric name template of the script this limiter guards */
+	protected final String template;
+	/** The limiter's JMX ObjectName */
+	protected final ObjectName objectName;
+	/** The active names, keyed by name, with the generation they were last seen in */
+	protected final NonBlockingHashMap<String, long[]> active = new NonBlockingHashMap<String, long[]>();
+	/** The number of active names */
+	protected final AtomicInteger activeCount = new AtomicInteger(0);
+	/** The maximum number of active names */
+	protected volatile int maxActive = ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.CARDINALITY_SCRIPT_MAX_PROP, ShorthandProperties.DEFAULT_CARDINALITY_SCRIPT_MAX);
+	/** The number of names rejected */
+	protected final AtomicLong rejected = new AtomicLong(0);
+	/** The number of idle names evicted */
+	protected final AtomicLong evicted = new AtomicLong(0);
+	/** The number of instrumentor classes referencing this limiter */
+	protected final AtomicInteger references = new AtomicInteger(0);
+	/** Set when the last referencing instrumentor class is released */
+	protected volatile boolean released = false;
+	/** The eviction clock hand, guarded by {@link #handLock} */
+	private Iterator<Map.Entry<String, long[]>> hand = null;
+	/** The lock guarding the eviction clock hand. Other limiters take it to evict from this one, so nothing is acquired while holding it. */
+	private final Object handLock = new Object();
+
+	/**
+	 * Creates and registers a new limiter for a script
+	 * @param template The metric name template of the script
+	 * @return the id of the new limiter
+	 */
+	public static long newLimiter(String template) {
+		CardinalityLimiter limiter = new CardinalityLimiter(serial.incrementAndGet(), template);
+		limiters.put(limiter.id, limiter);
+		return limiter.id;
+	}
+
+	/**
+	 * Adds a reference to the limiter with the passed id on behalf of an instrumentor class
+	 * @param id The limiter id
+	 */
+	public static void retain(long id) {
+		getLimiter(id).references.incrementAndGet();
+	}
+
+	/**
+	 * Releases a reference to the limiter with the passed id. When the last reference is released, the limiter is
+	 * unregistered and its active names are released from the global count.
+	 * @param id The limiter id
+	 */
+	public static void release(long id) {
+		CardinalityLimiter limiter = limiters.get(id);
+		if(limiter==null || limiter.references.decrementAndGet() > 0) return;
+		if(limiters.remove(id)==null) return;
+		limiter.close();
+	}
+
+	/**
+	 * Returns the limiter with the passed id. Called from instrumentor class initializers.
+	 * @param id The limiter id
+	 * @return the limiter
+	 */
+	public static CardinalityLimiter getLimiter(long id) {
+		CardinalityLimiter limiter = limiters.get(id);
+		if(limiter==null) throw new IllegalStateException("No cardinality limiter with id [" + id + "]");
+		return limiter;
+	}
+
+	/**
+	 * Starts a new period generation. Names not seen since become eviction candidates.
+	 */
+	public static void onNewPeriod() {
+		generation++;
+	}
+
+	/**
+	 * Returns the overflow name for the passed metric name format, replacing each runtime token with {@link #OVERFLOW_TOKEN}
+	 * @param metricNameFormat The metric name format produced by {@link MetricNameCompiler#getMetricNameCodePoints(Class, java.lang.reflect.Member, String)}
+	 * @return the overflow metric name
+	 */
+	public static String overflowName(String metricNameFormat) {
+		return metricNameFormat.replace("%s", OVERFLOW_TOKEN).replace("%%", "%");
+	}
+
+	/**
+	 * Creates a new CardinalityLimiter
+	 * @param id The limiter id
+	 * @param template The metric name template of the script
+	 */
+	private CardinalityLimiter(long id, String template) {
+		this.id = id;
+		this.template = template;
+		objectName = JMXHelper.objectName("com.heliosapm.shorthand:service=CardinalityLimiter,id=" + id);
+		JMXHelper.registerMBean(this, objectName);
+	}
+
+	/**
+	 * Admits the passed metric name, returning it if it is, or is allowed to become, an active name
+	 * and the passed overflow name otherwise.
+	 * @param metricName The runtime resolved metric name
+	 * @param overflowName The name to use if the metric name is rejected
+	 * @return the metric name to snap into
+	 */
+	public String admit(String metricName, String overflowName) {
+		long[] seen = active.get(metricName);
+		if(seen!=null) {
+			seen[0] = generation;
+			return metricName;
+		}
+		return admitNew(metricName, overflowName);
+	}
+
+	/**
+	 * Slow path for names not currently active
+	 * @param metricName The runtime resolved metric name
+	 * @param overflowName The name to use if the metric name is rejected
+	 * @return the metric name to snap into
+	 */
+	protected synchronized String admitNew(String metricName, String overflowName) {
+		long[] seen = active.get(metricName);
+		if(seen!=null) {
+			seen[0] = generation;
+			return metricName;
+		}
+		if(released || (!hasRoom() && !makeRoom())) {
+			rejected.incrementAndGet();
+			globalRejected.incrementAndGet();
+			return overflowName;
+		}
+		active.put(metricName, new long[]{generation});
+		activeCount.incrementAndGet();
+		globalActive.incrementAndGet();
+		return metricName;
+	}
+
+	/**
+	 * Evicts an idle name of this limiter, or if only the global limit is reached, of another limiter.
+	 * Must be called while holding this limiter's monitor.
+	 * @return true if a name was evicted
+	 */
+	protected boolean makeRoom() {
+		if(evictIdle()) return true;
+		final int max = maxActive;
+		if(max>0 && activeCount.get() >= max) return false;
+		return evictGlobal();
+	}
+
+	/**
+	 * Advances the global clock hand over the other limiters and evicts an idle name from the first one that has one
+	 * @return true if a name was evicted
+	 */
+	protected boolean evictGlobal() {
+		synchronized(globalHandLock) {
+			boolean wrapped = false;
+			for(int i = 0, n = limiters.size(); i < n; i++) {
+				if(globalHand==null || !globalHand.hasNext()) {
+					if(wrapped) return false;
+					globalHand = limiters.values().iterator();
+					wrapped = true;
+					if(!globalHand.hasNext()) return false;
+				}
+				CardinalityLimiter limiter = globalHand.next();
+				if(limiter!=this && limiter.evictIdle()) return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Unregisters this limiter and releases its active names from the global count.
+	 * Names resolved through it afterwards are redirected to the overflow name.
+	 */
+	protected synchronized void close() {
+		released = true;
+		synchronized(handLock) {
+			for(String name: active.keySet()) {
+				if(active.remove(name)!=null) {
+					activeCount.decrementAndGet();
+					globalActive.decrementAndGet();
+				}
+			}
+			hand = null;
+		}
+		JMXHelper.unregisterMBean(objectName);
+	}
+
+	/**
+	 * Determines if there is room for a new name under both the script and the global limits
+	 * @return true if a new name can be admitted without an eviction
+	 */
+	protected boolean hasRoom() {
+		final int max = maxActive, gmax = globalMax;
+		return (max<=0 || activeCount.get() < max) && (gmax<=0 || globalActive.get() < gmax);
+	}
+
+	/**
+	 * Advances the clock hand over up to {@link #EVICTION_SAMPLE} names and evicts the first one not seen in the current period.
+	 * @return true if a name was evicted
+	 */
+	protected boolean evictIdle() {
+		final long current = generation;
+		synchronized(handLock) {
+			boolean wrapped = false;
+			for(int i = 0; i < EVICTION_SAMPLE; i++) {
+				if(hand==null || !hand.hasNext()) {
+					if(wrapped) return false;
+					hand = active.entrySet().iterator();
+					wrapped = true;
+					if(!hand.hasNext()) return false;
+				}
+				Map.Entry<String, long[]> entry = hand.next();
+				if(entry.getValue()[0] < current && active.remove(entry.getKey())!=null) {
+					activeCount.decrementAndGet();
+					globalActive.decrementAndGet();
+					evicted.incrementAndGet();
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.instrumentor.shorthand.naming.CardinalityLimiterMBean#getTemplate()
+	 */
+	@Override
+	public String getTemplate() {
+		return template;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.instrumentor.shorthand.naming.CardinalityLimiterMBean#getActiveCount()
+	 */
+	@Override
+	public int getActiveCount() {
+		return activeCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.instrumentor.shorthand.naming.CardinalityLimiterMBean#getMaxActive()
+	 */
+	@Override
+	public int getMaxActive() {
+		return maxActive;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.instrumentor.shorthand.naming.CardinalityLimiterMBean#setMaxActive(int)
+	 */
+	@Override
+	public void setMaxActive(int max) {
+		maxActive = max;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.instrumentor.shorthand.naming.CardinalityLimiterMBean#getRejectedCount()
+	 */
+	@Override
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.instrumentor.shorthand.naming.CardinalityLimiterMBean#getEvictedCount()
+	 */
+	@Override
+	public long getEvictedCount() {
+		return evicted.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.instrumentor.shorthand.naming.CardinalityLimiterMBean#getGlobalActiveCount()
+	 */
+	@Override
+	public int getGlobalActiveCount() {
+		return globalActive.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.instrumentor.shorthand.naming.CardinalityLimiterMBean#getGlobalMaxActive()
+	 */
+	@Override
+	public int getGlobalMaxActive() {
+		return globalMax;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.instrumentor.shorthand.naming.CardinalityLimiterMBean#setGlobalMaxActive(int)
+	 */
+	@Override
+	public void setGlobalMaxActive(int max) {
+		globalMax = max;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.instrumentor.shorthand.naming.CardinalityLimiterMBean#getGlobalRejectedCount()
+	 */
+	@Override
+	public long getGlobalRejectedCount() {
+		return globalRejected.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.instrumentor.shorthand.naming.CardinalityLimiterMBean#resetCounters()
+	 */
+	@Override
+	public void resetCounters() {
+		rejected.set(0);
+		evicted.set(0);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format("CardinalityLimiter [id:%s, template:%s, active:%s/%s]", id, template, activeCount.get(), maxActive);
+	}
+}
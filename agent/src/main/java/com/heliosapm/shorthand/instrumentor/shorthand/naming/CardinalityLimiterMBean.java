@@ -0,0 +1,100 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.instrumentor.shorthand.naming;
+
+/**
+ * <p>Title: CardinalityLimiterMBean</p>
+ * <p>Description: JMX interface for a script's {@link CardinalityLimiter}. The <b><code>Global</code></b> attributes are shared by all limiters.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.instrumentor.shorthand.naming.CardinalityLimiterMBean</code></p>
+ */
+
+public interface CardinalityLimiterMBean {
+	/**
+	 * Returns the metric name template of the script this limiter guards
+	 * @return the metric name template
+	 */
+	public String getTemplate();
+
+	/**
+	 * Returns the number of active names
+	 * @return the number of active names
+	 */
+	public int getActiveCount();
+
+	/**
+	 * Returns the maximum number of active names
+	 * @return the maximum number of active names, zero or less for unlimited
+	 */
+	public int getMaxActive();
+
+	/**
+	 * Sets the maximum number of active names
+	 * @param max the maximum number of active names, zero or less for unlimited
+	 */
+	public void setMaxActive(int max);
+
+	/**
+	 * Returns the number of names rejected to the overflow name
+	 * @return the number of rejected names
+	 */
+	public long getRejectedCount();
+
+	/**
+	 * Returns the number of idle names evicted to make room for new ones
+	 * @return the number of evicted names
+	 */
+	public long getEvictedCount();
+
+	/**
+	 * Returns the number of active names across all limiters
+	 * @return the global number of active names
+	 */
+	public int getGlobalActiveCount();
+
+	/**
+	 * Returns the maximum number of active names across all limiters
+	 * @return the global maximum number of active names, zero or less for unlimited
+	 */
+	public int getGlobalMaxActive();
+
+	/**
+	 * Sets the maximum number of active names across all limiters
+	 * @param max the global maximum number of active names, zero or less for unlimited
+	 */
+	public void setGlobalMaxActive(int max);
+
+	/**
+	 * Returns the number of names rejected across all limiters
+	 * @return the global number of rejected names
+	 */
+	public long getGlobalRejectedCount();
+
+	/**
+	 * Resets this limiter's rejected and evicted counters
+	 */
+	public void resetCounters();
+}
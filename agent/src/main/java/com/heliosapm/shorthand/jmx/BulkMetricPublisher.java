@@ -0,0 +1,256 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.jmx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.heliosapm.shorthand.collectors.EnumCollectors;
+import com.heliosapm.shorthand.collectors.ICollector;
+import com.heliosapm.shorthand.store.ChronicleDataOffset;
+import com.heliosapm.shorthand.store.ChronicleOffset;
+import com.heliosapm.shorthand.store.ChronicleStore;
+import com.higherfrequencytrading.chronicle.Excerpt;
+
+/**
+ * <p>Title: BulkMetricPublisher</p>
+ * <p>Description: A single aggregate MBean that serves metric names and last period values in pages straight from the name index and tier 1 chronicles,
+ * so no MBean is registered per metric.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.jmx.BulkMetricPublisher</code></p>
+ */
+
+public class BulkMetricPublisher implements BulkMetricPublisherMXBean {
+	/** The store to read from */
+	protected final ChronicleStore<?> store;
+	/** The number of queries served */
+	protected final AtomicLong queryCount = new AtomicLong(0L);
+	/** The elapsed time of the last query in ns. */
+	protected volatile long lastQueryNanos = 0L;
+	
+	/**
+	 * Creates a new BulkMetricPublisher
+	 * @param store The store to read from
+	 */
+	public BulkMetricPublisher(ChronicleStore<?> store) {
+		this.store = store;
+	}
+	
+	/**
+	 * Returns the name indexes of a page of the metrics matching the passed pattern
+	 * @param pattern The metric name regex, or null or empty for all metrics
+	 * @param offset The offset of the first metric
+	 * @param limit The maximum number of metrics
+	 * @param total A one slot array the total number of matching metrics is written into
+	 * @return the name indexes
+	 */
+	protected long[] page(String pattern, int offset, int limit, int[] total) {
+		offset = Math.max(0, offset);
+		limit = Math.max(0, Math.min(limit, MAX_PAGE_SIZE));
+		if(pattern==null || pattern.trim().isEmpty()) {
+			// Entry 0 of the name index is the zero record
+			long size = Math.max(0L, store.getMetricNameCount()-1);
+			total[0] = (int)size;
+			long[] indexes = new long[(int)Math.max(0L, Math.min(limit, size-offset))];
+			for(int i = 0; i < indexes.length; i++) {
+				indexes[i] = offset + 1 + i;
+			}
+			return indexes;
+		}
+		long[] matches = store.getNameIndexer().search(pattern);
+		total[0] = matches.length;
+		if(offset >= matches.length) return new long[0];
+		return Arrays.copyOfRange(matches, offset, Math.min(matches.length, offset + limit));
+	}
+	
+	/**
+	 * Returns the offset of the page following the passed page
+	 * @param offset The offset of the page
+	 * @param size The number of name indexes in the page
+	 * @param total The total number of matching metrics
+	 * @return the next offset, or -1 if there are no more pages
+	 */
+	protected static int nextOffset(int offset, int size, int total) {
+		int next = Math.max(0, offset) + size;
+		return size > 0 && next < total ? next : -1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.jmx.BulkMetricPublisherMXBean#getMetricNameCount()
+	 */
+	@Override
+	public long getMetricNameCount() {
+		return Math.max(0L, store.getMetricNameCount()-1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.jmx.BulkMetricPublisherMXBean#count(java.lang.String)
+	 */
+	@Override
+	public int count(String pattern) {
+		if(pattern==null || pattern.trim().isEmpty()) return (int)getMetricNameCount();
+		return store.getNameIndexer().count(pattern);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.jmx.BulkMetricPublisherMXBean#getMetricNames(java.lang.String, int, int)
+	 */
+	@Override
+	public String[] getMetricNames(String pattern, int offset, int limit) {
+		final long start = System.nanoTime();
+		long[] indexes = page(pattern, offset, limit, new int[1]);
+		List<String> names = new ArrayList<String>(indexes.length);
+		Excerpt nameEx = store.getNameIndexExcerpt();
+		try {
+			for(long index: indexes) {
+				if(ChronicleOffset.isDeleted(index, nameEx)) continue;
+				names.add(ChronicleOffset.getName(index, nameEx));
+			}
+		} finally {
+			nameEx.close();
+			queried(start);
+		}
+		return names.toArray(new String[names.size()]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.jmx.BulkMetricPublisherMXBean#getMetrics(java.lang.String, int, int)
+	 */
+	@Override
+	public MetricTable getMetrics(String pattern, int offset, int limit) {
+		final long start = System.nanoTime();
+		int[] total = new int[1];
+		long[] indexes = page(pattern, offset, limit, total);
+		String[] names = new String[indexes.length];
+		long[] periodStarts = new long[indexes.length];
+		long[] periodEnds = new long[indexes.length];
+		int[] rowLayouts = new int[indexes.length];
+		int[] rowOffsets = new int[indexes.length+1];
+		long[] values = new long[indexes.length * 4];
+		Map<Long, Integer> layoutIds = new HashMap<Long, Integer>();
+		List<String> layouts = new ArrayList<String>();
+		StringBuilder columns = new StringBuilder();
+		int rows = 0, valueCount = 0;
+		Excerpt nameEx = store.getNameIndexExcerpt();
+		Excerpt dataEx = store.getDataIndexExcerpt();
+		try {
+			for(long index: indexes) {
+				if(ChronicleOffset.isDeleted(index, nameEx)) continue;
+				names[rows] = ChronicleOffset.getName(index, nameEx);
+				int enumIndex = (int)ChronicleOffset.EnumIndex.get(index, nameEx);
+				int bitMask = (int)ChronicleOffset.BitMask.get(index, nameEx);
+				periodStarts[rows] = ChronicleOffset.PeriodStart.get(index, nameEx);
+				periodEnds[rows] = ChronicleOffset.PeriodEnd.get(index, nameEx);
+				Long layoutKey = ((long)enumIndex << 32) | (bitMask & 0xFFFFFFFFL);
+				Integer layoutId = layoutIds.get(layoutKey);
+				ICollector<?>[] collectors = layoutId==null ? (ICollector<?>[])EnumCollectors.getInstance().type(enumIndex).getEnumConstants() : null;
+				columns.setLength(0);
+				rowOffsets[rows] = valueCount;
+				for(long dataIndex: ChronicleOffset.getTier1Indexes(index, nameEx)) {
+					if(dataIndex < 1) continue;
+					long[] points = ChronicleDataOffset.getDataPoints(dataIndex, dataEx);
+					if(valueCount + points.length > values.length) {
+						values = Arrays.copyOf(values, Math.max(values.length * 2, valueCount + points.length));
+					}
+					System.arraycopy(points, 0, values, valueCount, points.length);
+					valueCount += points.length;
+					if(collectors!=null) {
+						appendColumns(columns, collectors[(int)ChronicleDataOffset.EnumOrdinal.get(dataIndex, dataEx)], points.length);
+					}
+				}
+				if(layoutId==null) {
+					layoutId = layouts.size();
+					layouts.add(columns.toString());
+					layoutIds.put(layoutKey, layoutId);
+				}
+				rowLayouts[rows] = layoutId;
+				rows++;
+			}
+			rowOffsets[rows] = valueCount;
+		} finally {
+			nameEx.close();
+			dataEx.close();
+			queried(start);
+		}
+		return new MetricTable(total[0], Math.max(0, offset), nextOffset(offset, indexes.length, total[0]), 
+				Arrays.copyOf(names, rows), Arrays.copyOf(periodStarts, rows), Arrays.copyOf(periodEnds, rows), 
+				layouts.toArray(new String[layouts.size()]), Arrays.copyOf(rowLayouts, rows), Arrays.copyOf(rowOffsets, rows+1), 
+				Arrays.copyOf(values, valueCount));
+	}
+	
+	/**
+	 * Appends the column names of the passed collector's data points
+	 * @param columns The buffer to append to
+	 * @param collector The collector
+	 * @param pointCount The number of data points the collector wrote
+	 */
+	protected static void appendColumns(StringBuilder columns, ICollector<?> collector, int pointCount) {
+		String[] subNames = collector.getSubMetricNames();
+		for(int i = 0; i < pointCount; i++) {
+			if(columns.length() > 0) columns.append(',');
+			columns.append(collector.name());
+			if(pointCount > 1) {
+				columns.append('.').append(subNames!=null && i < subNames.length ? subNames[i] : Integer.toString(i));
+			}
+		}
+	}
+	
+	/**
+	 * Records a served query
+	 * @param start The query start time in ns.
+	 */
+	protected void queried(long start) {
+		lastQueryNanos = System.nanoTime()-start;
+		queryCount.incrementAndGet();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.jmx.BulkMetricPublisherMXBean#getQueryCount()
+	 */
+	@Override
+	public long getQueryCount() {
+		return queryCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.jmx.BulkMetricPublisherMXBean#getLastQueryTimeUs()
+	 */
+	@Override
+	public long getLastQueryTimeUs() {
+		return TimeUnit.NANOSECONDS.toMicros(lastQueryNanos);
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.jmx;
+
+import javax.management.ObjectName;
+
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+
+/**
+ * <p>Title: BulkMetricPublisherMXBean</p>
+ * <p>Description: JMX interface for the single aggregate MBean that exposes the metrics in bulk when published with {@link MetricJMXPublishOption#BULK}</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.jmx.BulkMetricPublisherMXBean</code></p>
+ */
+
+public interface BulkMetricPublisherMXBean {
+	/** The bulk metric publisher JMX ObjectName */
+	public static final ObjectName OBJECT_NAME = JMXHelper.objectName("shorthand.metrics:service=BulkMetrics");
+	
+	/** The maximum number of rows returned in one page */
+	public static final int MAX_PAGE_SIZE = 10000;
+
+	/**
+	 * Returns the number of name index entries
+	 * @return the number of name index entries
+	 */
+	public long getMetricNameCount();
+	
+	/**
+	 * Returns the number of metrics matching the passed pattern
+	 * @param pattern The metric name regex, or null or empty for all metrics
+	 * @return the number of matching metrics
+	 */
+	public int count(String pattern);
+	
+	/**
+	 * Returns a page of the names of the metrics matching the passed pattern
+	 * @param pattern The metric name regex, or null or empty for all metrics
+	 * @param offset The offset of the first name to return
+	 * @param limit The maximum number of names to return, capped at {@link #MAX_PAGE_SIZE}
+	 * @return the metric names
+	 */
+	public String[] getMetricNames(String pattern, int offset, int limit);
+	
+	/**
+	 * Returns a page of the metrics matching the passed pattern with their last period values, read from the tier 1 chronicle
+	 * @param pattern The metric name regex, or null or empty for all metrics
+	 * @param offset The offset of the first metric to return
+	 * @param limit The maximum number of metrics to return, capped at {@link #MAX_PAGE_SIZE}
+	 * @return the page of metrics
+	 */
+	public MetricTable getMetrics(String pattern, int offset, int limit);
+	
+	/**
+	 * Returns the number of bulk queries served
+	 * @return the number of bulk queries
+	 */
+	public long getQueryCount();
+	
+	/**
+	 * Returns the elapsed time of the last bulk query in us.
+	 * @return the elapsed time of the last bulk query in us.
+	 */
+	public long getLastQueryTimeUs();
+}
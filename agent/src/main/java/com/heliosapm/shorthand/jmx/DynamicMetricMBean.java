@@ -24,34 +24,82 @@
  */
 package com.heliosapm.shorthand.jmx;
 
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.management.Attribute;
 import javax.management.AttributeList;
 import javax.management.AttributeNotFoundException;
 import javax.management.DynamicMBean;
 import javax.management.InvalidAttributeValueException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanConstructorInfo;
 import javax.management.MBeanException;
 import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
 import javax.management.ReflectionException;
 
+import com.heliosapm.shorthand.collectors.EnumCollectors;
+
 /**
  * <p>Title: DynamicMetricMBean</p>
- * <p>Description: A dynamic mbean implementation to expose metrics in the name index</p> 
+ * <p>Description: A dynamic mbean implementation to expose metrics in the name index. Attribute reads are dispatched 
+ * through an {@link AttributeLayout} built once per collector and bitmask by {@link MetricMBeanBuilder}, and 
+ * {@link #getAttributes(String[])} serves all the requested attributes from one period snapshot.</p> 
  * <p>Company: Helios Development Group LLC</p>
  * @author Whitehead (nwhitehead AT heliosdev DOT org)
  * <p><code>com.heliosapm.shorthand.jmx.DynamicMetricMBean</code></p>
  */
 
-public class DynamicMetricMBean implements DynamicMBean {
-	/** The name index of the metric */
-	protected final long nameIndex;
+public class DynamicMetricMBean extends PublishedMetric implements DynamicMBean {
+	/** The attribute layout for this metric's collector and bitmask */
+	protected final AttributeLayout layout;
 	
+	/** The fixed attribute names, in attribute id order */
+	static final String[] FIXED_ATTRIBUTES = {"NameIndex", "MetricName", "EnumIndex", "CollectorName", "BitMask", "EnabledMetrics", 
+		"CreationTime", "CreationDate", "PeriodStartTime", "PeriodStartDate", "PeriodEndTime", "PeriodEndDate"};
+	/** The fixed attribute types, in attribute id order */
+	static final String[] FIXED_TYPES = {long.class.getName(), String.class.getName(), int.class.getName(), String.class.getName(), int.class.getName(), String[].class.getName(), 
+		long.class.getName(), Date.class.getName(), long.class.getName(), Date.class.getName(), long.class.getName(), Date.class.getName()};
+	/** The fixed attribute descriptions, in attribute id order */
+	static final String[] FIXED_DESCRIPTIONS = {"The chronicle name index for this metric", "The metric name", "The enum collector index", "The enum collector name", 
+		"The enabled metric bitmask", "The names of the enabled metrics", "The metric creation time in long UTC", "The metric creation date", 
+		"The metric period start time in long UTC", "The metric period start date", "The metric period end time in long UTC", "The metric period end date"};
 	
 	/**
 	 * Creates a new DynamicMetricMBean
 	 * @param nameIndex The name index of the metric
+	 * @param layout The attribute layout for the metric's collector and bitmask
+	 */
+	public DynamicMetricMBean(long nameIndex, AttributeLayout layout) {
+		super(nameIndex);
+		this.layout = layout;
+	}
+	
+	/**
+	 * Reads the identified attribute from the passed snapshot
+	 * @param id The attribute id
+	 * @param s The snapshot to read from
+	 * @return the attribute value
 	 */
-	public DynamicMetricMBean(long nameIndex) {
-		this.nameIndex = nameIndex;
+	protected Object read(int id, Snapshot s) {
+		switch(id) {
+			case 0: return nameIndex;
+			case 1: return s.name;
+			case 2: return s.enumIndex;
+			case 3: return EnumCollectors.getInstance().type(s.enumIndex).getSimpleName();
+			case 4: return s.bitMask;
+			case 5: return EnumCollectors.getInstance().ref(s.enumIndex).getEnabledNames(s.bitMask);
+			case 6: return s.createTime;
+			case 7: return new Date(s.createTime);
+			case 8: return s.periodStart;
+			case 9: return new Date(s.periodStart);
+			case 10: return s.periodEnd;
+			case 11: return new Date(s.periodEnd);
+			default: return s.dataPoints[layout.dataIndexes[id]][layout.pointIndexes[id]];
+		}
 	}
 
 	/**
@@ -59,22 +107,20 @@ public class DynamicMetricMBean implements DynamicMBean {
 	 * @see javax.management.DynamicMBean#getAttribute(java.lang.String)
 	 */
 	@Override
-	public Object getAttribute(String attribute) throws AttributeNotFoundException, MBeanException,
-			ReflectionException {
-		// TODO Auto-generated method stub
-		return null;
+	public Object getAttribute(String attribute) throws AttributeNotFoundException, MBeanException, ReflectionException {
+		Integer id = layout.ids.get(attribute);
+		if(id==null) throw new AttributeNotFoundException("No attribute named [" + attribute + "]");
+		return read(id, snapshot());
 	}
 
 	/**
+	 * Metric attributes are read only
 	 * {@inheritDoc}
 	 * @see javax.management.DynamicMBean#setAttribute(javax.management.Attribute)
 	 */
 	@Override
-	public void setAttribute(Attribute attribute)
-			throws AttributeNotFoundException, InvalidAttributeValueException,
-			MBeanException, ReflectionException {
-		// TODO Auto-generated method stub
-
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException, InvalidAttributeValueException, MBeanException, ReflectionException {
+		throw new AttributeNotFoundException("Attribute [" + attribute.getName() + "] is read only");
 	}
 
 	/**
@@ -83,18 +129,23 @@ public class DynamicMetricMBean implements DynamicMBean {
 	 */
 	@Override
 	public AttributeList getAttributes(String[] attributes) {
-		// TODO Auto-generated method stub
-		return null;
+		AttributeList list = new AttributeList(attributes.length);
+		Snapshot s = snapshot();
+		for(String attribute: attributes) {
+			Integer id = layout.ids.get(attribute);
+			if(id!=null) list.add(new Attribute(attribute, read(id, s)));
+		}
+		return list;
 	}
 
 	/**
+	 * Metric attributes are read only
 	 * {@inheritDoc}
 	 * @see javax.management.DynamicMBean#setAttributes(javax.management.AttributeList)
 	 */
 	@Override
 	public AttributeList setAttributes(AttributeList attributes) {
-		// TODO Auto-generated method stub
-		return null;
+		return new AttributeList();
 	}
 
 	/**
@@ -102,10 +153,8 @@ public class DynamicMetricMBean implements DynamicMBean {
 	 * @see javax.management.DynamicMBean#invoke(java.lang.String, java.lang.Object[], java.lang.String[])
 	 */
 	@Override
-	public Object invoke(String actionName, Object[] params, String[] signature)
-			throws MBeanException, ReflectionException {
-		// TODO Auto-generated method stub
-		return null;
+	public Object invoke(String actionName, Object[] params, String[] signature) throws MBeanException, ReflectionException {
+		throw new ReflectionException(new NoSuchMethodException(actionName), "Metric MBeans have no operations");
 	}
 
 	/**
@@ -114,8 +163,54 @@ public class DynamicMetricMBean implements DynamicMBean {
 	 */
 	@Override
 	public MBeanInfo getMBeanInfo() {
-		// TODO Auto-generated method stub
-		return null;
+		return layout.info;
+	}
+	
+	/**
+	 * <p>Title: AttributeLayout</p>
+	 * <p>Description: The attributes of the metric MBeans of one collector and bitmask, mapping each attribute name to an id
+	 * and each data point attribute id to its position in the snapshot's data points</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.jmx.DynamicMetricMBean.AttributeLayout</code></p>
+	 */
+	public static class AttributeLayout {
+		/** The attribute ids keyed by attribute name */
+		final Map<String, Integer> ids;
+		/** The enabled collector index of each attribute id */
+		final int[] dataIndexes;
+		/** The data point index of each attribute id */
+		final int[] pointIndexes;
+		/** The shared MBean info */
+		final MBeanInfo info;
+		
+		/**
+		 * Creates a new AttributeLayout
+		 * @param collectorName The collector name
+		 * @param names The data point attribute names
+		 * @param descriptions The data point attribute descriptions
+		 * @param dataIndexes The enabled collector index of each data point attribute
+		 * @param pointIndexes The data point index of each data point attribute
+		 */
+		AttributeLayout(String collectorName, String[] names, String[] descriptions, int[] dataIndexes, int[] pointIndexes) {
+			final int fixed = FIXED_ATTRIBUTES.length;
+			final int total = fixed + names.length;
+			ids = new HashMap<String, Integer>(total * 2);
+			this.dataIndexes = new int[total];
+			this.pointIndexes = new int[total];
+			MBeanAttributeInfo[] attrs = new MBeanAttributeInfo[total];
+			for(int i = 0; i < fixed; i++) {
+				ids.put(FIXED_ATTRIBUTES[i], i);
+				attrs[i] = new MBeanAttributeInfo(FIXED_ATTRIBUTES[i], FIXED_TYPES[i], FIXED_DESCRIPTIONS[i], true, false, false);
+			}
+			for(int i = 0; i < names.length; i++) {
+				ids.put(names[i], fixed + i);
+				this.dataIndexes[fixed + i] = dataIndexes[i];
+				this.pointIndexes[fixed + i] = pointIndexes[i];
+				attrs[fixed + i] = new MBeanAttributeInfo(names[i], long.class.getName(), descriptions[i], true, false, false);
+			}
+			info = new MBeanInfo(DynamicMetricMBean.class.getName(), "Shorthand " + collectorName + " metric", attrs, 
+					new MBeanConstructorInfo[0], new MBeanOperationInfo[0], new MBeanNotificationInfo[0]);
+		}
 	}
-
 }
@@ -43,7 +43,9 @@ public enum MetricJMXPublishOption {
 	/** An MBean representing the metric's name index details will be published  */
 	NAME(new NameMetricJMXPublisher()),
 	/** An MBean representing the metric's name index and details and live data will be published  */
-	DATA(new DataMetricJMXPublisher());
+	DATA(new DataMetricJMXPublisher()),
+	/** No per metric MBeans are published. A single {@link BulkMetricPublisher} serves all metrics in pages from the chronicles */
+	BULK(new NullMetricJMXPublisher());
 	
 	/** The default option */
 	public static final MetricJMXPublishOption DEFAULT = NONE;
@@ -169,11 +171,11 @@ public enum MetricJMXPublishOption {
 	}
 	
 	/**
-	 * <p>Title: NameMetricJMXPublisher</p>
-	 * <p>Description: Publsihes a name index details MBean</p> 
+	 * <p>Title: DataMetricJMXPublisher</p>
+	 * <p>Description: Publishes a dynamic MBean exposing the metric's name index details and data points</p> 
 	 * <p>Company: Helios Development Group LLC</p>
 	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
-	 * <p><code>com.heliosapm.shorthand.jmx.MetricJMXPublishOption.NameMetricJMXPublisher</code></p>
+	 * <p><code>com.heliosapm.shorthand.jmx.MetricJMXPublishOption.DataMetricJMXPublisher</code></p>
 	 */
 	public static class DataMetricJMXPublisher implements MetricJMXPublisher {
 		/**
@@ -184,7 +186,7 @@ public enum MetricJMXPublishOption {
 		public synchronized void publish(String metricName, long nameIndex) {
 			ObjectName on = JMXHelper.isObjectName(metricName) ? JMXHelper.objectName(metricName) :
 				JMXHelper.objectName("shorthand.metrics:name=%s", ObjectName.quote(metricName));
-			PublishedMetric pm = MetricMBeanBuilder.getInstance().getPublishedMetricInstance(
+			PublishedMetric pm = MetricMBeanBuilder.getInstance().getDynamicMetricInstance(
 					(int)ChronicleOffset.EnumIndex.get(nameIndex), 
 					(int)ChronicleOffset.BitMask.get(nameIndex), 
 					nameIndex);
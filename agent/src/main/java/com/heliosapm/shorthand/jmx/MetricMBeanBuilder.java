@@ -26,6 +26,8 @@ package com.heliosapm.shorthand.jmx;
 
 import java.io.File;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -63,6 +65,8 @@ public class MetricMBeanBuilder {
 	
 	/** A map of already created published metric classes keyed by enum-name/bitmask */
 	private final Map<String, Constructor<? extends PublishedMetric>> mbeanClasses = new ConcurrentHashMap<String, Constructor<? extends PublishedMetric>>();
+	/** A map of already built dynamic metric attribute layouts keyed by enum-name/bitmask */
+	private final Map<String, DynamicMetricMBean.AttributeLayout> layouts = new ConcurrentHashMap<String, DynamicMetricMBean.AttributeLayout>();
 
 	
 	/** The javassist classpool */
@@ -132,6 +136,58 @@ public class MetricMBeanBuilder {
 		}
 	}
 	
+	/**
+	 * Returns a dynamic metric MBean for the passed metric. The attribute layout is built once per collector and bitmask and shared by all the metric's MBeans.
+	 * @param enumIndex The enum collector index
+	 * @param bitMask The enabled metric bitmask
+	 * @param nameIndex The metric name index
+	 * @return the dynamic metric MBean
+	 */
+	public DynamicMetricMBean getDynamicMetricInstance(int enumIndex, int bitMask, long nameIndex) {
+		final String key = String.format("%s/%s", enumIndex, bitMask);
+		DynamicMetricMBean.AttributeLayout layout = layouts.get(key);
+		if(layout==null) {
+			synchronized(layouts) {
+				layout = layouts.get(key);
+				if(layout==null) {
+					layout = buildLayout(enumIndex, bitMask);
+					layouts.put(key, layout);
+				}
+			}
+		}
+		return new DynamicMetricMBean(nameIndex, layout);
+	}
+	
+	/**
+	 * Builds the dynamic metric attribute layout for the passed collector and bitmask, 
+	 * naming the data point attributes the same as the getters of the generated standard MBeans.
+	 * @param enumIndex The enum collector index
+	 * @param bitMask The enabled metric bitmask
+	 * @return the attribute layout
+	 */
+	private DynamicMetricMBean.AttributeLayout buildLayout(int enumIndex, int bitMask) {
+		List<String> names = new ArrayList<String>();
+		List<String> descriptions = new ArrayList<String>();
+		List<int[]> positions = new ArrayList<int[]>();
+		int dataIndex = 0;
+		for(ICollector<?> collector: EnumCollectors.getInstance().enabledMembersForIndex(enumIndex, bitMask)) {
+			String[] subNames = collector.getSubMetricNames();
+			for(int i = 0; i < subNames.length; i++) {
+				names.add(StringHelper.initCap(collector.getShortName()) + (subNames.length==1 ? "" : subNames[i]));
+				descriptions.add(subNames.length==1 ? collector.getDescription() : collector.getDescription() + " " + subNames[i]);
+				positions.add(new int[]{dataIndex, i});
+			}
+			dataIndex++;
+		}
+		int[] dataIndexes = new int[positions.size()], pointIndexes = new int[positions.size()];
+		for(int i = 0; i < dataIndexes.length; i++) {
+			dataIndexes[i] = positions.get(i)[0];
+			pointIndexes[i] = positions.get(i)[1];
+		}
+		return new DynamicMetricMBean.AttributeLayout(EnumCollectors.getInstance().type(enumIndex).getSimpleName(), 
+				names.toArray(new String[names.size()]), descriptions.toArray(new String[descriptions.size()]), dataIndexes, pointIndexes);
+	}
+	
 	public static void main(String[] args) {
 		log("MetricMBeanBuilder------");
 		ChronicleStore.getInstance();
@@ -158,7 +214,7 @@ public class MetricMBeanBuilder {
 				String[] subNames = collector.getSubMetricNames();				
 				if(subNames.length==1) {
 					methodName = String.format("get%s",  StringHelper.initCap(collector.getShortName()));									
-					implCode.clear().appendFmt("{long id = dataIndexes[%s]; dataEx.index(id);  return ChronicleDataOffset.getDataPoint(dataIndexes[%s], 0, dataEx);}", dataIndex, dataIndex);
+					implCode.clear().appendFmt("{return dataPoint(%s, 0);}", dataIndex);
 //					implCode.clear().appendFmt("{dataEx.index(dataIndexes[%s]);  return ChronicleDataOffset.getDataPoint(dataIndexes[%s], 0, dataEx);}", dataIndex, dataIndex);
 					log("[%s]  %s", methodName, implCode);
 					clazzIface.addMethod(new CtMethod(CtClass.longType, methodName, EMPTY_SIG, clazzIface));
@@ -169,7 +225,7 @@ public class MetricMBeanBuilder {
 					int dataPointIndex = 0;
 					for(String subMetricName: subNames) {
 						methodName = String.format("get%s%s",  StringHelper.initCap(collector.getShortName()), subMetricName);
-						implCode.clear().appendFmt("{long id = dataIndexes[%s]; dataEx.index(id); return ChronicleDataOffset.getDataPoint(dataIndexes[%s], %s, dataEx);}", dataIndex, dataIndex, dataPointIndex);
+						implCode.clear().appendFmt("{return dataPoint(%s, %s);}", dataIndex, dataPointIndex);
 //						implCode.clear().appendFmt("{dataEx.index(dataIndexes[%s]); return ChronicleDataOffset.getDataPoint(dataIndexes[%s], %s, dataEx);}", dataIndex, dataIndex, dataPointIndex);
 						log("[%s]  %s", methodName, implCode);
 						clazzIface.addMethod(new CtMethod(CtClass.longType, methodName, EMPTY_SIG, clazzIface));
@@ -0,0 +1,195 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.jmx;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * <p>Title: MetricTable</p>
+ * <p>Description: A page of metrics and their last period values in a compact columnar layout, mapped to <code>CompositeData</code> by the MXBean framework.
+ * The values of row <code>n</code> are <code>values[rowOffsets[n]]</code> up to <code>values[rowOffsets[n+1]]</code>, 
+ * named by the comma separated columns of <code>layouts[rowLayouts[n]]</code>.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.jmx.MetricTable</code></p>
+ */
+
+public class MetricTable {
+	/** The total number of matching metrics */
+	private final int total;
+	/** The offset of the first row in the matching metrics */
+	private final int offset;
+	/** The offset of the next page, or -1 if this is the last page */
+	private final int nextOffset;
+	/** The metric names */
+	private final String[] names;
+	/** The per row period start times */
+	private final long[] periodStarts;
+	/** The per row period end times */
+	private final long[] periodEnds;
+	/** The distinct column layouts */
+	private final String[] layouts;
+	/** The per row layout index */
+	private final int[] rowLayouts;
+	/** The per row offsets into the values, with a trailing end offset */
+	private final int[] rowOffsets;
+	/** The row values */
+	private final long[] values;
+
+	/**
+	 * Creates a new MetricTable
+	 * @param total The total number of matching metrics
+	 * @param offset The offset of the first row in the matching metrics
+	 * @param nextOffset The offset of the next page, or -1 if this is the last page
+	 * @param names The metric names
+	 * @param periodStarts The per row period start times
+	 * @param periodEnds The per row period end times
+	 * @param layouts The distinct column layouts
+	 * @param rowLayouts The per row layout index
+	 * @param rowOffsets The per row offsets into the values, with a trailing end offset
+	 * @param values The row values
+	 */
+	@ConstructorProperties({"total", "offset", "nextOffset", "names", "periodStarts", "periodEnds", "layouts", "rowLayouts", "rowOffsets", "values"})
+	public MetricTable(int total, int offset, int nextOffset, String[] names, long[] periodStarts, long[] periodEnds, String[] layouts, int[] rowLayouts, int[] rowOffsets, long[] values) {
+		this.total = total;
+		this.offset = offset;
+		this.nextOffset = nextOffset;
+		this.names = names;
+		this.periodStarts = periodStarts;
+		this.periodEnds = periodEnds;
+		this.layouts = layouts;
+		this.rowLayouts = rowLayouts;
+		this.rowOffsets = rowOffsets;
+		this.values = values;
+	}
+
+	/**
+	 * Returns the total number of matching metrics
+	 * @return the total number of matching metrics
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * Returns the offset of the first row in the matching metrics
+	 * @return the offset of the first row
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Returns the offset of the next page
+	 * @return the offset of the next page, or -1 if this is the last page
+	 */
+	public int getNextOffset() {
+		return nextOffset;
+	}
+
+	/**
+	 * Returns the metric names
+	 * @return the metric names
+	 */
+	public String[] getNames() {
+		return names;
+	}
+
+	/**
+	 * Returns the per row period start times
+	 * @return the per row period start times
+	 */
+	public long[] getPeriodStarts() {
+		return periodStarts;
+	}
+
+	/**
+	 * Returns the per row period end times
+	 * @return the per row period end times
+	 */
+	public long[] getPeriodEnds() {
+		return periodEnds;
+	}
+
+	/**
+	 * Returns the distinct column layouts, each a comma separated list of column names
+	 * @return the distinct column layouts
+	 */
+	public String[] getLayouts() {
+		return layouts;
+	}
+
+	/**
+	 * Returns the per row index into the layouts
+	 * @return the per row layout index
+	 */
+	public int[] getRowLayouts() {
+		return rowLayouts;
+	}
+
+	/**
+	 * Returns the per row offsets into the values, with a trailing end offset
+	 * @return the per row offsets
+	 */
+	public int[] getRowOffsets() {
+		return rowOffsets;
+	}
+
+	/**
+	 * Returns the row values
+	 * @return the row values
+	 */
+	public long[] getValues() {
+		return values;
+	}
+	
+	/**
+	 * Returns the number of rows in this page
+	 * @return the number of rows
+	 */
+	public int size() {
+		return names.length;
+	}
+	
+	/**
+	 * Returns the values of the passed row
+	 * @param row The row
+	 * @return the row values
+	 */
+	public long[] getRow(int row) {
+		long[] arr = new long[rowOffsets[row+1]-rowOffsets[row]];
+		System.arraycopy(values, rowOffsets[row], arr, 0, arr.length);
+		return arr;
+	}
+	
+	/**
+	 * Returns the column names of the passed row
+	 * @param row The row
+	 * @return the column names
+	 */
+	public String[] getColumns(int row) {
+		return layouts[rowLayouts[row]].split(",");
+	}
+}
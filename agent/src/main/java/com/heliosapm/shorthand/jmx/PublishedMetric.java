@@ -25,25 +25,39 @@
 package com.heliosapm.shorthand.jmx;
 
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.management.MBeanRegistration;
 import javax.management.MBeanServer;
+import javax.management.Notification;
+import javax.management.NotificationListener;
 import javax.management.ObjectName;
 
 import com.heliosapm.shorthand.collectors.EnumCollectors;
+import com.heliosapm.shorthand.store.ChronicleDataOffset;
 import com.heliosapm.shorthand.store.ChronicleOffset;
 import com.heliosapm.shorthand.store.ChronicleStore;
 import com.higherfrequencytrading.chronicle.Excerpt;
 
 /**
  * <p>Title: PublishedMetric</p>
- * <p>Description: The base mbean class for exposing live metrics through JMX</p> 
+ * <p>Description: The base mbean class for exposing live metrics through JMX. The metric's name and data records are read
+ * into a snapshot on the first attribute read of each period and all attributes are served from it, so a client reading
+ * many attributes sees one period and does one set of chronicle reads.</p> 
  * <p>Company: Helios Development Group LLC</p>
  * @author Whitehead (nwhitehead AT heliosdev DOT org)
  * <p><code>com.heliosapm.shorthand.jmx.PublishedMetric</code></p>
  */
 
 public class PublishedMetric implements PublishedMetricMBean, MBeanRegistration {
+	/** The period serial, incremented on each period end notification to invalidate all snapshots */
+	private static final AtomicLong periodSerial = new AtomicLong(0L);
+	/** Indicates if the period end listener has been registered with the store */
+	private static final AtomicBoolean periodListenerRegistered = new AtomicBoolean(false);
+	/** The maximum number of attempts to read a snapshot without a flush writing over it */
+	private static final int MAX_READ_ATTEMPTS = 10;
+	
 	/** The name index */
 	protected final long nameIndex;
 	
@@ -51,6 +65,10 @@ public class PublishedMetric implements PublishedMetricMBean, MBeanRegistration
 	protected Excerpt nameEx = null;
 	/** A data index excerpt */
 	protected Excerpt dataEx = null;
+	/** The active metric data indexes */
+	protected long[] dataIndexes = null;
+	/** The current period's snapshot */
+	protected volatile Snapshot snapshot = null;
 	
 	/**
 	 * Creates a new PublishedMetric
@@ -61,6 +79,21 @@ public class PublishedMetric implements PublishedMetricMBean, MBeanRegistration
 		this.nameIndex = nameIndex;
 	}
 	
+	/**
+	 * Registers the store listener that invalidates the snapshots when a period ends
+	 */
+	private static void registerPeriodListener() {
+		if(!periodListenerRegistered.compareAndSet(false, true)) return;
+		ChronicleStore.getInstance().addNotificationListener(new NotificationListener() {
+			@Override
+			public void handleNotification(Notification notification, Object handback) {
+				if(ChronicleStore.NOTIF_PERIOD_END.equals(notification.getType())) {
+					periodSerial.incrementAndGet();
+				}
+			}
+		}, null, null);
+	}
+	
 	/**
 	 * Returns the active metric data indexes
 	 * @return the active metric data indexes
@@ -79,6 +112,73 @@ public class PublishedMetric implements PublishedMetricMBean, MBeanRegistration
 		return activeIndexes;
 	}
 	
+	/**
+	 * Returns the current period's snapshot, reading it if the period has ended since it was last read
+	 * @return the snapshot
+	 */
+	protected Snapshot snapshot() {
+		final long serial = periodSerial.get();
+		Snapshot s = snapshot;
+		if(s==null || s.serial!=serial) {
+			synchronized(this) {
+				s = snapshot;
+				if(s==null || s.serial!=serial) {
+					s = readSnapshot(serial);
+					snapshot = s;
+				}
+			}
+		}
+		return s;
+	}
+	
+	/**
+	 * Reads the name and data records into a new snapshot, retrying if a flush wrote period records while they were being read.
+	 * Must be called while holding this instance's monitor since the excerpts are not thread safe. 
+	 * @param serial The period serial the snapshot is being read for
+	 * @return the snapshot
+	 */
+	protected Snapshot readSnapshot(long serial) {
+		if(nameEx==null) throw new RuntimeException("Cannot read metric until MBean has been published");
+		final ChronicleStore<?> store = ChronicleStore.getInstance();
+		for(int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+			long seq = store.getTier1WriteSequence();
+			if((seq & 1L)!=0) {
+				Thread.yield();
+				continue;
+			}
+			Snapshot s = read(serial);
+			if(store.getTier1WriteSequence()==seq) return s;
+		}
+		// Flushes kept overlapping the read, so tag it with the prior serial to have it re-read on the next access
+		return read(serial-1);
+	}
+	
+	/**
+	 * Reads the name and data records into a new snapshot
+	 * @param serial The period serial to assign to the snapshot
+	 * @return the snapshot
+	 */
+	private Snapshot read(long serial) {
+		long[][] dataPoints = new long[dataIndexes.length][];
+		for(int i = 0; i < dataIndexes.length; i++) {
+			dataPoints[i] = ChronicleDataOffset.getDataPoints(dataIndexes[i], dataEx);
+		}
+		return new Snapshot(serial, ChronicleOffset.getName(nameIndex, nameEx), 
+				(int)ChronicleOffset.EnumIndex.get(nameIndex, nameEx), (int)ChronicleOffset.BitMask.get(nameIndex, nameEx), 
+				ChronicleOffset.CreateTime.get(nameIndex, nameEx), 
+				ChronicleOffset.PeriodStart.get(nameIndex, nameEx), ChronicleOffset.PeriodEnd.get(nameIndex, nameEx), dataPoints);
+	}
+	
+	/**
+	 * Returns a data point from the current period's snapshot. Called by the generated metric MBean getters.
+	 * @param dataIndex The index of the enabled collector
+	 * @param pointIndex The index of the collector's data point
+	 * @return the data point value
+	 */
+	protected long dataPoint(int dataIndex, int pointIndex) {
+		return snapshot().dataPoints[dataIndex][pointIndex];
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * @see javax.management.MBeanRegistration#preRegister(javax.management.MBeanServer, javax.management.ObjectName)
@@ -95,10 +195,13 @@ public class PublishedMetric implements PublishedMetricMBean, MBeanRegistration
 	@Override
 	public void postRegister(Boolean registrationDone) {
 		if(registrationDone!=null && registrationDone) {
-			nameEx = ChronicleStore.getInstance().getNameIndexExcerpt();
-			nameEx.index(nameIndex);
-			dataEx = ChronicleStore.getInstance().getDataIndexExcerpt();
-			dataIndexes = getDataIndexes();
+			registerPeriodListener();
+			synchronized(this) {
+				nameEx = ChronicleStore.getInstance().getNameIndexExcerpt();
+				nameEx.index(nameIndex);
+				dataEx = ChronicleStore.getInstance().getDataIndexExcerpt();
+				dataIndexes = getDataIndexes();
+			}
 		}
 	}
 
@@ -108,8 +211,11 @@ public class PublishedMetric implements PublishedMetricMBean, MBeanRegistration
 	 */
 	@Override
 	public void preDeregister() throws Exception {
-		if(nameEx!=null) try { nameEx.close(); } catch (Exception e) {/* No Op */} finally { nameEx=null; }
-		if(dataEx!=null) try { dataEx.close(); } catch (Exception e) {/* No Op */} finally { dataEx=null; }
+		synchronized(this) {
+			if(nameEx!=null) try { nameEx.close(); } catch (Exception e) {/* No Op */} finally { nameEx=null; }
+			if(dataEx!=null) try { dataEx.close(); } catch (Exception e) {/* No Op */} finally { dataEx=null; }
+			snapshot = null;
+		}
 	}
 
 	/**
@@ -137,7 +243,7 @@ public class PublishedMetric implements PublishedMetricMBean, MBeanRegistration
 	 */
 	@Override
 	public String getMetricName() {
-		return ChronicleOffset.getName(nameIndex, nameEx);
+		return snapshot().name;
 	}
 
 	/**
@@ -146,7 +252,8 @@ public class PublishedMetric implements PublishedMetricMBean, MBeanRegistration
 	 */
 	@Override
 	public int getEnumIndex() {
-		return (int)ChronicleOffset.EnumIndex.get(nameIndex, nameEx);
+		Snapshot s = snapshot;
+		return s!=null ? s.enumIndex : (int)ChronicleOffset.EnumIndex.get(nameIndex, nameEx);
 	}
 
 	/**
@@ -155,7 +262,7 @@ public class PublishedMetric implements PublishedMetricMBean, MBeanRegistration
 	 */
 	@Override
 	public String getCollectorName() {
-		return EnumCollectors.getInstance().type(getEnumIndex()).getSimpleName();
+		return EnumCollectors.getInstance().type(snapshot().enumIndex).getSimpleName();
 	}
 
 	/**
@@ -164,7 +271,8 @@ public class PublishedMetric implements PublishedMetricMBean, MBeanRegistration
 	 */
 	@Override
 	public int getBitMask() {
-		return (int)ChronicleOffset.BitMask.get(nameIndex, nameEx);
+		Snapshot s = snapshot;
+		return s!=null ? s.bitMask : (int)ChronicleOffset.BitMask.get(nameIndex, nameEx);
 	}
 
 	/**
@@ -173,7 +281,8 @@ public class PublishedMetric implements PublishedMetricMBean, MBeanRegistration
 	 */
 	@Override
 	public String[] getEnabledMetrics() {		
-		return EnumCollectors.getInstance().ref(getEnumIndex()).getEnabledNames(getBitMask());
+		Snapshot s = snapshot();
+		return EnumCollectors.getInstance().ref(s.enumIndex).getEnabledNames(s.bitMask);
 	}
 
 	/**
@@ -182,7 +291,7 @@ public class PublishedMetric implements PublishedMetricMBean, MBeanRegistration
 	 */
 	@Override
 	public long getCreationTime() {
-		return ChronicleOffset.CreateTime.get(nameIndex, nameEx);
+		return snapshot().createTime;
 	}
 
 	/**
@@ -191,7 +300,7 @@ public class PublishedMetric implements PublishedMetricMBean, MBeanRegistration
 	 */
 	@Override
 	public Date getCreationDate() {
-		return new Date(ChronicleOffset.CreateTime.get(nameIndex, nameEx));
+		return new Date(snapshot().createTime);
 	}
 
 	/**
@@ -200,7 +309,7 @@ public class PublishedMetric implements PublishedMetricMBean, MBeanRegistration
 	 */
 	@Override
 	public long getPeriodStartTime() {
-		return ChronicleOffset.PeriodStart.get(nameIndex, nameEx);
+		return snapshot().periodStart;
 	}
 
 	/**
@@ -209,7 +318,7 @@ public class PublishedMetric implements PublishedMetricMBean, MBeanRegistration
 	 */
 	@Override
 	public Date getPeriodStartDate() {
-		return new Date(ChronicleOffset.PeriodStart.get(nameIndex, nameEx));
+		return new Date(snapshot().periodStart);
 	}
 
 	/**
@@ -218,7 +327,7 @@ public class PublishedMetric implements PublishedMetricMBean, MBeanRegistration
 	 */
 	@Override
 	public long getPeriodEndTime() {
-		return ChronicleOffset.PeriodEnd.get(nameIndex, nameEx);
+		return snapshot().periodEnd;
 	}
 
 	/**
@@ -227,15 +336,54 @@ public class PublishedMetric implements PublishedMetricMBean, MBeanRegistration
 	 */
 	@Override
 	public Date getPeriodEndDate() {
-		return new Date(ChronicleOffset.PeriodEnd.get(nameIndex, nameEx));
+		return new Date(snapshot().periodEnd);
+	}
+	
+	/**
+	 * <p>Title: Snapshot</p>
+	 * <p>Description: An immutable copy of a metric's name and data records for one period</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.jmx.PublishedMetric.Snapshot</code></p>
+	 */
+	protected static class Snapshot {
+		/** The period serial this snapshot was read for */
+		final long serial;
+		/** The metric name */
+		final String name;
+		/** The enum collector index */
+		final int enumIndex;
+		/** The enabled metric bitmask */
+		final int bitMask;
+		/** The metric creation time */
+		final long createTime;
+		/** The period start time */
+		final long periodStart;
+		/** The period end time */
+		final long periodEnd;
+		/** The data points of each enabled collector */
+		final long[][] dataPoints;
+		
+		/**
+		 * Creates a new Snapshot
+		 * @param serial The period serial this snapshot was read for
+		 * @param name The metric name
+		 * @param enumIndex The enum collector index
+		 * @param bitMask The enabled metric bitmask
+		 * @param createTime The metric creation time
+		 * @param periodStart The period start time
+		 * @param periodEnd The period end time
+		 * @param dataPoints The data points of each enabled collector
+		 */
+		Snapshot(long serial, String name, int enumIndex, int bitMask, long createTime, long periodStart, long periodEnd, long[][] dataPoints) {
+			this.serial = serial;
+			this.name = name;
+			this.enumIndex = enumIndex;
+			this.bitMask = bitMask;
+			this.createTime = createTime;
+			this.periodStart = periodStart;
+			this.periodEnd = periodEnd;
+			this.dataPoints = dataPoints;
+		}
 	}
-	protected long[] dataIndexes = null;
-
-//	private long[] dataIndexes;
-//	
-//	public long getWaitsMin()
-//	  {
-//	    this.dataEx.index(this.dataIndexes[2]);
-//	    return ChronicleDataOffset.getDataPoint(this.dataIndexes[2], 0, this.dataEx);
-//	  }
 }
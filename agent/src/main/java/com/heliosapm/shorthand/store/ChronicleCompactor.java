@@ -0,0 +1,159 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.store;
+
+import gnu.trove.map.hash.TLongLongHashMap;
+
+import com.heliosapm.shorthand.util.unsafe.UnsafeAdapter;
+import com.higherfrequencytrading.chronicle.Chronicle;
+import com.higherfrequencytrading.chronicle.Excerpt;
+
+/**
+ * <p>Title: ChronicleCompactor</p>
+ * <p>Description: Copies the live (not deleted) records of a name index chronicle and their tier 1 data records
+ * into a new, empty generation of chronicles, rewriting the cross references between them.
+ * The caller is responsible for making sure no other thread writes to the source chronicles during the copy.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.store.ChronicleCompactor</code></p>
+ */
+
+public class ChronicleCompactor {
+	/** The source name index chronicle */
+	protected final Chronicle sourceNames;
+	/** The source tier 1 data chronicle */
+	protected final Chronicle sourceData;
+	/** The number of live name records copied */
+	protected long copied = 0;
+	/** The number of deleted name records dropped */
+	protected long dropped = 0;
+	
+	/**
+	 * Creates a new ChronicleCompactor
+	 * @param sourceNames The source name index chronicle
+	 * @param sourceData The source tier 1 data chronicle
+	 */
+	public ChronicleCompactor(Chronicle sourceNames, Chronicle sourceData) {
+		this.sourceNames = sourceNames;
+		this.sourceData = sourceData;
+	}
+	
+	/**
+	 * Copies the live records into the passed target chronicles, which should contain only their header record.
+	 * @param targetNames The target name index chronicle
+	 * @param targetData The target tier 1 data chronicle
+	 * @return a map of the new name index keyed by the old name index for each copied record
+	 */
+	public TLongLongHashMap copyTo(Chronicle targetNames, Chronicle targetData) {
+		final long size = sourceNames.size();
+		final TLongLongHashMap remap = new TLongLongHashMap((int)size, 0.5f, -1L, -1L);
+		final Excerpt src = sourceNames.createExcerpt();
+		final Excerpt dataSrc = sourceData.createExcerpt();
+		final Excerpt dst = targetNames.createExcerpt();
+		final Excerpt dataDst = targetData.createExcerpt();
+		try {
+			long index = 1;		// index 0 is the header record
+			// A cleared chronicle still maps the records past its size, so stop at the size
+			while(index < size && src.index(index)) {
+				if(src.readByte(ChronicleOffset.Delete.offset)!=0) {
+					dropped++;
+				} else {
+					remap.put(index, copyName(src, dataSrc, dst, dataDst));
+					copied++;
+				}
+				index++;
+			}
+			return remap;
+		} finally {
+			src.close(); dataSrc.close(); dst.close(); dataDst.close();
+		}
+	}
+	
+	/**
+	 * Copies the name record the passed source excerpt is positioned at, and its data records
+	 * @param src The source name excerpt
+	 * @param dataSrc The source data excerpt
+	 * @param dst The target name excerpt
+	 * @param dataDst The target data excerpt
+	 * @return the index of the new name record
+	 */
+	protected long copyName(Excerpt src, Excerpt dataSrc, Excerpt dst, Excerpt dataDst) {
+		final int size = src.capacity();
+		final int nameSize = src.readInt(ChronicleOffset.NameSize.offset);
+		final int dataCount = src.readInt(ChronicleOffset.Enabled.offset);
+		final int dataPos = ChronicleOffset.HEADER_SIZE + nameSize;
+		final byte[] record = new byte[size];
+		src.position(0);
+		src.readFully(record);
+		dst.startExcerpt(size);
+		dst.write(record);
+		final long newIndex = dst.index();
+		for(int i = 0; i < dataCount; i++) {
+			final int pos = dataPos + (i * UnsafeAdapter.LONG_SIZE);
+			long dataIndex = src.readLong(pos);
+			if(dataIndex<1) continue;			// disabled collector, the value is the negative mask
+			dst.writeLong(pos, copyData(dataIndex, newIndex, dataSrc, dataDst));
+		}
+		dst.position(size);
+		dst.finish();
+		return newIndex;
+	}
+	
+	/**
+	 * Copies a data record, pointing it at the new name index
+	 * @param dataIndex The index of the source data record
+	 * @param newNameIndex The new name index of the owning name record
+	 * @param dataSrc The source data excerpt
+	 * @param dataDst The target data excerpt
+	 * @return the index of the new data record
+	 */
+	protected long copyData(long dataIndex, long newNameIndex, Excerpt dataSrc, Excerpt dataDst) {
+		dataSrc.index(dataIndex);
+		final int size = dataSrc.capacity();
+		final byte[] record = new byte[size];
+		dataSrc.readFully(record);
+		dataDst.startExcerpt(size);
+		dataDst.write(record);
+		dataDst.writeLong(ChronicleDataOffset.NameIndex.offset, newNameIndex);
+		dataDst.finish();
+		return dataDst.index();
+	}
+
+	/**
+	 * Returns the number of live name records copied
+	 * @return the number of live name records copied
+	 */
+	public long getCopied() {
+		return copied;
+	}
+
+	/**
+	 * Returns the number of deleted name records dropped
+	 * @return the number of deleted name records dropped
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+}
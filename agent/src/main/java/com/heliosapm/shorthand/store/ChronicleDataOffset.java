@@ -26,7 +26,6 @@ package com.heliosapm.shorthand.store;
 
 import com.heliosapm.shorthand.util.unsafe.UnsafeAdapter;
 import com.higherfrequencytrading.chronicle.Excerpt;
-import com.higherfrequencytrading.chronicle.impl.IndexedChronicle;
 
 /**
  * <p>Title: ChronicleDataOffset</p>
@@ -64,11 +63,15 @@ public enum ChronicleDataOffset {
 	/** The length of the known part of the entry in bytes */
 	public static final int HEADER_SIZE;
 	
-	/** The chronicle store */
-	private static final ChronicleStore<?> chronicleStore  = ChronicleStore.getInstance();
+	/**
+	 * Returns the chronicle store. Resolved on use rather than on class initialization, since the store's name index
+	 * loader threads use these offsets, with their own excerpts, before the store is published.
+	 * @return the chronicle store
+	 */
+	private static ChronicleStore<?> chronicleStore() {
+		return ChronicleStore.getInstance();
+	}
 
-	/** The data index chronicle */
-	private static final IndexedChronicle chronicle = chronicleStore.tier1Data;
 	
 
 	static {
@@ -98,7 +101,7 @@ public enum ChronicleDataOffset {
 	public long get(long index, Excerpt ex) {
 		final boolean closeEx = ex==null;
 		if(ex==null) {
-			ex = chronicle.createExcerpt();
+			ex = chronicleStore().tier1Data.createExcerpt();
 		}		
 		try {
 			ex.index(index);
@@ -131,7 +134,7 @@ public enum ChronicleDataOffset {
 	public void set(long value, long index, Excerpt ex) {
 		final boolean closeEx = ex==null;
 		if(ex==null) {
-			ex = chronicle.createExcerpt();
+			ex = chronicleStore().tier1Data.createExcerpt();
 		}		
 		try {
 			ex.index(index);
@@ -168,13 +171,13 @@ public enum ChronicleDataOffset {
 	public static long[] getDataPoints(long index, Excerpt ex) {
 		final boolean closeEx = ex==null;
 		if(ex==null) {
-			ex = chronicle.createExcerpt();
+			ex = chronicleStore().tier1Data.createExcerpt();
 		}		
 		try {
 			ex.index(index);
 			int pointCount = (int)SubCount.get(index, ex);			
 			ex.position(HEADER_SIZE);
-			return chronicleStore.readLongArray(ex, pointCount);
+			return ChronicleStore.readLongArray(ex, pointCount);
 		} finally {
 			if(closeEx) ex.close();
 		}				
@@ -223,7 +226,7 @@ public enum ChronicleDataOffset {
 	public static void updateDataIndex(long index, long[] values, Excerpt ex) {		
 		final boolean closeEx = ex==null;
 		if(ex==null) {
-			ex = ChronicleStore.getInstance().tier1Data.createExcerpt();
+			ex = chronicleStore().tier1Data.createExcerpt();
 		}		
 		try {
 			
@@ -265,7 +268,7 @@ public enum ChronicleDataOffset {
 	public static long writeNewDataIndex(long nameIndex, int ordinal, long[] defaultValues, Excerpt ex) {
 		final boolean closeEx = ex==null;
 		if(ex==null) {
-			ex = ChronicleStore.getInstance().nameIndex.createExcerpt();			
+			ex = chronicleStore().tier1Data.createExcerpt();			
 		}
 		try {
 			ex.startExcerpt(HEADER_SIZE + (defaultValues.length << 3));
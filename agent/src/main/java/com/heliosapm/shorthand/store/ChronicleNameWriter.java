@@ -0,0 +1,240 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Title: ChronicleNameWriter</p>
+ * <p>Description: Appends new metric name records to the store's name index chronicle in batches from a dedicated thread.
+ * Instrumented threads reserve a new metric in the store's snapshot index and keep accumulating into its mem-space
+ * while the name record is pending. Once the record is committed, its index is written into the mem-space header.
+ * A batch that fails to commit is retried, and if it still fails after {@link #MAX_COMMIT_ATTEMPTS} attempts, its pending mem-spaces are
+ * released so the next snapshot of each name reserves it again and resubmits the name.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.store.ChronicleNameWriter</code></p>
+ */
+
+public class ChronicleNameWriter {
+	/** The number of attempts made to commit a batch before its pending mem-spaces are released */
+	public static final int MAX_COMMIT_ATTEMPTS = 3;
+	/** The store the names are committed to */
+	protected final ChronicleStore<?> store;
+	/** The maximum number of names committed in one batch */
+	protected final int maxBatch;
+	/** The queue of metric names pending commit */
+	protected final LinkedBlockingQueue<PendingName> pending = new LinkedBlockingQueue<PendingName>();
+	/** The number of submitted names not yet committed, including those in a batch being committed */
+	protected final AtomicLong uncommitted = new AtomicLong(0L);
+	/** The number of committed batches */
+	protected final AtomicLong batchCount = new AtomicLong(0L);
+	/** The number of committed names */
+	protected final AtomicLong committedCount = new AtomicLong(0L);
+	/** The number of failed batch commit attempts */
+	protected final AtomicLong failedCount = new AtomicLong(0L);
+	/** The number of pending mem-spaces released after their batch could not be committed */
+	protected final AtomicLong abandonedCount = new AtomicLong(0L);
+	
+	/** The name writer thread */
+	protected final Thread writer = new Thread("ChronicleNameWriterThread") {
+		public void run() {
+			final List<PendingName> batch = new ArrayList<PendingName>(maxBatch);
+			while(true) {
+				try {
+					batch.add(pending.take());
+					pending.drainTo(batch, maxBatch-1);
+					commit(batch);
+				} catch (InterruptedException iex) {
+					/* No Op */
+				} catch (Throwable t) {
+					System.err.println("[ChronicleNameWriter] Failed to commit [" + batch.size() + "] metric names:" + t);
+					t.printStackTrace(System.err);
+				} finally {
+					uncommitted.addAndGet(-1 * batch.size());
+					batch.clear();
+				}
+			}
+		}
+	};
+	
+	/**
+	 * Creates a new ChronicleNameWriter
+	 * @param store The store the names are committed to
+	 * @param maxBatch The maximum number of names committed in one batch
+	 */
+	ChronicleNameWriter(ChronicleStore<?> store, int maxBatch) {
+		this.store = store;
+		this.maxBatch = Math.max(1, maxBatch);
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	/**
+	 * Submits a reserved metric for name record creation
+	 * @param name The metric name
+	 * @param ref The address of the metric's mem-space reference
+	 * @param enumIndex The enum collector index
+	 * @param bitMask The enabled metric bitmask
+	 */
+	public void submit(String name, long ref, int enumIndex, int bitMask) {
+		uncommitted.incrementAndGet();
+		pending.add(new PendingName(name, ref, enumIndex, bitMask));
+	}
+	
+	/**
+	 * Commits all the names submitted before this call, on the calling thread if the writer thread has not yet picked them up.
+	 * Returns when nothing is left uncommitted.
+	 */
+	public void drain() {
+		final List<PendingName> batch = new ArrayList<PendingName>();
+		while(uncommitted.get()>0) {
+			pending.drainTo(batch);
+			if(batch.isEmpty()) {
+				// The writer thread has a batch in flight
+				Thread.yield();
+				continue;
+			}
+			try {
+				commit(batch);
+			} finally {
+				uncommitted.addAndGet(-1 * batch.size());
+				batch.clear();
+			}
+		}
+	}
+	
+	/**
+	 * Commits a batch of names to the store, retrying up to {@link #MAX_COMMIT_ATTEMPTS} times.
+	 * Names committed by a failed attempt are skipped by the retries. If the last attempt fails,
+	 * the batch's pending mem-spaces are released.
+	 * @param batch The batch to commit
+	 */
+	protected void commit(List<PendingName> batch) {
+		for(int attempt = 1; ; attempt++) {
+			try {
+				write(batch);
+				batchCount.incrementAndGet();
+				committedCount.addAndGet(batch.size());
+				return;
+			} catch (RuntimeException ex) {
+				failedCount.incrementAndGet();
+				if(attempt < MAX_COMMIT_ATTEMPTS) {
+					System.err.println("[ChronicleNameWriter] Failed to commit [" + batch.size() + "] metric names on attempt [" + attempt + "]:" + ex);
+					continue;
+				}
+				System.err.println("[ChronicleNameWriter] Releasing [" + batch.size() + "] metric names after [" + attempt + "] failed commit attempts:" + ex);
+				ex.printStackTrace(System.err);
+				abandonedCount.addAndGet(store.abandonNewMetricNames(batch));
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Writes a batch of names to the store's name index
+	 * @param batch The batch to write
+	 */
+	protected void write(List<PendingName> batch) {
+		store.commitNewMetricNames(batch);
+	}
+	
+	/**
+	 * Returns the number of names submitted and not yet committed
+	 * @return the number of uncommitted names
+	 */
+	public long getUncommittedCount() {
+		return uncommitted.get();
+	}
+	
+	/**
+	 * Returns the number of committed batches
+	 * @return the number of committed batches
+	 */
+	public long getBatchCount() {
+		return batchCount.get();
+	}
+	
+	/**
+	 * Returns the number of committed names
+	 * @return the number of committed names
+	 */
+	public long getCommittedCount() {
+		return committedCount.get();
+	}
+	
+	/**
+	 * Returns the number of failed batch commit attempts
+	 * @return the number of failed commit attempts
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+	
+	/**
+	 * Returns the number of pending mem-spaces released after their batch could not be committed
+	 * @return the number of released pending mem-spaces
+	 */
+	public long getAbandonedCount() {
+		return abandonedCount.get();
+	}
+	
+	/**
+	 * <p>Title: PendingName</p>
+	 * <p>Description: A reserved metric waiting for its name record</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.store.ChronicleNameWriter.PendingName</code></p>
+	 */
+	public static class PendingName {
+		/** The metric name */
+		public final String name;
+		/** The address of the metric's mem-space reference */
+		public final long ref;
+		/** The enum collector index */
+		public final int enumIndex;
+		/** The enabled metric bitmask */
+		public final int bitMask;
+		/** The submission timestamp in ns. */
+		public final long submitted = System.nanoTime();
+		
+		/**
+		 * Creates a new PendingName
+		 * @param name The metric name
+		 * @param ref The address of the metric's mem-space reference
+		 * @param enumIndex The enum collector index
+		 * @param bitMask The enabled metric bitmask
+		 */
+		PendingName(String name, long ref, int enumIndex, int bitMask) {
+			this.name = name;
+			this.ref = ref;
+			this.enumIndex = enumIndex;
+			this.bitMask = bitMask;
+		}
+	}
+}
@@ -30,7 +30,6 @@ import com.heliosapm.shorthand.collectors.EnumCollectors;
 import com.heliosapm.shorthand.collectors.ICollector;
 import com.heliosapm.shorthand.util.unsafe.UnsafeAdapter;
 import com.higherfrequencytrading.chronicle.Excerpt;
-import com.higherfrequencytrading.chronicle.impl.IndexedChronicle;
 
 /**
  * <p>Title: ChronicleOffset</p>
@@ -88,11 +87,15 @@ public enum ChronicleOffset {
 	/** The length of the known part of the entry in bytes */
 	public static final int HEADER_SIZE;
 
-	/** The name index chronicle store */
-	private static final ChronicleStore<?> chronicleStore  = ChronicleStore.getInstance();
+	/**
+	 * Returns the chronicle store. Resolved on use rather than on class initialization, since the store's name index
+	 * loader threads use these offsets, with their own excerpts, before the store is published.
+	 * @return the chronicle store
+	 */
+	private static ChronicleStore<?> chronicleStore() {
+		return ChronicleStore.getInstance();
+	}
 
-	/** The name index chronicle */
-	private static final IndexedChronicle chronicle = chronicleStore.nameIndex;
 	
 	static {
 		int offset = 0;
@@ -121,7 +124,7 @@ public enum ChronicleOffset {
 	public long get(long index, Excerpt ex) {
 		final boolean closeEx = ex==null;
 		if(ex==null) {
-			ex = chronicle.createExcerpt();
+			ex = chronicleStore().nameIndex.createExcerpt();
 		}		
 		try {
 			ex.index(index);
@@ -154,7 +157,7 @@ public enum ChronicleOffset {
 	public void set(long value, long index, Excerpt ex) {
 		final boolean closeEx = ex==null;
 		if(ex==null) {
-			ex = chronicle.createExcerpt();
+			ex = chronicleStore().nameIndex.createExcerpt();
 		}		
 		try {
 			ex.index(index);
@@ -192,7 +195,7 @@ public enum ChronicleOffset {
 	public static long[] getTier1Indexes(long index, Excerpt ex) {
 		final boolean closeEx = ex==null;
 		if(ex==null) {
-			ex = chronicle.createExcerpt();
+			ex = chronicleStore().nameIndex.createExcerpt();
 		}		
 		try {
 			spin(ex, index);
@@ -201,7 +204,7 @@ public enum ChronicleOffset {
 			int nameSize = ex.readInt();
 			int indexCount = ex.readInt();
 			ex.skipBytes(nameSize);
-			return chronicleStore.readLongArray(ex, indexCount);
+			return ChronicleStore.readLongArray(ex, indexCount);
 		} finally {
 			if(closeEx) ex.close();
 		}				
@@ -216,7 +219,7 @@ public enum ChronicleOffset {
 	public static String getName(long index, Excerpt ex) {
 		final boolean closeEx = ex==null;
 		if(ex==null) {
-			ex = chronicle.createExcerpt();
+			ex = chronicleStore().nameIndex.createExcerpt();
 		}		
 		try {
 			spin(ex, index); 
@@ -231,6 +234,20 @@ public enum ChronicleOffset {
 		}		
 	}
 	
+	/**
+	 * Binds the passed view to the metric name of the name index entry at the passed address, without copying the name.
+	 * The view is valid until the excerpt is moved.
+	 * @param index The index of the target name index entry
+	 * @param ex The excerpt to read from
+	 * @param view The view to bind
+	 * @return the bound view
+	 */
+	public static ExcerptCharSequence getName(long index, Excerpt ex, ExcerptCharSequence view) {
+		spin(ex, index); 
+		ex.index(index);
+		return view.bind(ex, Enabled.offset + Enabled.size, ex.readInt(NameSize.offset));
+	}
+	
 	/**
 	 * Returns the metric name for the name index entry at the passed address
 	 * @param index The index of the target name index entry
@@ -258,7 +275,7 @@ public enum ChronicleOffset {
 	public static boolean isDeleted(long index, Excerpt ex) {
 		final boolean closeEx = ex==null;
 		if(ex==null) {
-			ex = chronicle.createExcerpt();
+			ex = chronicleStore().nameIndex.createExcerpt();
 		}		
 		try {
 			spin(ex, index); 
@@ -357,13 +374,13 @@ public enum ChronicleOffset {
 	public static long writeNewNameIndex(int enumIndex, int bitMask, String metricName, Excerpt ex) {
 		final boolean closeEx = ex==null;
 		long[] periods = PeriodClock.getInstance().getCurrentPeriod();
-		Excerpt dataEx = chronicleStore.tier1Data.createExcerpt();
+		Excerpt dataEx = chronicleStore().tier1Data.createExcerpt();
 		if(ex==null) {
-			ex = ChronicleStore.getInstance().nameIndex.createExcerpt();			
+			ex = chronicleStore().nameIndex.createExcerpt();			
 		}
 		try {
 			Class<Enum<?>> clazz = (Class<Enum<?>>) EnumCollectors.getInstance().type(enumIndex);
-			chronicleStore.getEnum(clazz.getName());
+			chronicleStore().getEnum(clazz.getName());
 			ICollector<?>[] collectors = (ICollector<?>[]) clazz.getEnumConstants();
 			int dataIndexCount = collectors.length;
 			ex.startExcerpt(HEADER_SIZE + metricName.getBytes().length + 1 + (dataIndexCount << 3));
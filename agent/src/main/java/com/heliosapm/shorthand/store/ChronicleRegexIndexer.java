@@ -24,22 +24,28 @@
  */
 package com.heliosapm.shorthand.store;
 
+import gnu.trove.list.array.TLongArrayList;
+
 import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.management.ListenerNotFoundException;
@@ -52,6 +58,10 @@ import javax.management.NotificationListener;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.heliosapm.shorthand.ShorthandProperties;
+import com.heliosapm.shorthand.store.ChronicleTokenIndex.RegexPlan;
+import com.heliosapm.shorthand.store.ChronicleTrigramIndex.TrigramQuery;
+import com.heliosapm.shorthand.util.ConfigurationHelper;
 import com.heliosapm.shorthand.util.jmx.JMXHelper;
 import com.heliosapm.shorthand.util.unsafe.UnsafeAdapter;
 import com.heliosapm.shorthand.util.unsafe.collections.ConcurrentLongSlidingWindow;
@@ -77,8 +87,10 @@ public class ChronicleRegexIndexer implements ChronicleRegexIndexerMBean, Notifi
 	protected final Cache<String, Pattern> patternCache = CacheBuilder.newBuilder().build();	
 	/** The chronicle caches */
 	protected final Cache<String, Chronicle> regexChronicles = CacheBuilder.newBuilder().build();
+	/** The complete regex index chronicles the writer thread appends new names to. Only updated holding the token index monitor */
+	protected final Map<String, Chronicle> writerChronicles = new ConcurrentHashMap<String, Chronicle>();
 	/** The name index chronicle */
-	protected final Chronicle nameIndex;
+	protected volatile Chronicle nameIndex;
 	/** The current chronicle directory name */
 	protected final File chronicleDir;
 	
@@ -97,8 +109,10 @@ public class ChronicleRegexIndexer implements ChronicleRegexIndexerMBean, Notifi
 	 
 	
 	
-	/** A queue of index pending metric names */
-	protected final ArrayBlockingQueue<NameIndex> pending = new ArrayBlockingQueue<NameIndex>(1024, false); 
+	/** The ring of index pending metric names */
+	protected final NameEventRing pending = new NameEventRing(ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.STORE_INDEX_RING_PROP, ShorthandProperties.DEFAULT_STORE_INDEX_RING));
+	/** The number of name index records re-read from the name index because they were missed by the pending ring */
+	protected final AtomicLong rescannedNames = new AtomicLong(0L);
 	/** A thread pool to process indexing and search tasks asynchronously */
 	protected final ExecutorService threadPool = Executors.newFixedThreadPool(ManagementFactory.getOperatingSystemMXBean().getAvailableProcessors(), new ThreadFactory(){
 		protected final AtomicLong serial = new AtomicLong();
@@ -114,35 +128,141 @@ public class ChronicleRegexIndexer implements ChronicleRegexIndexerMBean, Notifi
 	
 	/** The delegate notification broadcaster */
 	protected final NotificationBroadcasterSupport notificationBroadcaster = new NotificationBroadcasterSupport(threadPool, new MBeanNotificationInfo[] {
-			new MBeanNotificationInfo(new String[]{NOTIF_NEW_METRIC}, Notification.class.getName(), "Notification emitted on a new metric name"),
-			new MBeanNotificationInfo(new String[]{NOTIF_STALE_METRIC}, Notification.class.getName(), "Notification emitted on a stale metric name")
+			new MBeanNotificationInfo(new String[]{NOTIF_NEW_METRIC}, Notification.class.getName(), "Notification emitted with the new metric names of a period"),
+			new MBeanNotificationInfo(new String[]{NOTIF_STALE_METRIC}, Notification.class.getName(), "Notification emitted with the stale metric names of a period")
 	}); 
+	/** The pipeline matching and coalescing metric name events for the notification listeners */
+	protected final MetricNotificationPipeline notificationPipeline = new MetricNotificationPipeline(this, threadPool);
 
 	
+	/** The minimum number of name index records scanned by each regex index build task */
+	protected final long scanChunk = Math.max(1, ConfigurationHelper.getLongSystemThenEnvProperty(ShorthandProperties.STORE_INDEX_SCAN_CHUNK_PROP, ShorthandProperties.DEFAULT_STORE_INDEX_SCAN_CHUNK));
+	/** The maximum number of threads scanning for one regex index build */
+	protected final int scanThreads = ManagementFactory.getOperatingSystemMXBean().getAvailableProcessors();
+	/** The number of regex index builds in progress */
+	protected final AtomicInteger buildsInProgress = new AtomicInteger(0);
+	/** The number of name index records to scan by the regex index builds in progress */
+	protected final AtomicLong buildRecordsTotal = new AtomicLong(0L);
+	/** The number of name index records scanned by the regex index builds in progress */
+	protected final AtomicLong buildRecordsScanned = new AtomicLong(0L);
+	
+	/** The regex plans keyed by the regex */
+	protected final Cache<String, RegexPlan> planCache = CacheBuilder.newBuilder().build();
+	/** The inverted token index of the name index. Updates and resets are synchronized on it */
+	protected final ChronicleTokenIndex tokenIndex = new ChronicleTokenIndex();
+	/** The trigram index of the name index, or null if disabled. Updated and reset with the token index */
+	protected final ChronicleTrigramIndex trigramIndex = ConfigurationHelper.getBooleanSystemThenEnvProperty(ShorthandProperties.STORE_TRIGRAM_INDEX_PROP, ShorthandProperties.DEFAULT_STORE_TRIGRAM_INDEX) ? new ChronicleTrigramIndex() : null;
+	/** Indicates if the token and trigram indexes have caught up with the name index and can serve searches */
+	protected volatile boolean tokenIndexReady = false;
+	/** Indicates a catch up with the name index has been requested */
+	protected volatile boolean catchUpRequested = false;
+	/** The longest time the writer thread parks before checking for a catch up request, in ns. */
+	protected static final long WRITER_PARK_NS = 100000000L;
+	
 	/** The index writer thread */
 	protected final Thread indexUpdater = new Thread("ChronicleRegexIndexerWriterThread") {
 		public void run() {
 			while(true) {
 				try {
-					NameIndex newName = pending.take();					
-					for(Map.Entry<String, Pattern> entry: patternCache.asMap().entrySet()) {
-						if(entry.getValue().matcher(newName.name).matches()) {
-							Chronicle c = regexChronicles.getIfPresent(entry.getKey());
-							Excerpt ex = c.createExcerpt();
-							ex.startExcerpt(UnsafeAdapter.LONG_SIZE);
-							ex.writeLong(newName.index);
-							ex.finish();
-							ex.close();
-							indexedNames.incrementAndGet();
+					if(catchUpRequested) {
+						catchUpRequested = false;
+						synchronized(tokenIndex) {
+							catchUp(nameIndex.size()-1);
+							tokenIndexReady = true;
 						}
 					}
-				} catch (InterruptedException iex) {
-					/* No Op */
+					if(!pending.poll()) {
+						pending.await(WRITER_PARK_NS);
+						continue;
+					}
+					final long index = pending.getIndex();
+					synchronized(tokenIndex) {
+						// Names at or below the high index were already picked up from the name index by a catch up
+						if(index > tokenIndex.getHighIndex()) {
+							// Fill in any names missed by a full ring
+							catchUp(index-1);
+							indexName(index, pending.getName());
+						}
+					}
+				} catch (Exception ex) {
+					loge("Metric name indexing failed: %s", ex);
 				}
 			}
 		}
 	};
 	
+	/**
+	 * Reads the name index records after the token index's high index up to the passed index and indexes them as if they had been submitted. 
+	 * Must be called by the writer thread holding the token index monitor.
+	 * @param to The last name index to add (inclusive)
+	 */
+	protected void catchUp(long to) {
+		long from = tokenIndex.getHighIndex()+1;
+		if(from>to) return;
+		Excerpt nameEx = nameIndex.createExcerpt();
+		ExcerptCharSequence name = new ExcerptCharSequence();
+		try {
+			for(long index = from; index <= to; index++) {
+				if(!nameEx.index(index)) break;
+				if(ChronicleOffset.isDeleted(index, nameEx)) continue;
+				indexName(index, ChronicleOffset.getName(index, nameEx, name));
+				rescannedNames.incrementAndGet();
+			}
+		} finally {
+			nameEx.close();
+		}
+	}
+	
+	/**
+	 * Adds a name to the token and trigram indexes and to the regex indexes it matches.
+	 * Must be called holding the token index monitor, which keeps the regex index appends in name index order.
+	 * @param index The name index
+	 * @param name The metric name
+	 */
+	protected void indexName(long index, CharSequence name) {
+		Set<String> tokens = tokenIndex.add(index, name);
+		if(trigramIndex!=null) trigramIndex.add(index, name);
+		if(writerChronicles.isEmpty()) return;
+		for(Map.Entry<String, Chronicle> entry: writerChronicles.entrySet()) {
+			RegexPlan plan = planCache.getIfPresent(entry.getKey());
+			if(plan!=null && !plan.mayMatch(tokens)) continue;
+			Pattern p = patternCache.getIfPresent(entry.getKey());
+			if(p!=null && p.matcher(name).matches()) {
+				if(appendIndex(entry.getValue(), index)) indexedNames.incrementAndGet();
+			}
+		}
+	}
+	
+	/**
+	 * Appends a name index to a regex index chronicle unless the chronicle already ends with it or a later one
+	 * @param c The regex index chronicle
+	 * @param index The name index to append
+	 * @return true if the index was appended
+	 */
+	protected boolean appendIndex(Chronicle c, long index) {
+		Excerpt ex = c.createExcerpt();
+		try {
+			// Entry 0 is the regex header
+			long last = c.size()-1;
+			if(last > 0 && ex.index(last) && ex.readLong() >= index) return false;
+			ex.startExcerpt(UnsafeAdapter.LONG_SIZE);
+			ex.writeLong(index);
+			ex.finish();
+			return true;
+		} finally {
+			ex.close();
+		}
+	}
+	
+	/**
+	 * Requests the writer thread to bring the token index up to date with the name index, after which the token index serves searches.
+	 * Called by the store once the name index has been loaded.
+	 */
+	void requestCatchUp() {
+		catchUpRequested = true;
+		pending.wake();
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#getIndexCount()
@@ -173,7 +293,8 @@ public class ChronicleRegexIndexer implements ChronicleRegexIndexerMBean, Notifi
 			Chronicle c = getChronicleIndex(namePattern);
 			UnsafeLongArray lss = UnsafeArrayBuilder.newBuilder().buildLongArray();
 			ex = c.createExcerpt();
-			if(ex.index(1)) {
+			// Entry 0 is the regex header
+			if(ex.index(0)) {
 				while(ex.nextIndex()) {
 					lss.append(ex.readLong());
 				}
@@ -196,9 +317,12 @@ public class ChronicleRegexIndexer implements ChronicleRegexIndexerMBean, Notifi
 	 * @param index The metric index
 	 */
 	public void submitNewName(String name, long index) {
-		if(pending.offer(new NameIndex(name, index))) {
-			submittedNames.incrementAndGet();
-		}		
+		submittedNames.incrementAndGet();
+		if(!pending.offer(name, index)) {
+			// The ring is full so the writer thread will pick the missed name up from the name index
+			catchUpRequested = true;
+			pending.wake();
+		}
 	}
 	
 	
@@ -215,6 +339,31 @@ public class ChronicleRegexIndexer implements ChronicleRegexIndexerMBean, Notifi
 		JMXHelper.registerMBean(this, OBJECT_NAME);
 	}
 	
+	/**
+	 * Switches this indexer to a new generation of the name index chronicle.
+	 * The existing regex indexes reference the old generation's indexes so they are dropped and
+	 * will be rebuilt on their next search. Names pending indexing are also dropped since the rebuild scan picks them up,
+	 * and the token index is rebuilt from the new generation.
+	 * @param newNameIndex The new name index chronicle
+	 * @return the dropped regex index chronicles which the caller should close and delete once no longer in use
+	 */
+	Set<Chronicle> reset(Chronicle newNameIndex) {
+		Set<Chronicle> dropped = new HashSet<Chronicle>(regexChronicles.asMap().values());
+		synchronized(tokenIndex) {
+			tokenIndexReady = false;
+			nameIndex = newNameIndex;
+			pending.discard();
+			tokenIndex.clear();
+			if(trigramIndex!=null) trigramIndex.clear();
+			writerChronicles.clear();
+		}
+		regexChronicles.invalidateAll();
+		patternCache.invalidateAll();
+		planCache.invalidateAll();
+		requestCatchUp();
+		return dropped;
+	}
+	
 	/**
 	 * Returns the regex index chronicle for the passed pattern
 	 * @param regex The regex pattern to get the chronicle for
@@ -222,41 +371,369 @@ public class ChronicleRegexIndexer implements ChronicleRegexIndexerMBean, Notifi
 	 */
 	protected Chronicle getChronicleIndex(final String regex)  {
 		try {
-			return regexChronicles.get(regex, new Callable<Chronicle>(){
+			Chronicle chronicle = regexChronicles.get(regex, new Callable<Chronicle>(){
 				@Override
 				public Chronicle call() throws Exception {
 					Chronicle c = getChronicle("regexIndex-" + chronicleSerial.incrementAndGet());
-					Excerpt nameEx = nameIndex.createExcerpt();
-					nameEx.index(0);
+					final Chronicle names = nameIndex;
 					Excerpt ex = c.createExcerpt();
 					Pattern p = Pattern.compile(regex);
+					RegexPlan plan = RegexPlan.plan(regex);
+					planCache.put(regex, plan);
 					patternCache.put(regex, p);
 					ex.startExcerpt(regex.getBytes().length + 8);
 					ex.writeInt(regex.getBytes().length);
 					ex.write(regex.getBytes());					
 					ex.finish();
 					log("Creating Regex Chronicle for [%s]", regex);
-					while(nameEx.nextIndex()) {
-						long newIndex = nameEx.index();
-						if(ChronicleOffset.isDeleted(newIndex, nameEx)) continue;
-						if(p.matcher(ChronicleOffset.getName(newIndex)).matches()) {
-							ex.startExcerpt(UnsafeAdapter.LONG_SIZE);
-							ex.writeLong(newIndex);
-							ex.finish();
-							indexedNames.incrementAndGet();
+					long scanFrom = 1;
+					if(tokenIndexReady) {
+						// Only the names selected by the regex's token and trigram plans need the regex, plus any the indexes have not caught up with
+						TrigramQuery trigramPlan = trigramIndex==null ? TrigramQuery.ALL_QUERY : TrigramQueryPlanner.plan(regex);
+						long highIndex = 0;
+						long[] candidates = null;
+						synchronized(tokenIndex) {
+							if(tokenIndexReady) {
+								highIndex = tokenIndex.getHighIndex();
+								if(!plan.isEmpty()) candidates = tokenIndex.candidates(plan.tokens, plan.prefixes);
+								if(!trigramPlan.isAll()) {
+									long[] trigramCandidates = trigramIndex.query(trigramPlan);
+									if(trigramCandidates!=null) candidates = candidates==null ? trigramCandidates : ChronicleTokenIndex.intersect(candidates, trigramCandidates);
+								}
+							}
 						}
+						if(candidates!=null) {
+							scan(names, p, candidates, 0, candidates.length, ex);
+							scanFrom = highIndex+1;
+						}
+					}
+					final long size = names.size();
+					if(scanFrom < size) {
+						scan(names, p, null, scanFrom, size-scanFrom, ex);
 					}
-					nameEx.close();
 					ex.close();
+					// The writer only sees the index once the names it indexed during the build are appended, so appends stay in name index order
+					synchronized(tokenIndex) {
+						if(names!=nameIndex) throw new IllegalStateException("The name index was reset while building the regex index for [" + regex + "]");
+						fillIndex(c, p, size);
+						writerChronicles.put(regex, c);
+					}
 					return c;
 				}
 			});
+			return chronicle;
 		} catch (Exception ex) {
 			ex.printStackTrace(System.err);
 			throw new RuntimeException(ex);
 		}
 	}
 
+	/**
+	 * Appends the matching names indexed by the writer thread while a new regex index was being built and was not yet visible to it.
+	 * Must be called holding the token index monitor, so every name up to the token index's high index has been indexed,
+	 * and the regex index must be made visible to the writer before the monitor is released so it is found for all later names.
+	 * @param c The new regex index chronicle
+	 * @param p The regex index's pattern
+	 * @param from The first name index not scanned by the build
+	 */
+	protected void fillIndex(Chronicle c, Pattern p, long from) {
+		long to = tokenIndex.getHighIndex();
+		if(from > to || nameIndex.size() <= from) return;
+		Excerpt nameEx = nameIndex.createExcerpt();
+		ExcerptCharSequence name = new ExcerptCharSequence();
+		try {
+			for(long index = from; index <= to; index++) {
+				if(!nameEx.index(index)) break;
+				if(ChronicleOffset.isDeleted(index, nameEx)) continue;
+				if(p.matcher(ChronicleOffset.getName(index, nameEx, name)).matches()) appendIndex(c, index);
+			}
+		} finally {
+			nameEx.close();
+		}
+	}
+
+	/**
+	 * Evaluates the passed pattern against a run of name index records and appends the indexes of the matching names, in order, to a regex index chronicle.
+	 * Runs of more than {@link #scanChunk} records are split into chunks scanned in parallel by the calling thread and the thread pool. 
+	 * The calling thread takes chunks like the pool threads so the scan completes even when the pool is busy.
+	 * @param names The name index chronicle
+	 * @param p The regex index's pattern
+	 * @param candidates The sorted candidate name indexes to evaluate, or null to evaluate a contiguous range of the name index
+	 * @param from The offset of the first candidate, or the first name index of the range
+	 * @param count The number of records to evaluate
+	 * @param ex The regex index chronicle excerpt
+	 * @throws Exception thrown if the scan fails or is interrupted
+	 */
+	protected void scan(final Chronicle names, final Pattern p, final long[] candidates, final long from, final long count, Excerpt ex) throws Exception {
+		final int chunks = (int)Math.max(1, (count + scanChunk - 1) / scanChunk);
+		final long chunkSize = (count + chunks - 1) / chunks;
+		final long[][] results = new long[chunks][];
+		final AtomicInteger nextChunk = new AtomicInteger(0);
+		final CountDownLatch done = new CountDownLatch(chunks);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		buildsInProgress.incrementAndGet();
+		buildRecordsTotal.addAndGet(count);
+		final Runnable worker = new Runnable() {
+			@Override
+			public void run() {
+				NameMatcher matcher = null;
+				int chunk;
+				while((chunk = nextChunk.getAndIncrement()) < chunks) {
+					try {
+						if(matcher==null) matcher = new NameMatcher(names, p);
+						long start = from + (chunk * chunkSize), end = Math.min(from + count, start + chunkSize);
+						results[chunk] = candidates==null ? matcher.matchRange(start, end) : matcher.matchCandidates(candidates, (int)start, (int)end);
+						buildRecordsScanned.addAndGet(end-start);
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					} finally {
+						done.countDown();
+					}
+				}
+				if(matcher!=null) matcher.close();
+			}
+		};
+		try {
+			for(int i = 1; i < Math.min(chunks, scanThreads); i++) {
+				threadPool.execute(worker);
+			}
+			worker.run();
+			done.await();
+			if(failure.get()!=null) throw new RuntimeException("Regex index scan failed for [" + p + "]", failure.get());
+			for(long[] matches: results) {
+				for(long index: matches) {
+					ex.startExcerpt(UnsafeAdapter.LONG_SIZE);
+					ex.writeLong(index);
+					ex.finish();
+				}
+				indexedNames.addAndGet(matches.length);
+			}
+		} finally {
+			buildsInProgress.decrementAndGet();
+			buildRecordsTotal.addAndGet(-count);
+			buildRecordsScanned.addAndGet(-count);
+		}
+	}
+	
+	/**
+	 * <p>Title: NameMatcher</p>
+	 * <p>Description: Evaluates a pattern against name index records for one scanning thread, matching against a view
+	 * over each record's name bytes rather than allocating a string per record.</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.store.ChronicleRegexIndexer.NameMatcher</code></p>
+	 */
+	protected static class NameMatcher {
+		/** The name index excerpt */
+		protected final Excerpt nameEx;
+		/** The reused matcher */
+		protected final Matcher matcher;
+		/** The reused view of the current name */
+		protected final ExcerptCharSequence name = new ExcerptCharSequence();
+		/** The matched name indexes */
+		protected final TLongArrayList matches = new TLongArrayList();
+		
+		/**
+		 * Creates a new NameMatcher
+		 * @param names The name index chronicle
+		 * @param p The pattern to evaluate
+		 */
+		protected NameMatcher(Chronicle names, Pattern p) {
+			nameEx = names.createExcerpt();
+			matcher = p.matcher("");
+		}
+		
+		/**
+		 * Evaluates a contiguous range of the name index
+		 * @param from The first name index (inclusive)
+		 * @param to The last name index (exclusive)
+		 * @return the matching name indexes in order
+		 */
+		public long[] matchRange(long from, long to) {
+			matches.resetQuick();
+			for(long index = from; index < to; index++) {
+				if(!nameEx.index(index)) break;
+				if(matches(index)) matches.add(index);
+			}
+			return matches.toArray();
+		}
+		
+		/**
+		 * Evaluates a range of candidate name indexes
+		 * @param candidates The candidate name indexes
+		 * @param from The offset of the first candidate (inclusive)
+		 * @param to The offset of the last candidate (exclusive)
+		 * @return the matching name indexes in order
+		 */
+		public long[] matchCandidates(long[] candidates, int from, int to) {
+			matches.resetQuick();
+			for(int i = from; i < to; i++) {
+				if(matches(candidates[i])) matches.add(candidates[i]);
+			}
+			return matches.toArray();
+		}
+		
+		/**
+		 * Determines if the name at the passed index is not deleted and matches the pattern
+		 * @param index The name index
+		 * @return true if the name matches
+		 */
+		protected boolean matches(long index) {
+			if(ChronicleOffset.isDeleted(index, nameEx)) return false;
+			return matcher.reset(ChronicleOffset.getName(index, nameEx, name)).matches();
+		}
+		
+		/**
+		 * Releases the excerpt
+		 */
+		public void close() {
+			try { nameEx.close(); } catch (Exception x) {/* No Op */}
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#tokenSearch(java.lang.String)
+	 */
+	@Override
+	public long[] tokenSearch(String query) {
+		if(!tokenIndexReady) throw new IllegalStateException("The token index is not ready");
+		long start = System.nanoTime();
+		long[] candidates = tokenIndex.query(query);
+		Excerpt nameEx = nameIndex.createExcerpt();
+		try {
+			long[] matches = new long[candidates.length];
+			int cnt = 0;
+			for(long index: candidates) {
+				if(!ChronicleOffset.isDeleted(index, nameEx)) matches[cnt++] = index;
+			}
+			searchTimes.insert(System.nanoTime()-start);
+			return cnt==matches.length ? matches : Arrays.copyOf(matches, cnt);
+		} finally {
+			nameEx.close();
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#tokenSearchNames(java.lang.String)
+	 */
+	@Override
+	public String[] tokenSearchNames(String query) {
+		long[] indexes = tokenSearch(query);
+		String[] names = new String[indexes.length];
+		Excerpt nameEx = nameIndex.createExcerpt();
+		try {
+			for(int i = 0; i < indexes.length; i++) {
+				names[i] = ChronicleOffset.getName(indexes[i], nameEx);
+			}
+			return names;
+		} finally {
+			nameEx.close();
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#getTokenCount()
+	 */
+	@Override
+	public int getTokenCount() {
+		return tokenIndex.getTokenCount();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#getIndexBuildsInProgress()
+	 */
+	@Override
+	public int getIndexBuildsInProgress() {
+		return buildsInProgress.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#getIndexBuildProgress()
+	 */
+	@Override
+	public int getIndexBuildProgress() {
+		long total = buildRecordsTotal.get();
+		if(total<=0) return 100;
+		return (int)Math.min(100, buildRecordsScanned.get() * 100 / total);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#getNotificationQueueDepth()
+	 */
+	@Override
+	public int getNotificationQueueDepth() {
+		return notificationPipeline.getQueueDepth();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#getNotificationDropCount()
+	 */
+	@Override
+	public long getNotificationDropCount() {
+		return notificationPipeline.getDroppedCount();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#getNotificationBatchCount()
+	 */
+	@Override
+	public long getNotificationBatchCount() {
+		return notificationPipeline.getDeliveredCount();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#getNotificationSubscriptionCount()
+	 */
+	@Override
+	public int getNotificationSubscriptionCount() {
+		return notificationPipeline.getSubscriptionCount();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#getTrigramCount()
+	 */
+	@Override
+	public int getTrigramCount() {
+		return trigramIndex==null ? 0 : trigramIndex.getTrigramCount();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#getTrigramPostingCount()
+	 */
+	@Override
+	public long getTrigramPostingCount() {
+		return trigramIndex==null ? 0 : trigramIndex.getPostingCount();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#explain(java.lang.String)
+	 */
+	@Override
+	public String explain(String regex) {
+		Pattern.compile(regex);
+		return "tokens: " + RegexPlan.plan(regex) + ", trigrams: " + (trigramIndex==null ? "disabled" : TrigramQueryPlanner.plan(regex).toString());
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#isTokenIndexReady()
+	 */
+	@Override
+	public boolean isTokenIndexReady() {
+		return tokenIndexReady;
+	}
 
 	/**
 	 * Acquires the named chronicle
@@ -290,6 +767,33 @@ public class ChronicleRegexIndexer implements ChronicleRegexIndexerMBean, Notifi
 		return indexedNames.get();
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#getPendingNameCount()
+	 */
+	@Override
+	public int getPendingNameCount() {
+		return pending.size();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#getPendingOverflowCount()
+	 */
+	@Override
+	public long getPendingOverflowCount() {
+		return pending.getOverflowCount();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#getRescannedNameCount()
+	 */
+	@Override
+	public long getRescannedNameCount() {
+		return rescannedNames.get();
+	}
+	
 	/**
 	 * Simple out formatted logger
 	 * @param fmt The format of the message
@@ -299,6 +803,15 @@ public class ChronicleRegexIndexer implements ChronicleRegexIndexerMBean, Notifi
 		System.out.println(String.format(fmt, args));
 	}	
 	
+	/**
+	 * Simple err formatted logger
+	 * @param fmt The format of the message
+	 * @param args The message arguments
+	 */
+	public static void loge(String fmt, Object...args) {
+		System.err.println(String.format(fmt, args));
+	}	
+	
 	/**
 	 * {@inheritDoc}
 	 * @see com.heliosapm.shorthand.store.ChronicleRegexIndexerMBean#getAverageSearchTimeNanos()
@@ -344,46 +857,27 @@ public class ChronicleRegexIndexer implements ChronicleRegexIndexerMBean, Notifi
 		return map;
 	}
 	
-	/** A cache of sets of subscribed notification listeners keyed by the pattern they're subscribed to */
-	protected final Cache<Pattern, Set<NotificationListener>> subscriptions = CacheBuilder.newBuilder().build();
-	
 	/** The runtime name */
 	public static final String RUNTIME_ID = ManagementFactory.getRuntimeMXBean().getName();
 	/** The source of notiifcations */
 	public static final String NOTIF_SOURCE = RUNTIME_ID + "/" + OBJECT_NAME;
 	
 	/**
-	 * Emmits a metric name notification to subscribers that supplied a matching pattern
+	 * Queues a metric name event for delivery to subscribers that supplied a matching pattern and to the unfiltered listeners.
+	 * Events are coalesced per listener and delivered when {@link #deliverNotifications()} is called.
 	 * @param notifType The notification type to send
 	 * @param name The new metric name
 	 * @param index The metric index
 	 */
 	public void notify(final String notifType, final String name, final long index) {
-		Set<NotificationListener> matches = new HashSet<NotificationListener>();
-		Map<NotificationListener, Pattern> matchers = new HashMap<NotificationListener, Pattern>();
-		for(Pattern p: subscriptions.asMap().keySet()) {
-			try {
-				if(p.matcher(name).matches()) {
-					for(NotificationListener listener: subscriptions.getIfPresent(p)) {
-						if(!matchers.containsKey(listener)) {
-							matchers.put(listener, p);
-						}
-					}
-					matches.addAll(subscriptions.getIfPresent(p));
-				}
-			} catch (Exception x) {/* No Op */}
-		}
-		final String messagePrefix = notifType.equals(NOTIF_NEW_METRIC) ? "New" : "Stale";
- 		final Notification notif = new Notification(notifType, NOTIF_SOURCE, notificationSerial.incrementAndGet(), System.currentTimeMillis(), String.format("%s Metric [%s:%s]", messagePrefix, name, index));
-		for(final Map.Entry<NotificationListener, Pattern> entry: matchers.entrySet()) {
-			threadPool.execute(new Runnable() {
-				@Override
-				public void run() {					
-					entry.getKey().handleNotification(notif, entry.getValue().toString());
-				}
-			});
-		}
-		sendNotification(notif);
+		notificationPipeline.submit(NOTIF_STALE_METRIC.equals(notifType), name, index);
+	}
+	
+	/**
+	 * Delivers the coalesced metric name events queued since the last delivery
+	 */
+	public void deliverNotifications() {
+		notificationPipeline.deliver();
 	}
 	
 	/**
@@ -405,23 +899,15 @@ public class ChronicleRegexIndexer implements ChronicleRegexIndexerMBean, Notifi
 	
 	/**
 	 * <p>If the passed handback is a {@link Pattern} or a {@link CharSequence} which is compilable into a {@link Pattern}, the passed listener will
-	 * be subscribed to a notifications regarding new or stale metric names that match the resulting pattern. Otherwise the listener will be notified of all events.</p> 
+	 * be subscribed to a notifications regarding new or stale metric names that match the resulting pattern. Otherwise the listener will be notified of all events.
+	 * Events are delivered in batches, one notification per event type and period, with a user data map of metric name indexes keyed by name.</p> 
 	 * {@inheritDoc}
 	 * @see javax.management.NotificationBroadcaster#addNotificationListener(javax.management.NotificationListener, javax.management.NotificationFilter, java.lang.Object)
 	 */
 	public void addNotificationListener(NotificationListener listener, NotificationFilter filter, Object handback) {
 		Pattern p = getPattern(handback);
 		if(p!=null) {
-			try {
-				subscriptions.get(p, new Callable<Set<NotificationListener>>() {
-					@Override
-					public Set<NotificationListener> call() throws Exception {						
-						return new CopyOnWriteArraySet<NotificationListener>();
-					}
-				}).add(listener);
-			} catch (Exception ex) {
-				throw new RuntimeException("Failed to register listener", ex);
-			}
+			notificationPipeline.subscribe(p, listener);
 			return;
 		}
 		notificationBroadcaster.addNotificationListener(listener, filter, handback);
@@ -462,16 +948,8 @@ public class ChronicleRegexIndexer implements ChronicleRegexIndexerMBean, Notifi
 	 */
 	public void removeNotificationListener(NotificationListener listener, NotificationFilter filter, Object handback) throws ListenerNotFoundException {
 		Pattern p = getPattern(handback);
-		if(p!=null) {
-			Set<NotificationListener> listeners = subscriptions.getIfPresent(p);
-			if(listeners!=null) {
-				if(listeners.remove(listener)) {
-					if(listeners.isEmpty()) {
-						subscriptions.invalidate(p);
-					}
-					return;  // unless a listener is found, the built-in removeNotificationListener is called
-				}
-			}
+		if(p!=null && notificationPipeline.unsubscribe(p, listener)) {
+			return;  // unless a listener is found, the built-in removeNotificationListener is called
 		}
 		notificationBroadcaster.removeNotificationListener(listener, filter, handback);
 		
@@ -482,20 +960,7 @@ public class ChronicleRegexIndexer implements ChronicleRegexIndexerMBean, Notifi
 	 * @see javax.management.NotificationBroadcaster#removeNotificationListener(javax.management.NotificationListener)
 	 */
 	public void removeNotificationListener(NotificationListener listener) throws ListenerNotFoundException {
-		boolean listenerFound = false;
-		Set<Pattern> removes = new HashSet<Pattern>();
-		for(Map.Entry<Pattern, Set<NotificationListener>> entry: subscriptions.asMap().entrySet()) {
-			if(entry.getValue().remove(listener)) {
-				listenerFound = true;
-				if(entry.getValue().isEmpty()) {
-					removes.add(entry.getKey());
-				}
-			}
-		}
-		if(!removes.isEmpty()) {
-			subscriptions.invalidateAll(removes);
-		}
-		if(!listenerFound) {
+		if(!notificationPipeline.unsubscribe(listener)) {
 			notificationBroadcaster.removeNotificationListener(listener);
 		}
 	}
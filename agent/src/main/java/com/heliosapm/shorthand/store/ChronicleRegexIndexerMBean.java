@@ -66,6 +66,91 @@ public interface ChronicleRegexIndexerMBean {
 	 */
 	public int count(String namePattern);
 	
+	/**
+	 * Returns the name indexes of metric names matching the passed token query.
+	 * Whitespace separated terms must all match, a term prefixed with <b><code>-</code></b> excludes,
+	 * <b><code>|</code></b> separates alternatives and tokens may be globbed with <b><code>*</code></b> and <b><code>?</code></b>.
+	 * e.g. <b><code>com.heliosapm jdbc*|jms -test</code></b>
+	 * @param query The token query
+	 * @return a [possibly zero length] sorted array of matching metric name indexes
+	 */
+	public long[] tokenSearch(String query);
+	
+	/**
+	 * Returns the metric names matching the passed token query
+	 * @param query The token query
+	 * @return a [possibly zero length] array of matching metric names
+	 * @see #tokenSearch(String)
+	 */
+	public String[] tokenSearchNames(String query);
+	
+	/**
+	 * Returns the number of distinct tokens in the token index
+	 * @return the number of distinct tokens
+	 */
+	public int getTokenCount();
+	
+	/**
+	 * Returns the number of regex index builds in progress
+	 * @return the number of regex index builds in progress
+	 */
+	public int getIndexBuildsInProgress();
+	
+	/**
+	 * Returns the percentage of the name index records scanned by the regex index builds in progress
+	 * @return the percentage scanned, 100 if no builds are in progress
+	 */
+	public int getIndexBuildProgress();
+	
+	/**
+	 * Returns the number of distinct trigrams in the trigram index
+	 * @return the number of distinct trigrams, zero if the trigram index is disabled
+	 */
+	public int getTrigramCount();
+	
+	/**
+	 * Returns the total number of name postings in the trigram index
+	 * @return the number of trigram postings, zero if the trigram index is disabled
+	 */
+	public long getTrigramPostingCount();
+	
+	/**
+	 * Returns the number of metric name events waiting to be matched against the notification subscriptions
+	 * @return the number of queued metric name events
+	 */
+	public int getNotificationQueueDepth();
+	
+	/**
+	 * Returns the number of metric name events dropped because the notification queue or a listener's batch was full
+	 * @return the number of dropped metric name events
+	 */
+	public long getNotificationDropCount();
+	
+	/**
+	 * Returns the number of metric name batch notifications delivered
+	 * @return the number of batch notifications delivered
+	 */
+	public long getNotificationBatchCount();
+	
+	/**
+	 * Returns the number of name patterns with subscribed notification listeners
+	 * @return the number of subscribed patterns
+	 */
+	public int getNotificationSubscriptionCount();
+	
+	/**
+	 * Describes the token and trigram plans used to narrow the names evaluated against the passed regex
+	 * @param regex The regex to explain
+	 * @return the plan description
+	 */
+	public String explain(String regex);
+	
+	/**
+	 * Indicates if the token index has caught up with the name index and is serving searches
+	 * @return true if the token index is ready
+	 */
+	public boolean isTokenIndexReady();
+	
 	/**
 	 * Returns the number of names submitted for indexing
 	 * @return the number of names submitted for indexing
@@ -77,6 +162,24 @@ public interface ChronicleRegexIndexerMBean {
 	 */
 	public long getIndexedNames();
 	
+	/**
+	 * Returns the number of submitted names waiting for the writer thread
+	 * @return the number of pending names
+	 */
+	public int getPendingNameCount();
+	
+	/**
+	 * Returns the number of submitted names that did not fit in the pending ring and were read back from the name index instead
+	 * @return the number of pending ring overflows
+	 */
+	public long getPendingOverflowCount();
+	
+	/**
+	 * Returns the number of names read back from the name index by catch ups
+	 * @return the number of rescanned names
+	 */
+	public long getRescannedNameCount();
+	
 	/**
 	 * Returns a map of index sizes keyed by the index regex pattern
 	 * @return a map of index sizes keyed by the index regex pattern
@@ -3,6 +3,8 @@
  */
 package com.heliosapm.shorthand.store;
 
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TLongLongHashMap;
 import gnu.trove.map.hash.TObjectIntHashMap;
 
 import java.io.File;
@@ -11,10 +13,17 @@ import java.io.RandomAccessFile;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
 import java.nio.ByteOrder;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadFactory;
@@ -39,17 +48,23 @@ import com.heliosapm.shorthand.ShorthandProperties;
 import com.heliosapm.shorthand.accumulator.AccumulatorThreadStats;
 import com.heliosapm.shorthand.accumulator.MemSpaceAccessor;
 import com.heliosapm.shorthand.accumulator.PeriodClock;
+import com.heliosapm.shorthand.broadcast.HeartbeatBroadcaster;
+import com.heliosapm.shorthand.broadcast.MetricBroadcaster;
 import com.heliosapm.shorthand.broadcast.StartupBroadcaster;
 import com.heliosapm.shorthand.collectors.EnumCollectors;
 import com.heliosapm.shorthand.collectors.ICollector;
 import com.heliosapm.shorthand.datamapper.IDataMapper;
+import com.heliosapm.shorthand.jmx.BulkMetricPublisher;
+import com.heliosapm.shorthand.jmx.BulkMetricPublisherMXBean;
 import com.heliosapm.shorthand.jmx.MetricJMXPublishOption;
+import com.heliosapm.shorthand.telemetry.AgentTelemetry;
 import com.heliosapm.shorthand.util.ConfigurationHelper;
 import com.heliosapm.shorthand.util.OrderedShutdownService;
 import com.heliosapm.shorthand.util.StringHelper;
 import com.heliosapm.shorthand.util.ThreadRenamer;
 import com.heliosapm.shorthand.util.jmx.JMXHelper;
 import com.heliosapm.shorthand.util.ref.RunnableReferenceQueue;
+import com.heliosapm.shorthand.util.unsafe.OffHeapSubsystem;
 import com.heliosapm.shorthand.util.unsafe.UnsafeAdapter;
 import com.heliosapm.shorthand.util.unsafe.collections.ConcurrentLongSlidingWindow;
 import com.heliosapm.shorthand.util.unsafe.collections.LongSortedSet;
@@ -104,8 +119,16 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 	/** Notification thread pool */
 	protected final ThreadPoolExecutor notificationProcessors = new ThreadPoolExecutor(2, 2, 15000, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1000, false), this, this);
 	
+	/** The tier 1 write sequence, odd while a flush is writing period records to the tier 1 chronicle */
+	protected final AtomicLong tier1WriteSequence = new AtomicLong(0L);
+	
+	/** The end time of the last period flushed to the tier 1 chronicle */
+	protected volatile long lastFlushedPeriodEnd = -1L;
+	
 	/** The name indexing service */
 	protected final ChronicleRegexIndexer nameIndexer;
+	/** The live metric view sampled on each fast period, null if fast periods are disabled */
+	protected final LiveMetricView<T> liveView;
 	
 	/**
 	 * Acquires the singleton ChronicleStore instance
@@ -116,8 +139,10 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 		if(instance==null) {
 			synchronized(lock) {
 				if(instance==null) {
-					instance = new ChronicleStore();
-//					instance.loadSnapshotNameIndex();
+					ChronicleStore<?> store = new ChronicleStore();
+					// Published only once loaded, so nothing can snap, flush or compact against a partially loaded name index
+					store.loadNameIndex(ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.STORE_LOAD_THREADS_PROP, ShorthandProperties.DEFAULT_STORE_LOAD_THREADS));
+					instance = store;
 				}
 			}
 		}
@@ -131,6 +156,8 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 	public static final String ENUM_INDEX = "enumIndex";
 	/** The chronicle name for the tier 1 data */
 	public static final String TIER_1_DATA = "tier1Data";
+	/** The name of the file recording the current chronicle generation */
+	public static final String GENERATION_FILE = "generation";
 	
 	/** The known portion length of a name index entry */
 	public static final int NAME_ENTRY_SIZE = 
@@ -168,15 +195,44 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 	/** The store directory */
 	protected final File dataDir;
 	/** The store name index chronicle */
-	protected final IndexedChronicle nameIndex;
+	protected volatile IndexedChronicle nameIndex;
 	/** The store name index chronicle excerpt */
-	protected final Excerpt nameIndexEx;
+	protected volatile Excerpt nameIndexEx;
 	/** The store enum index chronicle */
 	protected final IntIndexedChronicle enumIndex;
 	/** The store enum index chronicle excerpt */
 	protected final Excerpt enumIndexEx;
 	/** The tier 1 data chronicle */
-	protected final IndexedChronicle tier1Data;
+	protected volatile IndexedChronicle tier1Data;
+	/** The current generation of the name index and tier 1 data chronicles */
+	protected volatile long generation;
+	/** The number of name index records marked deleted since the last compaction */
+	protected final AtomicLong deletedRecords = new AtomicLong(0L);
+	/** The elapsed time in ms. after which an idle unloaded metric is deleted */
+	protected volatile long retention = ConfigurationHelper.getLongSystemThenEnvProperty(ShorthandProperties.STORE_RETENTION_PROP, ShorthandProperties.DEFAULT_STORE_RETENTION);
+	/** The ratio of deleted to total name index records that triggers a compaction */
+	protected volatile float compactRatio = ConfigurationHelper.getFloatSystemThenEnvProperty(ShorthandProperties.STORE_COMPACT_RATIO_PROP, ShorthandProperties.DEFAULT_STORE_COMPACT_RATIO);
+	/** The minimum number of deleted name index records before a compaction is triggered */
+	protected final long compactMin = ConfigurationHelper.getLongSystemThenEnvProperty(ShorthandProperties.STORE_COMPACT_MIN_PROP, ShorthandProperties.DEFAULT_STORE_COMPACT_MIN);
+	/** Set when a compaction has been requested through JMX, to be executed at the end of the next flush */
+	protected volatile boolean compactionRequested = false;
+	/** The number of completed compactions */
+	protected final AtomicLong compactionCount = new AtomicLong(0L);
+	/** The elapsed time of the last compaction in ms. */
+	protected volatile long lastCompactionTime = -1L;
+	/** Chronicles replaced by the last compaction, closed and deleted on the following flush */
+	protected final Set<Chronicle> retiredChronicles = new HashSet<Chronicle>();
+	
+	/** The name of the file recording the enum collector index of each enum collector known to the store */
+	public static final String ENUM_MAP_FILE = "enum.map";
+	/** The store lock file, held open for the life of the store so the lock is not released */
+	protected final RandomAccessFile lockRaf;
+	/** The number of metric names loaded from an existing name index on startup */
+	protected volatile long loadedNameCount = 0L;
+	/** The elapsed time of the startup name index load in ms. */
+	protected volatile long nameLoadTime = 0L;
+	/** The minimum number of name index records per loader thread */
+	public static final int LOAD_CHUNK = 10000;
 	
 	/** The address of the global lock for this instance */
 	protected final long globalLockAddress;
@@ -199,9 +255,27 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 	protected final ConcurrentLongSlidingWindow periodUpdateTimes = new ConcurrentLongSlidingWindow(100);
 	/** A sliding window of new metric creation times in ns. */
 	protected final ConcurrentLongSlidingWindow newMetricTimes = new ConcurrentLongSlidingWindow(100); 
+	/** The agent self-telemetry */
+	protected final AgentTelemetry telemetry = AgentTelemetry.getInstance();
 	
 	/** The configured jmx mbean publication option */
 	protected final MetricJMXPublishOption jmxPublishOption;
+	/** The off-heap memory cap in bytes, zero or less for unlimited */
+	protected volatile long offHeapMax = ConfigurationHelper.getLongSystemThenEnvProperty(ShorthandProperties.OFFHEAP_MAX_PROP, ShorthandProperties.DEFAULT_OFFHEAP_MAX);
+	/** The policy applied when the off-heap cap is reached */
+	protected volatile OffHeapCapPolicy offHeapPolicy = OffHeapCapPolicy.forName(ConfigurationHelper.getSystemThenEnvProperty(ShorthandProperties.OFFHEAP_POLICY_PROP, ShorthandProperties.DEFAULT_OFFHEAP_POLICY));
+	/** The eviction clock hand over the loaded metric names, only accessed while holding the global lock */
+	protected Iterator<String> evictionHand = null;
+	/** The maximum number of loaded metrics inspected by one eviction pass */
+	public static final int EVICTION_SAMPLE = 256;
+	/** Eviction frees the off-heap cap shifted right by this many bits (1/16th) below the cap */
+	public static final int EVICTION_HEADROOM_SHIFT = 4;
+	/** The address returned by {@link #getMetricAddress(String, IDataMapper)} when a metric is refused */
+	public static final long REFUSED = -1L;
+	/** The name index of a mem-space whose name record has not been committed yet. Index zero is the chronicle header record. */
+	public static final long PENDING_NAME_INDEX = 0L;
+	/** Appends new metric name records in batches */
+	protected final ChronicleNameWriter nameWriter = new ChronicleNameWriter(this, ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.STORE_NAME_BATCH_PROP, ShorthandProperties.DEFAULT_STORE_NAME_BATCH));
 	
 	
 	
@@ -215,16 +289,52 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 	protected final AtomicLong releaseCount = new AtomicLong(0L);
 	
 	/**
-	 * Clears the store 
+	 * Clears the store by switching to a new, empty chronicle generation. The name indexes restart, 
+	 * so the generation is advanced as it is by a compaction to tell consumers caching name indexes that they are stale.
+	 * The replaced chronicles are retired and deleted on the next flush.
 	 */
 	@Override
 	public void clear() {
-		SNAPSHOT_INDEX.clear();
-		UNLOADED_INDEX.clear();
-		nameIndex.clear();
-		tier1Data.clear();
-		writeZeroRec(nameIndex);
-		writeZeroRec(tier1Data);
+		synchronized(SNAPSHOT_INDEX) {
+			synchronized(this) {
+				globalLock();
+				try {
+					SNAPSHOT_INDEX.clear();
+					UNLOADED_INDEX.clear();
+					final long newGen = generation+1;
+					final IndexedChronicle newNames = getChronicle(NAME_INDEX, newGen);
+					newNames.multiThreaded(true);
+					newNames.useUnsafe(nameIndex.useUnsafe());
+					// Left behind by a compaction that failed before committing its generation
+					newNames.clear();
+					writeZeroRec(newNames);
+					final IndexedChronicle newData = getChronicle(TIER_1_DATA, newGen);
+					newData.multiThreaded(true);
+					newData.useUnsafe(tier1Data.useUnsafe());
+					newData.clear();
+					writeZeroRec(newData);
+					writeGeneration(newGen);
+					final IndexedChronicle oldNames = nameIndex, oldData = tier1Data;
+					final Excerpt oldNameEx = nameIndexEx;
+					nameIndex = newNames;
+					nameIndexEx = newNames.createExcerpt();
+					tier1Data = newData;
+					generation = newGen;
+					deletedRecords.set(0);
+					oldNameEx.close();
+					// The name indexes restart so the regex and token indexes are stale
+					synchronized(retiredChronicles) {
+						retiredChronicles.add(oldNames);
+						retiredChronicles.add(oldData);
+						retiredChronicles.addAll(nameIndexer.reset(newNames));
+					}
+				} catch (IOException ex) {
+					throw new RuntimeException("Failed to clear the chronicle store", ex);
+				} finally {
+					globalUnlock();
+				}
+			}
+		}
 	}
 	
 	
@@ -277,8 +387,13 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 			nameIndex = (address * -1L);
 		} else {
 			long ref = lock(address);
-			nameIndex = MemSpaceAccessor.get(ref).getNameIndex();
+			nameIndex = ref==-1L ? -1L : MemSpaceAccessor.get(ref).getNameIndex();
 			unlock(address);
+			if(nameIndex==-1L) return null;
+			if(nameIndex==PENDING_NAME_INDEX) {
+				nameWriter.drain();
+				return getMetric(name);
+			}
 		}
 		
 		Excerpt nameEx = this.nameIndex.createExcerpt();
@@ -294,59 +409,49 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 	 * Dumps the contents of the store
 	 */
 	public void dump() {
-		Excerpt dx = tier1Data.createExcerpt();
+		final Excerpt nx = nameIndex.createExcerpt();
+		final Excerpt dx = tier1Data.createExcerpt();
+		final ExcerptCharSequence name = new ExcerptCharSequence();
 		try {
-			nameIndexEx.index(1);
 			StringBuilder b = new StringBuilder();
-			
-			while(nameIndexEx.nextIndex()) {
-				b.append(nameIndexEx.index()).append(",");
-				b.append(nameIndexEx.read()).append(",");
-				b.append(nameIndexEx.read()).append(",");
+			final long size = nameIndex.size();
+			for(long index = 1; index < size; index++) {
+				if(!nx.index(index)) break;
+				b.setLength(0);
+				b.append(index).append(",");
+				b.append(nx.readByte(ChronicleOffset.Lock.offset)).append(",");
+				b.append(nx.readByte(ChronicleOffset.Delete.offset)).append(",");
 				@SuppressWarnings("unchecked")
-				Class<T> collectorType = (Class<T>) EnumCollectors.getInstance().type(nameIndexEx.readInt());
+				Class<T> collectorType = (Class<T>) EnumCollectors.getInstance().type(nx.readInt(ChronicleOffset.EnumIndex.offset));
 				ICollector<?>[] collectors = collectorType.getEnumConstants();
 				b.append(collectorType.getSimpleName()).append(",");
-				b.append(nameIndexEx.readInt()).append(",");
-				b.append(nameIndexEx.readByteString()).append(",");
-				b.append(new Date(nameIndexEx.readLong())).append(",");
-				b.append(new Date(nameIndexEx.readLong())).append(",");
-				b.append(new Date(nameIndexEx.readLong())).append(",");
-				int dataIndexes = nameIndexEx.readInt();
+				b.append(nx.readInt(ChronicleOffset.BitMask.offset)).append(",");
+				b.append(new Date(nx.readLong(ChronicleOffset.CreateTime.offset))).append(",");
+				b.append(new Date(nx.readLong(ChronicleOffset.PeriodStart.offset))).append(",");
+				b.append(new Date(nx.readLong(ChronicleOffset.PeriodEnd.offset))).append(",");
+				final int nameSize = nx.readInt(ChronicleOffset.NameSize.offset);
+				final int dataIndexes = nx.readInt(ChronicleOffset.Enabled.offset);
+				b.append(name.bind(nx, ChronicleOffset.HEADER_SIZE, nameSize)).append(",");
 				b.append(dataIndexes).append(",");
 				for(int i = 0; i < dataIndexes; i++) {
-					long dataIndex = nameIndexEx.readLong();
-					if(dataIndex<1) continue;
-					dx.index(dataIndex);
-					b.append(dx.read()).append(",");
-					b.append(dx.read()).append(",");
-					dx.readLong();
-					int enumIndex = dx.readInt();
-					ICollector<?> collector = collectors[enumIndex];
+					long dataIndex = nx.readLong(ChronicleOffset.HEADER_SIZE + nameSize + (i << 3));
+					if(dataIndex<1 || !dx.index(dataIndex)) continue;
+					b.append(dx.readByte(ChronicleDataOffset.Delete.offset)).append(",");
+					ICollector<?> collector = collectors[dx.readInt(ChronicleDataOffset.EnumOrdinal.offset)];
 					b.append(collector.getShortName()).append(",");
 					String[] subNames = collector.getSubMetricNames();
-					int subCount = dx.readInt();
+					int subCount = dx.readInt(ChronicleDataOffset.SubCount.offset);
 					for(int x = 0; x < subCount; x++) {
 						b.append(subNames[x]).append(",");
-						b.append(dx.readLong()).append(",");
+						b.append(dx.readLong(ChronicleDataOffset.HEADER_SIZE + (x << 3))).append(",");
 					}
-//					ex.writeByte(0);				// the lock
-//					ex.writeByte(0);				// the delete indicator
-//					ex.writeLong(nameIndex);		// the name index
-//					ex.writeInt(enumIndex);			// the enum index  (i.e. the ordinal)
-//					ex.writeInt(subCount);			// the sub count
-//					for(int i = 0; i < subCount; i++) {
-//						ex.writeLong(-1L);			// the sub value slot
-//					}
-					
 				}
-				
 				log(b.toString());
-				b.delete(0, b.length()-1);
 			}
 		} catch (Exception ex) {
 			ex.printStackTrace(System.err);
 		} finally {
+			try { nx.close(); } catch (Exception ex) {}
 			try { dx.close(); } catch (Exception ex) {}
 		}
 	}
@@ -356,7 +461,7 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 	 * Creates a new ChronicleStore persisting to the default directory
 	 */
 	protected ChronicleStore() {		
-		this(ConfigurationHelper.getSystemThenEnvProperty(ShorthandProperties.CHRONICLE_DIR_PROP, ShorthandProperties.DEFAULT_CHRONICLE_DIR) + File.separator + ShorthandProperties.PID);
+		this(ConfigurationHelper.getSystemThenEnvProperty(ShorthandProperties.CHRONICLE_DIR_PROP, ShorthandProperties.DEFAULT_CHRONICLE_DIR) + File.separator + ConfigurationHelper.getSystemThenEnvProperty(ShorthandProperties.STORE_SERVICE_PROP, ShorthandProperties.PID));
 		
 	}
 	
@@ -401,10 +506,13 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 		jmxPublishOption = MetricJMXPublishOption.forName(System.getProperty(ShorthandProperties.PUBLISH_JMX_PROP, ShorthandProperties.DEFAULT_PUBLISH_JMX));
 		log("Metric JMX Publication Option: [%s]", jmxPublishOption.name());
 		try {
-			if(!lockFile.createNewFile()) {
-				throw new RuntimeException("Failed to create shorthand lock file [" + lockFile.getAbsolutePath() + "]");
+			// A lock file left behind by a dead JVM is not locked, so a stable store directory can be re-acquired
+			lockRaf = new RandomAccessFile(lockFile, "rw");
+			FileLock fileLock = null;
+			try { fileLock = lockRaf.getChannel().tryLock(); } catch (OverlappingFileLockException oex) {/* No Op */}
+			if(fileLock==null) {
+				throw new RuntimeException("The shorthand store in [" + dataDir.getAbsolutePath() + "] is in use by another JVM");
 			}
-			new RandomAccessFile(lockFile, "rw").getChannel().lock();
 			log("Lock File: [%s]  Parent: [%s]", lockFile, lockFile.getParentFile().getName());
 			new ShorthandChronicleCleaner(dataDir.getParentFile().getAbsolutePath()).start();
 			enumIndex = getIntChronicle(ENUM_INDEX);
@@ -413,6 +521,7 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 			log(printChronicleDetails(enumIndex));
 			enumIndexEx = enumIndex.createExcerpt();
 			cacheEnums();
+			generation = readGeneration();
 			nameIndex = getChronicle(NAME_INDEX);
 			nameIndex.multiThreaded(true);
 			
@@ -434,7 +543,6 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 				}
 			}, null, null);
 			nameIndexer = new ChronicleRegexIndexer(nameIndex, dataDir);
-			nameIndexer.search(".*ca.*");
 		} catch (Exception ex) {
 			ex.printStackTrace(System.err);
 			throw new RuntimeException("Failed to initialize name index chronicle", ex);
@@ -451,13 +559,53 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 					try { tier1Data.close(); } catch (Exception ex) {}					
 				}
 			});
-		globalLockAddress = UnsafeAdapter.allocateMemory(UnsafeAdapter.LONG_SIZE);
+		globalLockAddress = UnsafeAdapter.allocateMemory(UnsafeAdapter.LONG_SIZE, OffHeapSubsystem.LOCK);
 		RunnableReferenceQueue.getInstance().buildPhantomReference(this, globalLockAddress);
 		UnsafeAdapter.putLong(globalLockAddress, UNLOCKED);
+		liveView = PeriodClock.getInstance().fastPeriodMs > 0 ? new LiveMetricView<T>(this) : null;
+		if(jmxPublishOption==MetricJMXPublishOption.BULK) {
+			JMXHelper.registerMBean(BulkMetricPublisherMXBean.OBJECT_NAME, new BulkMetricPublisher(this));
+		}
+		MetricBroadcaster.install(this);
 		StartupBroadcaster.sendStartupBroadcast();
+		HeartbeatBroadcaster.install();
 		
 	}
 	
+	/**
+	 * Returns the tier 1 write sequence. The sequence is odd while a flush is writing period records,
+	 * so a reader that sees the same even sequence before and after reading a record read it from one period.
+	 * @return the tier 1 write sequence
+	 */
+	public long getTier1WriteSequence() {
+		return tier1WriteSequence.get();
+	}
+	
+	/**
+	 * Returns the end time of the last period flushed to the tier 1 chronicle.
+	 * Metrics whose name record carries this period end were active in the last closed period.
+	 * @return the last flushed period end time, or -1 if there has been no flush
+	 */
+	public long getLastFlushedPeriodEnd() {
+		return lastFlushedPeriodEnd;
+	}
+	
+	/**
+	 * Returns the name indexing service
+	 * @return the name indexing service
+	 */
+	public ChronicleRegexIndexer getNameIndexer() {
+		return nameIndexer;
+	}
+	
+	/**
+	 * Returns the live metric view sampled on each fast period
+	 * @return the live metric view, or null if fast periods are disabled
+	 */
+	public LiveMetricView<T> getLiveView() {
+		return liveView;
+	}
+	
 	/**
 	 * Returns a string providing some details on the passed chronicle
 	 * @param chronicle The chronicle to print details for
@@ -505,6 +653,7 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 					enumIndexEx.finish();		
 					index = (int)enumIndexEx.index();
 					ENUM_CACHE.put(collectorClass, index);
+					writeEnumMap();
 				}
 			}
 		}
@@ -528,6 +677,7 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 					enumIndexEx.finish();		
 					index = (int)enumIndexEx.index();
 					ENUM_CACHE.put(collector.getDeclaringClass(), index);
+					writeEnumMap();
 				}
 			}
 		}
@@ -558,7 +708,60 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 	 * @throws IOException An exception occured creating or opening the chronicle
 	 */
 	protected IndexedChronicle getChronicle(String name) throws IOException {
-		return new IndexedChronicle(dataDir.getAbsolutePath() + File.separator + name, 1, ByteOrder.nativeOrder(), true, false);
+		return getChronicle(name, generation);
+	}
+	
+	/**
+	 * Acquires the named chronicle for the passed generation
+	 * @param name The name of the chronicle
+	 * @param gen The chronicle generation
+	 * @return the named chronicle
+	 * @throws IOException An exception occured creating or opening the chronicle
+	 */
+	protected IndexedChronicle getChronicle(String name, long gen) throws IOException {
+		return new IndexedChronicle(dataDir.getAbsolutePath() + File.separator + (gen==0 ? name : (name + ".g" + gen)), 1, ByteOrder.nativeOrder(), true, false);
+	}
+	
+	/**
+	 * Reads the current chronicle generation from the generation file
+	 * @return the current generation, or zero if the file does not exist
+	 */
+	protected long readGeneration() {
+		File f = new File(dataDir, GENERATION_FILE);
+		if(!f.exists()) return 0L;
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(f, "r");
+			return Long.parseLong(raf.readLine().trim());
+		} catch (Exception ex) {
+			loge("Failed to read chronicle generation from [%s]. Starting at zero. %s", f, ex);
+			return 0L;
+		} finally {
+			if(raf!=null) try { raf.close(); } catch (Exception x) {/* No Op */}
+		}
+	}
+	
+	/**
+	 * Atomically replaces the generation file with the passed generation
+	 * @param gen The new current generation
+	 * @throws IOException thrown if the file cannot be written or moved
+	 */
+	protected void writeGeneration(long gen) throws IOException {
+		File tmp = new File(dataDir, GENERATION_FILE + ".tmp");
+		File f = new File(dataDir, GENERATION_FILE);
+		RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+		try {
+			raf.setLength(0);
+			raf.writeBytes(Long.toString(gen));
+			raf.getFD().sync();
+		} finally {
+			raf.close();
+		}
+		if(!tmp.renameTo(f)) {
+			// Windows will not rename over an existing file
+			f.delete();
+			if(!tmp.renameTo(f)) throw new IOException("Failed to rename [" + tmp + "] to [" + f + "]");
+		}
 	}
 	
 	/**
@@ -572,52 +775,356 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 	}	
 	
 	/**
-	 * Marks a name index chronicle entry as deleted.
+	 * Marks a name index chronicle entry and its tier 1 data entries as deleted.
+	 * The space is reclaimed by the next compaction.
 	 * @param index The index to mark deleted
 	 */
 	protected void markNameIndexDeleted(long index) {
-		final long cindex = nameIndexEx.index();
-		final int cpos = nameIndexEx.position();
+		final Excerpt ex = nameIndex.createExcerpt();
+		final Excerpt dx = tier1Data.createExcerpt();
 		try {
-			nameIndexEx.position(1);
-			nameIndexEx.writeByte(1);
-			nameIndexEx.toEnd();
-			nameIndexEx.finish();
+			for(long dataIndex: ChronicleOffset.getTier1Indexes(index, ex)) {
+				if(dataIndex<1) continue;
+				ChronicleDataOffset.Delete.set(1, dataIndex, dx);
+			}
+			ChronicleOffset.Delete.set(1, index, ex);
+			deletedRecords.incrementAndGet();
+		} finally {
+			ex.close();
+			dx.close();
+		}
+	}
+	
+	/**
+	 * Deletes unloaded metrics that have had no activity for longer than the retention period
+	 * @param now The current time
+	 * @return the number of deleted metrics
+	 */
+	protected int expireUnloaded(long now) {
+		final long ret = retention;
+		if(ret<=0) return 0;
+		int expired = 0;
+		final Excerpt ex = nameIndex.createExcerpt();
+		try {
+			synchronized(SNAPSHOT_INDEX) {
+				for(Map.Entry<String, Long> entry: UNLOADED_INDEX.entrySet()) {
+					long index = entry.getValue() * -1L;
+					if(now - ChronicleOffset.PeriodEnd.get(index, ex) > ret && UNLOADED_INDEX.remove(entry.getKey(), entry.getValue())) {
+						markNameIndexDeleted(index);
+						expired++;
+					}
+				}
+			}
 		} finally {
-			nameIndexEx.index(cindex);
-			nameIndexEx.position(cpos);
+			ex.close();
+		}
+		if(expired>0) log("Expired [%s] unloaded metrics", expired);
+		return expired;
+	}
+	
+	/**
+	 * Runs the end of flush store maintenance: closes the chronicles retired by the previous compaction,
+	 * expires idle unloaded metrics and compacts the chronicles if enough records have been deleted or a compaction was requested.
+	 * Must be called from the flush thread.
+	 * @param now The current time
+	 */
+	protected void maintain(long now) {
+		closeRetired();
+		expireUnloaded(now);
+		final long total = nameIndex.size()-1;
+		final long deleted = deletedRecords.get();
+		if(compactionRequested || (deleted >= compactMin && total > 0 && ((float)deleted/total) >= compactRatio)) {
+			compactionRequested = false;
+			compact();
+		}
+	}
+	
+	/**
+	 * Closes and deletes the chronicles retired by the last compaction
+	 */
+	protected void closeRetired() {
+		synchronized(retiredChronicles) {
+			for(Chronicle c: retiredChronicles) {
+				try { c.close(); } catch (Exception ex) {/* No Op */}
+				new File(c.name() + ".index").delete();
+				new File(c.name() + ".data").delete();
+			}
+			retiredChronicles.clear();
+		}
+	}
+	
+	/**
+	 * Rewrites the live name index and tier 1 data records into a new chronicle generation, remaps the
+	 * name indexes held by loaded mem-spaces and the unloaded index, then switches to the new generation.
+	 * The replaced chronicles are retired and deleted on the next flush so that readers holding excerpts on them can complete.
+	 * Must be called from the flush thread. New metrics and snapshots are blocked while the compaction runs.
+	 */
+	protected void compact() {
+		final Map<String, long[]> republish = new HashMap<String, long[]>();
+		final long start = System.currentTimeMillis();
+		synchronized(SNAPSHOT_INDEX) {
+			synchronized(this) {
+				globalLock();
+				try {
+					final long newGen = generation+1;
+					final IndexedChronicle newNames = getChronicle(NAME_INDEX, newGen);
+					newNames.multiThreaded(true);
+					newNames.useUnsafe(nameIndex.useUnsafe());
+					writeZeroRec(newNames);
+					final IndexedChronicle newData = getChronicle(TIER_1_DATA, newGen);
+					newData.multiThreaded(true);
+					newData.useUnsafe(tier1Data.useUnsafe());
+					writeZeroRec(newData);
+					ChronicleCompactor compactor = new ChronicleCompactor(nameIndex, tier1Data);
+					TLongLongHashMap remap = compactor.copyTo(newNames, newData);
+					// Commit the new generation before touching any live state so a failure leaves the store intact
+					writeGeneration(newGen);
+					// Remap the loaded mem-spaces
+					MemSpaceAccessor<T> msa = MemSpaceAccessor.get(-1L);
+					for(String metricName: SNAPSHOT_INDEX.keySet()) {
+						Long address = SNAPSHOT_INDEX.get(metricName);
+						if(address==null) continue;
+						long ref = lock(address);
+						try {
+							if(ref==-1L) continue;
+							msa.setAddress(ref);
+							long oldIndex = msa.getNameIndex();
+							// Pending names are committed by the name writer into the new generation
+							if(oldIndex==PENDING_NAME_INDEX) continue;
+							long newIndex = remap.get(oldIndex);
+							if(newIndex==-1L) {
+								// Loaded metrics are never deleted, but if one was, invalidate it so the next snap or flush drops it and it is recreated
+								loge("Loaded metric [%s] had deleted name index [%s]. Invalidating.", metricName, oldIndex);
+								telemetry.memSpace(-msa.getMemSize());
+								msa.setAddress(-1L);
+								UnsafeAdapter.freeMemory(ref);
+								UnsafeAdapter.putLong(address + UnsafeAdapter.LONG_SIZE, -1L);
+								republish.put(metricName, new long[]{oldIndex, -1L});
+								continue;
+							}
+							msa.setNameIndex(newIndex);
+							republish.put(metricName, new long[]{oldIndex, newIndex});
+						} finally {
+							unlock(address);
+						}
+					}
+					// Remap the unloaded metrics
+					for(Map.Entry<String, Long> entry: UNLOADED_INDEX.entrySet()) {
+						long newIndex = remap.get(entry.getValue() * -1L);
+						if(newIndex==-1L) {
+							UNLOADED_INDEX.remove(entry.getKey());
+						} else {
+							UNLOADED_INDEX.put(entry.getKey(), newIndex * -1L);
+						}
+					}
+					// Switch generations
+					final IndexedChronicle oldNames = nameIndex, oldData = tier1Data;
+					final Excerpt oldNameEx = nameIndexEx;
+					nameIndex = newNames;
+					nameIndexEx = newNames.createExcerpt();
+					tier1Data = newData;
+					generation = newGen;
+					deletedRecords.set(0);
+					oldNameEx.close();
+					synchronized(retiredChronicles) {
+						retiredChronicles.add(oldNames);
+						retiredChronicles.add(oldData);
+						retiredChronicles.addAll(nameIndexer.reset(newNames));
+					}
+					lastCompactionTime = System.currentTimeMillis()-start;
+					compactionCount.incrementAndGet();
+					log("Compacted chronicle store to generation [%s]. Kept [%s] metrics, dropped [%s] in [%s] ms.", newGen, compactor.getCopied(), compactor.getDropped(), lastCompactionTime);
+				} catch (Exception ex) {
+					loge("Chronicle store compaction failed. Staying on generation [%s]", generation);
+					ex.printStackTrace(System.err);
+					republish.clear();
+				} finally {
+					globalUnlock();
+				}
+			}
+		}
+		for(Map.Entry<String, long[]> entry: republish.entrySet()) {
+			jmxPublishOption.unPublish(entry.getKey(), entry.getValue()[0]);
+			if(entry.getValue()[1]!=-1L) jmxPublishOption.publish(entry.getKey(), entry.getValue()[1]);
 		}
 	}
 
-//	/**
-//	 * Loads the unloaded name index on startup
-//	 */
-//	protected void loadSnapshotNameIndex() {
-//		log("Loading NameIndex....");
-//		long index = 1;
-//		while(nameIndexEx.index(index)) {
-//			byte deleted = nameIndexEx.readByte(); 
-//			if(deleted==0) {  															// check the deleted flag
-//				int enumIndex = (int)ChronicleOffset.EnumIndex.get(index, nameIndexEx);	// the enum index
-//				String name = ChronicleOffset.getName(index, nameIndexEx);				// the metric name
-//				if(!ENUM_CACHE.containsValue(enumIndex)) {
-//					loge("Warning: MetricName [%s] had unrecognized enum index [%s]", name, enumIndex);
-//					markNameIndexDeleted(nameIndexEx.index());
-//				}
-//				if(UNLOADED_INDEX.put(name, (index * -1L))!=null) {
-//					log("WARNING:  Duplicate name [" + name + "] at index [" + index + "]");
-//				} else {
-////					log("Loaded [" + name + "]");
-//				}
-//			}
-//			index++;
-//		}
-//		if(index>0) {
-//			log(String.format("Loaded\n\tNameIndexes: [%s]", index));
-//		} else {
-//			log("Initialized new name index.");
-//		}
-//	}
+	/**
+	 * Reads the enum collector index map persisted by the prior run and translates it to this run's enum collector indexes.
+	 * Name index records carry the enum collector index assigned at runtime, which is not stable across restarts.
+	 * @return a map of this run's enum collector indexes keyed by the prior run's. Empty if no map was persisted.
+	 */
+	protected TIntIntHashMap readEnumMap() {
+		final TIntIntHashMap translation = new TIntIntHashMap();
+		File f = new File(dataDir, ENUM_MAP_FILE);
+		if(!f.exists()) return translation;
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(f, "r");
+			String line = null;
+			while((line = raf.readLine())!=null) {
+				String[] frags = line.trim().split("=");
+				if(frags.length!=2) continue;
+				try {
+					translation.put(Integer.parseInt(frags[0].trim()), EnumCollectors.getInstance().indexForName(frags[1].trim()));
+				} catch (Exception ex) {
+					loge("Enum collector [%s] could not be resolved. Its metrics will be deleted.", frags[1]);
+				}
+			}
+		} catch (Exception ex) {
+			loge("Failed to read enum collector map from [%s]: %s", f, ex);
+		} finally {
+			if(raf!=null) try { raf.close(); } catch (Exception x) {/* No Op */}
+		}
+		return translation;
+	}
+	
+	/**
+	 * Persists this run's enum collector indexes for the store's known enum collectors
+	 */
+	protected void writeEnumMap() {
+		synchronized(ENUM_CACHE) {
+			File tmp = new File(dataDir, ENUM_MAP_FILE + ".tmp");
+			File f = new File(dataDir, ENUM_MAP_FILE);
+			RandomAccessFile raf = null;
+			try {
+				raf = new RandomAccessFile(tmp, "rw");
+				raf.setLength(0);
+				for(Object clazz: ENUM_CACHE.keys()) {
+					String name = ((Class<?>)clazz).getName();
+					raf.writeBytes(EnumCollectors.getInstance().indexForName(name) + "=" + name + "\n");
+				}
+				raf.getFD().sync();
+				raf.close(); raf = null;
+				if(!tmp.renameTo(f)) {
+					f.delete();
+					if(!tmp.renameTo(f)) throw new IOException("Failed to rename [" + tmp + "] to [" + f + "]");
+				}
+			} catch (Exception ex) {
+				loge("Failed to write enum collector map to [%s]: %s", f, ex);
+			} finally {
+				if(raf!=null) try { raf.close(); } catch (Exception x) {/* No Op */}
+			}
+		}
+	}
+	
+	/**
+	 * Loads the name index persisted by a prior run into the {@link #UNLOADED_INDEX} on startup,
+	 * so metrics seen before a restart reload by lookup rather than appending a new name index record.
+	 * The (memory mapped) name index is split into ranges scanned in parallel, each with its own excerpt.
+	 * Deleted records are counted towards the next compaction, records with an unrecognized enum are deleted,
+	 * and for duplicate names the most recent record is kept.
+	 * Called before the store is published, holding the monitors taken by every other name index writer.
+	 * @param threads The maximum number of loader threads
+	 */
+	protected void loadNameIndex(int threads) {
+		synchronized(SNAPSHOT_INDEX) {
+			synchronized(this) {
+				loadNameIndexExclusive(threads);
+			}
+		}
+	}
+	
+	/**
+	 * Loads the name index while no other name index writer can run
+	 * @param threads The maximum number of loader threads
+	 */
+	private void loadNameIndexExclusive(int threads) {
+		final long start = System.currentTimeMillis();
+		final long size = nameIndex.size();
+		if(size<=1) {
+			writeEnumMap();
+			nameIndexer.requestCatchUp();
+			log("Initialized new name index.");
+			return;
+		}
+		final int threadCount = (int)Math.max(1, Math.min(threads, (size-1)/LOAD_CHUNK));
+		final long range = ((size-1)/threadCount) + 1;
+		final TIntIntHashMap enumTranslation = readEnumMap();
+		final CountDownLatch latch = new CountDownLatch(threadCount);
+		final AtomicLong loaded = new AtomicLong(0L);
+		for(int i = 0; i < threadCount; i++) {
+			final long from = 1 + (i * range);
+			final long to = Math.min(size, from + range);
+			Thread t = new Thread("ShorthandNameIndexLoader#" + i) {
+				@Override
+				public void run() {
+					try {
+						loaded.addAndGet(loadNameIndexRange(from, to, enumTranslation));
+					} catch (Exception ex) {
+						loge("Name index loader failed on range [%s-%s]: %s", from, to, ex);
+						ex.printStackTrace(System.err);
+					} finally {
+						latch.countDown();
+					}
+				}
+			};
+			t.setDaemon(true);
+			t.start();
+		}
+		try {
+			latch.await();
+		} catch (InterruptedException iex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while loading the name index", iex);
+		}
+		writeEnumMap();
+		loadedNameCount = loaded.get();
+		nameLoadTime = System.currentTimeMillis()-start;
+		log("Loaded [%s] metric names from [%s] name index records with [%s] threads in [%s] ms. Deleted records: [%s]", loadedNameCount, size-1, threadCount, nameLoadTime, deletedRecords.get());
+		nameIndexer.requestCatchUp();
+	}
+	
+	/**
+	 * Loads a range of name index records into the {@link #UNLOADED_INDEX}
+	 * @param from The first index to load (inclusive)
+	 * @param to The last index to load (exclusive)
+	 * @param enumTranslation The prior run's enum collector indexes translated to this run's
+	 * @return the number of loaded names
+	 */
+	protected long loadNameIndexRange(long from, long to, TIntIntHashMap enumTranslation) {
+		final Excerpt ex = nameIndex.createExcerpt();
+		long loaded = 0, deleted = 0;
+		try {
+			for(long index = from; index < to; index++) {
+				if(!ex.index(index)) break;
+				// The store is unpublished and the other writers' monitors are held, so a set lock was left by a dead JVM
+				if(ex.readByte(ChronicleOffset.Lock.offset)!=0) ChronicleOffset.Lock.set(0, index, ex);
+				if(ex.readByte(ChronicleOffset.Delete.offset)!=0) {
+					deleted++;
+					continue;
+				}
+				String name = ChronicleOffset.getName(index, ex);
+				int priorEnumIndex = ex.readInt(ChronicleOffset.EnumIndex.offset);
+				if(!enumTranslation.containsKey(priorEnumIndex)) {
+					loge("Warning: MetricName [%s] had unrecognized enum index [%s]. Deleting.", name, priorEnumIndex);
+					markNameIndexDeleted(index);
+					continue;
+				}
+				int enumIdx = enumTranslation.get(priorEnumIndex);
+				if(enumIdx!=priorEnumIndex) ChronicleOffset.EnumIndex.set(enumIdx, index, ex);
+				while(true) {
+					Long prior = UNLOADED_INDEX.putIfAbsent(name, index * -1L);
+					if(prior==null) {
+						loaded++;
+						break;
+					}
+					if(prior * -1L > index) {
+						markNameIndexDeleted(index);
+						break;
+					}
+					if(UNLOADED_INDEX.replace(name, prior, index * -1L)) {
+						markNameIndexDeleted(prior * -1L);
+						break;
+					}
+				}
+			}
+		} finally {
+			ex.close();
+		}
+		deletedRecords.addAndGet(deleted);
+		return loaded;
+	}
 
 	/**
 	 * <p>Closes the chronicles on finalization</p>
@@ -633,20 +1140,88 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 	}
 	
 	/**
-	 * Creates a new metric name
-	 * @param metricName The metric name
-	 * @param enumIndex The enum collector index
-	 * @param bitMask The enabled metric bitmask
-	 * @return the name index
+	 * Appends the name records for a batch of reserved metrics and writes each record's index into the metric's mem-space.
+	 * Called by the {@link ChronicleNameWriter}, and synchronized against compaction which holds this store's monitor.
+	 * Metrics that are no longer pending, committed by an earlier failed attempt at the same batch, are skipped.
+	 * @param batch The reserved metrics to commit
 	 */
-	protected synchronized long newMetricName(String metricName, int enumIndex, int bitMask) {
-		final long start = System.nanoTime();
-		globalLockRead();
-		long index = ChronicleOffset.writeNewNameIndex(enumIndex, bitMask, metricName);
-		jmxPublishOption.publish(metricName, index);
-		nameIndexer.submitNewName(metricName, index);
-		newMetricTimes.insert(System.nanoTime()-start);
-		return index;
+	protected synchronized void commitNewMetricNames(List<ChronicleNameWriter.PendingName> batch) {
+		final Excerpt ex = nameIndex.createExcerpt();
+		try {
+			for(ChronicleNameWriter.PendingName pn: batch) {
+				if(!isPending(pn.ref)) continue;
+				long index = ChronicleOffset.writeNewNameIndex(pn.enumIndex, pn.bitMask, pn.name, ex);
+				long ref = lock(pn.ref);
+				try {
+					if(ref==-1L) {
+						// Pending mem-spaces are never invalidated, but if one was, keep the record for the next load
+						if(UNLOADED_INDEX.putIfAbsent(pn.name, index * -1L)!=null) markNameIndexDeleted(index);
+						continue;
+					}
+					MemSpaceAccessor.get(ref).setNameIndex(index);
+				} finally {
+					unlock(pn.ref);
+				}
+				jmxPublishOption.publish(pn.name, index);
+				nameIndexer.submitNewName(pn.name, index);
+				nameIndexer.notifyNewMetric(pn.name, index);
+				final long elapsed = System.nanoTime()-pn.submitted;
+				newMetricTimes.insert(elapsed);
+				telemetry.newMetric(elapsed);
+			}
+		} finally {
+			ex.close();
+		}
+	}
+	
+	/**
+	 * Releases the mem-spaces of a batch of reserved metrics whose name records could not be committed.
+	 * Each pending mem-space is freed and removed from the {@link #SNAPSHOT_INDEX} the same way as an evicted one,
+	 * so the next snapshot of the name reserves it again and resubmits the name record.
+	 * @param batch The reserved metrics that could not be committed
+	 * @return the number of released mem-spaces
+	 */
+	protected int abandonNewMetricNames(List<ChronicleNameWriter.PendingName> batch) {
+		int abandoned = 0;
+		for(ChronicleNameWriter.PendingName pn: batch) {
+			long ref = lock(pn.ref);
+			try {
+				if(ref==-1L) continue;
+				MemSpaceAccessor<T> msa = MemSpaceAccessor.get(ref);
+				if(!isPending(msa)) continue;
+				telemetry.memSpace(-msa.getMemSize());
+				UnsafeAdapter.freeMemory(ref);
+				UnsafeAdapter.putLong(pn.ref + UnsafeAdapter.LONG_SIZE, -1L);
+				SNAPSHOT_INDEX.remove(pn.name, pn.ref);
+				abandoned++;
+			} finally {
+				unlock(pn.ref);
+			}
+		}
+		return abandoned;
+	}
+	
+	/**
+	 * Determines if the mem-space at the passed reference is waiting for its name record to be committed
+	 * @param memSpaceRef The address of the mem-space reference
+	 * @return true if the name record is pending, false if it was committed or the mem-space was released
+	 */
+	protected boolean isPending(long memSpaceRef) {
+		long ref = lock(memSpaceRef);
+		try {
+			return ref!=-1L && isPending(MemSpaceAccessor.get(ref));
+		} finally {
+			unlock(memSpaceRef);
+		}
+	}
+	
+	/**
+	 * Determines if the passed mem-space is waiting for its name record to be committed
+	 * @param msa The mem-space accessor
+	 * @return true if the name record is pending, false otherwise
+	 */
+	protected static boolean isPending(MemSpaceAccessor<?> msa) {
+		return msa.getNameIndex()==PENDING_NAME_INDEX;
 	}
 	
 	/**
@@ -734,7 +1309,7 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 	 * @param size The number of longs to read
 	 * @return the read longs
 	 */
-	protected long[] readLongArray(Excerpt ex, int size) {
+	protected static long[] readLongArray(Excerpt ex, int size) {
 		long[] values = new long[size];
 		for(int i = 0; i < size; i++) {
 			values[i] = ex.readLong();
@@ -748,39 +1323,129 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 	 * Returns an indirect address reference of a mem-space allocated for the passed metric name
 	 * @param metricName The metric name
 	 * @param dataMapper The collector's data-mapper
-	 * @return the address
+	 * @return the address or {@link #REFUSED} if the mem-space could not be allocated within the off-heap cap
 	 */
 	protected long getMetricAddress(String metricName, IDataMapper<T> dataMapper) {		
 		Long address = SNAPSHOT_INDEX.get(metricName);
-		if(address==null) address = UNLOADED_INDEX.get(metricName);
-		if(address==null || address <0) {
-			synchronized(SNAPSHOT_INDEX) {
-				address = SNAPSHOT_INDEX.get(metricName);
-				if(address==null) address = UNLOADED_INDEX.get(metricName);
-				if(address==null || address <0) {
-					int requestedMem = (int)(dataMapper.getTotalAllocation());
-					int memSize = padCache ? findNextPositivePowerOfTwo(requestedMem) : requestedMem;
-					long nameIndex;
-					boolean unloaded = false;
-					if(address==null) {
-						nameIndex = newMetricName(metricName, dataMapper.getEnumIndex(), dataMapper.getBitMask());
-					} else {
-						nameIndex = address * -1;
-						unloaded = true;
-					}
-					address = UnsafeAdapter.allocateMemory(memSize);
-					MemSpaceAccessor.get(address).initializeHeader(memSize, nameIndex, dataMapper.getBitMask(), EnumCollectors.getInstance().index(dataMapper.getCollectorName()));
-					MemSpaceAccessor.get(address).reset();
-					long memSpaceRef = UnsafeAdapter.allocateMemory(UnsafeAdapter.LONG_SIZE * 2);					
-					UnsafeAdapter.putLong(memSpaceRef, 0);
-					UnsafeAdapter.putLong(memSpaceRef + UnsafeAdapter.LONG_SIZE, address);
-					address = memSpaceRef;
-					SNAPSHOT_INDEX.put(metricName, memSpaceRef);
-					if(unloaded) UNLOADED_INDEX.remove(metricName);					
+		if(address!=null) return address;
+		return reserveMetric(metricName, dataMapper);
+	}
+	
+	/**
+	 * Reserves a metric that is not loaded. The reserving thread wins a compare-and-set of a locked mem-space reference
+	 * into the {@link #SNAPSHOT_INDEX}, so concurrent first snaps of the same name wait on that one reference rather than
+	 * on a store wide monitor. A metric unloaded from this or a prior run is reloaded with its existing name record.
+	 * Otherwise the mem-space is created with a {@link #PENDING_NAME_INDEX} and snaps accumulate into it while the
+	 * {@link ChronicleNameWriter} appends the name record.
+	 * @param metricName The metric name
+	 * @param dataMapper The collector's data-mapper
+	 * @return the address or {@link #REFUSED} if the mem-space could not be allocated within the off-heap cap
+	 */
+	protected long reserveMetric(String metricName, IDataMapper<T> dataMapper) {
+		int requestedMem = (int)(dataMapper.getTotalAllocation());
+		int memSize = padCache ? findNextPositivePowerOfTwo(requestedMem) : requestedMem;
+		if(!admit(memSize + (UnsafeAdapter.LONG_SIZE * 2))) {
+			telemetry.refused();
+			return REFUSED;
+		}
+		final long memSpaceRef = UnsafeAdapter.allocateMemory(UnsafeAdapter.LONG_SIZE * 2, OffHeapSubsystem.REFCELL);
+		UnsafeAdapter.putLong(memSpaceRef, Thread.currentThread().getId());
+		UnsafeAdapter.putLong(memSpaceRef + UnsafeAdapter.LONG_SIZE, -1L);
+		Long prior = SNAPSHOT_INDEX.putIfAbsent(metricName, memSpaceRef);
+		if(prior!=null) {
+			// Lost the race. The reference was never visible so it can be freed.
+			UnsafeAdapter.freeMemory(memSpaceRef);
+			return prior;
+		}
+		try {
+			long nameIndex = PENDING_NAME_INDEX;
+			Long unloaded = UNLOADED_INDEX.remove(metricName);
+			if(unloaded!=null) {
+				nameIndex = unloaded * -1L;
+				// A record persisted by a prior run may have been created by a different collector configuration
+				if(ChronicleOffset.EnumIndex.get(nameIndex)!=dataMapper.getEnumIndex() || ChronicleOffset.BitMask.get(nameIndex)!=dataMapper.getBitMask()) {
+					markNameIndexDeleted(nameIndex);
+					nameIndex = PENDING_NAME_INDEX;
 				}
 			}
+			long address = UnsafeAdapter.allocateMemory(memSize, OffHeapSubsystem.MEMSPACE);
+			MemSpaceAccessor.get(address).initializeHeader(memSize, nameIndex, dataMapper.getBitMask(), EnumCollectors.getInstance().index(dataMapper.getCollectorName()));
+			MemSpaceAccessor.get(address).reset();
+			telemetry.memSpace(memSize);
+			UnsafeAdapter.putLong(memSpaceRef + UnsafeAdapter.LONG_SIZE, address);
+			if(nameIndex==PENDING_NAME_INDEX) {
+				nameWriter.submit(metricName, memSpaceRef, dataMapper.getEnumIndex(), dataMapper.getBitMask());
+			}
+		} finally {
+			unlock(memSpaceRef);
+		}
+		return memSpaceRef;
+	}
+	
+	/**
+	 * Determines if an allocation of the passed size fits within the off-heap cap,
+	 * evicting idle metrics to make room if the policy is {@link OffHeapCapPolicy#EVICT}.
+	 * Concurrent admissions may overshoot the cap by the size of the allocations in flight.
+	 * Eviction frees a batch of headroom (see {@link #EVICTION_HEADROOM_SHIFT}) below the cap so the admissions
+	 * that follow do not each pay for an eviction pass.
+	 * @param bytes The number of bytes about to be allocated
+	 * @return true if the allocation may proceed, false if it should be refused
+	 */
+	protected boolean admit(long bytes) {
+		final long max = offHeapMax;
+		if(max<=0 || UnsafeAdapter.getTotalAllocatedMemory() + bytes <= max) return true;
+		if(offHeapPolicy!=OffHeapCapPolicy.EVICT) return false;
+		evictIdle(max - bytes - (max >> EVICTION_HEADROOM_SHIFT));
+		return UnsafeAdapter.getTotalAllocatedMemory() + bytes <= max;
+	}
+	
+	/**
+	 * Advances the eviction clock hand over up to {@link #EVICTION_SAMPLE} loaded metrics and unloads the ones
+	 * that have not been touched in the current period until the total off-heap allocation drops to the passed target
+	 * (approximate LRU). Metrics that are locked are skipped. The hand resumes where the previous pass stopped,
+	 * so the global lock is only held for a bounded sample regardless of the number of loaded metrics.
+	 * Evicted metrics are moved to the {@link #UNLOADED_INDEX} so they reload on their next snapshot, and are
+	 * reported to the name indexer as stale.
+	 * @param target The target total allocation in bytes
+	 * @return true if the target was reached
+	 */
+	protected boolean evictIdle(long target) {
+		final long id = Thread.currentThread().getId();
+		globalLock();
+		try {
+			boolean wrapped = false;
+			for(int i = 0; i < EVICTION_SAMPLE; i++) {
+				if(UnsafeAdapter.getTotalAllocatedMemory() <= target) return true;
+				if(evictionHand==null || !evictionHand.hasNext()) {
+					if(wrapped) break;
+					evictionHand = SNAPSHOT_INDEX.keySet().iterator();
+					wrapped = true;
+					if(!evictionHand.hasNext()) break;
+				}
+				String metricName = evictionHand.next();
+				Long address = SNAPSHOT_INDEX.get(metricName);
+				if(address==null || !UnsafeAdapter.compareAndSwapLong(null, address, UNLOCKED, id)) continue;
+				long ref = UnsafeAdapter.getLong(address + UnsafeAdapter.LONG_SIZE);
+				MemSpaceAccessor<T> msa = MemSpaceAccessor.get(ref);
+				if(msa.isInvalidated() || msa.isTouched() || isPending(msa)) {
+					unlock(address);
+					continue;
+				}
+				long _nameIndex = msa.getNameIndex();
+				telemetry.memSpace(-msa.getMemSize());
+				UnsafeAdapter.freeMemory(ref);
+				UnsafeAdapter.putLong(address + UnsafeAdapter.LONG_SIZE, -1L);
+				UNLOADED_INDEX.put(metricName, _nameIndex * -1L);
+				SNAPSHOT_INDEX.remove(metricName, address);
+				unlock(address);
+				jmxPublishOption.unPublish(metricName, _nameIndex);
+				nameIndexer.notifyStaleMetric(metricName, _nameIndex);
+				telemetry.evicted();
+			}
+			return UnsafeAdapter.getTotalAllocatedMemory() <= target;
+		} finally {
+			globalUnlock();
 		}
-		return address;
 	}
 	
 
@@ -790,8 +1455,10 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 	 */
 	@Override
 	public void doSnap(String metricName, IDataMapper<T> dataMapper, long...collectedValues) {
+		telemetry.snap();
 		globalLockRead();
 		long address = getMetricAddress(metricName, dataMapper);
+		if(address==REFUSED) return;
 		long ref = -1L;
 		try {
 			ref = lock(address);
@@ -799,7 +1466,7 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 			if(msa.isInvalidated()) {
 				msa.delete(address);
 				ref = -1L;
-				SNAPSHOT_INDEX.remove(metricName);
+				SNAPSHOT_INDEX.remove(metricName, address);
 				doSnap(metricName, dataMapper, collectedValues);
 				return;
 			}
@@ -835,24 +1502,33 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 			final long stalePeriod = PeriodClock.getInstance().stalePeriodMs;
 			log("Flush Stale Period: [%s]", stalePeriod);
 			final long startTime = System.nanoTime();
+			// Commit the pending name records so new metrics are flushed in the period they were created in
+			nameWriter.drain();
 			globalLockNoYield();
 			for(String metricName: SNAPSHOT_INDEX.keySet()) {
-				long address = SNAPSHOT_INDEX.get(metricName);
+				Long _address = SNAPSHOT_INDEX.get(metricName);
+				if(_address==null) continue;
+				long address = _address;
 				// =========================================================================
 				long ref = lockNoYield(address);
 				//log("Locked address for [%s] [%s]", metricName, ref);
 				msa.setAddress(ref);
 				if(msa.isInvalidated()) {
 					//log("Clearing Invalid Metric Ref [%s]", metricName);
-					SNAPSHOT_INDEX.remove(metricName);
+					SNAPSHOT_INDEX.remove(metricName, address);
 					msa.delete(address);
 					bufferCount--;
 					continue;
 				}
+				if(isPending(msa)) {
+					// Reserved after the drain. Keeps accumulating and is flushed in the next period.
+					unlock(address);
+					bufferCount--;
+					continue;
+				}
 				if(!msa.isTouched()) {
 					if(msa.isStale(now, stalePeriod)) {
 						//log("Pending stale for Metric Ref [%s]", metricName);
-						SNAPSHOT_INDEX.remove(metricName);
 						untouched.put(address, metricName);
 					} 
 					unlock(address);
@@ -875,12 +1551,18 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 			// =========================================================================
 			final long stage2start = System.nanoTime();
 			Excerpt dataExcerpt = tier1Data.createExcerpt();
-			for(int i = 0; i < dirtyKeys.size(); i++) {
-				long address = dirtyKeys.get(i);
-				msa.setAddress(address);				
-				msa.preFlush();
-				updatePeriod(msa, priorStartTime, priorEndTime, dataExcerpt);
-				UnsafeAdapter.freeMemory(address);
+			tier1WriteSequence.incrementAndGet();
+			try {
+				for(int i = 0; i < dirtyKeys.size(); i++) {
+					long address = dirtyKeys.get(i);
+					msa.setAddress(address);				
+					msa.preFlush();
+					updatePeriod(msa, priorStartTime, priorEndTime, dataExcerpt);
+					UnsafeAdapter.freeMemory(address);
+				}
+			} finally {
+				lastFlushedPeriodEnd = priorEndTime;
+				tier1WriteSequence.incrementAndGet();
 			}
 			dataExcerpt.close();
 			log(StringHelper.reportTimes("Dirty Key Flush", System.nanoTime()-stage2start));
@@ -898,6 +1580,7 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 			log(StringHelper.reportTimes("===[ Post Dirty Key Flush Elapsed Time", spElapsed));
 			
 			long stage2Elapsed = System.nanoTime()-stage2start;
+			long stage3Elapsed = 0;
 			//dirtyBufferWriteTimes.insert(stage2Elapsed);			
 			log(StringHelper.reportTimes("Second Phase Flush Elapsed Time", stage2Elapsed));
 			// =========================================================================
@@ -909,18 +1592,33 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 				for(long address: untouched.keySet()) {
 					String metricName  = untouched.get(address);
 					long ref = lockNoYield(address);
-					msa.setAddress(ref);						
+					msa.setAddress(ref);
+					if(msa.isInvalidated()) {
+						// Evicted by the off-heap cap since the first phase, so already released
+						unlock(address);
+						untouched.remove(address);
+						continue;
+					}
+					if(msa.isTouched()) {
+						// Snapped since the first phase, so no longer stale
+						unlock(address);
+						untouched.remove(address);
+						continue;
+					}
 					long _nameIndex = msa.getNameIndex();
+					telemetry.memSpace(-msa.getMemSize());
 					msa.setAddress(-1L);
 					UnsafeAdapter.freeMemory(ref);
 					UnsafeAdapter.putLong(address + UnsafeAdapter.LONG_SIZE, -1L);
+					// Unloaded before it is removed so a concurrent first snap reloads it rather than creating a new record
 					UNLOADED_INDEX.put(metricName, _nameIndex * -1L);
+					SNAPSHOT_INDEX.remove(metricName, address);
 					unlock(address);
 					jmxPublishOption.unPublish(metricName, _nameIndex); // Move this guy outa-here.
 					nameIndexer.notifyStaleMetric(metricName, _nameIndex);
 					untouched.remove(address);
 				}
-				long stage3Elapsed = System.nanoTime()-stage3start;
+				stage3Elapsed = System.nanoTime()-stage3start;
 				staleBufferClearTimes.insert(stage3Elapsed);
 				log(StringHelper.reportTimes("Third Phase Flush Elapsed Time", stage3Elapsed));				
 			} else {
@@ -928,11 +1626,14 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 			}
 			long elapsed = System.nanoTime()-startTime;
 			totalFlushTimes.insert(elapsed);
+			telemetry.flushed(stage1Elapsed, stage2Elapsed, stage3Elapsed, elapsed);
 			log(StringHelper.reportTimes("Total Flush Elapsed Time", elapsed));
+			maintain(now);
 		} catch (Exception ex) {
 			ex.printStackTrace(System.err);
 		} finally {
 			globalUnlock();
+			nameIndexer.deliverNotifications();
 			if(dirtyKeys!=null) dirtyKeys.destroy();
 //			if(untouched!=null) untouched.destroy();
 			
@@ -1063,9 +1764,12 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 	protected long lock(long address) {
 		long id = Thread.currentThread().getId();
 		if(UnsafeAdapter.getLong(address)!=id) {
+			int loops = 0;
 			while(!UnsafeAdapter.compareAndSwapLong(null, address, UNLOCKED, id)) {
 				Thread.yield();
+				loops++;
 			}
+			telemetry.nameLockSpins(loops);
 		}
 		return UnsafeAdapter.getLong(address + UnsafeAdapter.LONG_SIZE);
 	}
@@ -1109,7 +1813,8 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 		while(!UnsafeAdapter.compareAndSwapLong(null, globalLockAddress, UNLOCKED, id)) {			
 			loops++;
 		}
-		AccumulatorThreadStats.incrementGlobalLockSpins(loops);		
+		AccumulatorThreadStats.incrementGlobalLockSpins(loops);
+		telemetry.globalLockSpins(loops);		
 	}
 	
 	/**
@@ -1126,6 +1831,7 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 			loops++;
 		}
 		AccumulatorThreadStats.incrementGlobalLockSpins(loops);
+		telemetry.globalLockSpins(loops);
 	}
 	
 	/**
@@ -1151,6 +1857,186 @@ public class ChronicleStore<T extends Enum<T> & ICollector<T>> implements IStore
 	}
 
 	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#getOffHeapMax()
+	 */
+	@Override
+	public long getOffHeapMax() {
+		return offHeapMax;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#setOffHeapMax(long)
+	 */
+	@Override
+	public void setOffHeapMax(long max) {
+		offHeapMax = max;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#getOffHeapPolicy()
+	 */
+	@Override
+	public String getOffHeapPolicy() {
+		return offHeapPolicy.name();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#setOffHeapPolicy(java.lang.String)
+	 */
+	@Override
+	public void setOffHeapPolicy(String policy) {
+		offHeapPolicy = OffHeapCapPolicy.forName(policy);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#getOffHeapAllocated()
+	 */
+	@Override
+	public long getOffHeapAllocated() {
+		return UnsafeAdapter.getTotalAllocatedMemory();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#getGeneration()
+	 */
+	@Override
+	public long getGeneration() {
+		return generation;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#getDeletedRecordCount()
+	 */
+	@Override
+	public long getDeletedRecordCount() {
+		return deletedRecords.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#getCompactionCount()
+	 */
+	@Override
+	public long getCompactionCount() {
+		return compactionCount.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#getLastCompactionTime()
+	 */
+	@Override
+	public long getLastCompactionTime() {
+		return lastCompactionTime;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#getLoadedNameCount()
+	 */
+	@Override
+	public long getLoadedNameCount() {
+		return loadedNameCount;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#getNameLoadTime()
+	 */
+	@Override
+	public long getNameLoadTime() {
+		return nameLoadTime;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#getStoreDirectory()
+	 */
+	@Override
+	public String getStoreDirectory() {
+		return dataDir.getAbsolutePath();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#getPendingMetricNameCount()
+	 */
+	@Override
+	public long getPendingMetricNameCount() {
+		return nameWriter.getUncommittedCount();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#getMetricNameBatchCount()
+	 */
+	@Override
+	public long getMetricNameBatchCount() {
+		return nameWriter.getBatchCount();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#getAbandonedMetricNameCount()
+	 */
+	@Override
+	public long getAbandonedMetricNameCount() {
+		return nameWriter.getAbandonedCount();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#requestCompaction()
+	 */
+	@Override
+	public void requestCompaction() {
+		compactionRequested = true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#getRetention()
+	 */
+	@Override
+	public long getRetention() {
+		return retention;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#setRetention(long)
+	 */
+	@Override
+	public void setRetention(long retention) {
+		this.retention = retention;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#getCompactionRatio()
+	 */
+	@Override
+	public float getCompactionRatio() {
+		return compactRatio;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#setCompactionRatio(float)
+	 */
+	@Override
+	public void setCompactionRatio(float ratio) {
+		compactRatio = ratio;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * @see com.heliosapm.shorthand.store.ChronicleStoreMBean#getPendingDeallocateReprobes()
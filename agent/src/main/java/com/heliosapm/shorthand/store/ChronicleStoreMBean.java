@@ -104,6 +104,125 @@ public interface ChronicleStoreMBean {
 	public long getDirtyBufferCopyAverageTime();
 	
 	
+	/**
+	 * Returns the off-heap memory cap in bytes
+	 * @return the off-heap memory cap in bytes, zero or less for unlimited
+	 */
+	public long getOffHeapMax();
+	
+	/**
+	 * Sets the off-heap memory cap in bytes
+	 * @param max the off-heap memory cap in bytes, zero or less for unlimited
+	 */
+	public void setOffHeapMax(long max);
+	
+	/**
+	 * Returns the name of the policy applied when the off-heap cap is reached
+	 * @return the off-heap cap policy name
+	 */
+	public String getOffHeapPolicy();
+	
+	/**
+	 * Sets the policy applied when the off-heap cap is reached
+	 * @param policy the off-heap cap policy name (REFUSE or EVICT)
+	 */
+	public void setOffHeapPolicy(String policy);
+	
+	/**
+	 * Returns the total number of bytes of off-heap memory currently allocated by the agent
+	 * @return the number of allocated off-heap bytes
+	 */
+	public long getOffHeapAllocated();
+	
+	/**
+	 * Returns the current generation of the name index and tier 1 data chronicles
+	 * @return the current chronicle generation
+	 */
+	public long getGeneration();
+	
+	/**
+	 * Returns the number of name index records marked deleted since the last compaction
+	 * @return the number of deleted records
+	 */
+	public long getDeletedRecordCount();
+	
+	/**
+	 * Returns the number of completed compactions
+	 * @return the number of completed compactions
+	 */
+	public long getCompactionCount();
+	
+	/**
+	 * Returns the elapsed time of the last compaction in ms.
+	 * @return the elapsed time of the last compaction in ms. or -1 if none have run
+	 */
+	public long getLastCompactionTime();
+	
+	/**
+	 * Returns the number of metric names loaded from an existing store on startup
+	 * @return the number of loaded metric names
+	 */
+	public long getLoadedNameCount();
+	
+	/**
+	 * Returns the elapsed time of the startup name index load in ms.
+	 * @return the elapsed time of the name index load in ms.
+	 */
+	public long getNameLoadTime();
+	
+	/**
+	 * Returns the store directory
+	 * @return the store directory
+	 */
+	public String getStoreDirectory();
+	
+	/**
+	 * Returns the number of new metrics whose name record has not been committed yet
+	 * @return the number of pending metric names
+	 */
+	public long getPendingMetricNameCount();
+	
+	/**
+	 * Returns the number of batches of new metric names committed to the name index
+	 * @return the number of committed name batches
+	 */
+	public long getMetricNameBatchCount();
+	
+	/**
+	 * Returns the number of new metrics released because their name record could not be committed
+	 * @return the number of abandoned metric names
+	 */
+	public long getAbandonedMetricNameCount();
+	
+	/**
+	 * Requests a compaction of the chronicles at the end of the next flush
+	 */
+	public void requestCompaction();
+	
+	/**
+	 * Returns the elapsed time in ms. after which an idle unloaded metric is deleted
+	 * @return the retention period in ms., zero or less for unlimited
+	 */
+	public long getRetention();
+	
+	/**
+	 * Sets the elapsed time in ms. after which an idle unloaded metric is deleted
+	 * @param retention the retention period in ms., zero or less for unlimited
+	 */
+	public void setRetention(long retention);
+	
+	/**
+	 * Returns the ratio of deleted to total name index records that triggers a compaction
+	 * @return the compaction trigger ratio
+	 */
+	public float getCompactionRatio();
+	
+	/**
+	 * Sets the ratio of deleted to total name index records that triggers a compaction
+	 * @param ratio the compaction trigger ratio
+	 */
+	public void setCompactionRatio(float ratio);
+	
 	/**
 	 * Get and clear the current count of reprobes on the pending deallocate map
 	 * @return the total number of reprobes since the last reset
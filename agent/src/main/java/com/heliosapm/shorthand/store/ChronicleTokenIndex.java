@@ -0,0 +1,544 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import com.heliosapm.shorthand.util.unsafe.collections.UnsafeArrayBuilder;
+import com.heliosapm.shorthand.util.unsafe.collections.UnsafeLongArray;
+
+/**
+ * <p>Title: ChronicleTokenIndex</p>
+ * <p>Description: An inverted index of metric name tokens to the name index chronicle indexes of the names containing them.
+ * Names are split into tokens on <b><code>.</code></b>, <b><code>:</code></b>, <b><code>/</code></b> and <b><code>=</code></b>,
+ * and each token's posting list is kept as a sorted off-heap long array. Since names are appended to the name index in order,
+ * postings are almost always extended by an append.</p>
+ * <p>Token queries are a whitespace separated list of terms which must all match. A term is a <b><code>|</code></b> separated list
+ * of alternatives of which one must match, and a term prefixed with <b><code>-</code></b> excludes the names it matches.
+ * An alternative is a token glob supporting <b><code>*</code></b> and <b><code>?</code></b>, and an alternative containing
+ * delimiters matches names containing all its tokens. e.g. <b><code>com.heliosapm jdbc*|jms -test</code></b></p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.store.ChronicleTokenIndex</code></p>
+ */
+
+public class ChronicleTokenIndex {
+	/** The metric name token delimiters */
+	public static final String DELIMITERS = ".:/=";
+	/** The pattern splitting a metric name into tokens */
+	public static final Pattern TOKEN_SPLITTER = Pattern.compile("[\\.:/=]+");
+	/** An empty result */
+	public static final long[] EMPTY = new long[0];
+	
+	/** The posting lists keyed by token, sorted for prefix lookups */
+	protected final TreeMap<String, UnsafeLongArray> postings = new TreeMap<String, UnsafeLongArray>();
+	/** Guards the postings */
+	protected final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	/** The highest name index added */
+	protected volatile long highIndex = 0L;
+	/** The number of names added */
+	protected volatile long nameCount = 0L;
+	
+	/**
+	 * Splits the passed metric name into its distinct tokens
+	 * @param name The metric name
+	 * @return the distinct tokens in the order they appear
+	 */
+	public static Set<String> tokenize(CharSequence name) {
+		Set<String> tokens = new LinkedHashSet<String>();
+		for(String token: TOKEN_SPLITTER.split(name)) {
+			if(!token.isEmpty()) tokens.add(token);
+		}
+		return tokens;
+	}
+	
+	/**
+	 * Adds a metric name to the index
+	 * @param index The name index chronicle index of the name
+	 * @param name The metric name
+	 * @return the name's tokens
+	 */
+	public Set<String> add(long index, CharSequence name) {
+		Set<String> tokens = tokenize(name);
+		lock.writeLock().lock();
+		try {
+			for(String token: tokens) {
+				UnsafeLongArray posting = postings.get(token);
+				if(posting==null) {
+					posting = UnsafeArrayBuilder.newBuilder().initialCapacity(2).allocationIncrement(64).buildLongArray();
+					postings.put(token, posting);
+				}
+				int size = posting.size();
+				if(size==0 || posting.get(size-1) < index) {
+					posting.append(index);
+				} else if(posting.binarySearch(index)<0) {
+					posting.append(index);
+					posting.sort();
+				}
+			}
+			if(index>highIndex) highIndex = index;
+			nameCount++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		return tokens;
+	}
+	
+	/**
+	 * Removes all entries and frees the posting lists
+	 */
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			for(UnsafeLongArray posting: postings.values()) {
+				posting.destroy();
+			}
+			postings.clear();
+			highIndex = 0L;
+			nameCount = 0L;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Returns the highest name index added
+	 * @return the highest name index added
+	 */
+	public long getHighIndex() {
+		return highIndex;
+	}
+	
+	/**
+	 * Returns the number of names added
+	 * @return the number of names added
+	 */
+	public long getNameCount() {
+		return nameCount;
+	}
+	
+	/**
+	 * Returns the number of distinct tokens
+	 * @return the number of distinct tokens
+	 */
+	public int getTokenCount() {
+		lock.readLock().lock();
+		try {
+			return postings.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Executes a token query
+	 * @param query The query
+	 * @return the sorted name indexes matching the query
+	 */
+	public long[] query(String query) {
+		if(query==null || query.trim().isEmpty()) return EMPTY;
+		List<String> includes = new ArrayList<String>();
+		List<String> excludes = new ArrayList<String>();
+		for(String term: query.trim().split("\\s+")) {
+			if(term.startsWith("-")) {
+				if(term.length()>1) excludes.add(term.substring(1));
+			} else {
+				includes.add(term);
+			}
+		}
+		if(includes.isEmpty()) return EMPTY;
+		lock.readLock().lock();
+		try {
+			long[] result = null;
+			for(String term: includes) {
+				long[] matches = term(term);
+				result = result==null ? matches : intersect(result, matches);
+				if(result.length==0) return result;
+			}
+			for(String term: excludes) {
+				result = subtract(result, term(term));
+				if(result.length==0) return result;
+			}
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Returns the name indexes containing all the passed exact tokens and, for each passed prefix, a token starting with that prefix.
+	 * @param tokens The exact tokens
+	 * @param prefixes The token prefixes
+	 * @return the sorted matching name indexes
+	 */
+	public long[] candidates(Set<String> tokens, Set<String> prefixes) {
+		lock.readLock().lock();
+		try {
+			long[] result = null;
+			for(String token: tokens) {
+				long[] matches = posting(token);
+				result = result==null ? matches : intersect(result, matches);
+				if(result.length==0) return result;
+			}
+			for(String prefix: prefixes) {
+				long[] matches = union(postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values());
+				result = result==null ? matches : intersect(result, matches);
+				if(result.length==0) return result;
+			}
+			return result==null ? EMPTY : result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Evaluates one query term. Must be called holding the read lock.
+	 * @param term The term
+	 * @return the sorted matching name indexes
+	 */
+	protected long[] term(String term) {
+		long[] result = null;
+		for(String alternative: term.split("\\|")) {
+			if(alternative.isEmpty()) continue;
+			long[] matches = null;
+			for(String token: tokenize(alternative)) {
+				long[] tmatches = (token.indexOf('*')!=-1 || token.indexOf('?')!=-1) ? glob(token) : posting(token);
+				matches = matches==null ? tmatches : intersect(matches, tmatches);
+				if(matches.length==0) break;
+			}
+			if(matches==null) continue;
+			result = result==null ? matches : union(result, matches);
+		}
+		return result==null ? EMPTY : result;
+	}
+	
+	/**
+	 * Returns the union of the postings of the tokens matching the passed glob. Must be called holding the read lock.
+	 * @param glob The token glob
+	 * @return the sorted matching name indexes
+	 */
+	protected long[] glob(String glob) {
+		int wild = glob.length();
+		for(int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if(c=='*' || c=='?') { wild = i; break; }
+		}
+		String prefix = glob.substring(0, wild);
+		Map<String, UnsafeLongArray> range = prefix.isEmpty() ? postings : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+		if(wild==glob.length()-1 && glob.charAt(wild)=='*') {
+			return union(range.values());
+		}
+		Pattern p = Pattern.compile(globToRegex(glob));
+		List<UnsafeLongArray> matched = new ArrayList<UnsafeLongArray>();
+		for(Map.Entry<String, UnsafeLongArray> entry: range.entrySet()) {
+			if(p.matcher(entry.getKey()).matches()) matched.add(entry.getValue());
+		}
+		return union(matched);
+	}
+	
+	/**
+	 * Converts a token glob to a regex
+	 * @param glob The glob
+	 * @return the regex
+	 */
+	protected static String globToRegex(String glob) {
+		StringBuilder b = new StringBuilder();
+		int start = 0;
+		for(int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if(c=='*' || c=='?') {
+				if(i>start) b.append(Pattern.quote(glob.substring(start, i)));
+				b.append(c=='*' ? ".*" : ".");
+				start = i+1;
+			}
+		}
+		if(start<glob.length()) b.append(Pattern.quote(glob.substring(start)));
+		return b.toString();
+	}
+	
+	/**
+	 * Copies out a token's posting list. Must be called holding the read lock.
+	 * @param token The token
+	 * @return the sorted name indexes
+	 */
+	protected long[] posting(String token) {
+		UnsafeLongArray posting = postings.get(token);
+		return posting==null ? EMPTY : posting.getArray();
+	}
+	
+	/**
+	 * Merges a collection of posting lists. Must be called holding the read lock.
+	 * @param lists The posting lists
+	 * @return the sorted distinct name indexes
+	 */
+	protected static long[] union(Iterable<UnsafeLongArray> lists) {
+		int total = 0;
+		for(UnsafeLongArray list: lists) total += list.size();
+		if(total==0) return EMPTY;
+		long[] all = new long[total];
+		int pos = 0;
+		for(UnsafeLongArray list: lists) {
+			int size = list.size();
+			for(int i = 0; i < size; i++) all[pos++] = list.get(i);
+		}
+		Arrays.sort(all);
+		return distinct(all);
+	}
+	
+	/**
+	 * Removes adjacent duplicates from a sorted array
+	 * @param sorted The sorted array
+	 * @return the distinct values
+	 */
+	protected static long[] distinct(long[] sorted) {
+		if(sorted.length<2) return sorted;
+		int w = 1;
+		for(int r = 1; r < sorted.length; r++) {
+			if(sorted[r]!=sorted[w-1]) sorted[w++] = sorted[r];
+		}
+		return w==sorted.length ? sorted : Arrays.copyOf(sorted, w);
+	}
+	
+	/**
+	 * Returns the union of two sorted arrays
+	 * @param a The first array
+	 * @param b The second array
+	 * @return the sorted distinct union
+	 */
+	public static long[] union(long[] a, long[] b) {
+		long[] out = new long[a.length + b.length];
+		int i = 0, j = 0, w = 0;
+		while(i < a.length && j < b.length) {
+			if(a[i] < b[j]) out[w++] = a[i++];
+			else if(a[i] > b[j]) out[w++] = b[j++];
+			else { out[w++] = a[i++]; j++; }
+		}
+		while(i < a.length) out[w++] = a[i++];
+		while(j < b.length) out[w++] = b[j++];
+		return w==out.length ? out : Arrays.copyOf(out, w);
+	}
+	
+	/**
+	 * Returns the intersection of two sorted arrays, probing the larger with a binary search from the smaller
+	 * @param a The first array
+	 * @param b The second array
+	 * @return the sorted intersection
+	 */
+	public static long[] intersect(long[] a, long[] b) {
+		if(a.length > b.length) { long[] t = a; a = b; b = t; }
+		long[] out = new long[a.length];
+		int w = 0, from = 0;
+		for(long v: a) {
+			int idx = Arrays.binarySearch(b, from, b.length, v);
+			if(idx>=0) { out[w++] = v; from = idx+1; }
+			else from = -idx-1;
+			if(from>=b.length) break;
+		}
+		return w==out.length ? out : Arrays.copyOf(out, w);
+	}
+	
+	/**
+	 * Returns the values of the first sorted array not in the second
+	 * @param a The first array
+	 * @param b The array of values to remove
+	 * @return the sorted difference
+	 */
+	public static long[] subtract(long[] a, long[] b) {
+		if(b.length==0) return a;
+		long[] out = new long[a.length];
+		int w = 0;
+		for(long v: a) {
+			if(Arrays.binarySearch(b, v)<0) out[w++] = v;
+		}
+		return w==out.length ? out : Arrays.copyOf(out, w);
+	}
+	
+	/**
+	 * <p>Title: RegexPlan</p>
+	 * <p>Description: The tokens and token prefixes a name must contain to match a regex, used to narrow the names evaluated against the regex.
+	 * The extraction is conservative: regexes with alternation or groups yield an empty plan, meaning every name must be evaluated.</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.store.ChronicleTokenIndex.RegexPlan</code></p>
+	 */
+	public static class RegexPlan {
+		/** The exact tokens a matching name must contain */
+		public final Set<String> tokens = new LinkedHashSet<String>();
+		/** The prefixes of tokens a matching name must contain */
+		public final Set<String> prefixes = new LinkedHashSet<String>();
+		
+		/** Item type for a literal character */
+		private static final int LITERAL = 0;
+		/** Item type for anything that is not a single known character */
+		private static final int WILD = 1;
+		/** Item type for the start or end of the regex */
+		private static final int BOUNDARY = 2;
+		
+		/**
+		 * Indicates if the plan narrows the candidate names
+		 * @return true if the plan has any tokens or prefixes, false if all names must be evaluated
+		 */
+		public boolean isEmpty() {
+			return tokens.isEmpty() && prefixes.isEmpty();
+		}
+		
+		/**
+		 * Determines if a name with the passed tokens may match the regex
+		 * @param nameTokens The name's tokens
+		 * @return false if the name cannot match the regex
+		 */
+		public boolean mayMatch(Set<String> nameTokens) {
+			if(!nameTokens.containsAll(tokens)) return false;
+			for(String prefix: prefixes) {
+				boolean found = false;
+				for(String token: nameTokens) {
+					if(token.startsWith(prefix)) { found = true; break; }
+				}
+				if(!found) return false;
+			}
+			return true;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "RegexPlan [tokens=" + tokens + ", prefixes=" + prefixes + "]";
+		}
+		
+		/**
+		 * Extracts the plan for the passed regex
+		 * @param regex The regex, matched against the whole name
+		 * @return the plan
+		 */
+		public static RegexPlan plan(String regex) {
+			RegexPlan plan = new RegexPlan();
+			// Parse the regex into a sequence of literal characters and wildcards
+			List<int[]> items = new ArrayList<int[]>();
+			items.add(new int[]{BOUNDARY, 0});
+			final int len = regex.length();
+			for(int i = 0; i < len; i++) {
+				char c = regex.charAt(i);
+				switch(c) {
+					case '(': case ')': case '|':
+						return plan;
+					case '^':
+						if(i!=0) return plan;
+						continue;
+					case '$':
+						if(i!=len-1) return plan;
+						continue;
+					case '*': case '?': case '+':
+						// The quantified item is optional or repeated
+						if(items.size()>1) items.get(items.size()-1)[0] = WILD;
+						// Possessive and reluctant modifiers
+						if(i+1 < len && (regex.charAt(i+1)=='?' || regex.charAt(i+1)=='+')) i++;
+						continue;
+					case '{':
+						int close = regex.indexOf('}', i);
+						if(close==-1) return plan;
+						if(items.size()>1) items.get(items.size()-1)[0] = WILD;
+						i = close;
+						continue;
+					case '[':
+						int end = i+1;
+						if(end < len && regex.charAt(end)=='^') end++;
+						if(end < len && regex.charAt(end)==']') end++;
+						while(end < len && regex.charAt(end)!=']') {
+							if(regex.charAt(end)=='\\') end++;
+							end++;
+						}
+						if(end>=len) return plan;
+						items.add(new int[]{WILD, 0});
+						i = end;
+						continue;
+					case '.':
+						items.add(new int[]{WILD, 0});
+						continue;
+					case '\\':
+						if(i+1>=len) return plan;
+						char e = regex.charAt(++i);
+						if(Character.isLetterOrDigit(e)) {
+							// Character classes, anchors and back references
+							if(e=='Q') {
+								int q = regex.indexOf("\\E", i);
+								String quoted = q==-1 ? regex.substring(i+1) : regex.substring(i+1, q);
+								for(int x = 0; x < quoted.length(); x++) items.add(new int[]{LITERAL, quoted.charAt(x)});
+								i = q==-1 ? len : q+1;
+							} else {
+								items.add(new int[]{WILD, 0});
+							}
+						} else {
+							items.add(new int[]{LITERAL, e});
+						}
+						continue;
+					default:
+						items.add(new int[]{LITERAL, c});
+				}
+			}
+			items.add(new int[]{BOUNDARY, 0});
+			// Collect the literal runs bounded by delimiters or the regex ends
+			StringBuilder run = new StringBuilder();
+			boolean startBounded = false;
+			for(int i = 0; i < items.size(); i++) {
+				int[] item = items.get(i);
+				boolean delimiter = item[0]==BOUNDARY || (item[0]==LITERAL && DELIMITERS.indexOf(item[1])!=-1);
+				if(item[0]==LITERAL && !delimiter) {
+					if(run.length()==0) {
+						int[] prior = items.get(i-1);
+						startBounded = prior[0]==BOUNDARY || (prior[0]==LITERAL && DELIMITERS.indexOf(prior[1])!=-1);
+					}
+					run.append((char)item[1]);
+					continue;
+				}
+				if(run.length()>0 && startBounded) {
+					if(delimiter) plan.tokens.add(run.toString());
+					else plan.prefixes.add(run.toString());
+				}
+				run.setLength(0);
+			}
+			// A prefix implied by an exact token adds nothing
+			Set<String> redundant = new HashSet<String>();
+			for(String prefix: plan.prefixes) {
+				for(String token: plan.tokens) {
+					if(token.startsWith(prefix)) { redundant.add(prefix); break; }
+				}
+			}
+			plan.prefixes.removeAll(redundant);
+			return plan;
+		}
+	}
+}
@@ -0,0 +1,385 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.store;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.heliosapm.shorthand.util.unsafe.collections.UnsafeArrayBuilder;
+import com.heliosapm.shorthand.util.unsafe.collections.UnsafeLongArray;
+
+/**
+ * <p>Title: ChronicleTrigramIndex</p>
+ * <p>Description: An index of the three character substrings of metric names to the name index chronicle indexes of the names containing them.
+ * A regex is planned into a {@link TrigramQuery} by {@link TrigramQueryPlanner}, and the query narrows the names the regex must be evaluated against,
+ * covering the regexes that cannot be reduced to whole tokens. Posting lists are sorted off-heap long arrays.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.store.ChronicleTrigramIndex</code></p>
+ */
+
+public class ChronicleTrigramIndex {
+	/** The posting lists keyed by trigram key */
+	protected final TLongObjectHashMap<UnsafeLongArray> postings = new TLongObjectHashMap<UnsafeLongArray>();
+	/** Guards the postings */
+	protected final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	/** The highest name index added */
+	protected volatile long highIndex = 0L;
+	/** The total number of postings */
+	protected volatile long postingCount = 0L;
+	
+	/** Orders posting lists by ascending size */
+	protected static final Comparator<UnsafeLongArray> SIZE_ORDER = new Comparator<UnsafeLongArray>() {
+		@Override
+		public int compare(UnsafeLongArray a, UnsafeLongArray b) {
+			return a.size() < b.size() ? -1 : a.size()==b.size() ? 0 : 1;
+		}
+	};
+	
+	/**
+	 * Computes the key of the trigram starting at the passed offset
+	 * @param s The string
+	 * @param offset The offset of the trigram's first character
+	 * @return the trigram key
+	 */
+	public static long key(CharSequence s, int offset) {
+		return ((long)s.charAt(offset) << 32) | ((long)s.charAt(offset+1) << 16) | s.charAt(offset+2);
+	}
+	
+	/**
+	 * Returns the distinct trigram keys of the passed name
+	 * @param name The metric name
+	 * @return the sorted distinct trigram keys
+	 */
+	public static long[] keys(CharSequence name) {
+		final int len = name.length();
+		if(len<3) return ChronicleTokenIndex.EMPTY;
+		long[] keys = new long[len-2];
+		for(int i = 0; i < keys.length; i++) {
+			keys[i] = key(name, i);
+		}
+		Arrays.sort(keys);
+		return ChronicleTokenIndex.distinct(keys);
+	}
+	
+	/**
+	 * Adds a metric name to the index
+	 * @param index The name index chronicle index of the name
+	 * @param name The metric name
+	 */
+	public void add(long index, CharSequence name) {
+		long[] keys = keys(name);
+		lock.writeLock().lock();
+		try {
+			for(long key: keys) {
+				UnsafeLongArray posting = postings.get(key);
+				if(posting==null) {
+					posting = UnsafeArrayBuilder.newBuilder().initialCapacity(2).allocationIncrement(64).buildLongArray();
+					postings.put(key, posting);
+				}
+				int size = posting.size();
+				if(size==0 || posting.get(size-1) < index) {
+					posting.append(index);
+				} else if(posting.binarySearch(index)<0) {
+					posting.append(index);
+					posting.sort();
+				} else {
+					continue;
+				}
+				postingCount++;
+			}
+			if(index>highIndex) highIndex = index;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Removes all entries and frees the posting lists
+	 */
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			for(UnsafeLongArray posting: postings.valueCollection()) {
+				posting.destroy();
+			}
+			postings.clear();
+			highIndex = 0L;
+			postingCount = 0L;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Returns the highest name index added
+	 * @return the highest name index added
+	 */
+	public long getHighIndex() {
+		return highIndex;
+	}
+	
+	/**
+	 * Returns the number of distinct trigrams
+	 * @return the number of distinct trigrams
+	 */
+	public int getTrigramCount() {
+		lock.readLock().lock();
+		try {
+			return postings.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Returns the total number of postings
+	 * @return the total number of postings
+	 */
+	public long getPostingCount() {
+		return postingCount;
+	}
+	
+	/**
+	 * Executes a trigram query
+	 * @param query The query
+	 * @return the sorted candidate name indexes, or null if the query does not narrow the candidates
+	 */
+	public long[] query(TrigramQuery query) {
+		lock.readLock().lock();
+		try {
+			return eval(query);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Evaluates a trigram query. Must be called holding the read lock.
+	 * @param query The query
+	 * @return the sorted candidate name indexes, or null if the query does not narrow the candidates
+	 */
+	protected long[] eval(TrigramQuery query) {
+		switch(query.op) {
+			case TrigramQuery.NONE:
+				return ChronicleTokenIndex.EMPTY;
+			case TrigramQuery.AND:
+				long[] result = null;
+				if(!query.trigrams.isEmpty()) {
+					// Probe the larger posting lists from the smallest
+					List<UnsafeLongArray> lists = new ArrayList<UnsafeLongArray>(query.trigrams.size());
+					for(String trigram: query.trigrams) {
+						UnsafeLongArray posting = postings.get(key(trigram, 0));
+						if(posting==null) return ChronicleTokenIndex.EMPTY;
+						lists.add(posting);
+					}
+					Collections.sort(lists, SIZE_ORDER);
+					result = lists.get(0).getArray();
+					for(int i = 1; i < lists.size() && result.length>0; i++) {
+						result = intersect(result, lists.get(i));
+					}
+				}
+				for(TrigramQuery sub: query.subs) {
+					if(result!=null && result.length==0) break;
+					long[] subResult = eval(sub);
+					if(subResult==null) continue;
+					result = result==null ? subResult : ChronicleTokenIndex.intersect(result, subResult);
+				}
+				return result;
+			case TrigramQuery.OR:
+				long[] union = ChronicleTokenIndex.EMPTY;
+				for(String trigram: query.trigrams) {
+					UnsafeLongArray posting = postings.get(key(trigram, 0));
+					if(posting!=null) union = ChronicleTokenIndex.union(union, posting.getArray());
+				}
+				for(TrigramQuery sub: query.subs) {
+					long[] subResult = eval(sub);
+					if(subResult==null) return null;
+					union = ChronicleTokenIndex.union(union, subResult);
+				}
+				return union;
+			default:
+				return null;
+		}
+	}
+	
+	/**
+	 * Returns the values of the sorted array that are in the posting list
+	 * @param a The sorted array
+	 * @param posting The posting list
+	 * @return the sorted intersection
+	 */
+	protected static long[] intersect(long[] a, UnsafeLongArray posting) {
+		long[] out = new long[a.length];
+		int w = 0;
+		for(long v: a) {
+			if(posting.binarySearch(v)>=0) out[w++] = v;
+		}
+		return w==out.length ? out : Arrays.copyOf(out, w);
+	}
+	
+	/**
+	 * <p>Title: TrigramQuery</p>
+	 * <p>Description: An immutable boolean query over trigrams. An AND query requires all its trigrams and sub-queries,
+	 * and an OR query requires any one of them.</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.store.ChronicleTrigramIndex.TrigramQuery</code></p>
+	 */
+	public static class TrigramQuery {
+		/** Op code for a query matching everything */
+		public static final int ALL = 0;
+		/** Op code for a query matching nothing */
+		public static final int NONE = 1;
+		/** Op code for a conjunction */
+		public static final int AND = 2;
+		/** Op code for a disjunction */
+		public static final int OR = 3;
+		
+		/** The query matching everything */
+		public static final TrigramQuery ALL_QUERY = new TrigramQuery(ALL, Collections.<String>emptySet(), Collections.<TrigramQuery>emptyList());
+		/** The query matching nothing */
+		public static final TrigramQuery NONE_QUERY = new TrigramQuery(NONE, Collections.<String>emptySet(), Collections.<TrigramQuery>emptyList());
+		
+		/** The query op code */
+		public final int op;
+		/** The trigrams */
+		public final Set<String> trigrams;
+		/** The sub-queries */
+		public final List<TrigramQuery> subs;
+		
+		/**
+		 * Creates a new TrigramQuery
+		 * @param op The op code
+		 * @param trigrams The trigrams
+		 * @param subs The sub-queries
+		 */
+		private TrigramQuery(int op, Set<String> trigrams, List<TrigramQuery> subs) {
+			this.op = op;
+			this.trigrams = trigrams;
+			this.subs = subs;
+		}
+		
+		/**
+		 * Indicates if this query matches everything
+		 * @return true if this query matches everything
+		 */
+		public boolean isAll() {
+			return op==ALL;
+		}
+		
+		/**
+		 * Returns the conjunction of this query and the passed query
+		 * @param other The other query
+		 * @return the conjunction
+		 */
+		public TrigramQuery and(TrigramQuery other) {
+			return combine(AND, other);
+		}
+		
+		/**
+		 * Returns the disjunction of this query and the passed query
+		 * @param other The other query
+		 * @return the disjunction
+		 */
+		public TrigramQuery or(TrigramQuery other) {
+			return combine(OR, other);
+		}
+		
+		/**
+		 * Combines this query with another
+		 * @param combOp The combining op, {@link #AND} or {@link #OR}
+		 * @param other The other query
+		 * @return the combined query
+		 */
+		protected TrigramQuery combine(int combOp, TrigramQuery other) {
+			// ALL absorbs a disjunction and NONE absorbs a conjunction
+			final int absorbing = combOp==AND ? NONE : ALL, identity = combOp==AND ? ALL : NONE;
+			if(op==absorbing || other.op==identity) return this;
+			if(other.op==absorbing || op==identity) return other;
+			Set<String> t = new LinkedHashSet<String>();
+			List<TrigramQuery> s = new ArrayList<TrigramQuery>();
+			for(TrigramQuery q: new TrigramQuery[]{this, other}) {
+				if(q.op==combOp) {
+					t.addAll(q.trigrams);
+					s.addAll(q.subs);
+				} else {
+					s.add(q);
+				}
+			}
+			return new TrigramQuery(combOp, Collections.unmodifiableSet(t), Collections.unmodifiableList(s));
+		}
+		
+		/**
+		 * Returns the conjunction of this query and the query matching any one of the passed strings, 
+		 * where a string matches when all its trigrams match. Strings shorter than a trigram match everything.
+		 * @param strings The strings
+		 * @return the conjunction
+		 */
+		public TrigramQuery andTrigrams(Set<String> strings) {
+			if(strings.isEmpty() || TrigramQueryPlanner.minLen(strings) < 3) return this;
+			TrigramQuery any = NONE_QUERY;
+			for(String s: strings) {
+				Set<String> t = new LinkedHashSet<String>();
+				for(int i = 0; i + 3 <= s.length(); i++) {
+					t.add(s.substring(i, i+3));
+				}
+				any = any.or(new TrigramQuery(AND, Collections.unmodifiableSet(t), Collections.<TrigramQuery>emptyList()));
+			}
+			return and(any);
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			switch(op) {
+				case ALL: return "+";
+				case NONE: return "-";
+			}
+			StringBuilder b = new StringBuilder();
+			final String sep = op==AND ? " " : "|";
+			for(String t: trigrams) {
+				if(b.length()>0) b.append(sep);
+				b.append('"').append(t).append('"');
+			}
+			for(TrigramQuery q: subs) {
+				if(b.length()>0) b.append(sep);
+				b.append('(').append(q).append(')');
+			}
+			return b.toString();
+		}
+	}
+}
@@ -0,0 +1,174 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.store;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+import com.higherfrequencytrading.chronicle.Excerpt;
+
+/**
+ * <p>Title: ExcerptCharSequence</p>
+ * <p>Description: A reusable {@link CharSequence} view over a run of encoded characters in a chronicle excerpt, such as a metric name
+ * in the name index, which regex matchers and prefix comparisons can run on without allocating a String per record.
+ * Pure ASCII runs are read directly from the excerpt. Runs containing multi-byte characters are decoded with the
+ * platform charset the names are written in, into buffers reused across bindings.</p>
+ * <p>A view is only valid while its excerpt stays on the bound record, and is not thread safe.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.store.ExcerptCharSequence</code></p>
+ */
+
+public class ExcerptCharSequence implements CharSequence {
+	/** The bound excerpt */
+	protected Excerpt ex = null;
+	/** The offset of the first byte in the excerpt */
+	protected int offset = 0;
+	/** The number of characters */
+	protected int length = 0;
+	/** Indicates if the bound bytes are all ASCII, so each byte is one character */
+	protected boolean ascii = true;
+	/** The decoder for non ASCII names, created on first use */
+	protected CharsetDecoder decoder = null;
+	/** The non ASCII name bytes */
+	protected byte[] bytes = null;
+	/** The decoded non ASCII name */
+	protected CharBuffer decoded = null;
+	
+	/**
+	 * Binds this view to a run of bytes in the passed excerpt
+	 * @param ex The excerpt positioned on the record holding the bytes
+	 * @param offset The offset of the first byte in the record
+	 * @param byteLength The number of bytes
+	 * @return this view
+	 */
+	public ExcerptCharSequence bind(Excerpt ex, int offset, int byteLength) {
+		this.ex = ex;
+		this.offset = offset;
+		ascii = true;
+		for(int i = 0; i < byteLength; i++) {
+			if(ex.readByte(offset + i) < 0) {
+				ascii = false;
+				break;
+			}
+		}
+		if(ascii) {
+			length = byteLength;
+		} else {
+			decode(byteLength);
+			length = decoded.remaining();
+		}
+		return this;
+	}
+	
+	/**
+	 * Decodes the bound bytes into the reused buffers
+	 * @param byteLength The number of bytes
+	 */
+	protected void decode(int byteLength) {
+		if(decoder==null) {
+			decoder = Charset.defaultCharset().newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+		if(bytes==null || bytes.length < byteLength) bytes = new byte[byteLength * 2];
+		if(decoded==null || decoded.capacity() < byteLength) decoded = CharBuffer.allocate(byteLength * 2);
+		for(int i = 0; i < byteLength; i++) {
+			bytes[i] = ex.readByte(offset + i);
+		}
+		decoded.clear();
+		decoder.reset();
+		decoder.decode(ByteBuffer.wrap(bytes, 0, byteLength), decoded, true);
+		decoder.flush(decoded);
+		decoded.flip();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.CharSequence#length()
+	 */
+	@Override
+	public int length() {
+		return length;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.CharSequence#charAt(int)
+	 */
+	@Override
+	public char charAt(int index) {
+		if(index < 0 || index >= length) throw new IndexOutOfBoundsException("Index [" + index + "] out of range for length [" + length + "]");
+		return ascii ? (char)ex.readByte(offset + index) : decoded.get(index);
+	}
+	
+	/**
+	 * Returns a String copy of the passed range
+	 * {@inheritDoc}
+	 * @see java.lang.CharSequence#subSequence(int, int)
+	 */
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if(start < 0 || end > length || start > end) throw new IndexOutOfBoundsException("Range [" + start + "-" + end + "] out of range for length [" + length + "]");
+		StringBuilder b = new StringBuilder(end - start);
+		for(int i = start; i < end; i++) {
+			b.append(charAt(i));
+		}
+		return b.toString();
+	}
+	
+	/**
+	 * Indicates if this sequence starts with the passed prefix
+	 * @param prefix The prefix
+	 * @return true if this sequence starts with the prefix
+	 */
+	public boolean startsWith(CharSequence prefix) {
+		final int plen = prefix.length();
+		if(plen > length) return false;
+		for(int i = 0; i < plen; i++) {
+			if(charAt(i)!=prefix.charAt(i)) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Indicates if this sequence has the same characters as the passed sequence
+	 * @param cs The sequence to compare to
+	 * @return true if the characters are the same
+	 */
+	public boolean contentEquals(CharSequence cs) {
+		return cs.length()==length && startsWith(cs);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return subSequence(0, length).toString();
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.store;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.heliosapm.shorthand.accumulator.FastPeriodListener;
+import com.heliosapm.shorthand.accumulator.MemSpaceAccessor;
+import com.heliosapm.shorthand.accumulator.PeriodClock;
+import com.heliosapm.shorthand.collectors.ICollector;
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+import com.heliosapm.shorthand.util.unsafe.OffHeapSubsystem;
+import com.heliosapm.shorthand.util.unsafe.UnsafeAdapter;
+
+/**
+ * <p>Title: LiveMetricView</p>
+ * <p>Description: An in-memory view of the metrics active in the current persisted period, sampled at the end of each fast period.
+ * Each sample copies the touched mem-spaces under their locks into a scratch buffer and reads the period to date values from the copy, 
+ * so the accumulation into the persisted period is untouched and the view is the running aggregate the next flush will persist.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.store.LiveMetricView</code></p>
+ * @param <T> The collector type
+ */
+
+public class LiveMetricView<T extends Enum<T> & ICollector<T>> implements FastPeriodListener, LiveMetricViewMBean {
+	/** The sampled store */
+	protected final ChronicleStore<T> store;
+	/** The last sampled view, replaced by each sample */
+	protected volatile Map<String, long[][]> view = Collections.emptyMap();
+	/** The start of the persisted period of the last sample */
+	protected volatile long viewStartTime = 0L;
+	/** The end of the fast period of the last sample */
+	protected volatile long viewEndTime = 0L;
+	/** The number of samples taken */
+	protected final AtomicLong samples = new AtomicLong(0L);
+	/** The elapsed time of the last sample in ns. */
+	protected volatile long lastSampleNanos = 0L;
+	/** The scratch buffer mem-spaces are copied into, accessed only by the fast tick thread */
+	protected long scratch = 0L;
+	/** The scratch buffer size in bytes */
+	protected int scratchSize = 0;
+	
+	/**
+	 * Creates a new LiveMetricView and registers it with the period clock
+	 * @param store The store to sample
+	 */
+	LiveMetricView(ChronicleStore<T> store) {
+		this.store = store;
+		PeriodClock.getInstance().registerFastListener(this);
+		JMXHelper.registerMBean(OBJECT_NAME, this);
+	}
+	
+	/**
+	 * Samples the store's touched mem-spaces
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.accumulator.FastPeriodListener#onFastPeriod(long, long)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void onFastPeriod(long startTime, long endTime) {
+		final long start = System.nanoTime();
+		final MemSpaceAccessor<T> msa = MemSpaceAccessor.get(-1L);
+		final Map<String, long[][]> next = new HashMap<String, long[][]>(view.size() + 16);
+		store.globalLockRead();
+		for(Map.Entry<String, Long> entry: store.SNAPSHOT_INDEX.entrySet()) {
+			final long address = entry.getValue();
+			int size = 0;
+			long ref = store.lock(address);
+			try {
+				if(ref==-1L) continue;
+				msa.setAddress(ref);
+				if(msa.isInvalidated() || ChronicleStore.isPending(msa) || !msa.isTouched()) continue;
+				size = msa.getMemSize();
+				if(size > scratchSize) {
+					if(scratch!=0L) UnsafeAdapter.freeMemory(scratch);
+					scratch = UnsafeAdapter.allocateMemory(size, OffHeapSubsystem.BUFFER);
+					scratchSize = size;
+				}
+				UnsafeAdapter.copyMemory(ref, scratch, size);
+			} finally {
+				store.unlock(address);
+			}
+			msa.setAddress(scratch);
+			msa.preFlush();
+			next.put(entry.getKey(), msa.getDataPoints());
+		}
+		view = next;
+		long[] period = PeriodClock.getInstance().getCurrentPeriod(startTime);
+		viewStartTime = period[0];
+		viewEndTime = endTime;
+		samples.incrementAndGet();
+		lastSampleNanos = System.nanoTime()-start;
+	}
+	
+	/**
+	 * Returns the last sampled view of period to date data points keyed by metric name
+	 * @return the last sampled view
+	 */
+	public Map<String, long[][]> getView() {
+		return Collections.unmodifiableMap(view);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.LiveMetricViewMBean#getDataPoints(java.lang.String)
+	 */
+	@Override
+	public long[][] getDataPoints(String name) {
+		return view.get(name);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.LiveMetricViewMBean#getMetricCount()
+	 */
+	@Override
+	public int getMetricCount() {
+		return view.size();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.LiveMetricViewMBean#getViewStartTime()
+	 */
+	@Override
+	public long getViewStartTime() {
+		return viewStartTime;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.LiveMetricViewMBean#getViewEndTime()
+	 */
+	@Override
+	public long getViewEndTime() {
+		return viewEndTime;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.LiveMetricViewMBean#getSampleCount()
+	 */
+	@Override
+	public long getSampleCount() {
+		return samples.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.store.LiveMetricViewMBean#getLastSampleTimeUs()
+	 */
+	@Override
+	public long getLastSampleTimeUs() {
+		return TimeUnit.NANOSECONDS.toMicros(lastSampleNanos);
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.store;
+
+import javax.management.ObjectName;
+
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+
+/**
+ * <p>Title: LiveMetricViewMBean</p>
+ * <p>Description: JMX interface for the live metric view sampled on each fast period</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.store.LiveMetricViewMBean</code></p>
+ */
+
+public interface LiveMetricViewMBean {
+	/** The live metric view JMX ObjectName */
+	public static final ObjectName OBJECT_NAME = JMXHelper.objectName("com.heliosapm.shorthand.store:service=LiveMetricView");
+
+	/**
+	 * Returns the number of metrics in the view
+	 * @return the number of metrics in the view
+	 */
+	public int getMetricCount();
+
+	/**
+	 * Returns the start time of the persisted period the view's values have accumulated from
+	 * @return the start time in ms.
+	 */
+	public long getViewStartTime();
+
+	/**
+	 * Returns the end time of the fast period the view was sampled at
+	 * @return the end time in ms.
+	 */
+	public long getViewEndTime();
+
+	/**
+	 * Returns the number of samples taken
+	 * @return the number of samples
+	 */
+	public long getSampleCount();
+
+	/**
+	 * Returns the elapsed time of the last sample in us.
+	 * @return the elapsed time of the last sample in us.
+	 */
+	public long getLastSampleTimeUs();
+
+	/**
+	 * Returns the period to date data points of the named metric, keyed in the sequence of the enabled metrics
+	 * @param name The metric name
+	 * @return the data points, or null if the metric has not been active in the current persisted period
+	 */
+	public long[][] getDataPoints(String name);
+}
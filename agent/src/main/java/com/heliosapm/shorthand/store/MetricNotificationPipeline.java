@@ -0,0 +1,531 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.management.Notification;
+import javax.management.NotificationListener;
+
+import com.heliosapm.shorthand.ShorthandProperties;
+import com.heliosapm.shorthand.store.ChronicleTokenIndex.RegexPlan;
+import com.heliosapm.shorthand.util.ConfigurationHelper;
+
+/**
+ * <p>Title: MetricNotificationPipeline</p>
+ * <p>Description: Delivers new and stale metric name notifications to the listeners subscribed to a name pattern, and to the
+ * unfiltered listeners of {@link ChronicleRegexIndexer}. Events are queued on a bounded queue and matched by a single dispatcher thread
+ * against a pre-compiled set of the subscribed patterns, where each pattern is only evaluated for names holding the tokens its {@link RegexPlan} requires.
+ * Matches are coalesced per listener and delivered as one notification per event type when the store completes a flush, so each listener 
+ * gets at most two notifications per period whatever the number of events.</p>
+ * <p>The pipeline is bounded: events are dropped and counted when the queue is full, and a listener's batch stops growing at the batch limit 
+ * while its prior batch is still being delivered. The number of events a listener missed is reported in the message of its next notification.</p>
+ * <p>Notifications carry a <b><code>Map&lt;String, Long&gt;</code></b> of metric name indexes keyed by metric name as user data,
+ * and the handback of a subscribed listener is the first pattern that matched an event in the batch.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.store.MetricNotificationPipeline</code></p>
+ */
+
+public class MetricNotificationPipeline implements Runnable {
+	/** The indexer broadcasting to the unfiltered listeners */
+	protected final ChronicleRegexIndexer indexer;
+	/** The executor delivering batches */
+	protected final Executor executor;
+	/** The queued events */
+	protected final ArrayBlockingQueue<NameEvent> events;
+	/** The maximum number of events in a listener's batch */
+	protected final int maxBatch;
+	/** The subscribed listeners keyed by the pattern they're subscribed to */
+	protected final Map<Pattern, Set<NotificationListener>> subscriptions = new HashMap<Pattern, Set<NotificationListener>>();
+	/** The compiled subscriptions, replaced when the subscriptions change */
+	protected volatile SubscriptionSet subscriptionSet = new SubscriptionSet(Collections.<Pattern, Set<NotificationListener>>emptyMap());
+	/** The pending batches keyed by listener, accessed only by the dispatcher thread */
+	protected final Map<NotificationListener, ListenerBatch> batches = new IdentityHashMap<NotificationListener, ListenerBatch>();
+	/** The pending batch for the unfiltered listeners, accessed only by the dispatcher thread */
+	protected final ListenerBatch broadcastBatch = new ListenerBatch(null);
+	/** Indicates a delivery of the pending batches has been requested and not yet made */
+	protected volatile boolean deliveryRequested = false;
+	/** A queued marker to wake the dispatcher to deliver */
+	protected static final NameEvent DELIVER = new NameEvent(false, null, -1L);
+	
+	/** The number of events submitted */
+	protected final AtomicLong submitted = new AtomicLong(0L);
+	/** The number of events dropped because the queue was full */
+	protected final AtomicLong queueDrops = new AtomicLong(0L);
+	/** The number of listener events dropped because the listener's batch was full */
+	protected final AtomicLong batchDrops = new AtomicLong(0L);
+	/** The number of batch notifications delivered */
+	protected final AtomicLong delivered = new AtomicLong(0L);
+	/** The queue drops not yet reported to the listeners, accessed only by the dispatcher thread */
+	protected long unreportedQueueDrops = 0L;
+	/** The queue drops already accounted for, accessed only by the dispatcher thread */
+	protected long accountedQueueDrops = 0L;
+	
+	/**
+	 * Creates a new MetricNotificationPipeline and starts its dispatcher thread
+	 * @param indexer The indexer broadcasting to the unfiltered listeners
+	 * @param executor The executor delivering batches
+	 */
+	MetricNotificationPipeline(ChronicleRegexIndexer indexer, Executor executor) {
+		this.indexer = indexer;
+		this.executor = executor;
+		events = new ArrayBlockingQueue<NameEvent>(Math.max(16, ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.STORE_NOTIF_QUEUE_PROP, ShorthandProperties.DEFAULT_STORE_NOTIF_QUEUE)), false);
+		maxBatch = Math.max(1, ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.STORE_NOTIF_BATCH_PROP, ShorthandProperties.DEFAULT_STORE_NOTIF_BATCH));
+		Thread t = new Thread(this, "MetricNotificationDispatcherThread");
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	/**
+	 * Submits a metric name event without blocking. The event is dropped if the queue is full.
+	 * @param stale true for a stale metric, false for a new metric
+	 * @param name The metric name
+	 * @param index The metric name index
+	 */
+	public void submit(boolean stale, String name, long index) {
+		submitted.incrementAndGet();
+		if(!events.offer(new NameEvent(stale, name, index))) {
+			queueDrops.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Requests the delivery of the pending batches once the events submitted so far have been matched
+	 */
+	public void deliver() {
+		deliveryRequested = true;
+		events.offer(DELIVER);
+	}
+	
+	/**
+	 * Subscribes a listener to the events for metric names matching the passed pattern
+	 * @param pattern The pattern
+	 * @param listener The listener
+	 */
+	public synchronized void subscribe(Pattern pattern, NotificationListener listener) {
+		Set<NotificationListener> listeners = subscriptions.get(pattern);
+		if(listeners==null) {
+			listeners = new CopyOnWriteArraySet<NotificationListener>();
+			subscriptions.put(pattern, listeners);
+		}
+		if(listeners.add(listener)) recompile();
+	}
+	
+	/**
+	 * Unsubscribes a listener from the passed pattern
+	 * @param pattern The pattern
+	 * @param listener The listener
+	 * @return true if the listener was subscribed to the pattern
+	 */
+	public synchronized boolean unsubscribe(Pattern pattern, NotificationListener listener) {
+		Set<NotificationListener> listeners = subscriptions.get(pattern);
+		if(listeners==null || !listeners.remove(listener)) return false;
+		if(listeners.isEmpty()) subscriptions.remove(pattern);
+		recompile();
+		return true;
+	}
+	
+	/**
+	 * Unsubscribes a listener from all patterns
+	 * @param listener The listener
+	 * @return true if the listener was subscribed to any pattern
+	 */
+	public synchronized boolean unsubscribe(NotificationListener listener) {
+		boolean found = false;
+		for(Iterator<Set<NotificationListener>> iter = subscriptions.values().iterator(); iter.hasNext();) {
+			Set<NotificationListener> listeners = iter.next();
+			if(listeners.remove(listener)) {
+				found = true;
+				if(listeners.isEmpty()) iter.remove();
+			}
+		}
+		if(found) recompile();
+		return found;
+	}
+	
+	/**
+	 * Rebuilds the compiled subscriptions. Must be called holding this pipeline's monitor.
+	 */
+	protected void recompile() {
+		subscriptionSet = new SubscriptionSet(subscriptions);
+	}
+	
+	/**
+	 * The dispatcher loop
+	 * {@inheritDoc}
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		final List<NameEvent> drained = new ArrayList<NameEvent>(1024);
+		while(true) {
+			try {
+				drained.add(events.take());
+				events.drainTo(drained, 1023);
+				boolean deliver = false;
+				for(NameEvent event: drained) {
+					if(event==DELIVER) deliver = true;
+					else dispatch(event);
+				}
+				drained.clear();
+				// The flag covers a marker dropped by a full queue, in which case the delivery waits for the queue to drain
+				if(deliveryRequested && (deliver || events.isEmpty())) {
+					deliveryRequested = false;
+					deliverAll();
+				}
+			} catch (InterruptedException iex) {
+				/* No Op */
+			} catch (Throwable t) {
+				drained.clear();
+				ChronicleRegexIndexer.loge("Metric notification dispatch failed: %s", t);
+			}
+		}
+	}
+	
+	/**
+	 * Matches an event against the compiled subscriptions and adds it to the batches of the matched listeners
+	 * @param event The event
+	 */
+	protected void dispatch(NameEvent event) {
+		broadcastBatch.add(event, null);
+		SubscriptionSet set = subscriptionSet;
+		if(set.isEmpty()) return;
+		Set<String> tokens = ChronicleTokenIndex.tokenize(event.name);
+		for(String token: tokens) {
+			List<Subscription> subs = set.byToken.get(token);
+			if(subs!=null) {
+				for(Subscription sub: subs) match(sub, event, tokens);
+			}
+		}
+		for(Subscription sub: set.others) match(sub, event, tokens);
+	}
+	
+	/**
+	 * Evaluates a subscription against an event and adds the event to the batches of the subscription's listeners if it matches
+	 * @param sub The subscription
+	 * @param event The event
+	 * @param tokens The event's metric name tokens
+	 */
+	protected void match(Subscription sub, NameEvent event, Set<String> tokens) {
+		if(!sub.plan.mayMatch(tokens) || !sub.matcher.reset(event.name).matches()) return;
+		for(NotificationListener listener: sub.listeners) {
+			ListenerBatch batch = batches.get(listener);
+			if(batch==null) {
+				batch = new ListenerBatch(listener);
+				batches.put(listener, batch);
+			}
+			batch.add(event, sub.pattern.pattern());
+		}
+	}
+	
+	/**
+	 * Delivers the pending batches of all listeners and drops the batches of listeners no longer subscribed
+	 */
+	protected void deliverAll() {
+		long drops = queueDrops.get();
+		unreportedQueueDrops = drops - accountedQueueDrops;
+		accountedQueueDrops = drops;
+		Set<NotificationListener> subscribed = Collections.newSetFromMap(new IdentityHashMap<NotificationListener, Boolean>());
+		for(Subscription sub: subscriptionSet.all) {
+			subscribed.addAll(sub.listeners);
+		}
+		for(Iterator<ListenerBatch> iter = batches.values().iterator(); iter.hasNext();) {
+			ListenerBatch batch = iter.next();
+			if(!subscribed.contains(batch.listener)) {
+				if(!batch.inFlight.get()) iter.remove();
+				continue;
+			}
+			batch.deliver(unreportedQueueDrops);
+		}
+		broadcastBatch.deliver(unreportedQueueDrops);
+	}
+	
+	/**
+	 * Returns the number of events waiting to be matched
+	 * @return the number of queued events
+	 */
+	public int getQueueDepth() {
+		return events.size();
+	}
+	
+	/**
+	 * Returns the number of events submitted
+	 * @return the number of events submitted
+	 */
+	public long getSubmittedCount() {
+		return submitted.get();
+	}
+	
+	/**
+	 * Returns the number of events dropped, either because the queue was full or because a listener's batch was full
+	 * @return the number of dropped events
+	 */
+	public long getDroppedCount() {
+		return queueDrops.get() + batchDrops.get();
+	}
+	
+	/**
+	 * Returns the number of batch notifications delivered
+	 * @return the number of batch notifications delivered
+	 */
+	public long getDeliveredCount() {
+		return delivered.get();
+	}
+	
+	/**
+	 * Returns the number of subscribed patterns
+	 * @return the number of subscribed patterns
+	 */
+	public int getSubscriptionCount() {
+		return subscriptionSet.all.size();
+	}
+	
+	/**
+	 * <p>Title: ListenerBatch</p>
+	 * <p>Description: The events pending delivery to one listener, or to the unfiltered listeners when the listener is null.
+	 * Events are added by the dispatcher thread, and a delivered batch is swapped out and handed to the executor.</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.store.MetricNotificationPipeline.ListenerBatch</code></p>
+	 */
+	protected class ListenerBatch {
+		/** The listener, or null for the unfiltered listeners */
+		protected final NotificationListener listener;
+		/** Indicates a delivery to the listener is in progress */
+		protected final AtomicBoolean inFlight = new AtomicBoolean(false);
+		/** The pending new metric name indexes keyed by name */
+		protected Map<String, Long> newNames = new LinkedHashMap<String, Long>();
+		/** The pending stale metric name indexes keyed by name */
+		protected Map<String, Long> staleNames = new LinkedHashMap<String, Long>();
+		/** The number of events dropped since the last delivery */
+		protected long dropped = 0L;
+		/** The handback, the first pattern matched since the last delivery */
+		protected String handback = null;
+		
+		/**
+		 * Creates a new ListenerBatch
+		 * @param listener The listener, or null for the unfiltered listeners
+		 */
+		protected ListenerBatch(NotificationListener listener) {
+			this.listener = listener;
+		}
+		
+		/**
+		 * Adds an event to this batch, or counts it as dropped if the batch is full
+		 * @param event The event
+		 * @param pattern The matched pattern
+		 */
+		protected void add(NameEvent event, String pattern) {
+			if(newNames.size() + staleNames.size() >= maxBatch) {
+				// Deliver early if the listener is keeping up, otherwise coalescing has reached its limit
+				if(!deliver(0)) {
+					dropped++;
+					batchDrops.incrementAndGet();
+					return;
+				}
+			}
+			if(handback==null) handback = pattern;
+			if(event.stale) {
+				newNames.remove(event.name);
+				staleNames.put(event.name, event.index);
+			} else {
+				staleNames.remove(event.name);
+				newNames.put(event.name, event.index);
+			}
+		}
+		
+		/**
+		 * Hands this batch's pending events to the executor unless a prior delivery is still in progress
+		 * @param queueDropped The number of events dropped from the queue since the last delivery
+		 * @return true if the events were handed off or there were none, false if a prior delivery is in progress
+		 */
+		protected boolean deliver(long queueDropped) {
+			final long missed = dropped + queueDropped;
+			if(newNames.isEmpty() && staleNames.isEmpty() && missed==0) return true;
+			if(!inFlight.compareAndSet(false, true)) return false;
+			final Map<String, Long> newBatch = newNames, staleBatch = staleNames;
+			final String hb = handback;
+			newNames = new LinkedHashMap<String, Long>();
+			staleNames = new LinkedHashMap<String, Long>();
+			dropped = 0;
+			handback = null;
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							if(!newBatch.isEmpty() || missed > 0) send(ChronicleRegexIndexerMBean.NOTIF_NEW_METRIC, newBatch, missed);
+							if(!staleBatch.isEmpty()) send(ChronicleRegexIndexerMBean.NOTIF_STALE_METRIC, staleBatch, 0);
+						} finally {
+							inFlight.set(false);
+						}
+					}
+					
+					protected void send(String type, Map<String, Long> names, long missed) {
+						String prefix = type.equals(ChronicleRegexIndexerMBean.NOTIF_NEW_METRIC) ? "New" : "Stale";
+						Notification notif = new Notification(type, ChronicleRegexIndexer.NOTIF_SOURCE, indexer.notificationSerial.incrementAndGet(), System.currentTimeMillis(), 
+								missed > 0 ? String.format("%s Metrics [%s] Dropped [%s]", prefix, names.size(), missed) : String.format("%s Metrics [%s]", prefix, names.size()));
+						notif.setUserData(names);
+						try {
+							if(listener==null) indexer.sendNotification(notif);
+							else listener.handleNotification(notif, hb);
+							delivered.incrementAndGet();
+						} catch (Exception ex) {
+							ChronicleRegexIndexer.loge("Metric notification listener failed: %s", ex);
+						}
+					}
+				});
+			} catch (RuntimeException rex) {
+				inFlight.set(false);
+				throw rex;
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * <p>Title: Subscription</p>
+	 * <p>Description: A compiled pattern subscription, with a matcher reused by the dispatcher thread</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.store.MetricNotificationPipeline.Subscription</code></p>
+	 */
+	protected static class Subscription {
+		/** The subscribed pattern */
+		protected final Pattern pattern;
+		/** The pattern's token plan */
+		protected final RegexPlan plan;
+		/** The reused matcher */
+		protected final Matcher matcher;
+		/** The subscribed listeners */
+		protected final Set<NotificationListener> listeners;
+		
+		/**
+		 * Creates a new Subscription
+		 * @param pattern The subscribed pattern
+		 * @param listeners The subscribed listeners
+		 */
+		protected Subscription(Pattern pattern, Set<NotificationListener> listeners) {
+			this.pattern = pattern;
+			this.listeners = listeners;
+			plan = pattern.flags()==0 ? RegexPlan.plan(pattern.pattern()) : new RegexPlan();
+			matcher = pattern.matcher("");
+		}
+	}
+	
+	/**
+	 * <p>Title: SubscriptionSet</p>
+	 * <p>Description: An immutable compilation of the subscriptions. Subscriptions whose plan requires a token are keyed by that token,
+	 * so a name only evaluates the patterns keyed by its own tokens plus the patterns without a required token.</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.store.MetricNotificationPipeline.SubscriptionSet</code></p>
+	 */
+	protected static class SubscriptionSet {
+		/** All the subscriptions */
+		protected final List<Subscription> all = new ArrayList<Subscription>();
+		/** The subscriptions keyed by their plan's longest required token */
+		protected final Map<String, List<Subscription>> byToken = new HashMap<String, List<Subscription>>();
+		/** The subscriptions without a required token */
+		protected final List<Subscription> others = new ArrayList<Subscription>();
+		
+		/**
+		 * Creates a new SubscriptionSet
+		 * @param subscriptions The subscribed listeners keyed by pattern
+		 */
+		protected SubscriptionSet(Map<Pattern, Set<NotificationListener>> subscriptions) {
+			for(Map.Entry<Pattern, Set<NotificationListener>> entry: subscriptions.entrySet()) {
+				Subscription sub = new Subscription(entry.getKey(), entry.getValue());
+				all.add(sub);
+				String key = null;
+				for(String token: sub.plan.tokens) {
+					if(key==null || token.length() > key.length()) key = token;
+				}
+				if(key==null) {
+					others.add(sub);
+				} else {
+					List<Subscription> subs = byToken.get(key);
+					if(subs==null) {
+						subs = new ArrayList<Subscription>(2);
+						byToken.put(key, subs);
+					}
+					subs.add(sub);
+				}
+			}
+		}
+		
+		/**
+		 * Indicates if there are no subscriptions
+		 * @return true if there are no subscriptions
+		 */
+		protected boolean isEmpty() {
+			return all.isEmpty();
+		}
+	}
+	
+	/**
+	 * <p>Title: NameEvent</p>
+	 * <p>Description: A queued new or stale metric name event</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.store.MetricNotificationPipeline.NameEvent</code></p>
+	 */
+	protected static class NameEvent {
+		/** true for a stale metric, false for a new metric */
+		protected final boolean stale;
+		/** The metric name */
+		protected final String name;
+		/** The metric name index */
+		protected final long index;
+		
+		/**
+		 * Creates a new NameEvent
+		 * @param stale true for a stale metric, false for a new metric
+		 * @param name The metric name
+		 * @param index The metric name index
+		 */
+		protected NameEvent(boolean stale, String name, long index) {
+			this.stale = stale;
+			this.name = name;
+			this.index = index;
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.store;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Title: NameEventRing</p>
+ * <p>Description: A bounded multi-producer, single-consumer ring of new metric name events, feeding the regex indexer's writer thread.
+ * Producers claim a slot by CAS on the tail sequence and publish it by writing the slot's sequence, so an offer allocates nothing
+ * and never blocks. When the ring is full the offer fails and the caller is expected to have the consumer pick up the missed names from the 
+ * name index chronicle instead.</p>
+ * <p>The consumer polls events into its own fields, {@link #getName()} and {@link #getIndex()}, and parks in {@link #await(long)} when the ring is empty.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.store.NameEventRing</code></p>
+ */
+
+public class NameEventRing {
+	/** The ring capacity, a power of 2 */
+	protected final int capacity;
+	/** The slot mask */
+	protected final int mask;
+	/** The metric names by slot */
+	protected final String[] names;
+	/** The metric name indexes by slot */
+	protected final long[] indexes;
+	/** The sequence published into each slot, plus one, so an unpublished slot never matches */
+	protected final AtomicLongArray published;
+	/** The next sequence to be claimed by a producer */
+	protected final AtomicLong tail = new AtomicLong(0L);
+	/** The next sequence to be polled by the consumer, written only by the consumer */
+	protected volatile long head = 0L;
+	/** Events with a sequence below this are polled and discarded */
+	protected volatile long discardTo = 0L;
+	/** The consumer thread, set when it parks */
+	protected volatile Thread consumer = null;
+	/** The number of offers that failed because the ring was full */
+	protected final AtomicLong overflows = new AtomicLong(0L);
+	
+	/** The name of the last polled event */
+	protected String polledName = null;
+	/** The index of the last polled event */
+	protected long polledIndex = -1L;
+	
+	/**
+	 * Creates a new NameEventRing
+	 * @param size The requested capacity, rounded up to the next power of 2
+	 */
+	public NameEventRing(int size) {
+		int v = Math.max(2, size);
+		capacity = 1 << (32 - Integer.numberOfLeadingZeros(v - 1));
+		mask = capacity-1;
+		names = new String[capacity];
+		indexes = new long[capacity];
+		published = new AtomicLongArray(capacity);
+	}
+	
+	/**
+	 * Offers a new metric name event. Safe to call from any thread.
+	 * @param name The metric name
+	 * @param index The metric name index
+	 * @return true if the event was published, false if the ring was full
+	 */
+	public boolean offer(String name, long index) {
+		long seq;
+		do {
+			seq = tail.get();
+			if(seq - head >= capacity) {
+				overflows.incrementAndGet();
+				return false;
+			}
+		} while(!tail.compareAndSet(seq, seq+1));
+		int slot = (int)seq & mask;
+		names[slot] = name;
+		indexes[slot] = index;
+		// A volatile write so the consumer reference read below cannot be reordered ahead of the publication
+		published.set(slot, seq+1);
+		Thread t = consumer;
+		if(t!=null) LockSupport.unpark(t);
+		return true;
+	}
+	
+	/**
+	 * Polls the next event into {@link #getName()} and {@link #getIndex()}. Called only by the consumer.
+	 * @return true if an event was polled, false if the ring is empty
+	 */
+	public boolean poll() {
+		while(true) {
+			final long h = head;
+			final int slot = (int)h & mask;
+			if(published.get(slot)!=h+1) return false;
+			polledName = names[slot];
+			polledIndex = indexes[slot];
+			names[slot] = null;
+			head = h+1;
+			if(h >= discardTo) return true;
+		}
+	}
+	
+	/**
+	 * Parks the consumer until an event is published, {@link #wake()} is called or the timeout elapses. Called only by the consumer.
+	 * @param timeoutNanos The maximum time to park in ns.
+	 */
+	public void await(long timeoutNanos) {
+		consumer = Thread.currentThread();
+		try {
+			if(isEmpty()) LockSupport.parkNanos(this, timeoutNanos);
+		} finally {
+			consumer = null;
+		}
+	}
+	
+	/**
+	 * Unparks the consumer if it is waiting
+	 */
+	public void wake() {
+		Thread t = consumer;
+		if(t!=null) LockSupport.unpark(t);
+	}
+	
+	/**
+	 * Discards the events offered before this call. The consumer drops them as it polls.
+	 */
+	public void discard() {
+		discardTo = tail.get();
+	}
+	
+	/**
+	 * Indicates if the ring has no published event at the head
+	 * @return true if the ring is empty
+	 */
+	public boolean isEmpty() {
+		final long h = head;
+		return published.get((int)h & mask)!=h+1;
+	}
+	
+	/**
+	 * Returns the number of claimed slots not yet polled
+	 * @return the number of pending events
+	 */
+	public int size() {
+		return (int)Math.max(0, tail.get() - head);
+	}
+	
+	/**
+	 * Returns the ring capacity
+	 * @return the ring capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Returns the number of offers that failed because the ring was full
+	 * @return the number of overflows
+	 */
+	public long getOverflowCount() {
+		return overflows.get();
+	}
+	
+	/**
+	 * Returns the metric name of the last polled event. Called only by the consumer.
+	 * @return the metric name
+	 */
+	public String getName() {
+		return polledName;
+	}
+	
+	/**
+	 * Returns the metric name index of the last polled event. Called only by the consumer.
+	 * @return the metric name index
+	 */
+	public long getIndex() {
+		return polledIndex;
+	}
+}
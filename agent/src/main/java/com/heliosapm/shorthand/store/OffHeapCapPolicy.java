@@ -0,0 +1,54 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.store;
+
+/**
+ * <p>Title: OffHeapCapPolicy</p>
+ * <p>Description: Defines what the store does when loading a metric's mem-space would exceed the configured off-heap cap</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.store.OffHeapCapPolicy</code></p>
+ */
+
+public enum OffHeapCapPolicy {
+	/** The metric is refused and its snapshots are dropped until memory is released */
+	REFUSE,
+	/** Loaded metrics not touched in the current period are unloaded to make room, and the metric is refused if not enough could be released */
+	EVICT;
+
+	/**
+	 * Decodes the passed name to an OffHeapCapPolicy, defaulting to {@link #REFUSE}
+	 * @param name The name to decode
+	 * @return the decoded policy
+	 */
+	public static OffHeapCapPolicy forName(String name) {
+		if(name==null) return REFUSE;
+		try {
+			return valueOf(name.trim().toUpperCase());
+		} catch (Exception ex) {
+			return REFUSE;
+		}
+	}
+}
@@ -25,7 +25,11 @@
 package com.heliosapm.shorthand.store;
 
 import java.io.File;
+import java.io.RandomAccessFile;
 import java.lang.management.ManagementFactory;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.regex.Pattern;
 
 /**
  * <p>Title: ShorthandChronicleCleaner</p>
@@ -41,6 +45,8 @@ public class ShorthandChronicleCleaner extends Thread {
 	
 	/** This JVM's Process ID */
 	public static final String PID = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+	/** Matches the name of a PID keyed chronicle directory */
+	public static final Pattern PID_DIR = Pattern.compile("\\d+");
 	/**
 	 * Creates a new ShorthandChronicleCleaner
 	 * @param directoryName The chronicle directory to clean
@@ -60,12 +66,13 @@ public class ShorthandChronicleCleaner extends Thread {
 		int filesDeleted = 0, dirsDeleted = 0;
 		log("Cleaning Chronicle Dir [" + chronicleDir + "]");
 		for(File pDir: chronicleDir.listFiles()) {
-			if(pDir.isDirectory()) {
+			// Only PID keyed directories are transient. Service keyed directories are kept for warm restarts.
+			if(pDir.isDirectory() && PID_DIR.matcher(pDir.getName()).matches()) {
 				log("Cleaning Chronicle Dir [%s] PID: [%s]", pDir, pDir.getName());
 				if(PID.equals(pDir.getName())) continue;
 				File lockFile = new File(pDir.getAbsoluteFile() + File.separator + "shorthand.lock");
 				if(lockFile.exists()) {
-					if(!lockFile.delete()) {
+					if(isLocked(lockFile) || !lockFile.delete()) {
 						log("Lock File [" + lockFile + "] is locked. Must be active");
 						continue;
 					}
@@ -86,6 +93,28 @@ public class ShorthandChronicleCleaner extends Thread {
 		log("Cleaned [%s] files and [%s] directories", filesDeleted, dirsDeleted);
 	}
 	
+	/**
+	 * Determines if the passed lock file is locked by another process
+	 * @param lockFile The lock file to test
+	 * @return true if the file is locked, false otherwise
+	 */
+	protected static boolean isLocked(File lockFile) {
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(lockFile, "rw");
+			FileLock lock = raf.getChannel().tryLock();
+			if(lock==null) return true;
+			lock.release();
+			return false;
+		} catch (OverlappingFileLockException oex) {
+			return true;
+		} catch (Exception ex) {
+			return true;
+		} finally {
+			if(raf!=null) try { raf.close(); } catch (Exception x) {/* No Op */}
+		}
+	}
+	
 	/**
 	 * Simple out formatted logger
 	 * @param fmt The format of the message
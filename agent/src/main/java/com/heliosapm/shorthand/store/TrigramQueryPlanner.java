@@ -0,0 +1,539 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.store;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.heliosapm.shorthand.store.ChronicleTrigramIndex.TrigramQuery;
+
+/**
+ * <p>Title: TrigramQueryPlanner</p>
+ * <p>Description: Plans the {@link TrigramQuery} a metric name must satisfy to match a regex, after Russ Cox's
+ * <a href="https://swtch.com/~rsc/regexp/regexp4.html">Regular Expression Matching with a Trigram Index</a>.
+ * The regex is parsed and, for each sub-expression, the planner tracks whether it can match the empty string, the exact
+ * set of strings it matches when small enough, the sets of prefixes and suffixes of its matches, and the trigram query its matches satisfy.</p>
+ * <p>The plan is conservative: constructs the planner does not model are treated as matching any string,
+ * and regexes using inline flags are planned as {@link TrigramQuery#ALL_QUERY}, meaning every name must be evaluated.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.store.TrigramQueryPlanner</code></p>
+ */
+
+public class TrigramQueryPlanner {
+	/** The maximum size of an exact set before it is reduced to prefixes and suffixes */
+	public static final int MAX_EXACT = 7;
+	/** The maximum size of a prefix or suffix set */
+	public static final int MAX_SET = 20;
+	
+	/** The regex being planned */
+	private final String regex;
+	/** The parse position */
+	private int pos = 0;
+	
+	/**
+	 * Plans the trigram query for the passed regex
+	 * @param regex The regex, matched against the whole name
+	 * @return the trigram query
+	 */
+	public static TrigramQuery plan(String regex) {
+		try {
+			TrigramQueryPlanner planner = new TrigramQueryPlanner(regex);
+			Info info = planner.alternation();
+			if(planner.pos < regex.length()) return TrigramQuery.ALL_QUERY;
+			info.simplify(true);
+			info.addExact();
+			return info.match;
+		} catch (RuntimeException rex) {
+			// Unsupported or malformed regex
+			return TrigramQuery.ALL_QUERY;
+		}
+	}
+	
+	/**
+	 * Creates a new TrigramQueryPlanner
+	 * @param regex The regex to plan
+	 */
+	private TrigramQueryPlanner(String regex) {
+		this.regex = regex;
+	}
+	
+	/**
+	 * Parses an alternation
+	 * @return the alternation info
+	 */
+	private Info alternation() {
+		Info info = concatenation();
+		while(pos < regex.length() && regex.charAt(pos)=='|') {
+			pos++;
+			info = Info.alternate(info, concatenation());
+		}
+		return info;
+	}
+	
+	/**
+	 * Parses a concatenation
+	 * @return the concatenation info
+	 */
+	private Info concatenation() {
+		Info info = Info.emptyString();
+		while(pos < regex.length()) {
+			char c = regex.charAt(pos);
+			if(c=='|' || c==')') break;
+			info = Info.concat(info, repetition());
+		}
+		return info;
+	}
+	
+	/**
+	 * Parses an atom and any quantifiers applied to it
+	 * @return the repetition info
+	 */
+	private Info repetition() {
+		Info info = atom();
+		while(pos < regex.length()) {
+			char c = regex.charAt(pos);
+			int min;
+			int max;
+			if(c=='*') {
+				min = 0; max = -1; pos++;
+			} else if(c=='+') {
+				min = 1; max = -1; pos++;
+			} else if(c=='?') {
+				min = 0; max = 1; pos++;
+			} else if(c=='{') {
+				int close = regex.indexOf('}', pos);
+				if(close==-1) throw new UnsupportedOperationException();
+				String[] bounds = regex.substring(pos+1, close).split(",", -1);
+				min = Integer.parseInt(bounds[0].trim());
+				max = bounds.length==1 ? min : bounds[1].trim().isEmpty() ? -1 : Integer.parseInt(bounds[1].trim());
+				pos = close+1;
+			} else {
+				break;
+			}
+			// Reluctant and possessive modifiers match the same strings
+			if(pos < regex.length() && (regex.charAt(pos)=='?' || regex.charAt(pos)=='+')) pos++;
+			if(min==0) {
+				info = max==1 ? Info.alternate(info, Info.emptyString()) : max==0 ? Info.emptyString() : Info.star();
+			} else if(max!=1) {
+				info = Info.concat(info, Info.star());
+			}
+		}
+		return info;
+	}
+	
+	/**
+	 * Parses an atom
+	 * @return the atom info
+	 */
+	private Info atom() {
+		char c = regex.charAt(pos++);
+		switch(c) {
+			case '(':
+				boolean zeroWidth = false;
+				if(regex.charAt(pos)=='?') {
+					char g = regex.charAt(pos+1);
+					if(g==':' || g=='>') {
+						pos += 2;
+					} else if(g=='=' || g=='!') {
+						pos += 2;
+						zeroWidth = true;
+					} else if(g=='<' && (regex.charAt(pos+2)=='=' || regex.charAt(pos+2)=='!')) {
+						pos += 3;
+						zeroWidth = true;
+					} else if(g=='<') {
+						pos = regex.indexOf('>', pos)+1;
+						if(pos==0) throw new UnsupportedOperationException();
+					} else {
+						// Inline flags may make the match case insensitive
+						throw new UnsupportedOperationException();
+					}
+				}
+				Info group = alternation();
+				if(regex.charAt(pos++)!=')') throw new UnsupportedOperationException();
+				// Look-arounds constrain the match without consuming it, which is conservatively ignored
+				return zeroWidth ? Info.emptyString() : group;
+			case '[':
+				return charClass();
+			case '.':
+				return Info.anyChar();
+			case '^': case '$':
+				return Info.emptyString();
+			case '\\':
+				return escape();
+			default:
+				return Info.literal(c);
+		}
+	}
+	
+	/**
+	 * Parses an escape sequence following a backslash
+	 * @return the escape info
+	 */
+	private Info escape() {
+		char e = regex.charAt(pos++);
+		if(e=='Q') {
+			int end = regex.indexOf("\\E", pos);
+			String quoted = end==-1 ? regex.substring(pos) : regex.substring(pos, end);
+			pos = end==-1 ? regex.length() : end+2;
+			Info info = Info.emptyString();
+			for(int i = 0; i < quoted.length(); i++) {
+				info = Info.concat(info, Info.literal(quoted.charAt(i)));
+			}
+			return info;
+		}
+		if(!Character.isLetterOrDigit(e)) return Info.literal(e);
+		switch(e) {
+			case 't': return Info.literal('\t');
+			case 'n': return Info.literal('\n');
+			case 'r': return Info.literal('\r');
+			case 'f': return Info.literal('\f');
+			case 'b': case 'B': case 'A': case 'z': case 'Z': case 'G':
+				return Info.emptyString();
+			case 'k':
+				pos = regex.indexOf('>', pos)+1;
+				if(pos==0) throw new UnsupportedOperationException();
+				return Info.star();
+			case 'p': case 'P':
+				if(regex.charAt(pos)=='{') {
+					pos = regex.indexOf('}', pos)+1;
+					if(pos==0) throw new UnsupportedOperationException();
+				} else {
+					pos++;
+				}
+				return Info.anyChar();
+			case 'x':
+				if(regex.charAt(pos)=='{') {
+					int close = regex.indexOf('}', pos);
+					if(close==-1) throw new UnsupportedOperationException();
+					int cp = Integer.parseInt(regex.substring(pos+1, close), 16);
+					pos = close+1;
+					return Character.charCount(cp)==1 ? Info.literal((char)cp) : Info.anyChar();
+				}
+				pos += 2;
+				return Info.literal((char)Integer.parseInt(regex.substring(pos-2, pos), 16));
+			case 'u':
+				pos += 4;
+				return Info.literal((char)Integer.parseInt(regex.substring(pos-4, pos), 16));
+			case 'c':
+				pos++;
+				return Info.anyChar();
+			case '0':
+				while(pos < regex.length() && regex.charAt(pos)>='0' && regex.charAt(pos)<='7') pos++;
+				return Info.anyChar();
+			default:
+				// Back references match any string
+				if(Character.isDigit(e)) {
+					while(pos < regex.length() && Character.isDigit(regex.charAt(pos))) pos++;
+					return Info.star();
+				}
+				// Predefined character classes
+				return Info.anyChar();
+		}
+	}
+	
+	/**
+	 * Parses a character class following the opening bracket
+	 * @return the character class info
+	 */
+	private Info charClass() {
+		final int start = pos;
+		int depth = 1;
+		// Find the end of the class, allowing for nesting, escapes and a leading literal bracket
+		if(regex.charAt(pos)=='^') pos++;
+		if(regex.charAt(pos)==']') pos++;
+		while(depth > 0) {
+			char c = regex.charAt(pos++);
+			if(c=='\\') {
+				if(regex.charAt(pos)=='Q') {
+					int end = regex.indexOf("\\E", pos);
+					if(end==-1) throw new UnsupportedOperationException();
+					pos = end+2;
+				} else {
+					pos++;
+				}
+			}
+			else if(c=='[') depth++;
+			else if(c==']') depth--;
+		}
+		String body = regex.substring(start, pos-1);
+		if(body.startsWith("^") || body.indexOf('[')!=-1 || body.contains("&&")) return Info.anyChar();
+		Set<String> chars = new TreeSet<String>();
+		for(int i = 0; i < body.length(); i++) {
+			char c = body.charAt(i);
+			if(c=='\\') {
+				char e = body.charAt(++i);
+				// Predefined classes and anything needing more parsing
+				if(Character.isLetterOrDigit(e)) return Info.anyChar();
+				c = e;
+			}
+			if(i + 2 < body.length() && body.charAt(i+1)=='-') {
+				char to = body.charAt(i+2);
+				if(to=='\\' || to - c >= MAX_SET) return Info.anyChar();
+				for(char r = c; r <= to; r++) chars.add(String.valueOf(r));
+				i += 2;
+			} else {
+				chars.add(String.valueOf(c));
+			}
+			if(chars.size() > MAX_SET) return Info.anyChar();
+		}
+		if(chars.isEmpty()) return Info.anyChar();
+		Info info = new Info();
+		info.exact = chars;
+		return info;
+	}
+	
+	/**
+	 * Returns the length of the shortest of the passed strings
+	 * @param strings The strings
+	 * @return the shortest length, or zero if there are no strings
+	 */
+	public static int minLen(Set<String> strings) {
+		if(strings.isEmpty()) return 0;
+		int min = Integer.MAX_VALUE;
+		for(String s: strings) {
+			if(s.length() < min) min = s.length();
+		}
+		return min;
+	}
+	
+	/**
+	 * Returns every concatenation of a string from the first set with a string from the second
+	 * @param a The first set
+	 * @param b The second set
+	 * @return the cross product
+	 */
+	static Set<String> cross(Set<String> a, Set<String> b) {
+		Set<String> out = new TreeSet<String>();
+		for(String x: a) {
+			for(String y: b) {
+				out.add(x + y);
+			}
+		}
+		return out;
+	}
+	
+	/**
+	 * Returns the union of two sets
+	 * @param a The first set
+	 * @param b The second set
+	 * @return the union
+	 */
+	static Set<String> union(Set<String> a, Set<String> b) {
+		Set<String> out = new TreeSet<String>(a);
+		out.addAll(b);
+		return out;
+	}
+	
+	/**
+	 * Removes the strings from a prefix or suffix set that are implied by a shorter member
+	 * @param set The set to clean
+	 * @param suffix true for a suffix set, false for a prefix set
+	 */
+	static void clean(Set<String> set, boolean suffix) {
+		Iterator<String> iter = set.iterator();
+		while(iter.hasNext()) {
+			String s = iter.next();
+			for(String t: set) {
+				if(t.length() < s.length() && (suffix ? s.endsWith(t) : s.startsWith(t))) {
+					iter.remove();
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * <p>Title: Info</p>
+	 * <p>Description: The matching information of a parsed sub-expression</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.store.TrigramQueryPlanner.Info</code></p>
+	 */
+	static class Info {
+		/** Indicates if the sub-expression can match the empty string */
+		boolean emptyable = false;
+		/** The exact set of strings matched, or null if unknown */
+		Set<String> exact = null;
+		/** Every match starts with one of these, when the exact set is unknown */
+		Set<String> prefix = new TreeSet<String>();
+		/** Every match ends with one of these, when the exact set is unknown */
+		Set<String> suffix = new TreeSet<String>();
+		/** The trigram query every match satisfies */
+		TrigramQuery match = TrigramQuery.ALL_QUERY;
+		
+		/**
+		 * Returns the info for the empty string
+		 * @return the info
+		 */
+		static Info emptyString() {
+			Info info = new Info();
+			info.emptyable = true;
+			info.exact = new TreeSet<String>();
+			info.exact.add("");
+			return info;
+		}
+		
+		/**
+		 * Returns the info for a literal character
+		 * @param c The character
+		 * @return the info
+		 */
+		static Info literal(char c) {
+			Info info = new Info();
+			info.exact = new TreeSet<String>();
+			info.exact.add(String.valueOf(c));
+			return info;
+		}
+		
+		/**
+		 * Returns the info for any one character
+		 * @return the info
+		 */
+		static Info anyChar() {
+			Info info = new Info();
+			info.prefix.add("");
+			info.suffix.add("");
+			return info;
+		}
+		
+		/**
+		 * Returns the info for any string
+		 * @return the info
+		 */
+		static Info star() {
+			Info info = anyChar();
+			info.emptyable = true;
+			return info;
+		}
+		
+		/**
+		 * Returns the info for the concatenation of two sub-expressions
+		 * @param x The first sub-expression
+		 * @param y The second sub-expression
+		 * @return the info
+		 */
+		static Info concat(Info x, Info y) {
+			Info xy = new Info();
+			xy.match = x.match.and(y.match);
+			if(x.exact!=null && y.exact!=null) {
+				xy.exact = cross(x.exact, y.exact);
+			} else {
+				if(x.exact!=null) {
+					xy.prefix = cross(x.exact, y.prefix);
+				} else {
+					xy.prefix = x.emptyable ? union(x.prefix, y.exact!=null ? y.exact : y.prefix) : new TreeSet<String>(x.prefix);
+				}
+				if(y.exact!=null) {
+					xy.suffix = cross(x.suffix, y.exact);
+				} else {
+					xy.suffix = y.emptyable ? union(y.suffix, x.exact!=null ? x.exact : x.suffix) : new TreeSet<String>(y.suffix);
+				}
+			}
+			// Trigrams spanning the two sub-expressions
+			if(x.exact==null && y.exact==null && x.suffix.size() <= MAX_SET && y.prefix.size() <= MAX_SET && minLen(x.suffix) + minLen(y.prefix) >= 3) {
+				xy.match = xy.match.andTrigrams(cross(x.suffix, y.prefix));
+			}
+			xy.emptyable = x.emptyable && y.emptyable;
+			xy.simplify(false);
+			return xy;
+		}
+		
+		/**
+		 * Returns the info for the alternation of two sub-expressions
+		 * @param x The first sub-expression
+		 * @param y The second sub-expression
+		 * @return the info
+		 */
+		static Info alternate(Info x, Info y) {
+			Info xy = new Info();
+			if(x.exact!=null && y.exact!=null) {
+				xy.exact = union(x.exact, y.exact);
+			} else {
+				x.addExact();
+				y.addExact();
+				xy.prefix = union(x.exact!=null ? x.exact : x.prefix, y.exact!=null ? y.exact : y.prefix);
+				xy.suffix = union(x.exact!=null ? x.exact : x.suffix, y.exact!=null ? y.exact : y.suffix);
+			}
+			xy.emptyable = x.emptyable || y.emptyable;
+			xy.match = x.match.or(y.match);
+			xy.simplify(false);
+			return xy;
+		}
+		
+		/**
+		 * Adds the trigrams of the exact set to the match query
+		 */
+		void addExact() {
+			if(exact!=null) match = match.andTrigrams(exact);
+		}
+		
+		/**
+		 * Bounds the sizes of the tracked sets, moving what they imply into the match query
+		 * @param force true to give up the exact set if it already determines trigrams
+		 */
+		void simplify(boolean force) {
+			if(exact!=null) {
+				int min = minLen(exact);
+				if(exact.size() > MAX_EXACT || (force && min >= 3)) {
+					addExact();
+					for(String s: exact) {
+						int n = s.length();
+						prefix.add(n < 3 ? s : s.substring(0, 2));
+						suffix.add(n < 3 ? s : s.substring(n-2));
+					}
+					exact = null;
+				} else {
+					return;
+				}
+			}
+			prefix = simplifySet(prefix, false);
+			suffix = simplifySet(suffix, true);
+		}
+		
+		/**
+		 * Moves the trigrams of a prefix or suffix set into the match query and trims the set's strings
+		 * @param set The set
+		 * @param isSuffix true for a suffix set, false for a prefix set
+		 * @return the trimmed set
+		 */
+		Set<String> simplifySet(Set<String> set, boolean isSuffix) {
+			Set<String> t = new TreeSet<String>(set);
+			clean(t, isSuffix);
+			match = match.andTrigrams(t);
+			for(int n = 3; n > 0 && (n==3 || t.size() > MAX_SET); n--) {
+				Set<String> trimmed = new TreeSet<String>();
+				for(String s: t) {
+					if(s.length() >= n) s = isSuffix ? s.substring(s.length()-n+1) : s.substring(0, n-1);
+					trimmed.add(s);
+				}
+				clean(trimmed, isSuffix);
+				t = trimmed;
+			}
+			return t;
+		}
+	}
+}
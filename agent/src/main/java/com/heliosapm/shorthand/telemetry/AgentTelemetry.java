@@ -0,0 +1,497 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.telemetry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cliffc.high_scale_lib.Counter;
+
+import com.heliosapm.shorthand.ShorthandProperties;
+import com.heliosapm.shorthand.collectors.EnumCollectors;
+import com.heliosapm.shorthand.collectors.MethodInterceptor;
+import com.heliosapm.shorthand.datamapper.DataMapperBuilder;
+import com.heliosapm.shorthand.datamapper.IDataMapper;
+import com.heliosapm.shorthand.store.IStore;
+import com.heliosapm.shorthand.util.ConfigurationHelper;
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+import com.heliosapm.shorthand.util.unsafe.UnsafeAdapter;
+
+/**
+ * <p>Title: AgentTelemetry</p>
+ * <p>Description: Process wide, low overhead self-telemetry for the agent's hot paths.
+ * Hot path counters are high-scale-lib {@link Counter}s so instrumented threads do not contend on them.
+ * The flush phase timings are only written by the flush thread so they are plain volatiles.
+ * When recording is enabled, the telemetry is snapped into the store as shorthand metrics
+ * under <b><code>shorthand/telemetry/</code></b> at the end of each period. The values are gauges, so they are filed under 
+ * {@link MethodInterceptor#METHOD_CONCURRENCY}, the interceptor's sampled level collector, rather than a timing collector.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.telemetry.AgentTelemetry</code></p>
+ */
+
+public class AgentTelemetry implements AgentTelemetryMXBean {
+	/** The singleton instance */
+	private static volatile AgentTelemetry instance = null;
+	/** The singleton instance ctor lock */
+	private static final Object lock = new Object();
+
+	/** The metric name prefix for recorded telemetry */
+	public static final String METRIC_PREFIX = "shorthand/telemetry/";
+
+	/** The snapshot counter */
+	protected final Counter snaps = new Counter();
+	/** The metric mem-space lock spin counter */
+	protected final Counter nameLockSpins = new Counter();
+	/** The global lock spin counter */
+	protected final Counter globalLockSpins = new Counter();
+	/** The new metric counter */
+	protected final Counter newMetrics = new Counter();
+	/** The cumulative new metric creation time in ns. */
+	protected final Counter newMetricTime = new Counter();
+	/** The maximum new metric creation time in ns. */
+	protected final AtomicLong newMetricMax = new AtomicLong();
+	/** The live mem-space bytes */
+	protected final Counter memSpaceBytes = new Counter();
+	/** The live mem-space count */
+	protected final Counter memSpaceCount = new Counter();
+	/** The instrumented method count */
+	protected final AtomicLong instrumentedMethods = new AtomicLong();
+	/** The count of compiled scripts with live instrumentation */
+	protected final AtomicLong compiledScripts = new AtomicLong();
+	/** The flush counter */
+	protected final AtomicLong flushes = new AtomicLong();
+	/** The counter of new metrics refused by the off-heap cap */
+	protected final AtomicLong refusedMetrics = new AtomicLong();
+	/** The counter of idle metrics evicted by the off-heap cap */
+	protected final AtomicLong evictedMetrics = new AtomicLong();
+
+	/** The last flush phase 1 elapsed time in ns. */
+	protected volatile long flushPhase1 = 0;
+	/** The last flush phase 2 elapsed time in ns. */
+	protected volatile long flushPhase2 = 0;
+	/** The last flush phase 3 elapsed time in ns. */
+	protected volatile long flushPhase3 = 0;
+	/** The last flush total elapsed time in ns. */
+	protected volatile long flushTotal = 0;
+
+	/** The snap count at the last period roll */
+	protected volatile long lastSnapCount = 0;
+	/** The timestamp of the last period roll */
+	protected volatile long lastRollTime = System.currentTimeMillis();
+	/** The snap rate over the last closed period */
+	protected volatile long snapRate = 0;
+
+	/** Indicates if the telemetry is being recorded as shorthand metrics */
+	protected volatile boolean recording;
+
+	/** The bitmask used to record telemetry gauges (invocation count + sampled level min/max/avg) */
+	protected final int recordMask = MethodInterceptor.getBitMaskFor(MethodInterceptor.INVOCATION_COUNT, MethodInterceptor.METHOD_CONCURRENCY);
+
+	/**
+	 * Acquires the AgentTelemetry singleton instance
+	 * @return the AgentTelemetry singleton instance
+	 */
+	public static AgentTelemetry getInstance() {
+		if(instance==null) {
+			synchronized(lock) {
+				if(instance==null) {
+					instance = new AgentTelemetry();
+				}
+			}
+		}
+		return instance;
+	}
+
+	private AgentTelemetry() {
+		recording = ConfigurationHelper.getBooleanSystemThenEnvProperty(ShorthandProperties.TELEMETRY_RECORD_PROP, ShorthandProperties.DEFAULT_TELEMETRY_RECORD);
+		JMXHelper.registerMBean(this, OBJECT_NAME);
+	}
+
+	/**
+	 * Records a snapshot submission
+	 */
+	public void snap() {
+		snaps.increment();
+	}
+
+	/**
+	 * Records metric mem-space lock spins
+	 * @param spins the number of spins
+	 */
+	public void nameLockSpins(int spins) {
+		if(spins>0) nameLockSpins.add(spins);
+	}
+
+	/**
+	 * Records global lock spins
+	 * @param spins the number of spins
+	 */
+	public void globalLockSpins(int spins) {
+		if(spins>0) globalLockSpins.add(spins);
+	}
+
+	/**
+	 * Records the creation of a new metric
+	 * @param elapsedNs the elapsed creation time in ns.
+	 */
+	public void newMetric(long elapsedNs) {
+		newMetrics.increment();
+		newMetricTime.add(elapsedNs);
+		long max = newMetricMax.get();
+		while(elapsedNs > max) {
+			if(newMetricMax.compareAndSet(max, elapsedNs)) break;
+			max = newMetricMax.get();
+		}
+	}
+
+	/**
+	 * Records the allocation (positive) or release (negative) of a mem-space
+	 * @param bytes the number of bytes allocated or released
+	 */
+	public void memSpace(long bytes) {
+		memSpaceBytes.add(bytes);
+		memSpaceCount.add(bytes < 0 ? -1L : 1L);
+	}
+
+	/**
+	 * Records a new metric refused by the off-heap cap
+	 */
+	public void refused() {
+		refusedMetrics.incrementAndGet();
+	}
+
+	/**
+	 * Records an idle metric evicted by the off-heap cap
+	 */
+	public void evicted() {
+		evictedMetrics.incrementAndGet();
+	}
+
+	/**
+	 * Records newly instrumented (positive) or released (negative) methods
+	 * @param count the number of newly instrumented methods, negative for methods whose instrumentation was replaced or unloaded
+	 */
+	public void instrumented(int count) {
+		instrumentedMethods.addAndGet(count);
+	}
+
+	/**
+	 * Records a compiled script
+	 */
+	public void scriptCompiled() {
+		compiledScripts.incrementAndGet();
+	}
+	
+	/**
+	 * Records a compiled script whose instrumentation has all been replaced or unloaded
+	 */
+	public void scriptReleased() {
+		compiledScripts.decrementAndGet();
+	}
+
+	/**
+	 * Records the timings of a completed flush
+	 * @param phase1 the phase 1 elapsed time in ns.
+	 * @param phase2 the phase 2 elapsed time in ns.
+	 * @param phase3 the phase 3 elapsed time in ns.
+	 * @param total the total elapsed time in ns.
+	 */
+	public void flushed(long phase1, long phase2, long phase3, long total) {
+		flushPhase1 = phase1;
+		flushPhase2 = phase2;
+		flushPhase3 = phase3;
+		flushTotal = total;
+		flushes.incrementAndGet();
+	}
+
+	/**
+	 * Called at the end of each period after the store has been flushed.
+	 * Computes the period rates and, if enabled, records the telemetry into the passed store.
+	 * @param store The store to record into
+	 */
+	public void onPeriodFlushed(IStore<?> store) {
+		final long now = System.currentTimeMillis();
+		final long count = snaps.get();
+		final long elapsed = now - lastRollTime;
+		if(elapsed > 0) {
+			snapRate = TimeUnit.SECONDS.toMillis(count - lastSnapCount) / elapsed;
+		}
+		lastSnapCount = count;
+		lastRollTime = now;
+		if(recording && store!=null) {
+			record(store);
+		}
+	}
+
+	/**
+	 * Snaps the current telemetry values into the passed store as shorthand metrics
+	 * @param store the store to record into
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	protected void record(IStore store) {
+		try {
+			final IDataMapper dataMapper = DataMapperBuilder.getInstance().getIDataMapper(EnumCollectors.getInstance().index(MethodInterceptor.class.getName()), recordMask);
+			for(Map.Entry<String, Long> entry: values().entrySet()) {
+				long[] values = new long[MethodInterceptor.itemCount+2];
+				values[MethodInterceptor.bitMaskIndex] = recordMask;
+				values[MethodInterceptor.INVOCATION_COUNT.ordinal()] = 1;
+				values[MethodInterceptor.METHOD_CONCURRENCY.ordinal()] = entry.getValue();
+				store.doSnap(METRIC_PREFIX + entry.getKey(), dataMapper, values);
+			}
+		} catch (Exception ex) {
+			System.err.println("[AgentTelemetry] Failed to record telemetry:" + ex);
+		}
+	}
+
+	/**
+	 * Returns the current telemetry values keyed by name
+	 * @return a map of telemetry values
+	 */
+	public Map<String, Long> values() {
+		Map<String, Long> map = new LinkedHashMap<String, Long>();
+		map.put("snapsPerSecond", getSnapsPerSecond());
+		map.put("nameLockSpins", getNameLockSpins());
+		map.put("globalLockSpins", getGlobalLockSpins());
+		map.put("newMetricAverageNs", getNewMetricAverageNs());
+		map.put("flushLastNs", getFlushLastNs());
+		map.put("memSpaceBytes", getMemSpaceBytes());
+		map.put("instrumentedMethods", getInstrumentedMethodCount());
+		return map;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getSnapCount()
+	 */
+	@Override
+	public long getSnapCount() {
+		return snaps.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getSnapsPerSecond()
+	 */
+	@Override
+	public long getSnapsPerSecond() {
+		return snapRate;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getNameLockSpins()
+	 */
+	@Override
+	public long getNameLockSpins() {
+		return nameLockSpins.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getGlobalLockSpins()
+	 */
+	@Override
+	public long getGlobalLockSpins() {
+		return globalLockSpins.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getNewMetricCount()
+	 */
+	@Override
+	public long getNewMetricCount() {
+		return newMetrics.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getNewMetricAverageNs()
+	 */
+	@Override
+	public long getNewMetricAverageNs() {
+		long count = newMetrics.get();
+		return count==0 ? 0 : newMetricTime.get()/count;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getNewMetricMaxNs()
+	 */
+	@Override
+	public long getNewMetricMaxNs() {
+		return newMetricMax.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getFlushPhase1LastNs()
+	 */
+	@Override
+	public long getFlushPhase1LastNs() {
+		return flushPhase1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getFlushPhase2LastNs()
+	 */
+	@Override
+	public long getFlushPhase2LastNs() {
+		return flushPhase2;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getFlushPhase3LastNs()
+	 */
+	@Override
+	public long getFlushPhase3LastNs() {
+		return flushPhase3;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getFlushLastNs()
+	 */
+	@Override
+	public long getFlushLastNs() {
+		return flushTotal;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getFlushCount()
+	 */
+	@Override
+	public long getFlushCount() {
+		return flushes.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getMemSpaceBytes()
+	 */
+	@Override
+	public long getMemSpaceBytes() {
+		return memSpaceBytes.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getMemSpaceCount()
+	 */
+	@Override
+	public long getMemSpaceCount() {
+		return memSpaceCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getInstrumentedMethodCount()
+	 */
+	@Override
+	public long getInstrumentedMethodCount() {
+		return instrumentedMethods.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getScriptCount()
+	 */
+	@Override
+	public long getScriptCount() {
+		return compiledScripts.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getOffHeapBytes()
+	 */
+	@Override
+	public long getOffHeapBytes() {
+		return UnsafeAdapter.getTotalAllocatedMemory();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getRefusedMetricCount()
+	 */
+	@Override
+	public long getRefusedMetricCount() {
+		return refusedMetrics.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#getEvictedMetricCount()
+	 */
+	@Override
+	public long getEvictedMetricCount() {
+		return evictedMetrics.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#isRecording()
+	 */
+	@Override
+	public boolean isRecording() {
+		return recording;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#setRecording(boolean)
+	 */
+	@Override
+	public void setRecording(boolean enabled) {
+		recording = enabled;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>The gauges (mem-space bytes and count, instrumented methods) are not reset.</p>
+	 * @see com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean#reset()
+	 */
+	@Override
+	public void reset() {
+		snaps.set(0);
+		nameLockSpins.set(0);
+		globalLockSpins.set(0);
+		newMetrics.set(0);
+		newMetricTime.set(0);
+		newMetricMax.set(0);
+		flushes.set(0);
+		refusedMetrics.set(0);
+		evictedMetrics.set(0);
+		lastSnapCount = 0;
+		snapRate = 0;
+	}
+
+}
@@ -0,0 +1,173 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.telemetry;
+
+import javax.management.ObjectName;
+
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+
+/**
+ * <p>Title: AgentTelemetryMXBean</p>
+ * <p>Description: JMX interface for the agent's process wide self-telemetry</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.telemetry.AgentTelemetryMXBean</code></p>
+ */
+
+public interface AgentTelemetryMXBean {
+	/** The telemetry service JMX ObjectName */
+	public static final ObjectName OBJECT_NAME = JMXHelper.objectName("com.heliosapm.shorthand:service=Telemetry");
+
+	/**
+	 * Returns the total number of snapshots submitted to the store
+	 * @return the total number of snapshots
+	 */
+	public long getSnapCount();
+
+	/**
+	 * Returns the snapshot rate per second over the last closed period
+	 * @return the snapshot rate per second
+	 */
+	public long getSnapsPerSecond();
+
+	/**
+	 * Returns the total number of spins waiting on metric mem-space locks
+	 * @return the total number of name lock spins
+	 */
+	public long getNameLockSpins();
+
+	/**
+	 * Returns the total number of spins waiting on the global lock
+	 * @return the total number of global lock spins
+	 */
+	public long getGlobalLockSpins();
+
+	/**
+	 * Returns the total number of new metrics created
+	 * @return the total number of new metrics created
+	 */
+	public long getNewMetricCount();
+
+	/**
+	 * Returns the average new metric creation latency in ns.
+	 * @return the average new metric creation latency in ns.
+	 */
+	public long getNewMetricAverageNs();
+
+	/**
+	 * Returns the maximum new metric creation latency in ns.
+	 * @return the maximum new metric creation latency in ns.
+	 */
+	public long getNewMetricMaxNs();
+
+	/**
+	 * Returns the elapsed time of the last flush's first phase (dirty mem-space copy) in ns.
+	 * @return the elapsed time in ns.
+	 */
+	public long getFlushPhase1LastNs();
+
+	/**
+	 * Returns the elapsed time of the last flush's second phase (tier 1 write) in ns.
+	 * @return the elapsed time in ns.
+	 */
+	public long getFlushPhase2LastNs();
+
+	/**
+	 * Returns the elapsed time of the last flush's third phase (stale mem-space purge) in ns.
+	 * @return the elapsed time in ns.
+	 */
+	public long getFlushPhase3LastNs();
+
+	/**
+	 * Returns the total elapsed time of the last flush in ns.
+	 * @return the elapsed time in ns.
+	 */
+	public long getFlushLastNs();
+
+	/**
+	 * Returns the total number of completed flushes
+	 * @return the total number of completed flushes
+	 */
+	public long getFlushCount();
+
+	/**
+	 * Returns the number of bytes currently allocated to live metric mem-spaces
+	 * @return the number of mem-space bytes
+	 */
+	public long getMemSpaceBytes();
+
+	/**
+	 * Returns the number of live metric mem-spaces
+	 * @return the number of live metric mem-spaces
+	 */
+	public long getMemSpaceCount();
+
+	/**
+	 * Returns the number of methods and constructors instrumented by the shorthand compiler
+	 * @return the number of instrumented methods
+	 */
+	public long getInstrumentedMethodCount();
+
+	/**
+	 * Returns the number of shorthand scripts compiled into this JVM whose instrumentation is still live
+	 * @return the number of live compiled scripts
+	 */
+	public long getScriptCount();
+
+	/**
+	 * Returns the total number of bytes of off-heap memory allocated by the agent
+	 * @return the number of off-heap bytes
+	 */
+	public long getOffHeapBytes();
+
+	/**
+	 * Returns the number of new metrics refused because of the off-heap cap
+	 * @return the number of refused metrics
+	 */
+	public long getRefusedMetricCount();
+
+	/**
+	 * Returns the number of idle metrics evicted because of the off-heap cap
+	 * @return the number of evicted metrics
+	 */
+	public long getEvictedMetricCount();
+
+	/**
+	 * Indicates if the telemetry is being recorded as shorthand metrics
+	 * @return true if the telemetry is being recorded as shorthand metrics
+	 */
+	public boolean isRecording();
+
+	/**
+	 * Enables or disables the recording of the telemetry as shorthand metrics
+	 * @param enabled true to enable, false to disable
+	 */
+	public void setRecording(boolean enabled);
+
+	/**
+	 * Resets the cumulative counters
+	 */
+	public void reset();
+}
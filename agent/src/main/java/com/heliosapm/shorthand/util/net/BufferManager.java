@@ -48,6 +48,7 @@ import com.heliosapm.shorthand.util.jmx.JMXHelper;
 import com.heliosapm.shorthand.util.ref.DeallocatingAction;
 import com.heliosapm.shorthand.util.ref.RunnableReferenceQueue;
 import com.heliosapm.shorthand.util.ref.RunnableReferenceQueue.NativeAddressUpdater;
+import com.heliosapm.shorthand.util.unsafe.OffHeapSubsystem;
 import com.heliosapm.shorthand.util.unsafe.UnsafeAdapter;
 
 /**
@@ -402,7 +403,7 @@ public class BufferManager implements BufferManagerMBean, RemovalListener<String
 		public MemBuffer(int initialSize, int nextSegSize, URL memUrl) {
 			this.memUrl = memUrl;
 			this.nextSegSize = nextSegSize;
-			address = UnsafeAdapter.allocateMemory(initialSize);
+			address = UnsafeAdapter.allocateMemory(initialSize, OffHeapSubsystem.BUFFER);
 			size = 0;
 			capacity = initialSize;
 			addressUpdater = RunnableReferenceQueue.getInstance().buildPhantomReference(this, address); 		
@@ -0,0 +1,62 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.util.unsafe;
+
+/**
+ * <p>Title: OffHeapSubsystem</p>
+ * <p>Description: Enumerates the agent subsystems that allocate off-heap memory through {@link UnsafeAdapter},
+ * used to break down the off-heap accounting. The ordinal is stored in each allocation's header so it must stay under 256 members.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.util.unsafe.OffHeapSubsystem</code></p>
+ */
+
+public enum OffHeapSubsystem {
+	/** Metric accumulator mem-spaces */
+	MEMSPACE,
+	/** Mem-space lock/address reference cells */
+	REFCELL,
+	/** Unsafe arrays */
+	ARRAY,
+	/** In memory URL buffers */
+	BUFFER,
+	/** Native locks */
+	LOCK,
+	/** Everything else */
+	OTHER;
+
+	/** The members keyed by ordinal */
+	private static final OffHeapSubsystem[] ORD2ENUM = values();
+
+	/**
+	 * Decodes the passed ordinal to an OffHeapSubsystem
+	 * @param ordinal The ordinal to decode
+	 * @return the decoded OffHeapSubsystem, {@link #OTHER} if the ordinal is out of range
+	 */
+	public static OffHeapSubsystem forOrdinal(int ordinal) {
+		if(ordinal < 0 || ordinal >= ORD2ENUM.length) return OTHER;
+		return ORD2ENUM[ordinal];
+	}
+}
@@ -9,9 +9,13 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.security.ProtectionDomain;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import sun.misc.Unsafe;
 
@@ -81,6 +85,15 @@ public class UnsafeAdapter {
 	/** The total native memory allocation */
 	private static final AtomicLong totalMemoryAllocated;
 	
+	/** The size of the accounting header prefixed to every allocation: <b><code>(size &lt;&lt; 8) | subsystem ordinal</code></b> */
+	public static final int ALLOC_HEADER_SIZE = 8;
+	/** The padding between accounting slots so each subsystem's counters sit on their own cache line */
+	private static final int ACCOUNTING_PAD = 8;
+	/** The always-on allocated bytes, by subsystem */
+	private static final AtomicLongArray allocatedBytes = new AtomicLongArray(OffHeapSubsystem.values().length * ACCOUNTING_PAD);
+	/** The always-on allocation counts, by subsystem */
+	private static final AtomicLongArray allocationCounts = new AtomicLongArray(OffHeapSubsystem.values().length * ACCOUNTING_PAD);
+	
 	/**
 	 * Simple out formatted logger
 	 * @param fmt The format of the message
@@ -155,6 +168,24 @@ public class UnsafeAdapter {
     	 * @return the distinct native memory allocating callers with no de-allocating calls.
     	 */
     	public Set<String> getNonDeallocatingAllocators();
+    	
+    	/**
+    	 * Returns the currently allocated off-heap bytes keyed by the allocating subsystem
+    	 * @return the currently allocated off-heap bytes by subsystem
+    	 */
+    	public Map<String, Long> getAllocatedMemoryBySubsystem();
+    	
+    	/**
+    	 * Returns the current number of off-heap allocations keyed by the allocating subsystem
+    	 * @return the current number of off-heap allocations by subsystem
+    	 */
+    	public Map<String, Long> getAllocationCountBySubsystem();
+    	
+    	/**
+    	 * Indicates if allocating caller tracking is enabled
+    	 * @return true if allocating caller tracking is enabled
+    	 */
+    	public boolean isTrackingCallers();
     }
     
     public static class UnsafeMemory implements UnsafeMemoryMBean  {
@@ -165,8 +196,7 @@ public class UnsafeAdapter {
 		 */
 		@Override
 		public long getTotalAllocatedMemory() {
-			if(!trackMem) return -1L;
-			return totalMemoryAllocated.get();
+			return UnsafeAdapter.getTotalAllocatedMemory();
 		}
 
 		/**
@@ -175,8 +205,7 @@ public class UnsafeAdapter {
 		 */
 		@Override
 		public int getTotalAllocationCount() {
-			if(!trackMem) return -1;
-			return memoryAllocations.size();
+			return (int)UnsafeAdapter.getTotalAllocationCount();
 		}
 
 		/**
@@ -185,8 +214,7 @@ public class UnsafeAdapter {
 		 */
 		@Override
 		public long getTotalAllocatedMemoryKb() {
-			if(!trackMem) return -1L;
-			long t = totalMemoryAllocated.get();
+			long t = UnsafeAdapter.getTotalAllocatedMemory();
 			if(t<1) return 0L;
 			return t/1024;
 		}
@@ -197,8 +225,7 @@ public class UnsafeAdapter {
 		 */
 		@Override
 		public long getTotalAllocatedMemoryMb() {
-			if(!trackMem) return -1L;
-			long t = totalMemoryAllocated.get();
+			long t = UnsafeAdapter.getTotalAllocatedMemory();
 			if(t<1) return 0L;
 			return t/1024/1024;
 		}
@@ -209,7 +236,10 @@ public class UnsafeAdapter {
 		 */
 		@Override
 		public Set<String> getDeallocators() {
-			return deallocators;
+			if(!trackMem) return Collections.emptySet();
+			synchronized(totalMemoryAllocated) {
+				return new HashSet<String>(deallocators);
+			}
 		}
 
 		/**
@@ -218,7 +248,10 @@ public class UnsafeAdapter {
 		 */
 		@Override
 		public Set<String> getAllocators() {			
-			return allocators;
+			if(!trackMem) return Collections.emptySet();
+			synchronized(totalMemoryAllocated) {
+				return new HashSet<String>(allocators);
+			}
 		}
 
 		/**
@@ -227,10 +260,45 @@ public class UnsafeAdapter {
 		 */
 		@Override
 		public Set<String> getNonDeallocatingAllocators() {
-			Set<String> allocs = new HashSet<String>(allocators);
-			allocs.removeAll(deallocators);
+			Set<String> allocs = getAllocators();
+			allocs.removeAll(getDeallocators());
 			return allocs;			
 		}
+		
+		/**
+		 * {@inheritDoc}
+		 * @see com.heliosapm.shorthand.util.unsafe.UnsafeAdapter.UnsafeMemoryMBean#getAllocatedMemoryBySubsystem()
+		 */
+		@Override
+		public Map<String, Long> getAllocatedMemoryBySubsystem() {
+			Map<String, Long> map = new LinkedHashMap<String, Long>();
+			for(OffHeapSubsystem sub: OffHeapSubsystem.values()) {
+				map.put(sub.name(), getAllocatedMemory(sub));
+			}
+			return map;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * @see com.heliosapm.shorthand.util.unsafe.UnsafeAdapter.UnsafeMemoryMBean#getAllocationCountBySubsystem()
+		 */
+		@Override
+		public Map<String, Long> getAllocationCountBySubsystem() {
+			Map<String, Long> map = new LinkedHashMap<String, Long>();
+			for(OffHeapSubsystem sub: OffHeapSubsystem.values()) {
+				map.put(sub.name(), getAllocationCount(sub));
+			}
+			return map;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * @see com.heliosapm.shorthand.util.unsafe.UnsafeAdapter.UnsafeMemoryMBean#isTrackingCallers()
+		 */
+		@Override
+		public boolean isTrackingCallers() {
+			return trackMem;
+		}
     	
     }
     
@@ -270,7 +338,6 @@ public class UnsafeAdapter {
         		totalMemoryAllocated = new AtomicLong(0L);
         		deallocators = new HashSet<String>(1024);
         		allocators = new HashSet<String>(1024);
-        		JMXHelper.registerMBean(new UnsafeMemory(), JMXHelper.objectName("%s:%s=%s", UnsafeAdapter.class.getPackage().getName(), "service", UnsafeMemory.class.getSimpleName()));
         	} else {
         		totalMemoryAllocated = null;
         		memoryAllocations = null;
@@ -278,6 +345,7 @@ public class UnsafeAdapter {
         		allocators = null;
 
         	}
+        	JMXHelper.registerMBean(new UnsafeMemory(), JMXHelper.objectName("%s:%s=%s", UnsafeAdapter.class.getPackage().getName(), "service", UnsafeMemory.class.getSimpleName()));
         	
         } catch (Exception e) {
             throw new AssertionError(e);
@@ -343,18 +411,44 @@ public class UnsafeAdapter {
 	}
 
 	/**
-	 * Allocates a chunk of memory and returns its address
+	 * Allocates a chunk of memory and returns its address, accounted to {@link OffHeapSubsystem#OTHER}
 	 * @param size The number of bytes to allocate
 	 * @return The address of the allocated memory
 	 * @see sun.misc.Unsafe#allocateMemory(long)
 	 */
 	public static long allocateMemory(long size) {
-		long address = UNSAFE.allocateMemory(size);
+		return allocate(size, OffHeapSubsystem.OTHER);
+	}
+	
+	/**
+	 * Allocates a chunk of memory and returns its address.
+	 * The allocation is prefixed with a {@link #ALLOC_HEADER_SIZE} byte header recording the size and the 
+	 * allocating subsystem, so every allocation is accounted for without a lookup on free.
+	 * @param size The number of bytes to allocate
+	 * @param subsystem The allocating subsystem
+	 * @return The address of the allocated memory
+	 * @see sun.misc.Unsafe#allocateMemory(long)
+	 */
+	public static long allocateMemory(long size, OffHeapSubsystem subsystem) {
+		return allocate(size, subsystem);
+	}
+	
+	/**
+	 * Allocates and accounts a chunk of memory
+	 * @param size The number of bytes to allocate
+	 * @param subsystem The allocating subsystem
+	 * @return The address of the allocated memory
+	 */
+	private static long allocate(long size, OffHeapSubsystem subsystem) {
+		long base = UNSAFE.allocateMemory(size + ALLOC_HEADER_SIZE);
+		UNSAFE.putLong(base, (size << 8) | subsystem.ordinal());
+		account(subsystem.ordinal(), size, 1);
+		long address = base + ALLOC_HEADER_SIZE;
 		if(trackMem) {
 			synchronized(totalMemoryAllocated) {
 				memoryAllocations.put(address, size);
 				totalMemoryAllocated.addAndGet(size);
-				allocators.add(sun.reflect.Reflection.getCallerClass(3).getName());
+				allocators.add(sun.reflect.Reflection.getCallerClass(4).getName());
 			}
 		}
 		return address;
@@ -366,6 +460,7 @@ public class UnsafeAdapter {
 	 * @see sun.misc.Unsafe#freeMemory(long)
 	 */
 	public static void freeMemory(long address) {
+		if(address==0) return;
 		if(trackMem) {
 			synchronized(totalMemoryAllocated) {
 				long size = memoryAllocations.remove(address);				
@@ -373,7 +468,10 @@ public class UnsafeAdapter {
 				deallocators.add(sun.reflect.Reflection.getCallerClass(3).getName());
 			}
 		}		
-		UNSAFE.freeMemory(address);
+		long base = address - ALLOC_HEADER_SIZE;
+		long header = UNSAFE.getLong(base);
+		account((int)(header & 0xFF), -1L * (header >>> 8), -1);
+		UNSAFE.freeMemory(base);
 	}
 	
 	/**
@@ -384,7 +482,14 @@ public class UnsafeAdapter {
 	 * @see sun.misc.Unsafe#reallocateMemory(long, long)
 	 */
 	public static long reallocateMemory(long address, long bytes) {
-		long newAddress = UNSAFE.reallocateMemory(address, bytes);
+		if(address==0) return allocateMemory(bytes);
+		long base = address - ALLOC_HEADER_SIZE;
+		long header = UNSAFE.getLong(base);
+		int subsystem = (int)(header & 0xFF);
+		long newBase = UNSAFE.reallocateMemory(base, bytes + ALLOC_HEADER_SIZE);
+		UNSAFE.putLong(newBase, (bytes << 8) | subsystem);
+		account(subsystem, bytes - (header >>> 8), 0);
+		long newAddress = newBase + ALLOC_HEADER_SIZE;
 		if(trackMem) {
 			synchronized(totalMemoryAllocated) {
 				long size = memoryAllocations.remove(address);				
@@ -397,6 +502,59 @@ public class UnsafeAdapter {
 		return newAddress;
 	}	
 	
+	/**
+	 * Applies an allocation delta to the always-on accounting
+	 * @param subsystem The subsystem ordinal
+	 * @param bytes The byte delta
+	 * @param count The allocation count delta
+	 */
+	private static void account(int subsystem, long bytes, int count) {
+		int slot = subsystem * ACCOUNTING_PAD;
+		allocatedBytes.getAndAdd(slot, bytes);
+		if(count!=0) allocationCounts.getAndAdd(slot, count);
+	}
+	
+	/**
+	 * Returns the total off-heap memory currently allocated through this adapter in bytes (excluding the accounting headers)
+	 * @return the total allocated bytes
+	 */
+	public static long getTotalAllocatedMemory() {
+		long total = 0;
+		for(int i = 0; i < OffHeapSubsystem.values().length; i++) {
+			total += allocatedBytes.get(i * ACCOUNTING_PAD);
+		}
+		return total;
+	}
+	
+	/**
+	 * Returns the total number of live off-heap allocations made through this adapter
+	 * @return the total number of live allocations
+	 */
+	public static long getTotalAllocationCount() {
+		long total = 0;
+		for(int i = 0; i < OffHeapSubsystem.values().length; i++) {
+			total += allocationCounts.get(i * ACCOUNTING_PAD);
+		}
+		return total;
+	}
+	
+	/**
+	 * Returns the off-heap memory currently allocated by the passed subsystem in bytes
+	 * @param subsystem The subsystem
+	 * @return the allocated bytes
+	 */
+	public static long getAllocatedMemory(OffHeapSubsystem subsystem) {
+		return allocatedBytes.get(subsystem.ordinal() * ACCOUNTING_PAD);
+	}
+	
+	/**
+	 * Returns the number of live off-heap allocations made by the passed subsystem
+	 * @param subsystem The subsystem
+	 * @return the number of live allocations
+	 */
+	public static long getAllocationCount(OffHeapSubsystem subsystem) {
+		return allocationCounts.get(subsystem.ordinal() * ACCOUNTING_PAD);
+	}
 
 	/**
 	 * Report the offset of the first element in the storage allocation of a 
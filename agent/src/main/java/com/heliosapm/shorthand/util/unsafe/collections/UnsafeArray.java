@@ -5,6 +5,7 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.util.concurrent.atomic.AtomicLong;
 
+import com.heliosapm.shorthand.util.unsafe.OffHeapSubsystem;
 import com.heliosapm.shorthand.util.unsafe.UnsafeAdapter;
 
 /**
@@ -78,7 +79,7 @@ public abstract class UnsafeArray {
      * @return a pointer to the memory block allocated
      */
     protected static long allocateMemory(long size) {
-    	return UnsafeAdapter.allocateMemory(size);
+    	return UnsafeAdapter.allocateMemory(size, OffHeapSubsystem.ARRAY);
     }
     
     /**
@@ -5,6 +5,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.heliosapm.shorthand.util.ref.RunnableReferenceQueue;
+import com.heliosapm.shorthand.util.unsafe.OffHeapSubsystem;
 import com.heliosapm.shorthand.util.unsafe.UnsafeAdapter;
 
 /**
@@ -82,7 +83,7 @@ public class NativeSpinLock {
 	 * @param writeYield Indicates if the write lock should yield while spinning 
 	 */
 	public NativeSpinLock(boolean readYield, boolean writeYield) {
-		address = UnsafeAdapter.allocateMemory(UnsafeAdapter.LONG_SIZE);
+		address = UnsafeAdapter.allocateMemory(UnsafeAdapter.LONG_SIZE, OffHeapSubsystem.LOCK);
 		RunnableReferenceQueue.getInstance().buildPhantomReference(this, address);
 		readLock = readYield ? new NativeYieldingSpinLock(address, this) : new NativeNonYieldingSpinLock(address, this); 
 		writeLock = writeYield ? new NativeYieldingSpinLock(address, this) : new NativeNonYieldingSpinLock(address, this);
@@ -0,0 +1,159 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.accumulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import test.com.heliosapm.shorthand.BaseTest;
+
+/**
+ * <p>Title: PeriodClockTest</p>
+ * <p>Description: Tests the period clock's handling of listeners that overrun a period</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.accumulator.PeriodClockTest</code></p>
+ */
+
+public class PeriodClockTest extends BaseTest {
+	
+	/**
+	 * Disables the period clock so periods are only triggered by the test
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@BeforeClass
+	public static void disablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("disablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+
+	/**
+	 * Re-enables the period clock
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@AfterClass
+	public static void enablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("enablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+	
+	/**
+	 * <p>Title: BlockingListener</p>
+	 * <p>Description: A listener that records its periods and blocks in its first call until released</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.accumulator.PeriodClockTest.BlockingListener</code></p>
+	 */
+	static class BlockingListener implements PeriodEventListener {
+		final List<long[]> periods = new CopyOnWriteArrayList<long[]>();
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done;
+		
+		BlockingListener(int expectedCalls) {
+			done = new CountDownLatch(expectedCalls);
+		}
+		
+		@Override
+		public void onNewPeriod(long newStartTime, long newEndTime, long priorStartTime, long priorEndTime) {
+			periods.add(new long[]{newStartTime, newEndTime, priorStartTime, priorEndTime});
+			entered.countDown();
+			try { release.await(10, TimeUnit.SECONDS); } catch (InterruptedException iex) {/* No Op */}
+			done.countDown();
+		}
+	}
+	
+	/**
+	 * Triggers three periods against a listener that is busy with the first, and returns the triggered periods
+	 * @param clock The period clock
+	 * @param listener The listener
+	 * @return the triggered periods
+	 * @throws Exception thrown on any error
+	 */
+	protected long[][] overrun(PeriodClock clock, BlockingListener listener) throws Exception {
+		clock.registerListener(listener);
+		long now = System.currentTimeMillis();
+		long[][] periods = new long[3][];
+		periods[0] = clock.getCurrentPeriod(now);
+		clock.triggerFlush(periods[0]);
+		assertTrue("Listener not called", listener.entered.await(5, TimeUnit.SECONDS));
+		periods[1] = clock.getCurrentPeriod(now + clock.periodMs);
+		clock.triggerFlush(periods[1]);
+		periods[2] = clock.getCurrentPeriod(now + clock.periodMs*2);
+		clock.triggerFlush(periods[2]);
+		listener.release.countDown();
+		assertTrue("Listener calls not completed", listener.done.await(5, TimeUnit.SECONDS));
+		clock.removeListener(listener);
+		return periods;
+	}
+	
+	/**
+	 * Verifies that periods stacking up behind a busy listener are merged into one call spanning both
+	 * @throws Exception thrown on any error
+	 */
+	@Test
+	public void testMergeOverrun() throws Exception {
+		PeriodClock clock = PeriodClock.getInstance();
+		clock.setOverrunPolicy(PeriodOverrunPolicy.MERGE.name());
+		long merged = clock.getMergedPeriodCount();
+		BlockingListener listener = new BlockingListener(2);
+		long[][] periods = overrun(clock, listener);
+		assertEquals("Unexpected call count", 2, listener.periods.size());
+		long[] call = listener.periods.get(1);
+		assertEquals("Unexpected merged new start", periods[2][0], call[0]);
+		assertEquals("Unexpected merged prior start", periods[1][2], call[2]);
+		assertEquals("Unexpected merged prior end", periods[2][3], call[3]);
+		assertEquals("Unexpected merged count", merged + 1, clock.getMergedPeriodCount());
+	}
+	
+	/**
+	 * Verifies that periods stacking up behind a busy listener are delivered in order under the EXTEND policy
+	 * @throws Exception thrown on any error
+	 */
+	@Test
+	public void testExtendOverrun() throws Exception {
+		PeriodClock clock = PeriodClock.getInstance();
+		clock.setOverrunPolicy(PeriodOverrunPolicy.EXTEND.name());
+		BlockingListener listener = new BlockingListener(3);
+		long[][] periods = overrun(clock, listener);
+		assertEquals("Unexpected call count", 3, listener.periods.size());
+		for(int i = 0; i < 3; i++) {
+			assertEquals("Unexpected period start", periods[i][0], listener.periods.get(i)[0]);
+		}
+		clock.setOverrunPolicy(PeriodOverrunPolicy.MERGE.name());
+	}
+}
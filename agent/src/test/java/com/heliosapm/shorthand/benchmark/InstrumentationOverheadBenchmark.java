@@ -0,0 +1,278 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.heliosapm.shorthand.attach.vm.agent.LocalAgentInstaller;
+import com.heliosapm.shorthand.collectors.MethodInterceptor;
+import com.heliosapm.shorthand.instrumentor.shorthand.ShorthandCompiler;
+import com.heliosapm.shorthand.instrumentor.shorthand.ShorthandScript;
+import com.heliosapm.shorthand.testclasses.benchmark.SyntheticTargets;
+import com.heliosapm.shorthand.testclasses.benchmark.SyntheticTargets.BenchmarkTarget;
+import com.heliosapm.shorthand.util.ConfigurationHelper;
+
+/**
+ * <p>Title: InstrumentationOverheadBenchmark</p>
+ * <p>Description: End to end benchmark of the per-call cost of a shorthand instrumented method versus an uninstrumented one.
+ * Each scenario compiles a real shorthand script through {@link ShorthandCompiler#compile(com.heliosapm.shorthand.instrumentor.shorthand.ShorthandScriptMBean)}
+ * which retransforms one of the {@link SyntheticTargets} using the {@link LocalAgentInstaller} acquired instrumentation, then measures
+ * multi-threaded throughput and the single threaded per-call latency distribution.</p>
+ * <p>Not a unit test (and not picked up by surefire). Run the <b><code>main</code></b> from the test classpath. Tunables:<ul>
+ * 	<li><b><code>shorthand.bench.warmup</code></b>: warmup calls per thread (default 200000)</li>
+ * 	<li><b><code>shorthand.bench.calls</code></b>: measured calls per thread (default 1000000)</li>
+ * 	<li><b><code>shorthand.bench.threads</code></b>: throughput threads (default the number of cores)</li>
+ * 	<li><b><code>shorthand.bench.work</code></b>: work rounds executed by each target call (default 16)</li>
+ * 	<li><b><code>shorthand.bench.keys</code></b>: distinct <b><code>${arg[0]}</code></b> values, i.e. the runtime metric name cardinality (default 16)</li>
+ * </ul></p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.benchmark.InstrumentationOverheadBenchmark</code></p>
+ */
+
+public class InstrumentationOverheadBenchmark {
+	/** Warmup calls per thread */
+	protected final int warmup = ConfigurationHelper.getIntSystemThenEnvProperty("shorthand.bench.warmup", 200000);
+	/** Measured calls per thread */
+	protected final int calls = ConfigurationHelper.getIntSystemThenEnvProperty("shorthand.bench.calls", 1000000);
+	/** The number of throughput threads */
+	protected final int threads = ConfigurationHelper.getIntSystemThenEnvProperty("shorthand.bench.threads", Runtime.getRuntime().availableProcessors());
+	/** The work rounds per target call */
+	protected final int work = ConfigurationHelper.getIntSystemThenEnvProperty("shorthand.bench.work", 16);
+	/** The argument keys passed to the targets */
+	protected final String[] keys;
+	/** A sink to defeat dead code elimination */
+	protected final AtomicLong sink = new AtomicLong();
+
+	/** The latency percentiles reported */
+	public static final double[] PERCENTILES = {50d, 90d, 99d, 99.9d, 99.99d};
+
+	/**
+	 * Creates a new InstrumentationOverheadBenchmark
+	 */
+	public InstrumentationOverheadBenchmark() {
+		int keyCount = ConfigurationHelper.getIntSystemThenEnvProperty("shorthand.bench.keys", 16);
+		keys = new String[keyCount];
+		for(int i = 0; i < keyCount; i++) {
+			keys[i] = "key" + i;
+		}
+	}
+
+	/**
+	 * Runs the benchmark
+	 * @param args None
+	 */
+	public static void main(String[] args) {
+		ManagementFactory.getThreadMXBean().setThreadContentionMonitoringEnabled(true);
+		ManagementFactory.getThreadMXBean().setThreadCpuTimeEnabled(true);
+		log("Acquired Instrumentation [%s]", LocalAgentInstaller.getInstrumentation());
+		new InstrumentationOverheadBenchmark().run();
+		System.exit(0);
+	}
+
+	/**
+	 * Builds the scenarios, runs them in order and prints the comparison table
+	 */
+	public void run() {
+		final int countOnly = MethodInterceptor.getBitMaskFor(MethodInterceptor.INVOCATION_COUNT);
+		final List<Scenario> scenarios = new ArrayList<Scenario>();
+		scenarios.add(new Scenario("Baseline", new SyntheticTargets.Baseline(), -1, null));
+		scenarios.add(new Scenario("CountOnly", new SyntheticTargets.CountOnly(), countOnly, "'bench/countonly'"));
+		scenarios.add(new Scenario("DefaultMask", new SyntheticTargets.DefaultMask(), MethodInterceptor.defaultMetricsMask, "'${class}/${method}'"));
+		scenarios.add(new Scenario("AllMask", new SyntheticTargets.AllMask(), MethodInterceptor.allMetricsMask, "'${class}/${method}'"));
+		scenarios.add(new Scenario("DefaultMaskArgNamed", new SyntheticTargets.DefaultMaskArgNamed(), MethodInterceptor.defaultMetricsMask, "'${class}/${method}/${arg[0]}'"));
+		scenarios.add(new Scenario("AllMaskArgNamed", new SyntheticTargets.AllMaskArgNamed(), MethodInterceptor.allMetricsMask, "'${class}/${method}/${arg[0]}'"));
+		log("Instrumentation Overhead Benchmark: warmup:%s calls:%s threads:%s work:%s keys:%s", warmup, calls, threads, work, keys.length);
+		for(Scenario scenario: scenarios) {
+			scenario.instrument();
+			scenario.warmup();
+			scenario.measureThroughput();
+			scenario.measureLatency();
+			log("Completed [%s]", scenario.name);
+		}
+		final Scenario baseline = scenarios.get(0);
+		StringBuilder b = new StringBuilder("\n\tInstrumentation Overhead Results\n\t================================");
+		b.append(String.format("\n\t%-20s %14s %12s %12s", "Scenario", "Calls/sec", "Avg ns/call", "Overhead ns"));
+		for(double p: PERCENTILES) {
+			b.append(String.format(" %10s", "p" + p));
+		}
+		b.append(String.format(" %10s", "max"));
+		for(Scenario s: scenarios) {
+			b.append(String.format("\n\t%-20s %14.0f %12.1f %12.1f", s.name, s.callsPerSec, s.avgNs, s.avgNs - baseline.avgNs));
+			for(double p: PERCENTILES) {
+				b.append(String.format(" %10d", s.percentile(p)));
+			}
+			b.append(String.format(" %10d", s.samples[s.samples.length-1]));
+		}
+		log(b.toString());
+		log("Sink: %s", sink.get());
+	}
+
+	/**
+	 * <p>Title: Scenario</p>
+	 * <p>Description: One benchmarked target, its instrumentation script and its results</p>
+	 */
+	protected class Scenario {
+		/** The scenario name */
+		final String name;
+		/** The target to invoke */
+		final BenchmarkTarget target;
+		/** The collector bit mask, or -1 for uninstrumented */
+		final int bitMask;
+		/** The metric name template, quoted as in a script, or null for uninstrumented */
+		final String template;
+		/** The measured throughput */
+		double callsPerSec = 0;
+		/** The measured average single threaded elapsed ns per call */
+		double avgNs = 0;
+		/** The sorted per-call latency samples in ns */
+		long[] samples = new long[0];
+
+		/**
+		 * Creates a new Scenario
+		 * @param name The scenario name
+		 * @param target The target to invoke
+		 * @param bitMask The collector bit mask, or -1 for uninstrumented
+		 * @param template The metric name template, or null for uninstrumented
+		 */
+		Scenario(String name, BenchmarkTarget target, int bitMask, String template) {
+			this.name = name;
+			this.target = target;
+			this.bitMask = bitMask;
+			this.template = template;
+		}
+
+		/**
+		 * Compiles the scenario's script which retransforms the target class
+		 */
+		void instrument() {
+			if(template==null) return;
+			final String script = String.format("%s compute MethodInterceptor[%s] %s", target.getClass().getName(), bitMask, template);
+			log("Compiling [%s]", script);
+			try {
+				ShorthandCompiler.getInstance().compile(ShorthandScript.parse(script));
+			} catch (Exception ex) {
+				throw new RuntimeException("Failed to compile script [" + script + "]", ex);
+			}
+		}
+
+		/**
+		 * Warms up the target so both the target and the instrumentation are compiled
+		 */
+		void warmup() {
+			long x = 0;
+			for(int i = 0; i < warmup; i++) {
+				x += target.compute(keys[i % keys.length], work);
+			}
+			sink.addAndGet(x);
+		}
+
+		/**
+		 * Measures the aggregate throughput of {@link InstrumentationOverheadBenchmark#threads} concurrent callers
+		 */
+		void measureThroughput() {
+			final CountDownLatch startLatch = new CountDownLatch(1);
+			final CountDownLatch endLatch = new CountDownLatch(threads);
+			for(int t = 0; t < threads; t++) {
+				final int offset = t;
+				Thread thread = new Thread("BenchmarkThread#" + name + "#" + t) {
+					@Override
+					public void run() {
+						try {
+							startLatch.await();
+							long x = 0;
+							for(int i = 0; i < calls; i++) {
+								x += target.compute(keys[(i + offset) % keys.length], work);
+							}
+							sink.addAndGet(x);
+						} catch (InterruptedException iex) {
+							Thread.currentThread().interrupt();
+						} finally {
+							endLatch.countDown();
+						}
+					}
+				};
+				thread.setDaemon(true);
+				thread.start();
+			}
+			final long start = System.nanoTime();
+			startLatch.countDown();
+			try {
+				endLatch.await();
+			} catch (InterruptedException iex) {
+				throw new RuntimeException("Interrupted waiting for throughput threads", iex);
+			}
+			final long elapsed = System.nanoTime() - start;
+			callsPerSec = ((double)calls * threads) / elapsed * 1000000000d;
+		}
+
+		/**
+		 * Measures the single threaded per-call latency distribution.
+		 * Every call is timed individually so the samples include the timer overhead, which
+		 * is identical for all scenarios and therefore cancels out against the baseline.
+		 */
+		void measureLatency() {
+			final long[] s = new long[calls];
+			long x = 0;
+			final long start = System.nanoTime();
+			for(int i = 0; i < calls; i++) {
+				final long t = System.nanoTime();
+				x += target.compute(keys[i % keys.length], work);
+				s[i] = System.nanoTime() - t;
+			}
+			final long elapsed = System.nanoTime() - start;
+			sink.addAndGet(x);
+			avgNs = (double)elapsed / calls;
+			Arrays.sort(s);
+			samples = s;
+		}
+
+		/**
+		 * Returns the latency at the passed percentile
+		 * @param p the percentile (0 - 100)
+		 * @return the latency in ns
+		 */
+		long percentile(double p) {
+			if(samples.length==0) return -1L;
+			int index = (int)Math.ceil(p / 100d * samples.length) - 1;
+			return samples[Math.max(0, Math.min(index, samples.length-1))];
+		}
+	}
+
+	/**
+	 * Simple out formatted logger
+	 * @param fmt The format of the message
+	 * @param args The message arguments
+	 */
+	public static void log(String fmt, Object...args) {
+		System.out.println(String.format(fmt, args));
+	}
+
+}
@@ -0,0 +1,239 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.broadcast;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import test.com.heliosapm.shorthand.BaseTest;
+
+import com.heliosapm.shorthand.accumulator.PeriodClock;
+import com.heliosapm.shorthand.broadcast.MetricBroadcastPacketHandler.MetricBroadcast;
+import com.heliosapm.shorthand.broadcast.NameDictionaryBroadcastPacketHandler.NameDictionaryBroadcast;
+import com.heliosapm.shorthand.collectors.MethodInterceptor;
+import com.heliosapm.shorthand.datamapper.DataMapperBuilder;
+import com.heliosapm.shorthand.datamapper.IDataMapper;
+import com.heliosapm.shorthand.store.ChronicleStore;
+
+/**
+ * <p>Title: MetricBroadcasterTest</p>
+ * <p>Description: Tests packing a closed period into metric and name dictionary packets and unmarshalling them</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.broadcast.MetricBroadcasterTest</code></p>
+ */
+
+public class MetricBroadcasterTest extends BaseTest {
+	/** The store under test */
+	@SuppressWarnings("unchecked")
+	protected final ChronicleStore<MethodInterceptor> store = (ChronicleStore<MethodInterceptor>) ChronicleStore.getInstance();
+	
+	/**
+	 * Disables the period clock
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@BeforeClass
+	public static void disablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("disablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+
+	/**
+	 * Re-enables the period clock
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@AfterClass
+	public static void enablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("enablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+	
+	/**
+	 * Broadcasts a closed period of 40 metrics in small packets and validates the names, values and packet order
+	 * @throws Exception thrown on any error
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testPeriodBroadcast() throws Exception {
+		store.clear();
+		final int bitMask = MethodInterceptor.getBitMaskFor(MethodInterceptor.INVOCATION_COUNT, MethodInterceptor.ELAPSED);
+		IDataMapper<MethodInterceptor> dataMapper = (IDataMapper<MethodInterceptor>) DataMapperBuilder.getInstance().getIDataMapper(MethodInterceptor.class.getName(), bitMask);
+		final int itemCount = MethodInterceptor.values().length;
+		for(int i = 0; i < 40; i++) {
+			long[] values = new long[itemCount+2];
+			values[MethodInterceptor.INVOCATION_COUNT.ordinal()] = i+1;
+			values[itemCount] = bitMask;
+			store.doSnap(name.getMethodName() + "/broadcast/" + i, dataMapper, values);
+		}
+		long now = System.currentTimeMillis();
+		store.flush(now-15000, now);
+		final List<byte[]> packets = new ArrayList<byte[]>();
+		MetricBroadcaster broadcaster = new MetricBroadcaster(store, 256, 5) {
+			@Override
+			protected boolean send(byte[] packet) {
+				return packets.add(packet);
+			}
+		};
+		assertEquals("Unexpected broadcast count", 40, broadcaster.broadcastPeriod());
+		assertTrue("Expected several metric packets", broadcaster.getMetricPacketCount() > 1);
+		assertEquals("Unexpected packet count", broadcaster.getMetricPacketCount() + broadcaster.getNamePacketCount(), packets.size());
+		Map<Long, String> names = new HashMap<Long, String>();
+		Map<String, Long> invocations = new HashMap<String, Long>();
+		// metric packets are all decoded into one re-used instance, as the caster does
+		MetricBroadcast mb = new MetricBroadcast();
+		for(byte[] packet: packets) {
+			assertTrue("Packet exceeds MTU", packet.length <= 256);
+			BroadcastType bt = BroadcastType.ordinal((int)packet[0]);
+			ByteBuffer content = ByteBuffer.wrap(packet, 1, packet.length-1);
+			if(bt==BroadcastType.NAMES) {
+				NameDictionaryBroadcast dict = (NameDictionaryBroadcast)bt.unmarshallPacket(content, null);
+				assertEquals("Unexpected generation", store.getGeneration(), dict.generation);
+				for(int i = 0; i < dict.size(); i++) {
+					assertEquals("Unexpected collector type", MethodInterceptor.class.getName(), dict.collectorTypes[i]);
+					assertEquals("Unexpected bit mask", bitMask, dict.bitMasks[i]);
+					names.put(dict.nameIndexes[i], dict.names[i]);
+				}
+			} else {
+				assertEquals("Unexpected type", BroadcastType.METRICS, bt);
+				mb.read(content, null);
+				assertEquals("Unexpected period end", now, mb.periodEnd);
+				assertEquals("Unexpected generation", store.getGeneration(), mb.generation);
+				for(int i = 0; i < mb.size(); i++) {
+					String metricName = names.get(mb.nameIndex(i));
+					assertNotNull("Metric received before its name", metricName);
+					for(int p = 0; p < mb.pointCount(i); p++) {
+						if(mb.ordinal(i, p)==MethodInterceptor.INVOCATION_COUNT.ordinal()) {
+							invocations.put(metricName, mb.value(i, p, 0));
+						}
+					}
+				}
+			}
+		}
+		assertEquals("Unexpected metric count", 40, invocations.size());
+		for(int i = 0; i < 40; i++) {
+			assertEquals("Unexpected invocation count", Long.valueOf(i+1), invocations.get(name.getMethodName() + "/broadcast/" + i));
+		}
+		// Names are only sent again on the dictionary refresh
+		long namePackets = broadcaster.getNamePacketCount();
+		broadcaster.broadcastPeriod();
+		assertEquals("Unexpected name packets", namePackets, broadcaster.getNamePacketCount());
+	}
+	
+	/**
+	 * Validates that clearing the store, which renumbers the name index, resends the name dictionary under the new generation
+	 * @throws Exception thrown on any error
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testGenerationChange() throws Exception {
+		store.clear();
+		final int bitMask = MethodInterceptor.getBitMaskFor(MethodInterceptor.INVOCATION_COUNT);
+		IDataMapper<MethodInterceptor> dataMapper = (IDataMapper<MethodInterceptor>) DataMapperBuilder.getInstance().getIDataMapper(MethodInterceptor.class.getName(), bitMask);
+		final long[] values = new long[MethodInterceptor.values().length+2];
+		values[values.length-2] = bitMask;
+		final List<byte[]> packets = new ArrayList<byte[]>();
+		MetricBroadcaster broadcaster = new MetricBroadcaster(store, 1024, 100) {
+			@Override
+			protected boolean send(byte[] packet) {
+				return packets.add(packet);
+			}
+		};
+		store.doSnap(name.getMethodName() + "/first", dataMapper, values);
+		long now = System.currentTimeMillis();
+		store.flush(now-15000, now);
+		assertEquals("Unexpected broadcast count", 1, broadcaster.broadcastPeriod());
+		final long generation = store.getGeneration();
+		store.clear();
+		assertEquals("Clear did not advance the generation", generation+1, store.getGeneration());
+		store.doSnap(name.getMethodName() + "/second", dataMapper, values);
+		store.flush(now, now+15000);
+		packets.clear();
+		assertEquals("Unexpected broadcast count", 1, broadcaster.broadcastPeriod());
+		assertEquals("Unexpected packet count", 2, packets.size());
+		ByteBuffer names = ByteBuffer.wrap(packets.get(0), 1, packets.get(0).length-1);
+		NameDictionaryBroadcast dict = (NameDictionaryBroadcast)BroadcastType.NAMES.unmarshallPacket(names, null);
+		assertEquals("Unexpected generation", generation+1, dict.generation);
+		assertEquals("Unexpected name", name.getMethodName() + "/second", dict.names[0]);
+		ByteBuffer metrics = ByteBuffer.wrap(packets.get(1), 1, packets.get(1).length-1);
+		MetricBroadcast mb = new MetricBroadcast().read(metrics, null);
+		assertEquals("Unexpected generation", generation+1, mb.generation);
+		assertEquals("Unexpected name index", dict.nameIndexes[0], mb.nameIndex(0));
+	}
+	
+	/**
+	 * Validates that names in a name dictionary packet dropped by a full send queue are resent in the next period
+	 * @throws Exception thrown on any error
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testQueueFull() throws Exception {
+		store.clear();
+		final int bitMask = MethodInterceptor.getBitMaskFor(MethodInterceptor.INVOCATION_COUNT);
+		IDataMapper<MethodInterceptor> dataMapper = (IDataMapper<MethodInterceptor>) DataMapperBuilder.getInstance().getIDataMapper(MethodInterceptor.class.getName(), bitMask);
+		final long[] values = new long[MethodInterceptor.values().length+2];
+		values[values.length-2] = bitMask;
+		for(int i = 0; i < 10; i++) {
+			store.doSnap(name.getMethodName() + "/full/" + i, dataMapper, values);
+		}
+		long now = System.currentTimeMillis();
+		store.flush(now-15000, now);
+		final List<byte[]> packets = new ArrayList<byte[]>();
+		final boolean[] full = {true};
+		MetricBroadcaster broadcaster = new MetricBroadcaster(store, 256, 100) {
+			@Override
+			protected boolean send(byte[] packet) {
+				if(full[0]) return false;
+				return packets.add(packet);
+			}
+		};
+		assertEquals("Unexpected broadcast count", 10, broadcaster.broadcastPeriod());
+		assertEquals("Unexpected name packets", 0, broadcaster.getNamePacketCount());
+		assertEquals("Unexpected metric packets", 0, broadcaster.getMetricPacketCount());
+		full[0] = false;
+		assertEquals("Unexpected broadcast count", 10, broadcaster.broadcastPeriod());
+		assertTrue("Dropped names not resent", broadcaster.getNamePacketCount() > 0);
+		int resent = 0;
+		for(byte[] packet: packets) {
+			if(BroadcastType.ordinal((int)packet[0])!=BroadcastType.NAMES) continue;
+			NameDictionaryBroadcast dict = (NameDictionaryBroadcast)BroadcastType.NAMES.unmarshallPacket(ByteBuffer.wrap(packet, 1, packet.length-1), null);
+			resent += dict.size();
+		}
+		assertEquals("Unexpected resent name count", 10, resent);
+		// Once queued, the names are not sent again until the dictionary refresh
+		long namePackets = broadcaster.getNamePacketCount();
+		broadcaster.broadcastPeriod();
+		assertEquals("Unexpected name packets", namePackets, broadcaster.getNamePacketCount());
+	}
+}
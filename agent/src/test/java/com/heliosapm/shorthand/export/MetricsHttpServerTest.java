@@ -0,0 +1,197 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import test.com.heliosapm.shorthand.BaseTest;
+
+import com.heliosapm.shorthand.accumulator.PeriodClock;
+import com.heliosapm.shorthand.collectors.MethodInterceptor;
+import com.heliosapm.shorthand.datamapper.DataMapperBuilder;
+import com.heliosapm.shorthand.datamapper.IDataMapper;
+import com.heliosapm.shorthand.store.ChronicleStore;
+
+/**
+ * <p>Title: MetricsHttpServerTest</p>
+ * <p>Description: Tests scraping the last closed period from the metrics HTTP endpoint</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.export.MetricsHttpServerTest</code></p>
+ */
+
+public class MetricsHttpServerTest extends BaseTest {
+	/** The store under test */
+	@SuppressWarnings("unchecked")
+	protected final ChronicleStore<MethodInterceptor> store = (ChronicleStore<MethodInterceptor>) ChronicleStore.getInstance();
+	
+	/**
+	 * Disables the period clock
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@BeforeClass
+	public static void disablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("disablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+
+	/**
+	 * Re-enables the period clock
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@AfterClass
+	public static void enablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("enablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+	
+	/**
+	 * Snaps and flushes metrics, then scrapes them in plain, filtered, gzipped and OpenMetrics form
+	 * @throws Exception thrown on any error
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testScrape() throws Exception {
+		store.clear();
+		final int bitMask = MethodInterceptor.getBitMaskFor(MethodInterceptor.INVOCATION_COUNT, MethodInterceptor.ELAPSED);
+		IDataMapper<MethodInterceptor> dataMapper = (IDataMapper<MethodInterceptor>) DataMapperBuilder.getInstance().getIDataMapper(MethodInterceptor.class.getName(), bitMask);
+		final int itemCount = MethodInterceptor.values().length;
+		for(int i = 0; i < 5; i++) {
+			long[] values = new long[itemCount+2];
+			values[MethodInterceptor.INVOCATION_COUNT.ordinal()] = i+1;
+			values[itemCount] = bitMask;
+			store.doSnap(name.getMethodName() + "/http/" + i, dataMapper, values);
+		}
+		long now = System.currentTimeMillis();
+		store.flush(now-15000, now);
+		MetricsHttpServer server = new MetricsHttpServer(store, "127.0.0.1", 0);
+		server.start();
+		try {
+			final String base = "http://127.0.0.1:" + server.getPort() + MetricsHttpServer.METRICS_PATH;
+			String text = fetch(base, null, false);
+			for(int i = 0; i < 5; i++) {
+				assertTrue("Missing sample " + i + " in\n" + text, text.contains("shorthand_invcount{metric=\"" + name.getMethodName() + "/http/" + i + "\"} " + (i+1) + "\n"));
+			}
+			assertTrue("Missing type", text.contains("# TYPE shorthand_invcount gauge\n"));
+			assertFalse("Unexpected EOF", text.contains("# EOF"));
+			assertEquals("Unexpected scrape count", 1, server.getScrapeCount());
+			String filtered = fetch(base + "?match=" + URLEncoder.encode(".*/http/[34]", "UTF-8"), null, false);
+			assertTrue("Missing filtered sample", filtered.contains("/http/3\"} 4\n"));
+			assertTrue("Missing filtered sample", filtered.contains("/http/4\"} 5\n"));
+			assertFalse("Unexpected unfiltered sample", filtered.contains("/http/2\""));
+			String open = fetch(base, "application/openmetrics-text; version=1.0.0", true);
+			assertTrue("Missing EOF", open.endsWith("# EOF\n"));
+			assertTrue("Missing gzipped sample", open.contains("/http/0\"} 1\n"));
+			HttpURLConnection conn = (HttpURLConnection)new URL("http://127.0.0.1:" + server.getPort() + "/nothing").openConnection();
+			assertEquals("Unexpected status", 404, conn.getResponseCode());
+			conn.disconnect();
+			assertEquals("Unexpected rejected count", 1, server.getRejectedCount());
+			StringBuilder tooLong = new StringBuilder();
+			while(tooLong.length() <= AbstractMetricsTextWriter.MAX_PATTERN_LENGTH) tooLong.append(".*");
+			assertEquals("Unexpected status", 400, status(base + "?match=" + URLEncoder.encode(tooLong.toString(), "UTF-8")));
+			// Catastrophic backtracking exceeds the match budget on the first name
+			assertEquals("Unexpected status", 400, status(base + "?match=" + URLEncoder.encode("(.*)*!", "UTF-8")));
+			assertEquals("Unexpected rejected count", 3, server.getRejectedCount());
+		} finally {
+			server.stop();
+		}
+	}
+	
+	/**
+	 * Tests that a connection that never sends a request is closed by the idle timeout
+	 * @throws Exception thrown on any error
+	 */
+	@Test
+	public void testIdleTimeout() throws Exception {
+		MetricsHttpServer server = new MetricsHttpServer(new OpenMetricsWriter(store), "127.0.0.1", 0, 200);
+		server.start();
+		Socket socket = new Socket("127.0.0.1", server.getPort());
+		try {
+			socket.setSoTimeout(5000);
+			final long start = System.currentTimeMillis();
+			assertEquals("Idle connection not closed", -1, socket.getInputStream().read());
+			assertTrue("Idle connection closed early", System.currentTimeMillis() - start >= 150);
+			assertEquals("Unexpected timed out count", 1, server.getTimedOutCount());
+		} finally {
+			socket.close();
+			server.stop();
+		}
+	}
+	
+	/**
+	 * Requests the passed URL and returns the response status
+	 * @param url The URL to request
+	 * @return the response status code
+	 * @throws Exception thrown on any error
+	 */
+	protected static int status(String url) throws Exception {
+		HttpURLConnection conn = (HttpURLConnection)new URL(url).openConnection();
+		try {
+			return conn.getResponseCode();
+		} finally {
+			conn.disconnect();
+		}
+	}
+	
+	/**
+	 * Fetches the body of the passed URL
+	 * @param url The URL to fetch
+	 * @param accept The accept header, or null for none
+	 * @param gzip true to request and expect a gzipped body
+	 * @return the body
+	 * @throws Exception thrown on any error
+	 */
+	protected static String fetch(String url, String accept, boolean gzip) throws Exception {
+		HttpURLConnection conn = (HttpURLConnection)new URL(url).openConnection();
+		if(accept!=null) conn.setRequestProperty("Accept", accept);
+		if(gzip) conn.setRequestProperty("Accept-Encoding", "gzip");
+		assertEquals("Unexpected status", 200, conn.getResponseCode());
+		assertEquals("Unexpected encoding", gzip ? "gzip" : null, conn.getContentEncoding());
+		InputStream is = gzip ? new GZIPInputStream(conn.getInputStream()) : conn.getInputStream();
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buf = new byte[1024];
+			int read = -1;
+			while((read = is.read(buf))!=-1) baos.write(buf, 0, read);
+			return baos.toString("UTF-8");
+		} finally {
+			is.close();
+			conn.disconnect();
+		}
+	}
+}
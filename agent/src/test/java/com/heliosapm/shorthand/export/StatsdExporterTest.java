@@ -0,0 +1,156 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.export;
+
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import test.com.heliosapm.shorthand.BaseTest;
+
+import com.heliosapm.shorthand.accumulator.PeriodClock;
+import com.heliosapm.shorthand.collectors.MethodInterceptor;
+import com.heliosapm.shorthand.datamapper.DataMapperBuilder;
+import com.heliosapm.shorthand.datamapper.IDataMapper;
+import com.heliosapm.shorthand.store.ChronicleStore;
+
+/**
+ * <p>Title: StatsdExporterTest</p>
+ * <p>Description: Tests exporting the last closed period as StatsD and DogStatsD datagrams</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.export.StatsdExporterTest</code></p>
+ */
+
+public class StatsdExporterTest extends BaseTest {
+	/** The store under test */
+	@SuppressWarnings("unchecked")
+	protected final ChronicleStore<MethodInterceptor> store = (ChronicleStore<MethodInterceptor>) ChronicleStore.getInstance();
+	
+	/**
+	 * Disables the period clock
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@BeforeClass
+	public static void disablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("disablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+
+	/**
+	 * Re-enables the period clock
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@AfterClass
+	public static void enablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("enablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+	
+	/**
+	 * Snaps and flushes metrics, then exports them packed into MTU sized StatsD datagrams and as DogStatsD lines
+	 * @throws Exception thrown on any error
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testExport() throws Exception {
+		store.clear();
+		final int bitMask = MethodInterceptor.getBitMaskFor(MethodInterceptor.INVOCATION_COUNT);
+		IDataMapper<MethodInterceptor> dataMapper = (IDataMapper<MethodInterceptor>) DataMapperBuilder.getInstance().getIDataMapper(MethodInterceptor.class.getName(), bitMask);
+		final int itemCount = MethodInterceptor.values().length;
+		final int metrics = 40;
+		for(int i = 0; i < metrics; i++) {
+			long[] values = new long[itemCount+2];
+			values[MethodInterceptor.INVOCATION_COUNT.ordinal()] = i+1;
+			values[itemCount] = bitMask;
+			store.doSnap(name.getMethodName() + "/statsd|" + i, dataMapper, values);
+		}
+		long now = System.currentTimeMillis();
+		store.flush(now-15000, now);
+		DatagramChannel receiver = DatagramChannel.open();
+		try {
+			receiver.bind(new InetSocketAddress("127.0.0.1", 0));
+			receiver.configureBlocking(false);
+			InetSocketAddress address = (InetSocketAddress)receiver.getLocalAddress();
+			StatsdExporter exporter = new StatsdExporter(store, address, 256, "sh.", false);
+			try {
+				assertEquals("Unexpected line count", metrics, exporter.exportPeriod());
+				assertEquals("Unexpected re-export line count", 0, exporter.exportPeriod());
+				assertTrue("Expected more than one packet", exporter.getPacketCount() > 1);
+				String text = receive(receiver, (int)exporter.getPacketCount());
+				for(int i = 0; i < metrics; i++) {
+					assertTrue("Missing line " + i + " in\n" + text, text.contains("sh." + name.getMethodName() + "/statsd_" + i + ".invcount:" + (i+1) + "|g\n"));
+				}
+				assertEquals("Unexpected dropped packets", 0, exporter.getDroppedPacketCount());
+				assertEquals("Unexpected sent lines", metrics, exporter.getLineCount());
+			} finally {
+				exporter.close();
+			}
+			exporter = new StatsdExporter(store, address, 1400, "sh.", true, "env:test", "dc:1");
+			try {
+				assertEquals("Unexpected DogStatsD line count", metrics, exporter.exportPeriod());
+				String text = receive(receiver, (int)exporter.getPacketCount());
+				assertTrue("Missing DogStatsD line in\n" + text, text.contains("sh.invcount:1|g|#metric:" + name.getMethodName() + "/statsd_0,env:test,dc:1\n"));
+			} finally {
+				exporter.close();
+			}
+		} finally {
+			receiver.close();
+		}
+	}
+	
+	/**
+	 * Receives the passed number of datagrams and returns their lines, each terminated with a new line
+	 * @param receiver The receiving channel
+	 * @param count The number of datagrams to receive
+	 * @return the received lines
+	 * @throws Exception thrown on any error
+	 */
+	protected static String receive(DatagramChannel receiver, int count) throws Exception {
+		StringBuilder b = new StringBuilder();
+		ByteBuffer buf = ByteBuffer.allocate(2048);
+		long timeout = System.currentTimeMillis() + 5000;
+		int received = 0;
+		while(received < count && System.currentTimeMillis() < timeout) {
+			buf.clear();
+			if(receiver.receive(buf)==null) {
+				Thread.sleep(10);
+				continue;
+			}
+			buf.flip();
+			b.append(new String(buf.array(), 0, buf.limit(), "UTF-8")).append('\n');
+			received++;
+		}
+		assertEquals("Unexpected received packet count", count, received);
+		return b.toString();
+	}
+}
@@ -0,0 +1,139 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.instrumentor.shorthand.naming;
+
+import org.junit.Test;
+
+import test.com.heliosapm.shorthand.BaseTest;
+
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+
+/**
+ * <p>Title: CardinalityLimiterTest</p>
+ * <p>Description: Tests for the {@link CardinalityLimiter} admission and eviction</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.instrumentor.shorthand.naming.CardinalityLimiterTest</code></p>
+ */
+
+public class CardinalityLimiterTest extends BaseTest {
+
+	/**
+	 * Tests the overflow name derivation
+	 */
+	@Test
+	public void testOverflowName() {
+		assertEquals("com/foo/Bar/other/exec", CardinalityLimiter.overflowName("com/foo/Bar/%s/exec"));
+		assertEquals("com/foo/Bar/other:other/100%", CardinalityLimiter.overflowName("com/foo/Bar/%s:%s/100%%"));
+	}
+
+	/**
+	 * Tests that names over the limit are redirected to the overflow name and counted
+	 */
+	@Test
+	public void testRejectToOverflow() {
+		CardinalityLimiter limiter = CardinalityLimiter.getLimiter(CardinalityLimiter.newLimiter(name.getMethodName()));
+		limiter.setMaxActive(3);
+		for(int i = 0; i < 3; i++) {
+			assertEquals("m" + i, limiter.admit("m" + i, "other"));
+		}
+		assertEquals("other", limiter.admit("m3", "other"));
+		assertEquals("m1", limiter.admit("m1", "other"));
+		assertEquals(3, limiter.getActiveCount());
+		assertEquals(1, limiter.getRejectedCount());
+		assertEquals(0, limiter.getEvictedCount());
+	}
+
+	/**
+	 * Tests that names idle for a period are evicted to make room while active names are kept
+	 */
+	@Test
+	public void testEvictIdle() {
+		CardinalityLimiter limiter = CardinalityLimiter.getLimiter(CardinalityLimiter.newLimiter(name.getMethodName()));
+		limiter.setMaxActive(2);
+		limiter.admit("idle", "other");
+		limiter.admit("busy", "other");
+		CardinalityLimiter.onNewPeriod();
+		limiter.admit("busy", "other");
+		assertEquals("fresh", limiter.admit("fresh", "other"));
+		assertEquals(1, limiter.getEvictedCount());
+		assertEquals("other", limiter.admit("another", "other"));
+		assertEquals("busy", limiter.admit("busy", "other"));
+		assertEquals(2, limiter.getActiveCount());
+	}
+
+	/**
+	 * Tests that a limiter under its own limit takes an idle name from another limiter when the global limit is reached
+	 */
+	@Test
+	public void testGlobalLimitEvictsAcrossLimiters() {
+		CardinalityLimiter a = CardinalityLimiter.getLimiter(CardinalityLimiter.newLimiter(name.getMethodName() + "/a"));
+		CardinalityLimiter b = CardinalityLimiter.getLimiter(CardinalityLimiter.newLimiter(name.getMethodName() + "/b"));
+		a.setMaxActive(10);
+		b.setMaxActive(10);
+		final int priorMax = a.getGlobalMaxActive();
+		try {
+			a.admit("a0", "other");
+			a.admit("a1", "other");
+			final int cap = a.getGlobalActiveCount();
+			a.setGlobalMaxActive(cap);
+			CardinalityLimiter.onNewPeriod();
+			assertEquals("b0", b.admit("b0", "other"));
+			assertEquals(cap, b.getGlobalActiveCount());
+			assertEquals(1, b.getActiveCount());
+			assertEquals(0, b.getEvictedCount());
+		} finally {
+			a.setGlobalMaxActive(priorMax);
+		}
+	}
+
+	/**
+	 * Tests that releasing the last reference to a limiter unregisters it and releases its names from the global count
+	 */
+	@Test
+	public void testRelease() {
+		final long id = CardinalityLimiter.newLimiter(name.getMethodName());
+		CardinalityLimiter limiter = CardinalityLimiter.getLimiter(id);
+		CardinalityLimiter.retain(id);
+		CardinalityLimiter.retain(id);
+		limiter.admit("r0", "other");
+		limiter.admit("r1", "other");
+		final int globalActive = limiter.getGlobalActiveCount();
+		CardinalityLimiter.release(id);
+		assertTrue("Limiter unregistered while referenced", JMXHelper.getHeliosMBeanServer().isRegistered(limiter.objectName));
+		assertEquals(globalActive, limiter.getGlobalActiveCount());
+		CardinalityLimiter.release(id);
+		assertFalse("Released limiter still registered", JMXHelper.getHeliosMBeanServer().isRegistered(limiter.objectName));
+		assertEquals(globalActive - 2, limiter.getGlobalActiveCount());
+		assertEquals(0, limiter.getActiveCount());
+		assertEquals("other", limiter.admit("r0", "other"));
+		try {
+			CardinalityLimiter.getLimiter(id);
+			fail("Released limiter still available");
+		} catch (IllegalStateException expected) {
+			/* No Op */
+		}
+	}
+}
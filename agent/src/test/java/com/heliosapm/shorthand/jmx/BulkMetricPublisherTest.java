@@ -0,0 +1,145 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.jmx;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import test.com.heliosapm.shorthand.BaseTest;
+
+import com.heliosapm.shorthand.accumulator.PeriodClock;
+import com.heliosapm.shorthand.collectors.MethodInterceptor;
+import com.heliosapm.shorthand.datamapper.DataMapperBuilder;
+import com.heliosapm.shorthand.datamapper.IDataMapper;
+import com.heliosapm.shorthand.store.ChronicleStore;
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+
+/**
+ * <p>Title: BulkMetricPublisherTest</p>
+ * <p>Description: Tests paging metrics and their last period values out of the bulk metric publisher</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.jmx.BulkMetricPublisherTest</code></p>
+ */
+
+public class BulkMetricPublisherTest extends BaseTest {
+	/** The store under test */
+	@SuppressWarnings("unchecked")
+	protected final ChronicleStore<MethodInterceptor> store = (ChronicleStore<MethodInterceptor>) ChronicleStore.getInstance();
+	
+	/**
+	 * Disables the period clock
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@BeforeClass
+	public static void disablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("disablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+
+	/**
+	 * Re-enables the period clock
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@AfterClass
+	public static void enablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("enablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+	
+	/**
+	 * Snaps and flushes 25 metrics, then pages them out of the publisher 10 at a time and validates the names and invocation counts
+	 * @throws Exception thrown on any error
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testPagedMetrics() throws Exception {
+		store.clear();
+		final int bitMask = MethodInterceptor.getBitMaskFor(MethodInterceptor.INVOCATION_COUNT, MethodInterceptor.ELAPSED);
+		IDataMapper<MethodInterceptor> dataMapper = (IDataMapper<MethodInterceptor>) DataMapperBuilder.getInstance().getIDataMapper(MethodInterceptor.class.getName(), bitMask);
+		final int itemCount = MethodInterceptor.values().length;
+		final Set<String> names = new HashSet<String>();
+		for(int i = 0; i < 25; i++) {
+			String metricName = name.getMethodName() + "/bulk/" + i;
+			names.add(metricName);
+			long[] values = new long[itemCount+2];
+			values[MethodInterceptor.INVOCATION_COUNT.ordinal()] = 1;
+			values[itemCount] = bitMask;
+			store.doSnap(metricName, dataMapper, values);
+		}
+		long now = System.currentTimeMillis();
+		store.flush(now-15000, now);
+		BulkMetricPublisher publisher = new BulkMetricPublisher(store);
+		final String pattern = name.getMethodName() + "/bulk/.*";
+		// New names reach the regex indexes asynchronously
+		long timeout = System.currentTimeMillis() + 5000;
+		while(publisher.count(pattern) < 25 && System.currentTimeMillis() < timeout) {
+			Thread.sleep(50);
+		}
+		assertEquals("Unexpected count", 25, publisher.count(pattern));
+		List<String> paged = new ArrayList<String>();
+		int offset = 0, pages = 0;
+		while(offset!=-1) {
+			MetricTable table = publisher.getMetrics(pattern, offset, 10);
+			assertEquals("Unexpected total", 25, table.getTotal());
+			assertEquals("Unexpected offset", offset, table.getOffset());
+			for(int row = 0; row < table.size(); row++) {
+				int col = Arrays.asList(table.getColumns(row)).indexOf(MethodInterceptor.INVOCATION_COUNT.name());
+				assertTrue("No invocation count column in " + Arrays.toString(table.getColumns(row)), col!=-1);
+				assertEquals("Unexpected invocation count", 1L, table.getRow(row)[col]);
+				assertEquals("Unexpected period end", now, table.getPeriodEnds()[row]);
+			}
+			paged.addAll(Arrays.asList(table.getNames()));
+			offset = table.getNextOffset();
+			pages++;
+		}
+		assertEquals("Unexpected page count", 3, pages);
+		assertEquals("Unexpected paged names", names, new HashSet<String>(paged));
+		assertEquals("Unexpected name page", Arrays.asList(publisher.getMetricNames(pattern, 10, 10)), paged.subList(10, 20));
+		// The page is served to JMX clients as open data
+		ObjectName on = JMXHelper.objectName("shorthand.metrics:service=BulkMetrics,test=" + name.getMethodName());
+		JMXHelper.registerMBean(on, publisher);
+		try {
+			Object page = JMXHelper.getHeliosMBeanServer().invoke(on, "getMetrics", new Object[]{pattern, 0, 5}, new String[]{String.class.getName(), int.class.getName(), int.class.getName()});
+			assertTrue("Page not open data", page instanceof CompositeData);
+			assertEquals("Unexpected open data page size", 5, ((String[])((CompositeData)page).get("names")).length);
+		} finally {
+			JMXHelper.unregisterMBean(on);
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.jmx;
+
+import java.lang.reflect.Method;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import test.com.heliosapm.shorthand.BaseTest;
+
+import com.heliosapm.shorthand.accumulator.PeriodClock;
+import com.heliosapm.shorthand.collectors.MethodInterceptor;
+import com.heliosapm.shorthand.datamapper.DataMapperBuilder;
+import com.heliosapm.shorthand.datamapper.IDataMapper;
+import com.heliosapm.shorthand.store.ChronicleOffset;
+import com.heliosapm.shorthand.store.ChronicleStore;
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+
+/**
+ * <p>Title: PublishedMetricTest</p>
+ * <p>Description: Tests that generated and dynamic metric MBeans serve their attributes from one snapshot per period</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.jmx.PublishedMetricTest</code></p>
+ */
+
+public class PublishedMetricTest extends BaseTest {
+	/** The store under test */
+	@SuppressWarnings("unchecked")
+	protected final ChronicleStore<MethodInterceptor> store = (ChronicleStore<MethodInterceptor>) ChronicleStore.getInstance();
+	
+	/**
+	 * Disables the period clock
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@BeforeClass
+	public static void disablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("disablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+
+	/**
+	 * Re-enables the period clock
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@AfterClass
+	public static void enablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("enablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+	
+	/**
+	 * Snaps the passed number of invocations into the named metric
+	 * @param dataMapper The data mapper
+	 * @param bitMask The data mapper's bit mask
+	 * @param metricName The metric name
+	 * @param count The number of invocations
+	 */
+	protected void snap(IDataMapper<MethodInterceptor> dataMapper, int bitMask, String metricName, int count) {
+		final int itemCount = MethodInterceptor.values().length;
+		for(int i = 0; i < count; i++) {
+			long[] values = new long[itemCount+2];
+			values[MethodInterceptor.INVOCATION_COUNT.ordinal()] = 1;
+			values[itemCount] = bitMask;
+			store.doSnap(metricName, dataMapper, values);
+		}
+	}
+	
+	/**
+	 * Publishes a data MBean for a flushed metric, validates that reads within a period share one snapshot
+	 * and that the next period's values are served once the period end notification has been processed.
+	 * @throws Exception thrown on any error
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testPeriodSnapshot() throws Exception {
+		store.clear();
+		final int bitMask = MethodInterceptor.getBitMaskFor(MethodInterceptor.INVOCATION_COUNT, MethodInterceptor.ELAPSED);
+		IDataMapper<MethodInterceptor> dataMapper = (IDataMapper<MethodInterceptor>) DataMapperBuilder.getInstance().getIDataMapper(MethodInterceptor.class.getName(), bitMask);
+		final String metricName = name.getMethodName() + "/snapshot";
+		snap(dataMapper, bitMask, metricName, 1);
+		final long firstEnd = System.currentTimeMillis();
+		store.flush(firstEnd-15000, firstEnd);
+		long nameIndex = -1L;
+		for(long index = 1; index < store.getMetricNameCount(); index++) {
+			if(metricName.equals(ChronicleOffset.getName(index))) nameIndex = index;
+		}
+		assertTrue("Metric not found", nameIndex > 0);
+		PublishedMetric pm = MetricMBeanBuilder.getInstance().getPublishedMetricInstance((int)ChronicleOffset.EnumIndex.get(nameIndex), bitMask, nameIndex);
+		ObjectName on = JMXHelper.objectName("shorthand.metrics:test=%s", name.getMethodName());
+		final MBeanServer server = JMXHelper.getHeliosMBeanServer();
+		JMXHelper.registerMBean(pm, on);
+		try {
+			assertEquals("Unexpected period end", firstEnd, server.getAttribute(on, "PeriodEndTime"));
+			assertEquals("Unexpected invocation count", 1L, server.getAttribute(on, "Invcount"));
+			assertSame("Reads within a period did not share a snapshot", pm.snapshot(), pm.snapshot());
+			snap(dataMapper, bitMask, metricName, 3);
+			final long secondEnd = firstEnd + 15000;
+			store.flush(secondEnd-15000, secondEnd);
+			// The period end notification is delivered asynchronously
+			long timeout = System.currentTimeMillis() + 5000;
+			while(!server.getAttribute(on, "PeriodEndTime").equals(secondEnd) && System.currentTimeMillis() < timeout) {
+				Thread.sleep(20);
+			}
+			assertEquals("Snapshot not invalidated at period end", secondEnd, server.getAttribute(on, "PeriodEndTime"));
+			assertEquals("Unexpected invocation count", 3L, server.getAttribute(on, "Invcount"));
+		} finally {
+			JMXHelper.unregisterMBean(on);
+		}
+	}
+	
+	/**
+	 * Publishes a dynamic MBean for a flushed metric and validates a bulk attribute read against the generated standard MBean
+	 * @throws Exception thrown on any error
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testDynamicGetAttributes() throws Exception {
+		store.clear();
+		final int bitMask = MethodInterceptor.getBitMaskFor(MethodInterceptor.INVOCATION_COUNT, MethodInterceptor.ELAPSED);
+		IDataMapper<MethodInterceptor> dataMapper = (IDataMapper<MethodInterceptor>) DataMapperBuilder.getInstance().getIDataMapper(MethodInterceptor.class.getName(), bitMask);
+		final String metricName = name.getMethodName() + "/dynamic";
+		snap(dataMapper, bitMask, metricName, 5);
+		final long end = System.currentTimeMillis();
+		store.flush(end-15000, end);
+		final long nameIndex = 1L;
+		assertEquals("Unexpected metric name", metricName, ChronicleOffset.getName(nameIndex));
+		final int enumIndex = (int)ChronicleOffset.EnumIndex.get(nameIndex);
+		ObjectName dynamicOn = JMXHelper.objectName("shorthand.metrics:test=%s,type=dynamic", name.getMethodName());
+		ObjectName standardOn = JMXHelper.objectName("shorthand.metrics:test=%s,type=standard", name.getMethodName());
+		final MBeanServer server = JMXHelper.getHeliosMBeanServer();
+		JMXHelper.registerMBean(MetricMBeanBuilder.getInstance().getDynamicMetricInstance(enumIndex, bitMask, nameIndex), dynamicOn);
+		JMXHelper.registerMBean(MetricMBeanBuilder.getInstance().getPublishedMetricInstance(enumIndex, bitMask, nameIndex), standardOn);
+		try {
+			MBeanAttributeInfo[] infos = server.getMBeanInfo(dynamicOn).getAttributes();
+			String[] names = new String[infos.length];
+			for(int i = 0; i < infos.length; i++) names[i] = infos[i].getName();
+			AttributeList attrs = server.getAttributes(dynamicOn, names);
+			assertEquals("Unexpected attribute count", names.length, attrs.size());
+			for(Attribute attr: attrs.asList()) {
+				Object expected = server.getAttribute(standardOn, attr.getName());
+				if(expected instanceof Object[]) {
+					assertArrayEquals("Unexpected value for [" + attr.getName() + "]", (Object[])expected, (Object[])attr.getValue());
+				} else {
+					assertEquals("Unexpected value for [" + attr.getName() + "]", expected, attr.getValue());
+				}
+			}
+			assertEquals("Unexpected invocation count", 5L, server.getAttribute(dynamicOn, "Invcount"));
+		} finally {
+			JMXHelper.unregisterMBean(dynamicOn);
+			JMXHelper.unregisterMBean(standardOn);
+		}
+	}
+}
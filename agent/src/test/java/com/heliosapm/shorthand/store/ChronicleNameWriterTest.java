@@ -0,0 +1,168 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.store;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import test.com.heliosapm.shorthand.BaseTest;
+
+import com.heliosapm.shorthand.accumulator.MemSpaceAccessor;
+import com.heliosapm.shorthand.accumulator.PeriodClock;
+import com.heliosapm.shorthand.collectors.MethodInterceptor;
+import com.heliosapm.shorthand.datamapper.DataMapperBuilder;
+import com.heliosapm.shorthand.datamapper.IDataMapper;
+
+/**
+ * <p>Title: ChronicleNameWriterTest</p>
+ * <p>Description: Tests the retry and release of metric name batches that fail to commit</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.store.ChronicleNameWriterTest</code></p>
+ */
+
+public class ChronicleNameWriterTest extends BaseTest {
+	/** The store under test */
+	@SuppressWarnings("unchecked")
+	protected final ChronicleStore<MethodInterceptor> store = (ChronicleStore<MethodInterceptor>) ChronicleStore.getInstance();
+	/** The bit mask of the test data mapper */
+	protected final int bitMask = MethodInterceptor.getBitMaskFor(MethodInterceptor.INVOCATION_COUNT, MethodInterceptor.ELAPSED);
+	/** The test data mapper */
+	@SuppressWarnings("unchecked")
+	protected final IDataMapper<MethodInterceptor> dataMapper = (IDataMapper<MethodInterceptor>) DataMapperBuilder.getInstance().getIDataMapper(MethodInterceptor.class.getName(), bitMask);
+	
+	/**
+	 * Disables the period clock
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@BeforeClass
+	public static void disablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("disablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+
+	/**
+	 * Re-enables the period clock
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@AfterClass
+	public static void enablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("enablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+	
+	/**
+	 * Creates a name writer on the test store that fails the passed number of writes before writing normally
+	 * @param failures The number of writes to fail
+	 * @return the name writer
+	 */
+	protected ChronicleNameWriter failingWriter(final int failures) {
+		final AtomicInteger remaining = new AtomicInteger(failures);
+		return new ChronicleNameWriter(store, 10) {
+			@Override
+			protected void write(List<PendingName> batch) {
+				if(remaining.getAndDecrement() > 0) throw new RuntimeException("Injected commit failure");
+				super.write(batch);
+			}
+		};
+	}
+	
+	/**
+	 * Snaps one invocation into the passed metric name
+	 * @param metricName The metric name
+	 */
+	protected void snap(String metricName) {
+		final int itemCount = MethodInterceptor.values().length;
+		long[] values = new long[itemCount+2];
+		values[MethodInterceptor.INVOCATION_COUNT.ordinal()] = 1;
+		values[itemCount] = bitMask;
+		store.doSnap(metricName, dataMapper, values);
+	}
+	
+	/**
+	 * Creates a loaded metric whose name record is pending, as if just reserved
+	 * @param metricName The metric name
+	 * @return the address of the metric's mem-space reference
+	 */
+	protected long reservePending(String metricName) {
+		snap(metricName);
+		store.nameWriter.drain();
+		final long address = store.SNAPSHOT_INDEX.get(metricName);
+		long ref = store.lock(address);
+		try {
+			MemSpaceAccessor.get(ref).setNameIndex(ChronicleStore.PENDING_NAME_INDEX);
+		} finally {
+			store.unlock(address);
+		}
+		assertTrue("Metric not pending", store.isPending(address));
+		return address;
+	}
+	
+	/**
+	 * Tests that a batch is committed by a retry after a failed attempt
+	 */
+	@Test
+	public void testRetryFailedCommit() {
+		final String metricName = name.getMethodName() + "/retried";
+		final long address = reservePending(metricName);
+		ChronicleNameWriter writer = failingWriter(1);
+		writer.submit(metricName, address, dataMapper.getEnumIndex(), dataMapper.getBitMask());
+		writer.drain();
+		assertEquals(1, writer.getFailedCount());
+		assertEquals(1, writer.getBatchCount());
+		assertEquals(0, writer.getAbandonedCount());
+		assertFalse("Metric still pending", store.isPending(address));
+		assertEquals(address, store.SNAPSHOT_INDEX.get(metricName).longValue());
+	}
+	
+	/**
+	 * Tests that the pending mem-spaces of a batch that fails every attempt are released, and that the next snapshot reserves the metric again
+	 */
+	@Test
+	public void testReleaseFailedCommit() {
+		final String metricName = name.getMethodName() + "/released";
+		final long address = reservePending(metricName);
+		ChronicleNameWriter writer = failingWriter(ChronicleNameWriter.MAX_COMMIT_ATTEMPTS);
+		writer.submit(metricName, address, dataMapper.getEnumIndex(), dataMapper.getBitMask());
+		writer.drain();
+		assertEquals(ChronicleNameWriter.MAX_COMMIT_ATTEMPTS, writer.getFailedCount());
+		assertEquals(0, writer.getBatchCount());
+		assertEquals(1, writer.getAbandonedCount());
+		assertNull("Released metric still loaded", store.SNAPSHOT_INDEX.get(metricName));
+		assertFalse("Released metric still pending", store.isPending(address));
+		snap(metricName);
+		store.nameWriter.drain();
+		Long reserved = store.SNAPSHOT_INDEX.get(metricName);
+		assertNotNull("Metric not reserved again", reserved);
+		assertFalse("Reserved metric still pending", store.isPending(reserved));
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.store;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import test.com.heliosapm.shorthand.BaseTest;
+
+import com.heliosapm.shorthand.ShorthandProperties;
+import com.heliosapm.shorthand.accumulator.PeriodClock;
+import com.heliosapm.shorthand.collectors.MethodInterceptor;
+import com.heliosapm.shorthand.datamapper.DataMapperBuilder;
+import com.heliosapm.shorthand.datamapper.IDataMapper;
+
+/**
+ * <p>Title: ChronicleStoreCompactionTest</p>
+ * <p>Description: Tests the expiry of idle unloaded metrics and the compaction of the chronicle store</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.store.ChronicleStoreCompactionTest</code></p>
+ */
+
+public class ChronicleStoreCompactionTest extends BaseTest {
+	/** The store under test */
+	@SuppressWarnings("unchecked")
+	protected final ChronicleStore<MethodInterceptor> store = (ChronicleStore<MethodInterceptor>) ChronicleStore.getInstance();
+	
+	/**
+	 * Disables the period clock
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@BeforeClass
+	public static void disablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("disablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+
+	/**
+	 * Re-enables the period clock
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@AfterClass
+	public static void enablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("enablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+	
+	/**
+	 * Snaps one invocation into each of the passed metric names
+	 * @param dataMapper The data mapper
+	 * @param bitMask The data mapper's bit mask
+	 * @param names The metric names
+	 */
+	protected void snap(IDataMapper<MethodInterceptor> dataMapper, int bitMask, List<String> names) {
+		final int itemCount = MethodInterceptor.values().length;
+		for(String name: names) {
+			long[] values = new long[itemCount+2];
+			values[MethodInterceptor.INVOCATION_COUNT.ordinal()] = 1;
+			values[itemCount] = bitMask;
+			store.doSnap(name, dataMapper, values);
+		}
+	}
+
+	/**
+	 * Creates live and dead metrics, expires the dead ones, compacts the store and validates that the live metrics
+	 * were remapped into the new generation and the dead ones dropped.
+	 * @throws Exception thrown on any error
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testExpireAndCompact() throws Exception {
+		store.clear();
+		final int bitMask = MethodInterceptor.getBitMaskFor(MethodInterceptor.INVOCATION_COUNT, MethodInterceptor.ELAPSED);
+		IDataMapper<MethodInterceptor> dataMapper = (IDataMapper<MethodInterceptor>) DataMapperBuilder.getInstance().getIDataMapper(MethodInterceptor.class.getName(), bitMask);
+		final List<String> live = new ArrayList<String>(), dead = new ArrayList<String>();
+		for(int i = 0; i < 10; i++) {
+			live.add(name.getMethodName() + "/live/" + i);
+			dead.add(name.getMethodName() + "/dead/" + i);
+		}
+		snap(dataMapper, bitMask, live);
+		snap(dataMapper, bitMask, dead);
+		long now = System.currentTimeMillis();
+		store.flush(now-15000, now);
+		assertEquals("Unexpected name count", 20, store.nameIndex.size()-1);
+		// Only the live metrics are touched in the next period, so the dead ones can be unloaded
+		snap(dataMapper, bitMask, live);
+		store.evictIdle(0);
+		for(String name: dead) {
+			assertTrue("Dead metric not unloaded [" + name + "]", store.UNLOADED_INDEX.get(name) < 0);
+		}
+		final long deletedBefore = store.getDeletedRecordCount();
+		store.setRetention(1);
+		assertEquals("Unexpected expired count", 10, store.expireUnloaded(System.currentTimeMillis() + 60000));
+		assertEquals("Unexpected deleted count", deletedBefore + 10, store.getDeletedRecordCount());
+		
+		final long generation = store.getGeneration();
+		store.compact();
+		assertEquals("Unexpected generation", generation+1, store.getGeneration());
+		assertEquals("Unexpected deleted count after compaction", 0, store.getDeletedRecordCount());
+		assertEquals("Unexpected name count after compaction", 10, store.nameIndex.size()-1);
+		for(String name: live) {
+			assertEquals("Unexpected remapped metric name", name, store.getMetric(name).getName());
+		}
+		for(String name: dead) {
+			assertNull("Dead metric still present [" + name + "]", store.getMetric(name));
+		}
+		// The remapped mem-spaces are still usable
+		snap(dataMapper, bitMask, live);
+		now = System.currentTimeMillis();
+		store.flush(now-15000, now);
+		for(String name: live) {
+			assertEquals("Unexpected metric name after flush", name, store.getMetric(name).getName());
+		}
+		store.setRetention(ShorthandProperties.DEFAULT_STORE_RETENTION);
+	}
+	
+	/**
+	 * Queues stale metrics for the third flush phase, evicts them through the off-heap cap before the phase runs
+	 * and validates that the flush skips the released mem-spaces instead of releasing them a second time.
+	 * @throws Exception thrown on any error
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testEvictWhileStaleQueued() throws Exception {
+		store.clear();
+		final int bitMask = MethodInterceptor.getBitMaskFor(MethodInterceptor.INVOCATION_COUNT, MethodInterceptor.ELAPSED);
+		IDataMapper<MethodInterceptor> dataMapper = (IDataMapper<MethodInterceptor>) DataMapperBuilder.getInstance().getIDataMapper(MethodInterceptor.class.getName(), bitMask);
+		final List<String> idle = new ArrayList<String>();
+		for(int i = 0; i < 10; i++) {
+			idle.add(name.getMethodName() + "/idle/" + i);
+		}
+		snap(dataMapper, bitMask, idle);
+		long now = System.currentTimeMillis();
+		store.flush(now-15000, now);
+		// Queued as the first flush phase does for stale metrics, then evicted by an admission before the third phase
+		for(String name: idle) {
+			store.untouched.put(store.SNAPSHOT_INDEX.get(name), name);
+		}
+		final long memSpaces = store.telemetry.getMemSpaceCount();
+		store.evictIdle(0);
+		assertEquals("Unexpected mem-space count after eviction", memSpaces - idle.size(), store.telemetry.getMemSpaceCount());
+		now = System.currentTimeMillis();
+		store.flush(now-15000, now);
+		assertTrue("Stale queue not drained", store.untouched.isEmpty());
+		assertEquals("Unexpected mem-space count after flush", memSpaces - idle.size(), store.telemetry.getMemSpaceCount());
+		for(String name: idle) {
+			assertTrue("Idle metric not unloaded [" + name + "]", store.UNLOADED_INDEX.get(name) < 0);
+		}
+		// The evicted metrics reload on their next snapshot
+		snap(dataMapper, bitMask, idle);
+		for(String name: idle) {
+			assertEquals("Unexpected reloaded metric name", name, store.getMetric(name).getName());
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import test.com.heliosapm.shorthand.BaseTest;
+
+import com.heliosapm.shorthand.store.ChronicleTokenIndex.RegexPlan;
+
+/**
+ * <p>Title: ChronicleTokenIndexTest</p>
+ * <p>Description: Tests the token index queries and the regex plans that narrow regex index scans</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.store.ChronicleTokenIndexTest</code></p>
+ */
+
+public class ChronicleTokenIndexTest extends BaseTest {
+	/** The indexed metric names, indexed from 1 */
+	static final String[] NAMES = {
+		"com.heliosapm.jdbc/Statement:execute",
+		"com.heliosapm.jdbc/Connection:commit",
+		"com.heliosapm.jms/Session:send",
+		"com.heliosapm.test/Statement:execute",
+		"org.apache/Statement:executeQuery",
+		"service=foo:type=bar"
+	};
+	
+	/**
+	 * Builds an index of the test names
+	 * @return the index
+	 */
+	protected static ChronicleTokenIndex index() {
+		ChronicleTokenIndex index = new ChronicleTokenIndex();
+		// Add out of order to exercise the posting sort
+		for(int i = NAMES.length; i >= 1; i--) {
+			index.add(i, NAMES[i-1]);
+		}
+		return index;
+	}
+	
+	/**
+	 * Tests token queries
+	 */
+	@Test
+	public void testQueries() {
+		ChronicleTokenIndex index = index();
+		try {
+			Assert.assertEquals(6, index.getHighIndex());
+			Assert.assertArrayEquals(new long[]{1, 4, 5}, index.query("Statement"));
+			Assert.assertArrayEquals(new long[]{1, 4}, index.query("heliosapm Statement"));
+			Assert.assertArrayEquals(new long[]{1}, index.query("heliosapm Statement -test"));
+			Assert.assertArrayEquals(new long[]{1, 2, 3}, index.query("jdbc|jms"));
+			Assert.assertArrayEquals(new long[]{1, 4, 5}, index.query("exec*"));
+			Assert.assertArrayEquals(new long[]{5}, index.query("execute?uery"));
+			Assert.assertArrayEquals(new long[]{1, 4}, index.query("Statement:execute"));
+			Assert.assertArrayEquals(new long[]{6}, index.query("type=bar"));
+			Assert.assertEquals(0, index.query("nope").length);
+			Assert.assertEquals(0, index.query("-jdbc").length);
+		} finally {
+			index.clear();
+		}
+		Assert.assertEquals(0, index.getTokenCount());
+		Assert.assertEquals(0, index.query("Statement").length);
+	}
+	
+	/**
+	 * Tests the regex plans and that the candidates they select cover every name the regex matches
+	 */
+	@Test
+	public void testRegexPlans() {
+		RegexPlan plan = RegexPlan.plan("com\\.heliosapm\\.jdbc/.*");
+		Assert.assertEquals(Arrays.asList("com", "heliosapm", "jdbc"), new ArrayList<String>(plan.tokens));
+		plan = RegexPlan.plan(".*/Statement:exec.*");
+		Assert.assertEquals(Collections.singleton("Statement"), plan.tokens);
+		Assert.assertEquals(Collections.singleton("exec"), plan.prefixes);
+		Assert.assertTrue(RegexPlan.plan(".*(jdbc|jms).*").isEmpty());
+		Assert.assertTrue(RegexPlan.plan(".*Statement.*").isEmpty());
+		ChronicleTokenIndex index = index();
+		try {
+			for(String regex: new String[]{"com\\.heliosapm\\.jdbc/.*", ".*/Statement:exec.*", "com\\.heliosapm\\.j[a-z]+/.*", "org\\.apache/Statement:executeQuery", "service=foo:.*"}) {
+				Pattern p = Pattern.compile(regex);
+				plan = RegexPlan.plan(regex);
+				Assert.assertFalse(regex, plan.isEmpty());
+				long[] candidates = index.candidates(plan.tokens, plan.prefixes);
+				for(int i = 1; i <= NAMES.length; i++) {
+					if(p.matcher(NAMES[i-1]).matches()) {
+						Assert.assertTrue(regex + " missed " + NAMES[i-1], Arrays.binarySearch(candidates, i) >= 0);
+					}
+				}
+			}
+		} finally {
+			index.clear();
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.store;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import test.com.heliosapm.shorthand.BaseTest;
+
+import com.heliosapm.shorthand.store.ChronicleTrigramIndex.TrigramQuery;
+
+/**
+ * <p>Title: ChronicleTrigramIndexTest</p>
+ * <p>Description: Tests that the trigram plans of regexes select every name the regex matches, and that they narrow the candidates</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.store.ChronicleTrigramIndexTest</code></p>
+ */
+
+public class ChronicleTrigramIndexTest extends BaseTest {
+	/** The indexed metric names, indexed from 1 */
+	static final String[] NAMES = {
+		"com.heliosapm.jdbc/Statement:execute",
+		"com.heliosapm.jdbc/Connection:commit",
+		"com.heliosapm.jms/Session:send",
+		"com.heliosapm.test/Statement:execute",
+		"org.apache/Statement:executeQuery",
+		"service=foo:type=bar",
+		"ab",
+		"abc",
+		"xabcx",
+		"com.heliosapm.jdbc/PreparedStatement:executeUpdate"
+	};
+	
+	/** The regexes tested */
+	static final String[] REGEXES = {
+		".*jdbc.*", ".*Statement:exec.*", ".*(jdbc|jms)/.*", ".*Statement:execute(Query|Update)?", "com\\.helios.*", 
+		".*[Ss]tatement.*", ".*ab?c.*", "abc", "a.c", ".*x+.*", "(?i).*JDBC.*", ".*\\Qtype=bar\\E", ".*commit$", "^org\\..*",
+		".*(Conn|Sess)(ection|ion):.*", ".*e{2,}.*", ".*servi[a-z]e=.*", ".*\\d.*", "x?abcx?", ".*(?:foo|bar)"
+	};
+	
+	/**
+	 * Tests that every name matching a regex is a candidate of its plan
+	 */
+	@Test
+	public void testPlansAreComplete() {
+		ChronicleTrigramIndex index = new ChronicleTrigramIndex();
+		try {
+			for(int i = 1; i <= NAMES.length; i++) {
+				index.add(i, NAMES[i-1]);
+			}
+			for(String regex: REGEXES) {
+				Pattern p = Pattern.compile(regex);
+				TrigramQuery query = TrigramQueryPlanner.plan(regex);
+				long[] candidates = index.query(query);
+				log("Regex [%s], plan [%s], candidates %s", regex, query, candidates==null ? "all" : Arrays.toString(candidates));
+				for(int i = 1; i <= NAMES.length; i++) {
+					if(p.matcher(NAMES[i-1]).matches()) {
+						Assert.assertTrue(regex + " missed " + NAMES[i-1], candidates==null || Arrays.binarySearch(candidates, i) >= 0);
+					}
+				}
+			}
+		} finally {
+			index.clear();
+		}
+	}
+	
+	/**
+	 * Tests that the plans narrow the candidates
+	 */
+	@Test
+	public void testPlansNarrow() {
+		ChronicleTrigramIndex index = new ChronicleTrigramIndex();
+		try {
+			for(int i = 1; i <= NAMES.length; i++) {
+				index.add(i, NAMES[i-1]);
+			}
+			Assert.assertArrayEquals(new long[]{1, 2, 10}, index.query(TrigramQueryPlanner.plan(".*jdbc.*")));
+			Assert.assertArrayEquals(new long[]{1, 2, 3, 10}, index.query(TrigramQueryPlanner.plan(".*(jdbc|jms)/.*")));
+			Assert.assertArrayEquals(new long[]{8, 9}, index.query(TrigramQueryPlanner.plan("x?abcx?")));
+			Assert.assertArrayEquals(new long[]{6}, index.query(TrigramQueryPlanner.plan(".*\\Qtype=bar\\E")));
+			Assert.assertEquals(0, index.query(TrigramQueryPlanner.plan(".*nothing.*")).length);
+			Assert.assertTrue(TrigramQueryPlanner.plan("(?i).*JDBC.*").isAll());
+			Assert.assertTrue(TrigramQueryPlanner.plan(".*").isAll());
+			Assert.assertTrue(TrigramQueryPlanner.plan("a.c").isAll());
+		} finally {
+			index.clear();
+		}
+		Assert.assertEquals(0, index.getTrigramCount());
+	}
+}
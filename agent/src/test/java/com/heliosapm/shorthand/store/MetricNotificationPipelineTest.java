@@ -0,0 +1,110 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.management.Notification;
+import javax.management.NotificationListener;
+
+import org.junit.Test;
+
+import test.com.heliosapm.shorthand.BaseTest;
+
+/**
+ * <p>Title: MetricNotificationPipelineTest</p>
+ * <p>Description: Tests the matching and coalescing of metric name notifications</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.store.MetricNotificationPipelineTest</code></p>
+ */
+
+public class MetricNotificationPipelineTest extends BaseTest {
+	/** Runs deliveries on the dispatcher thread */
+	protected static final Executor DIRECT = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+	
+	/**
+	 * Verifies that the events for matching names are coalesced into one notification per type for each listener
+	 * @throws Exception thrown on any error
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testCoalescedDelivery() throws Exception {
+		MetricNotificationPipeline pipeline = new MetricNotificationPipeline(ChronicleStore.getInstance().nameIndexer, DIRECT);
+		final CountDownLatch latch = new CountDownLatch(2);
+		final CopyOnWriteArrayList<Notification> matched = new CopyOnWriteArrayList<Notification>();
+		final CopyOnWriteArrayList<Notification> unmatched = new CopyOnWriteArrayList<Notification>();
+		pipeline.subscribe(Pattern.compile("app\\.orders\\..*"), new NotificationListener() {
+			@Override
+			public void handleNotification(Notification notification, Object handback) {
+				assertEquals("Unexpected handback", "app\\.orders\\..*", handback);
+				matched.add(notification);
+				latch.countDown();
+			}
+		});
+		pipeline.subscribe(Pattern.compile("app\\.missing\\..*"), new NotificationListener() {
+			@Override
+			public void handleNotification(Notification notification, Object handback) {
+				unmatched.add(notification);
+			}
+		});
+		final int count = 5000;
+		for(int i = 0; i < count; i++) {
+			pipeline.submit(false, "app.orders.op" + i, i);
+			pipeline.submit(false, "app.users.op" + i, count + i);
+		}
+		// The new events for these names are superseded by stale events
+		for(int i = 0; i < 10; i++) {
+			pipeline.submit(true, "app.orders.op" + i, i);
+		}
+		pipeline.deliver();
+		assertTrue("Timed out waiting for notifications", latch.await(10, TimeUnit.SECONDS));
+		assertEquals("Unexpected notification count", 2, matched.size());
+		Notification newNotif = matched.get(0), staleNotif = matched.get(1);
+		assertEquals("Unexpected type", ChronicleRegexIndexerMBean.NOTIF_NEW_METRIC, newNotif.getType());
+		assertEquals("Unexpected type", ChronicleRegexIndexerMBean.NOTIF_STALE_METRIC, staleNotif.getType());
+		Map<String, Long> newNames = (Map<String, Long>)newNotif.getUserData();
+		Map<String, Long> staleNames = (Map<String, Long>)staleNotif.getUserData();
+		assertEquals("Unexpected new name count", count - 10, newNames.size());
+		assertEquals("Unexpected stale name count", 10, staleNames.size());
+		assertEquals("Unexpected name index", Long.valueOf(20), newNames.get("app.orders.op20"));
+		assertTrue("Unexpected stale name", staleNames.containsKey("app.orders.op9"));
+		assertTrue("Unmatched listener was notified", unmatched.isEmpty());
+		assertEquals("Unexpected drop count", 0, pipeline.getDroppedCount());
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import test.com.heliosapm.shorthand.BaseTest;
+
+/**
+ * <p>Title: NameEventRingTest</p>
+ * <p>Description: Tests the multi-producer name event ring</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.store.NameEventRingTest</code></p>
+ */
+
+public class NameEventRingTest extends BaseTest {
+	
+	/**
+	 * Verifies that the ring refuses offers when full, and that discarded events are not polled
+	 */
+	@Test
+	public void testOverflowAndDiscard() {
+		NameEventRing ring = new NameEventRing(5);
+		assertEquals("Unexpected capacity", 8, ring.getCapacity());
+		for(int i = 0; i < 8; i++) {
+			assertTrue("Offer failed", ring.offer("name" + i, i));
+		}
+		assertFalse("Offer to a full ring succeeded", ring.offer("name8", 8));
+		assertEquals("Unexpected overflow count", 1, ring.getOverflowCount());
+		assertTrue("Poll failed", ring.poll());
+		assertEquals("Unexpected name", "name0", ring.getName());
+		assertEquals("Unexpected index", 0, ring.getIndex());
+		assertTrue("Offer failed", ring.offer("name8", 8));
+		ring.discard();
+		// Discarded events hold their slots until the consumer passes them
+		assertFalse("Poll of a discarded event succeeded", ring.poll());
+		assertTrue("Offer failed", ring.offer("name9", 9));
+		assertTrue("Poll failed", ring.poll());
+		assertEquals("Unexpected index", 9, ring.getIndex());
+		assertFalse("Poll of an empty ring succeeded", ring.poll());
+		assertTrue("Ring not empty", ring.isEmpty());
+	}
+	
+	/**
+	 * Verifies that every event offered by concurrent producers is polled exactly once
+	 * @throws Exception thrown on any error
+	 */
+	@Test
+	public void testConcurrentProducers() throws Exception {
+		final NameEventRing ring = new NameEventRing(256);
+		final int producers = 4, perProducer = 50000;
+		final CountDownLatch done = new CountDownLatch(producers);
+		for(int p = 0; p < producers; p++) {
+			final int base = p * perProducer;
+			Thread t = new Thread("NameEventRingTestProducer#" + p) {
+				public void run() {
+					for(int i = 0; i < perProducer; i++) {
+						while(!ring.offer(null, base + i)) Thread.yield();
+					}
+					done.countDown();
+				}
+			};
+			t.setDaemon(true);
+			t.start();
+		}
+		BitSet polled = new BitSet(producers * perProducer);
+		int count = 0;
+		while(count < producers * perProducer) {
+			if(!ring.poll()) {
+				ring.await(1000000L);
+				continue;
+			}
+			int index = (int)ring.getIndex();
+			assertFalse("Index polled twice: " + index, polled.get(index));
+			polled.set(index);
+			count++;
+		}
+		done.await();
+		assertTrue("Ring not empty", ring.isEmpty());
+		assertEquals("Unexpected polled count", producers * perProducer, polled.cardinality());
+	}
+}
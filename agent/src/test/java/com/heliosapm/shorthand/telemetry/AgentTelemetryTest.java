@@ -0,0 +1,133 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.telemetry;
+
+import java.lang.reflect.Method;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import test.com.heliosapm.shorthand.BaseTest;
+
+import com.heliosapm.shorthand.accumulator.PeriodClock;
+import com.heliosapm.shorthand.collectors.MethodInterceptor;
+import com.heliosapm.shorthand.export.OpenMetricsWriter;
+import com.heliosapm.shorthand.store.ChronicleStore;
+
+/**
+ * <p>Title: AgentTelemetryTest</p>
+ * <p>Description: Tests the agent's self-telemetry counters, gauges and recording</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.telemetry.AgentTelemetryTest</code></p>
+ */
+
+public class AgentTelemetryTest extends BaseTest {
+	/** The store under test */
+	@SuppressWarnings("unchecked")
+	protected final ChronicleStore<MethodInterceptor> store = (ChronicleStore<MethodInterceptor>) ChronicleStore.getInstance();
+	/** The telemetry under test */
+	protected final AgentTelemetry telemetry = AgentTelemetry.getInstance();
+	
+	/**
+	 * Disables the period clock
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@BeforeClass
+	public static void disablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("disablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+
+	/**
+	 * Re-enables the period clock
+	 * @throws java.lang.Exception thrown on any error
+	 */
+	@AfterClass
+	public static void enablePeriodClock() throws Exception {
+		Method m = PeriodClock.class.getDeclaredMethod("enablePeriodClock");
+		m.setAccessible(true);
+		m.invoke(PeriodClock.getInstance());
+	}
+	
+	/**
+	 * Validates the counters, that reset clears them but not the gauges, and that released instrumentation is deducted
+	 * @throws Exception thrown on any error
+	 */
+	@Test
+	public void testCountersAndGauges() throws Exception {
+		telemetry.reset();
+		for(int i = 0; i < 3; i++) telemetry.snap();
+		telemetry.nameLockSpins(5);
+		telemetry.nameLockSpins(0);
+		telemetry.newMetric(100);
+		telemetry.newMetric(300);
+		assertEquals("Unexpected snap count", 3, telemetry.getSnapCount());
+		assertEquals("Unexpected name lock spins", 5, telemetry.getNameLockSpins());
+		assertEquals("Unexpected new metric average", 200, telemetry.getNewMetricAverageNs());
+		assertEquals("Unexpected new metric max", 300, telemetry.getNewMetricMaxNs());
+		final long instrumented = telemetry.getInstrumentedMethodCount();
+		telemetry.instrumented(4);
+		assertEquals("Unexpected instrumented count", instrumented + 4, telemetry.getInstrumentedMethodCount());
+		telemetry.instrumented(-4);
+		assertEquals("Unexpected released instrumented count", instrumented, telemetry.getInstrumentedMethodCount());
+		final long memSpaces = telemetry.getMemSpaceCount(), memBytes = telemetry.getMemSpaceBytes();
+		telemetry.memSpace(64);
+		assertEquals("Unexpected mem-space count", memSpaces + 1, telemetry.getMemSpaceCount());
+		telemetry.reset();
+		assertEquals("Unexpected reset snap count", 0, telemetry.getSnapCount());
+		assertEquals("Unexpected reset new metric max", 0, telemetry.getNewMetricMaxNs());
+		assertEquals("Reset cleared the mem-space gauge", memBytes + 64, telemetry.getMemSpaceBytes());
+		telemetry.memSpace(-64);
+		assertEquals("Unexpected released mem-space count", memSpaces, telemetry.getMemSpaceCount());
+	}
+	
+	/**
+	 * Records the telemetry into the store and validates the values are filed as sampled levels, not elapsed times
+	 * @throws Exception thrown on any error
+	 */
+	@Test
+	public void testRecordAsGauges() throws Exception {
+		store.clear();
+		telemetry.instrumented(7);
+		try {
+			final long instrumented = telemetry.getInstrumentedMethodCount();
+			telemetry.record(store);
+			long now = System.currentTimeMillis();
+			store.flush(now-15000, now);
+			OpenMetricsWriter writer = new OpenMetricsWriter(store);
+			writer.render(null, false);
+			String text = new String(writer.buffer(), 0, writer.size(), "UTF-8");
+			final String metric = "{metric=\"" + AgentTelemetry.METRIC_PREFIX + "instrumentedMethods\"} ";
+			assertTrue("Missing gauge max in\n" + text, text.contains("shorthand_methconcurrent_max" + metric + instrumented + "\n"));
+			assertTrue("Missing gauge avg in\n" + text, text.contains("shorthand_methconcurrent_avg" + metric + instrumented + "\n"));
+			assertFalse("Telemetry filed as elapsed time in\n" + text, text.contains("shorthand_elapsed_max{metric=\"" + AgentTelemetry.METRIC_PREFIX));
+		} finally {
+			telemetry.instrumented(-7);
+		}
+	}
+}
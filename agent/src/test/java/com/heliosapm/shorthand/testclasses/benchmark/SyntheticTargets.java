@@ -0,0 +1,102 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.testclasses.benchmark;
+
+/**
+ * <p>Title: SyntheticTargets</p>
+ * <p>Description: Identical synthetic instrumentation targets for the instrumentation overhead benchmark.
+ * Each scenario instruments its own class so that retransformations of one scenario never leak into another.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.testclasses.benchmark.SyntheticTargets</code></p>
+ */
+
+public class SyntheticTargets {
+
+	/**
+	 * <p>Title: BenchmarkTarget</p>
+	 * <p>Description: The common interface so every scenario is invoked through the same call site shape</p>
+	 */
+	public static interface BenchmarkTarget {
+		/**
+		 * Executes a small fixed unit of work
+		 * @param key The key argument, used by <b><code>${arg[n]}</code></b> naming templates
+		 * @param n The number of work rounds
+		 * @return a value derived from the work so it cannot be eliminated
+		 */
+		public long compute(String key, int n);
+	}
+
+	/**
+	 * The shared unit of work executed by all the targets
+	 * @param key The key argument
+	 * @param n The number of work rounds
+	 * @return the derived value
+	 */
+	public static long work(String key, int n) {
+		long h = key.hashCode();
+		for(int i = 0; i < n; i++) {
+			h ^= (h << 13); h ^= (h >>> 7); h ^= (h << 17);
+		}
+		return h;
+	}
+
+	/** Never instrumented, the baseline */
+	public static class Baseline implements BenchmarkTarget {
+		@Override
+		public long compute(String key, int n) { return work(key, n); }
+	}
+
+	/** Instrumented with the invocation count only */
+	public static class CountOnly implements BenchmarkTarget {
+		@Override
+		public long compute(String key, int n) { return work(key, n); }
+	}
+
+	/** Instrumented with the default collector mask */
+	public static class DefaultMask implements BenchmarkTarget {
+		@Override
+		public long compute(String key, int n) { return work(key, n); }
+	}
+
+	/** Instrumented with all collectors enabled */
+	public static class AllMask implements BenchmarkTarget {
+		@Override
+		public long compute(String key, int n) { return work(key, n); }
+	}
+
+	/** Instrumented with the default collector mask and a runtime argument metric name */
+	public static class DefaultMaskArgNamed implements BenchmarkTarget {
+		@Override
+		public long compute(String key, int n) { return work(key, n); }
+	}
+
+	/** Instrumented with all collectors enabled and a runtime argument metric name */
+	public static class AllMaskArgNamed implements BenchmarkTarget {
+		@Override
+		public long compute(String key, int n) { return work(key, n); }
+	}
+
+}
@@ -24,7 +24,9 @@
  */
 package com.heliosapm.shorthand.caster;
 
+import com.heliosapm.shorthand.caster.aggregate.FleetAggregator;
 import com.heliosapm.shorthand.caster.broadcast.BroadcastListener;
+import com.heliosapm.shorthand.caster.presence.JVMPresenceService;
 
 /**
  * <p>Title: Boot</p>
@@ -41,7 +43,8 @@ public class Boot {
 	static Boot boot = null;
 	
 	Boot() {
-		BroadcastListener.getInstance();
+		BroadcastListener.getInstance().getRouter().addPresenceListener(JVMPresenceService.getInstance());
+		BroadcastListener.getInstance().getRouter().addMetricFeedListener(FleetAggregator.getInstance());
 	}
 	
 	
@@ -0,0 +1,307 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.caster;
+
+import static com.heliosapm.shorthand.ShorthandProperties.AGENT_BROADCAST_NETWORK_PROP;
+import static com.heliosapm.shorthand.ShorthandProperties.AGENT_BROADCAST_NIC_PROP;
+import static com.heliosapm.shorthand.ShorthandProperties.AGENT_BROADCAST_PORT_PROP;
+import static com.heliosapm.shorthand.ShorthandProperties.DEFAULT_AGENT_BROADCAST_NETWORK;
+import static com.heliosapm.shorthand.ShorthandProperties.DEFAULT_AGENT_BROADCAST_NIC;
+import static com.heliosapm.shorthand.ShorthandProperties.DEFAULT_AGENT_BROADCAST_PORT;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardSocketOptions;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.heliosapm.shorthand.ShorthandProperties;
+import com.heliosapm.shorthand.broadcast.MetricBroadcastPacketHandler;
+import com.heliosapm.shorthand.broadcast.NameDictionaryBroadcastPacketHandler;
+import com.heliosapm.shorthand.broadcast.VarInt;
+import com.heliosapm.shorthand.caster.broadcast.BroadcastListener;
+import com.heliosapm.shorthand.caster.broadcast.BroadcastListenerRouter;
+import com.heliosapm.shorthand.collectors.MethodInterceptor;
+import com.heliosapm.shorthand.util.ConfigurationHelper;
+
+/**
+ * <p>Title: BroadcastLoadGenerator</p>
+ * <p>Description: A local UDP load generator for benchmarking the caster's broadcast receive path. Boots the caster in process,
+ * announces the metric names of a number of simulated agents and then sends their metric packets to the first configured broadcast
+ * address as fast as possible, or at the requested rate, printing the send and receive rates and the bytes allocated by the
+ * event loop threads per received packet once a second.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.caster.BroadcastLoadGenerator</code></p>
+ */
+
+public class BroadcastLoadGenerator {
+	/** The collectors reported for each simulated metric */
+	static final MethodInterceptor[] COLLECTORS = {MethodInterceptor.INVOCATION_COUNT, MethodInterceptor.RETURN_COUNT, MethodInterceptor.EXCEPTION_COUNT, MethodInterceptor.METHOD_CONCURRENCY};
+	/** The offset of the period start in a metric packet */
+	static final int PERIOD_START_OFFSET = 5;
+	/** The offset of the period end in a metric packet */
+	static final int PERIOD_END_OFFSET = 13;
+	
+	/**
+	 * Runs the load generator
+	 * @param args As follows:<ol>
+	 * 	<li>The number of seconds to run for (default 10)</li>
+	 *  <li>The number of simulated agents (default 4)</li>
+	 *  <li>The number of metrics per packet (default 20)</li>
+	 *  <li>The target send rate in packets per second, 0 for as fast as possible (default 0)</li>
+	 * </ol>
+	 */
+	public static void main(String[] args) {
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int agents = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int entries = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+		int rate = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+		try {
+			new BroadcastLoadGenerator(agents, entries).run(seconds, rate);
+			System.exit(0);
+		} catch (Exception ex) {
+			ex.printStackTrace(System.err);
+			System.exit(-1);
+		}
+	}
+	
+	/** The number of simulated agents */
+	private final int agents;
+	/** The number of metrics per packet */
+	private final int entries;
+	/** The period length in ms */
+	private final long periodMs;
+	/** The channel connected to the broadcast address */
+	private final DatagramChannel channel;
+	/** The in process caster's router */
+	private final BroadcastListenerRouter router;
+	/** The metric packet of each simulated agent */
+	private final ByteBuffer[] metricPackets;
+	/** The bit mask of the simulated metrics */
+	private final int bitMask = MethodInterceptor.getBitMaskFor(COLLECTORS);
+	
+	/**
+	 * Creates a new BroadcastLoadGenerator, booting the caster in process
+	 * @param agents The number of simulated agents
+	 * @param entries The number of metrics per packet
+	 * @throws Exception thrown on any error connecting the send channel
+	 */
+	public BroadcastLoadGenerator(int agents, int entries) throws Exception {
+		this.agents = agents;
+		this.entries = entries;
+		periodMs = ConfigurationHelper.getLongSystemThenEnvProperty(ShorthandProperties.PERIOD_PROP, ShorthandProperties.DEFAULT_PERIOD);
+		new Boot();
+		router = BroadcastListener.getInstance().getRouter();
+		InetAddress address = InetAddress.getByName(ConfigurationHelper.getSystemThenEnvPropertyArray(AGENT_BROADCAST_NETWORK_PROP, DEFAULT_AGENT_BROADCAST_NETWORK)[0]);
+		int port = ConfigurationHelper.getIntSystemThenEnvPropertyArray(AGENT_BROADCAST_PORT_PROP, "" + DEFAULT_AGENT_BROADCAST_PORT)[0];
+		channel = DatagramChannel.open();
+		if(address.isMulticastAddress()) {
+			NetworkInterface ni = NetworkInterface.getByName(ConfigurationHelper.getSystemThenEnvProperty(AGENT_BROADCAST_NIC_PROP, DEFAULT_AGENT_BROADCAST_NIC));
+			if(ni!=null) channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, ni);
+		} else {
+			channel.setOption(StandardSocketOptions.SO_BROADCAST, true);
+		}
+		channel.connect(new InetSocketAddress(address, port));
+		metricPackets = new ByteBuffer[agents];
+		long periodEnd = periodEnd();
+		for(int a = 0; a < agents; a++) {
+			metricPackets[a] = buildMetricPacket(a, periodEnd);
+		}
+		log("Load generator sending to [%s:%s] for [%s] agents with [%s] metrics per packet", address.getHostAddress(), port, agents, entries);
+	}
+	
+	/**
+	 * Announces the simulated names and sends metric packets for the passed number of seconds
+	 * @param seconds The number of seconds to run for
+	 * @param rate The target send rate in packets per second, 0 for as fast as possible
+	 * @throws Exception thrown on any send error
+	 */
+	public void run(int seconds, int rate) throws Exception {
+		for(int a = 0; a < agents; a++) {
+			sendNames(a);
+		}
+		Thread.sleep(500);
+		router.reset();
+		final long[] loopThreads = eventLoopThreadIds();
+		final long startAlloc = allocatedBytes(loopThreads);
+		final long pauseNs = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0L;
+		final long start = System.nanoTime();
+		final long end = start + TimeUnit.SECONDS.toNanos(seconds);
+		long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+		long periodEnd = periodEnd();
+		long sent = 0, lastSent = 0, lastReceived = 0, lastAlloc = startAlloc;
+		int agent = 0;
+		while(true) {
+			long now = System.nanoTime();
+			if(now >= nextReport) {
+				long received = router.getPacketCount();
+				long alloc = allocatedBytes(loopThreads);
+				long delta = received - lastReceived;
+				log("sent/s: %s  received/s: %s  malformed: %s  event loop bytes/packet: %s", sent - lastSent, delta, router.getMalformedPacketCount(), delta==0 ? 0 : (alloc - lastAlloc) / delta);
+				lastSent = sent; lastReceived = received; lastAlloc = alloc;
+				nextReport += TimeUnit.SECONDS.toNanos(1);
+				long pe = periodEnd();
+				if(pe!=periodEnd) {
+					periodEnd = pe;
+					for(ByteBuffer packet: metricPackets) {
+						packet.putLong(PERIOD_START_OFFSET, periodEnd - periodMs);
+						packet.putLong(PERIOD_END_OFFSET, periodEnd);
+					}
+				}
+				if(now >= end) break;
+			}
+			ByteBuffer packet = metricPackets[agent];
+			packet.rewind();
+			channel.write(packet);
+			sent++;
+			if(++agent==agents) agent = 0;
+			if(pauseNs > 0) LockSupport.parkNanos(pauseNs);
+		}
+		Thread.sleep(500);
+		long received = router.getPacketCount();
+		double elapsed = (System.nanoTime() - start) / 1000000000D;
+		log("Sent [%s] packets, received [%s] (%s%%), [%s] packets/s, [%s] event loop bytes/packet", sent, received, received * 100 / Math.max(1, sent),
+				(long)(received / elapsed), received==0 ? 0 : (allocatedBytes(loopThreads) - startAlloc) / received);
+	}
+	
+	/**
+	 * Sends the name dictionary of a simulated agent
+	 * @param agent The simulated agent
+	 * @throws Exception thrown on any send error
+	 */
+	private void sendNames(int agent) throws Exception {
+		NameDictionaryBroadcastPacketHandler handler = NameDictionaryBroadcastPacketHandler.INSTANCE;
+		ByteBuffer buf = ByteBuffer.allocate(ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.BROADCAST_MTU_PROP, ShorthandProperties.DEFAULT_BROADCAST_MTU));
+		byte[] collectorType = MethodInterceptor.class.getName().getBytes(NameDictionaryBroadcastPacketHandler.UTF8);
+		handler.start(buf, 0L);
+		buf.putInt(1, pid(agent));
+		int count = 0;
+		for(int i = 0; i < entries; i++) {
+			byte[] name = String.format("loadgen/agent%s/metric%s", agent, i).getBytes(NameDictionaryBroadcastPacketHandler.UTF8);
+			buf.mark();
+			try {
+				handler.append(buf, i, bitMask, collectorType, name);
+				count++;
+			} catch (BufferOverflowException ex) {
+				buf.reset();
+				channel.write(ByteBuffer.wrap(handler.buildPacket(buf, count)));
+				handler.start(buf, 0L);
+				buf.putInt(1, pid(agent));
+				count = 0;
+				i--;
+			}
+		}
+		if(count > 0) channel.write(ByteBuffer.wrap(handler.buildPacket(buf, count)));
+	}
+	
+	/**
+	 * Builds the metric packet of a simulated agent
+	 * @param agent The simulated agent
+	 * @param periodEnd The period end
+	 * @return the metric packet
+	 */
+	private ByteBuffer buildMetricPacket(int agent, long periodEnd) {
+		ByteBuffer buf = ByteBuffer.allocate(ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.CASTER_BROADCAST_RECV_SIZE_PROP, ShorthandProperties.DEFAULT_CASTER_BROADCAST_RECV_SIZE));
+		MetricBroadcastPacketHandler.INSTANCE.start(buf, 0L, periodEnd - periodMs, periodEnd);
+		buf.putInt(1, pid(agent));
+		for(int i = 0; i < entries; i++) {
+			VarInt.putVarLong(buf, i);
+			VarInt.putVarLong(buf, COLLECTORS.length);
+			for(MethodInterceptor mi: COLLECTORS) {
+				int subCount = mi.getSubMetricNames().length;
+				VarInt.putVarLong(buf, mi.ordinal());
+				VarInt.putVarLong(buf, subCount);
+				for(int sub = 0; sub < subCount; sub++) {
+					VarInt.putZigZag(buf, (i + 1) * (sub + 1) * 10L);
+				}
+			}
+		}
+		return ByteBuffer.wrap(MetricBroadcastPacketHandler.INSTANCE.buildPacket(buf, entries));
+	}
+	
+	/**
+	 * Returns the pid of a simulated agent
+	 * @param agent The simulated agent
+	 * @return the simulated pid
+	 */
+	private static int pid(int agent) {
+		return 1000000 + agent;
+	}
+	
+	/**
+	 * Returns the end time of the current period
+	 * @return the current period end
+	 */
+	private long periodEnd() {
+		long now = System.currentTimeMillis();
+		return now - (now % periodMs) + periodMs;
+	}
+	
+	/**
+	 * Returns the ids of the caster's event loop threads
+	 * @return the event loop thread ids
+	 */
+	private static long[] eventLoopThreadIds() {
+		ThreadInfo[] infos = ManagementFactory.getThreadMXBean().getThreadInfo(ManagementFactory.getThreadMXBean().getAllThreadIds());
+		long[] ids = new long[infos.length];
+		int count = 0;
+		for(ThreadInfo ti: infos) {
+			if(ti!=null && ti.getThreadName().startsWith("BroadcastListenerThread#")) ids[count++] = ti.getThreadId();
+		}
+		long[] loopIds = new long[count];
+		System.arraycopy(ids, 0, loopIds, 0, count);
+		return loopIds;
+	}
+	
+	/**
+	 * Returns the total bytes allocated by the passed threads, or -1 if the JVM does not support allocation measurement
+	 * @param threadIds The thread ids
+	 * @return the total allocated bytes
+	 */
+	private static long allocatedBytes(long[] threadIds) {
+		if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) return -1L;
+		long total = 0;
+		for(long allocated: ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(threadIds)) {
+			if(allocated > 0) total += allocated;
+		}
+		return total;
+	}
+	
+	/**
+	 * Simple out formatted logger
+	 * @param fmt The format of the message
+	 * @param args The message arguments
+	 */
+	public static void log(String fmt, Object...args) {
+		System.out.println(String.format(fmt, args));
+	}
+}
@@ -0,0 +1,212 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.caster.aggregate;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+
+import com.heliosapm.shorthand.export.AbstractMetricsTextWriter;
+import com.heliosapm.shorthand.export.OpenMetricsWriter;
+
+/**
+ * <p>Title: AggregateMetricsWriter</p>
+ * <p>Description: Renders the fleet merged metrics of the last closed period into Prometheus / OpenMetrics text, 
+ * with the same family naming as the agent's {@link OpenMetricsWriter} plus a <code>shorthand_jvms</code> family holding the number of contributing JVMs
+ * and a <code>shorthand_agents</code> family counting the agent JVMs that are reporting, idle or down.
+ * Renders from the aggregator's {@link PeriodSnapshot}, so the feeds are not blocked while a scrape is written.</p>
+ * <p>Not thread safe. Each rendering thread should use its own writer.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.caster.aggregate.AggregateMetricsWriter</code></p>
+ */
+
+public class AggregateMetricsWriter extends AbstractMetricsTextWriter {
+	/** The name of the contributing JVMs family */
+	public static final String JVMS_FAMILY = OpenMetricsWriter.FAMILY_PREFIX + "jvms";
+	/** The name of the agent activity family */
+	public static final String AGENTS_FAMILY = OpenMetricsWriter.FAMILY_PREFIX + "agents";
+	/** The agent activity states, in the order returned by {@link FleetAggregator#agentActivity()} */
+	private static final String[] ACTIVITY_STATES = {"reporting", "idle", "down"};
+	
+	/** The aggregator to render */
+	protected final FleetAggregator aggregator;
+	/** The families keyed by family name, in name order */
+	protected final Map<String, Family> families = new TreeMap<String, Family>();
+	/** The families of each data point keyed by layout id and collector ordinal */
+	protected final Map<Long, Family[]> familiesByCollector = new HashMap<Long, Family[]>();
+	/** The contributing JVMs family */
+	protected final Family jvms = new Family(JVMS_FAMILY, "Number of JVMs contributing to the merged metric");
+	
+	/**
+	 * Creates a new AggregateMetricsWriter
+	 * @param aggregator The aggregator to render
+	 */
+	public AggregateMetricsWriter(FleetAggregator aggregator) {
+		this.aggregator = aggregator;
+		families.put(JVMS_FAMILY, jvms);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.export.MetricsRenderer#render(java.lang.String, boolean)
+	 */
+	@Override
+	public int render(String pattern, boolean openMetrics) {
+		size = 0;
+		for(Family family: families.values()) {
+			family.count = 0;
+		}
+		int samples = 0;
+		final Matcher matcher = matcher(pattern);
+		final PeriodSnapshot snapshot = aggregator.snapshot();
+		for(int row = 0; row < snapshot.size(); row++) {
+			if(matcher!=null && !matches(matcher, snapshot.name(row))) continue;
+			jvms.add(row, -1);
+			int layoutId = snapshot.layoutId(row);
+			int present = snapshot.present(row);
+			int value = snapshot.valueOffset(row);
+			for(int ordinal = 0; ordinal < AggregateStore.MAX_ORDINALS; ordinal++) {
+				if((present & (1 << ordinal))==0) continue;
+				Family[] subFamilies = families(snapshot.layout(layoutId), layoutId, ordinal);
+				for(int sub = 0; sub < subFamilies.length; sub++) {
+					subFamilies[sub].add(row, value++);
+				}
+			}
+		}
+		for(Family family: families.values()) {
+			if(family.count==0) continue;
+			samples += family.count;
+			writeFamily(family, snapshot);
+		}
+		if(matcher==null) samples += writeAgentActivity();
+		if(openMetrics) ascii("# EOF\n");
+		return samples;
+	}
+	
+	/**
+	 * Returns the families of the data points of a collector, creating them on first use
+	 * @param layout The collector layout
+	 * @param layoutId The collector layout id
+	 * @param ordinal The collector ordinal
+	 * @return the families, one per sub-metric
+	 */
+	protected Family[] families(CollectorLayout layout, int layoutId, int ordinal) {
+		final Long key = ((long)layoutId << 32) | ordinal;
+		Family[] subFamilies = familiesByCollector.get(key);
+		if(subFamilies==null) {
+			String[] subNames = layout.subNames(ordinal);
+			subFamilies = new Family[subNames.length];
+			for(int i = 0; i < subNames.length; i++) {
+				String name = OpenMetricsWriter.familyName(layout.shortName(ordinal), subNames.length==1 ? null : subNames[i]);
+				Family family = families.get(name);
+				if(family==null) {
+					family = new Family(name, subNames.length==1 ? layout.description(ordinal) : layout.description(ordinal) + " " + subNames[i]);
+					families.put(name, family);
+				}
+				subFamilies[i] = family;
+			}
+			familiesByCollector.put(key, subFamilies);
+		}
+		return subFamilies;
+	}
+	
+	/**
+	 * Writes the agent activity family
+	 * @return the number of samples written
+	 */
+	protected int writeAgentActivity() {
+		final int[] counts = aggregator.agentActivity();
+		ascii("# TYPE "); ascii(AGENTS_FAMILY); ascii(" gauge\n");
+		ascii("# HELP "); ascii(AGENTS_FAMILY); ascii(" Number of agent JVMs by activity in the last closed period\n");
+		for(int i = 0; i < counts.length; i++) {
+			ascii(AGENTS_FAMILY); ascii("{state=\""); ascii(ACTIVITY_STATES[i]); ascii("\"} "); number(counts[i]); ascii("\n");
+		}
+		return counts.length;
+	}
+	
+	/**
+	 * Writes a family's metadata and samples
+	 * @param family The family
+	 * @param snapshot The closed period snapshot
+	 */
+	protected void writeFamily(Family family, PeriodSnapshot snapshot) {
+		// The helpers are protected, so they cannot be chained from outside their package
+		ascii("# TYPE "); ascii(family.name); ascii(" gauge\n");
+		ascii("# HELP "); ascii(family.name); ascii(" "); utf8(family.help, false); ascii("\n");
+		final int[] entries = family.entries;
+		for(int i = 0; i < family.count; i++) {
+			int row = entries[i*2], index = entries[i*2+1];
+			long value = index==-1 ? snapshot.contributors(row) : snapshot.value(index);
+			ascii(family.name); ascii("{metric=\"");
+			utf8(snapshot.name(row), true);
+			ascii("\"} "); number(value); ascii("\n");
+		}
+	}
+	
+	/**
+	 * <p>Title: Family</p>
+	 * <p>Description: A metric family and the merged values bucketed into it for the current rendering</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>com.heliosapm.shorthand.caster.aggregate.AggregateMetricsWriter.Family</code></p>
+	 */
+	protected static class Family {
+		/** The family name */
+		final String name;
+		/** The family help text */
+		final String help;
+		/** The bucketed snapshot rows and value indexes, in pairs */
+		int[] entries = new int[256];
+		/** The number of bucketed entries */
+		int count = 0;
+		
+		/**
+		 * Creates a new Family
+		 * @param name The family name
+		 * @param help The family help text
+		 */
+		Family(String name, String help) {
+			this.name = name;
+			this.help = help;
+		}
+		
+		/**
+		 * Adds a sample to this family
+		 * @param row The snapshot row
+		 * @param index The snapshot value index, or -1 for the contributor count
+		 */
+		void add(int row, int index) {
+			if((count+1)*2 > entries.length) {
+				entries = Arrays.copyOf(entries, entries.length * 2);
+			}
+			entries[count*2] = row;
+			entries[count*2+1] = index;
+			count++;
+		}
+	}
+}
@@ -0,0 +1,324 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.caster.aggregate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Title: AggregateStore</p>
+ * <p>Description: A memory-mapped store of fleet merged metric values. Each metric name is assigned a fixed size slot holding a ring 
+ * of period entries, so the store keeps the last few periods of every merged series off-heap. An entry is laid out as:<pre>
+ * period start: 8 (long)
+ * period end: 8 (long)
+ * contributors: 4 (int), the number of JVM contributions merged into the entry
+ * present mask: 4 (int), a bit per collector ordinal with merged values
+ * layout id: 4 (int)
+ * reserved: 4 (int)
+ * values: {@link #VALUE_COUNT} longs, {@link #SUB_STRIDE} per collector ordinal. The last value of each ordinal is a control word holding
+ *    the summed weight of the averaged contributions in the low bits and a flag per sub-metric that has had a value merged in the high bits.
+ *    An averaged sub-metric holds the sum of each contribution multiplied by its weight.
+ * </pre></p>
+ * <p>The store is recreated on each start and is not thread safe. The {@link FleetAggregator} serializes all access.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.caster.aggregate.AggregateStore</code></p>
+ */
+
+public class AggregateStore {
+	/** The maximum number of collector ordinals per metric, matching the width of a collector bit mask */
+	public static final int MAX_ORDINALS = 32;
+	/** The maximum number of sub-metrics per collector */
+	public static final int MAX_SUBS = 3;
+	/** The number of values reserved per collector ordinal */
+	public static final int SUB_STRIDE = MAX_SUBS + 1;
+	/** The value index within an ordinal's values of the control word */
+	public static final int COUNT_SUB = MAX_SUBS;
+	/** The control word mask of the summed averaged contribution weight */
+	public static final long COUNT_MASK = (1L << 56) - 1;
+	/** The number of values in an entry */
+	public static final int VALUE_COUNT = MAX_ORDINALS * SUB_STRIDE;
+	/** The entry offset of the period start */
+	public static final int PERIOD_START = 0;
+	/** The entry offset of the period end */
+	public static final int PERIOD_END = 8;
+	/** The entry offset of the contributor count */
+	public static final int CONTRIBUTORS = 16;
+	/** The entry offset of the present mask */
+	public static final int PRESENT = 20;
+	/** The entry offset of the layout id */
+	public static final int LAYOUT = 24;
+	/** The size of an entry header */
+	public static final int HEADER_SIZE = 32;
+	/** The size of an entry */
+	public static final int ENTRY_SIZE = HEADER_SIZE + (VALUE_COUNT * 8);
+	
+	/** The store file */
+	protected final File file;
+	/** The store file handle */
+	protected final RandomAccessFile raf;
+	/** The mapped store */
+	protected final MappedByteBuffer buf;
+	/** The maximum number of slots */
+	protected final int capacity;
+	/** The number of period entries per slot */
+	protected final int periods;
+	/** The size of a slot */
+	protected final int slotSize;
+	/** The slot ids keyed by metric name */
+	protected final Map<String, Integer> slots = new HashMap<String, Integer>();
+	/** The metric names keyed by slot id */
+	protected final String[] names;
+	/** The layout ids keyed by slot id */
+	protected final int[] layouts;
+	/** The number of allocated slots */
+	protected int size = 0;
+	
+	/**
+	 * Creates a new AggregateStore, replacing any existing store file
+	 * @param file The store file
+	 * @param capacity The maximum number of metric names
+	 * @param periods The number of period entries kept per metric
+	 * @throws IOException thrown if the file cannot be created or mapped
+	 */
+	public AggregateStore(File file, int capacity, int periods) throws IOException {
+		this.file = file;
+		this.capacity = capacity;
+		this.periods = Math.max(2, periods);
+		slotSize = this.periods * ENTRY_SIZE;
+		long length = (long)capacity * slotSize;
+		if(length > Integer.MAX_VALUE) throw new IllegalArgumentException("Aggregate store of [" + capacity + "] metrics x [" + this.periods + "] periods exceeds 2GB");
+		names = new String[capacity];
+		layouts = new int[capacity];
+		File dir = file.getAbsoluteFile().getParentFile();
+		if(dir!=null && !dir.exists() && !dir.mkdirs()) throw new IOException("Failed to create directory [" + dir + "]");
+		raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			raf.setLength(length);
+			buf = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+		} catch (IOException iex) {
+			try { raf.close(); } catch (Exception x) {/* No Op */}
+			throw iex;
+		}
+	}
+	
+	/**
+	 * Returns the slot of the passed metric name, allocating it if it is new
+	 * @param name The metric name
+	 * @param layoutId The collector layout id of the metric
+	 * @return the slot id, or -1 if the store is full
+	 */
+	public int slot(String name, int layoutId) {
+		Integer slot = slots.get(name);
+		if(slot!=null) return slot;
+		if(size==capacity) return -1;
+		names[size] = name;
+		layouts[size] = layoutId;
+		slots.put(name, size);
+		return size++;
+	}
+	
+	/**
+	 * Returns the entry of a slot for the passed period, recycling the slot's oldest entry if the period is new
+	 * @param slot The slot id
+	 * @param periodStart The period start time
+	 * @param periodEnd The period end time
+	 * @return the entry offset, or -1 if the period is older than all the slot's entries
+	 */
+	public int entry(int slot, long periodStart, long periodEnd) {
+		final int base = slot * slotSize;
+		int oldest = -1;
+		long oldestEnd = Long.MAX_VALUE;
+		for(int i = 0; i < periods; i++) {
+			int entry = base + (i * ENTRY_SIZE);
+			long end = buf.getLong(entry + PERIOD_END);
+			if(end==periodEnd) return entry;
+			if(end < oldestEnd) {
+				oldestEnd = end;
+				oldest = entry;
+			}
+		}
+		if(oldestEnd > periodEnd) return -1;
+		for(int i = 0; i < ENTRY_SIZE; i += 8) {
+			buf.putLong(oldest + i, 0L);
+		}
+		buf.putLong(oldest + PERIOD_START, periodStart);
+		buf.putLong(oldest + PERIOD_END, periodEnd);
+		buf.putInt(oldest + LAYOUT, layouts[slot]);
+		return oldest;
+	}
+	
+	/**
+	 * Finds the entry of a slot for the passed period
+	 * @param slot The slot id
+	 * @param periodEnd The period end time
+	 * @return the entry offset or -1 if the slot has no entry for the period
+	 */
+	public int find(int slot, long periodEnd) {
+		final int base = slot * slotSize;
+		for(int i = 0; i < periods; i++) {
+			int entry = base + (i * ENTRY_SIZE);
+			if(buf.getLong(entry + PERIOD_END)==periodEnd) return entry;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Records a JVM contribution to an entry
+	 * @param entry The entry offset
+	 */
+	public void contribute(int entry) {
+		buf.putInt(entry + CONTRIBUTORS, buf.getInt(entry + CONTRIBUTORS) + 1);
+	}
+	
+	/**
+	 * Merges a value into an entry
+	 * @param entry The entry offset
+	 * @param ordinal The collector ordinal
+	 * @param sub The sub-metric index
+	 * @param op The merge op
+	 * @param value The value to merge
+	 * @param weight The weight of an averaged value, the number of samples it was averaged over. Ignored by the other ops.
+	 */
+	public void merge(int entry, int ordinal, int sub, MergeOp op, long value, long weight) {
+		if(op.isUnset(value) || (op==MergeOp.AVG && weight < 1)) return;
+		final int valueOffset = entry + HEADER_SIZE + (((ordinal * SUB_STRIDE) + sub) * 8);
+		final int controlOffset = entry + HEADER_SIZE + (((ordinal * SUB_STRIDE) + COUNT_SUB) * 8);
+		final long setFlag = 1L << (62 - sub);
+		long control = buf.getLong(controlOffset);
+		final boolean first = (control & setFlag)==0;
+		if(op==MergeOp.AVG) {
+			buf.putLong(valueOffset, op.merge(buf.getLong(valueOffset), value * weight, first));
+			control = (control & ~COUNT_MASK) | ((control + weight) & COUNT_MASK);
+		} else {
+			buf.putLong(valueOffset, op.merge(buf.getLong(valueOffset), value, first));
+		}
+		control |= setFlag;
+		buf.putLong(controlOffset, control);
+		final int present = buf.getInt(entry + PRESENT);
+		final int bit = 1 << ordinal;
+		if((present & bit)==0) buf.putInt(entry + PRESENT, present | bit);
+	}
+	
+	/**
+	 * Returns the merged value of a sub-metric, resolving averages to the weighted mean
+	 * @param entry The entry offset
+	 * @param ordinal The collector ordinal
+	 * @param sub The sub-metric index
+	 * @param op The merge op of the sub-metric
+	 * @return the merged value
+	 */
+	public long value(int entry, int ordinal, int sub, MergeOp op) {
+		long value = buf.getLong(entry + HEADER_SIZE + (((ordinal * SUB_STRIDE) + sub) * 8));
+		if(op==MergeOp.AVG) {
+			long count = buf.getLong(entry + HEADER_SIZE + (((ordinal * SUB_STRIDE) + COUNT_SUB) * 8)) & COUNT_MASK;
+			return count==0 ? -1L : value / count;
+		}
+		return value;
+	}
+	
+	/**
+	 * Returns the number of JVM contributions merged into an entry
+	 * @param entry The entry offset
+	 * @return the number of contributions
+	 */
+	public int contributors(int entry) {
+		return buf.getInt(entry + CONTRIBUTORS);
+	}
+	
+	/**
+	 * Returns the mask of collector ordinals with merged values in an entry
+	 * @param entry The entry offset
+	 * @return the present mask
+	 */
+	public int present(int entry) {
+		return buf.getInt(entry + PRESENT);
+	}
+	
+	/**
+	 * Returns the period start of an entry
+	 * @param entry The entry offset
+	 * @return the period start time
+	 */
+	public long periodStart(int entry) {
+		return buf.getLong(entry + PERIOD_START);
+	}
+	
+	/**
+	 * Returns the metric name of a slot
+	 * @param slot The slot id
+	 * @return the metric name
+	 */
+	public String name(int slot) {
+		return names[slot];
+	}
+	
+	/**
+	 * Returns the collector layout id of a slot
+	 * @param slot The slot id
+	 * @return the layout id
+	 */
+	public int layoutId(int slot) {
+		return layouts[slot];
+	}
+	
+	/**
+	 * Returns the number of allocated slots
+	 * @return the number of metric names
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the maximum number of slots
+	 * @return the capacity
+	 */
+	public int capacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Returns the store file
+	 * @return the store file
+	 */
+	public File file() {
+		return file;
+	}
+	
+	/**
+	 * Closes the store file
+	 */
+	public void close() {
+		try { buf.force(); } catch (Exception x) {/* No Op */}
+		try { raf.close(); } catch (Exception x) {/* No Op */}
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.caster.aggregate;
+
+import com.heliosapm.shorthand.collectors.ICollector;
+
+/**
+ * <p>Title: CollectorLayout</p>
+ * <p>Description: The names and merge ops of the data points of a collector type, keyed by collector ordinal.
+ * Resolved from the collector enum when it is on the caster's classpath, otherwise described generically with summed values.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.caster.aggregate.CollectorLayout</code></p>
+ */
+
+public class CollectorLayout {
+	/** The collector class name */
+	public final String type;
+	/** The collector names keyed by ordinal */
+	protected final String[] names = new String[AggregateStore.MAX_ORDINALS];
+	/** The collector short names keyed by ordinal */
+	protected final String[] shortNames = new String[AggregateStore.MAX_ORDINALS];
+	/** The collector descriptions keyed by ordinal */
+	protected final String[] descriptions = new String[AggregateStore.MAX_ORDINALS];
+	/** The sub-metric names keyed by ordinal */
+	protected final String[][] subNames = new String[AggregateStore.MAX_ORDINALS][];
+	/** The sub-metric merge ops keyed by ordinal */
+	protected final MergeOp[][] ops = new MergeOp[AggregateStore.MAX_ORDINALS][];
+	/** The ordinal of the collector counting the samples averaged by the other collectors, or -1 if there is none */
+	protected final int weightOrdinal;
+	
+	/**
+	 * Creates a new CollectorLayout
+	 * @param type The collector class name
+	 */
+	public CollectorLayout(String type) {
+		this.type = type;
+		ICollector<?>[] collectors = null;
+		try {
+			Class<?> clazz = Class.forName(type, false, getClass().getClassLoader());
+			if(clazz.isEnum() && ICollector.class.isAssignableFrom(clazz)) {
+				collectors = (ICollector<?>[])clazz.getEnumConstants();
+			}
+		} catch (Throwable t) {
+			FleetAggregator.log("Collector type [%s] not on the classpath. Values will be summed", type);
+		}
+		int countOrdinal = -1;
+		for(int ordinal = 0; ordinal < AggregateStore.MAX_ORDINALS; ordinal++) {
+			String[] subs = null;
+			if(collectors!=null && ordinal < collectors.length) {
+				ICollector<?> collector = collectors[ordinal];
+				names[ordinal] = collector.name();
+				shortNames[ordinal] = collector.getShortName();
+				descriptions[ordinal] = collector.getDescription();
+				subs = collector.getSubMetricNames();
+				// The first single valued count is the one the agent divides the averages by, e.g. the method invocation count
+				if(countOrdinal==-1 && subs!=null && subs.length==1 && "Count".equalsIgnoreCase(subs[0])) countOrdinal = ordinal;
+			} else {
+				names[ordinal] = "C" + ordinal;
+				shortNames[ordinal] = "c" + ordinal;
+				descriptions[ordinal] = "Collector " + ordinal + " of " + type;
+			}
+			if(subs==null || subs.length==0) subs = new String[]{"Value"};
+			if(subs.length > AggregateStore.MAX_SUBS) {
+				String[] tmp = new String[AggregateStore.MAX_SUBS];
+				System.arraycopy(subs, 0, tmp, 0, tmp.length);
+				subs = tmp;
+			}
+			subNames[ordinal] = subs;
+			ops[ordinal] = new MergeOp[subs.length];
+			for(int sub = 0; sub < subs.length; sub++) {
+				ops[ordinal][sub] = MergeOp.forSubName(subs[sub]);
+			}
+		}
+		weightOrdinal = countOrdinal;
+	}
+	
+	/**
+	 * Returns the ordinal of the collector counting the samples that averaged sub-metrics were averaged over
+	 * @return the weight collector ordinal, or -1 if averages are unweighted
+	 */
+	public int weightOrdinal() {
+		return weightOrdinal;
+	}
+	
+	/**
+	 * Returns the number of sub-metrics of the collector at the passed ordinal
+	 * @param ordinal The collector ordinal
+	 * @return the number of sub-metrics
+	 */
+	public int subCount(int ordinal) {
+		return subNames[ordinal].length;
+	}
+	
+	/**
+	 * Returns the merge op of a sub-metric
+	 * @param ordinal The collector ordinal
+	 * @param sub The sub-metric index
+	 * @return the merge op
+	 */
+	public MergeOp op(int ordinal, int sub) {
+		return ops[ordinal][sub];
+	}
+	
+	/**
+	 * Returns the name of the collector at the passed ordinal
+	 * @param ordinal The collector ordinal
+	 * @return the collector name
+	 */
+	public String name(int ordinal) {
+		return names[ordinal];
+	}
+	
+	/**
+	 * Returns the short name of the collector at the passed ordinal
+	 * @param ordinal The collector ordinal
+	 * @return the collector short name
+	 */
+	public String shortName(int ordinal) {
+		return shortNames[ordinal];
+	}
+	
+	/**
+	 * Returns the description of the collector at the passed ordinal
+	 * @param ordinal The collector ordinal
+	 * @return the collector description
+	 */
+	public String description(int ordinal) {
+		return descriptions[ordinal];
+	}
+	
+	/**
+	 * Returns the sub-metric names of the collector at the passed ordinal
+	 * @param ordinal The collector ordinal
+	 * @return the sub-metric names
+	 */
+	public String[] subNames(int ordinal) {
+		return subNames[ordinal];
+	}
+}
@@ -0,0 +1,585 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.caster.aggregate;
+
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.heliosapm.shorthand.ShorthandProperties;
+import com.heliosapm.shorthand.broadcast.MetricBroadcastPacketHandler.MetricBroadcast;
+import com.heliosapm.shorthand.broadcast.NameDictionaryBroadcastPacketHandler.NameDictionaryBroadcast;
+import com.heliosapm.shorthand.caster.broadcast.MetricFeedListener;
+import com.heliosapm.shorthand.caster.presence.JVMPresenceService;
+import com.heliosapm.shorthand.caster.presence.JVMState;
+import com.heliosapm.shorthand.export.MetricsHttpServer;
+import com.heliosapm.shorthand.export.MetricsHttpServerMBean;
+import com.heliosapm.shorthand.jmx.BulkMetricPublisherMXBean;
+import com.heliosapm.shorthand.jmx.MetricTable;
+import com.heliosapm.shorthand.util.ConfigurationHelper;
+import com.heliosapm.shorthand.util.OrderedShutdownService;
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+
+/**
+ * <p>Title: FleetAggregator</p>
+ * <p>Description: Merges the closed period metric feeds of all the agents broadcasting on the segment into one series per metric name,
+ * kept in a memory-mapped {@link AggregateStore}. Agent periods are aligned to the configured period, and each collector sub-metric
+ * is merged according to its {@link MergeOp}: counts are summed, minimums and maximums are kept and averages are weighted by
+ * the number of samples each JVM averaged over, which is the value of the layout's {@link CollectorLayout#weightOrdinal() count collector}.
+ * A period is served as closed once any agent has reported the next one.</p>
+ * <p>Feed callbacks are invoked on the receiving event loop, so merging is allocation free: agents and their name indexes resolve 
+ * to store slots through primitive maps populated from the name dictionary broadcasts.</p>
+ * <p>With a {@link JVMPresenceService}, live agents that reported nothing for the last closed period are counted as idle, 
+ * apart from the agents the presence service has detected as down.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.caster.aggregate.FleetAggregator</code></p>
+ */
+
+public class FleetAggregator implements MetricFeedListener, FleetAggregatorMXBean {
+	/** The singleton instance */
+	private static volatile FleetAggregator instance = null;
+	/** The singleton instance ctor lock */
+	private static final Object lock = new Object();
+	
+	/** The merged series store */
+	protected final AggregateStore store;
+	/** The period length in ms. */
+	protected final long periodMs;
+	/** The store slots keyed by agent name index, keyed by agent */
+	protected final TLongObjectHashMap<TLongIntHashMap> agents = new TLongObjectHashMap<TLongIntHashMap>();
+	/** The store generation the slots of each agent were mapped from, keyed by agent */
+	protected final TLongLongHashMap generations = new TLongLongHashMap(64, 0.5f, -1L, -1L);
+	/** The end time of the latest period reported keyed by agent */
+	protected final TLongLongHashMap reported = new TLongLongHashMap(64, 0.5f, -1L, -1L);
+	/** The agent presence service, or null if not tracking presence */
+	protected final JVMPresenceService presence;
+	/** The collector layout ids keyed by collector class name */
+	protected final Map<String, Integer> layoutIds = new HashMap<String, Integer>();
+	/** The collector layouts keyed by layout id */
+	protected final List<CollectorLayout> layouts = new ArrayList<CollectorLayout>();
+	/** The end time of the latest period reported by any agent */
+	protected volatile long latestPeriodEnd = -1L;
+	/** The number of merges into closed periods, which invalidate the closed period snapshot */
+	protected long closedChanges = 0L;
+	/** The last snapshot of the closed period */
+	protected PeriodSnapshot snapshot;
+	
+	/** The number of metric packets received */
+	protected volatile long metricPackets = 0L;
+	/** The number of name dictionary packets received */
+	protected volatile long namePackets = 0L;
+	/** The number of agent metrics merged */
+	protected volatile long merged = 0L;
+	/** The number of agent metrics with no known name */
+	protected volatile long unknown = 0L;
+	/** The number of agent metrics for a period older than all the kept periods */
+	protected volatile long late = 0L;
+	/** The number of names refused because the store was full */
+	protected volatile long refused = 0L;
+	/** The number of names refused because their collector type differs from the one the name was first seen with */
+	protected volatile long mismatched = 0L;
+	/** The number of metric packets dropped because their period ends more than a period in the future */
+	protected volatile long future = 0L;
+	
+	/**
+	 * Acquires the fleet aggregator singleton, creating the store and starting the HTTP endpoint as configured on first call
+	 * @return the fleet aggregator singleton
+	 */
+	public static FleetAggregator getInstance() {
+		if(instance==null) {
+			synchronized(lock) {
+				if(instance==null) {
+					String fileName = ConfigurationHelper.getSystemThenEnvProperty(ShorthandProperties.CASTER_STORE_FILE_PROP, ShorthandProperties.DEFAULT_CASTER_STORE_FILE);
+					int capacity = ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.CASTER_STORE_CAPACITY_PROP, ShorthandProperties.DEFAULT_CASTER_STORE_CAPACITY);
+					int periods = ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.CASTER_STORE_PERIODS_PROP, ShorthandProperties.DEFAULT_CASTER_STORE_PERIODS);
+					long periodMs = ConfigurationHelper.getLongSystemThenEnvProperty(ShorthandProperties.PERIOD_PROP, ShorthandProperties.DEFAULT_PERIOD);
+					final AggregateStore store;
+					try {
+						store = new AggregateStore(new File(fileName), capacity, periods);
+					} catch (Exception ex) {
+						throw new RuntimeException("Failed to create the aggregate store [" + fileName + "]", ex);
+					}
+					final FleetAggregator aggregator = new FleetAggregator(store, periodMs, JVMPresenceService.getInstance());
+					JMXHelper.registerMBean(OBJECT_NAME, aggregator);
+					final MetricsHttpServer httpServer = aggregator.startHttpServer();
+					OrderedShutdownService.getInstance().add(new Thread("FleetAggregatorShutdownHook") {
+						@Override
+						public void run() {
+							if(httpServer!=null) httpServer.stop();
+							store.close();
+						}
+					});
+					log("FleetAggregator started. Store [%s] Capacity [%s] Periods [%s] Period [%s ms]", store.file(), capacity, periods, periodMs);
+					instance = aggregator;
+				}
+			}
+		}
+		return instance;
+	}
+	
+	/**
+	 * Creates a new FleetAggregator
+	 * @param store The merged series store
+	 * @param periodMs The period length in ms. that agent periods are aligned to
+	 */
+	public FleetAggregator(AggregateStore store, long periodMs) {
+		this(store, periodMs, null);
+	}
+	
+	/**
+	 * Creates a new FleetAggregator
+	 * @param store The merged series store
+	 * @param periodMs The period length in ms. that agent periods are aligned to
+	 * @param presence The agent presence service, or null if not tracking presence
+	 */
+	public FleetAggregator(AggregateStore store, long periodMs, JVMPresenceService presence) {
+		this.store = store;
+		this.periodMs = periodMs;
+		this.presence = presence;
+		snapshot = new PeriodSnapshot(store, new CollectorLayout[0], -1L, -1L, closedChanges);
+	}
+	
+	/**
+	 * Starts the OpenMetrics HTTP endpoint serving the merged metrics, if enabled
+	 * @return the started server or null if the endpoint is disabled or failed to start
+	 */
+	protected MetricsHttpServer startHttpServer() {
+		int port = ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.CASTER_HTTP_PORT_PROP, ShorthandProperties.DEFAULT_CASTER_HTTP_PORT);
+		if(port < 0) return null;
+		String iface = ConfigurationHelper.getSystemThenEnvProperty(ShorthandProperties.HTTP_IFACE_PROP, ShorthandProperties.DEFAULT_HTTP_IFACE);
+		try {
+			MetricsHttpServer server = new MetricsHttpServer(new AggregateMetricsWriter(this), iface, port);
+			server.start();
+			JMXHelper.registerMBean(MetricsHttpServerMBean.OBJECT_NAME, server);
+			log("Fleet metrics HTTP endpoint listening on [%s:%s%s]", iface, server.getPort(), MetricsHttpServer.METRICS_PATH);
+			return server;
+		} catch (Exception ex) {
+			loge("Failed to start fleet metrics HTTP endpoint on [%s:%s]", ex, iface, port);
+			return null;
+		}
+	}
+	
+	/**
+	 * Aligns an agent period end time to the aggregation period
+	 * @param periodEnd The agent period end time
+	 * @return the aligned period end time
+	 */
+	protected long align(long periodEnd) {
+		return ((periodEnd + (periodMs/2)) / periodMs) * periodMs;
+	}
+	
+	/**
+	 * Computes the key of an agent
+	 * @param source The agent's address
+	 * @param pid The agent's process id
+	 * @return the agent key
+	 */
+	protected static long agentKey(InetSocketAddress source, int pid) {
+		return JVMPresenceService.agentKey(source==null ? null : source.getAddress(), pid);
+	}
+	
+	/**
+	 * Returns the layout id of the passed collector type, creating the layout on first use
+	 * @param collectorType The collector class name
+	 * @return the layout id
+	 */
+	protected int layoutId(String collectorType) {
+		Integer id = layoutIds.get(collectorType);
+		if(id==null) {
+			id = layouts.size();
+			layouts.add(new CollectorLayout(collectorType));
+			layoutIds.put(collectorType, id);
+		}
+		return id;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.broadcast.MetricFeedListener#onNameDictionary(com.heliosapm.shorthand.broadcast.NameDictionaryBroadcastPacketHandler.NameDictionaryBroadcast)
+	 */
+	@Override
+	public synchronized void onNameDictionary(NameDictionaryBroadcast names) {
+		namePackets++;
+		final long key = agentKey(names.source, names.pid);
+		TLongIntHashMap slots = agents.get(key);
+		if(slots==null) {
+			slots = new TLongIntHashMap(128, 0.5f, -1L, -1);
+			agents.put(key, slots);
+		}
+		if(generations.get(key)!=names.generation) {
+			// The agent's name index was renumbered by a compaction or clear
+			slots.clear();
+			generations.put(key, names.generation);
+		}
+		for(int i = 0; i < names.size(); i++) {
+			final int layoutId = layoutId(names.collectorTypes[i]);
+			int slot = store.slot(names.names[i], layoutId);
+			if(slot==-1) {
+				refused++;
+				continue;
+			}
+			if(store.layoutId(slot)!=layoutId) {
+				// The slot's values are laid out for another collector, so this agent's values for the name are dropped as unknown
+				mismatched++;
+				continue;
+			}
+			slots.put(names.nameIndexes[i], slot);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.broadcast.MetricFeedListener#onMetrics(com.heliosapm.shorthand.broadcast.MetricBroadcastPacketHandler.MetricBroadcast)
+	 */
+	@Override
+	public synchronized void onMetrics(MetricBroadcast metrics) {
+		metricPackets++;
+		final long periodEnd = align(metrics.periodEnd);
+		if(periodEnd > System.currentTimeMillis() + periodMs) {
+			// A skewed clock or corrupt period would close the current period for every other agent
+			future++;
+			return;
+		}
+		if(periodEnd > latestPeriodEnd) latestPeriodEnd = periodEnd;
+		final long key = agentKey(metrics.source, metrics.pid);
+		if(periodEnd > reported.get(key)) reported.put(key, periodEnd);
+		// Name indexes from another generation than the mapped one would resolve to the wrong names
+		final TLongIntHashMap slots = generations.get(key)==metrics.generation ? agents.get(key) : null;
+		for(int i = 0; i < metrics.size(); i++) {
+			int slot = slots==null ? -1 : slots.get(metrics.nameIndex(i));
+			if(slot==-1) {
+				unknown++;
+				continue;
+			}
+			int entry = store.entry(slot, periodEnd - periodMs, periodEnd);
+			if(entry==-1) {
+				late++;
+				continue;
+			}
+			if(periodEnd < latestPeriodEnd) closedChanges++;
+			store.contribute(entry);
+			CollectorLayout layout = layouts.get(store.layoutId(slot));
+			final int points = metrics.pointCount(i);
+			final long weight = weight(metrics, i, layout);
+			for(int p = 0; p < points; p++) {
+				int ordinal = metrics.ordinal(i, p);
+				if(ordinal < 0 || ordinal >= AggregateStore.MAX_ORDINALS) continue;
+				int subCount = Math.min(metrics.valueCount(i, p), layout.subCount(ordinal));
+				for(int sub = 0; sub < subCount; sub++) {
+					store.merge(entry, ordinal, sub, layout.op(ordinal, sub), metrics.value(i, p, sub), weight);
+				}
+			}
+			merged++;
+		}
+	}
+	
+	/**
+	 * Returns the weight of an entry's averaged values, the number of samples the agent averaged them over
+	 * @param metrics The metric broadcast
+	 * @param entry The entry index
+	 * @param layout The collector layout of the entry's metric
+	 * @return the weight, or 1 if the entry does not carry the layout's count collector
+	 */
+	protected static long weight(MetricBroadcast metrics, int entry, CollectorLayout layout) {
+		final int weightOrdinal = layout.weightOrdinal();
+		if(weightOrdinal==-1) return 1L;
+		for(int p = 0; p < metrics.pointCount(entry); p++) {
+			if(metrics.ordinal(entry, p)==weightOrdinal && metrics.valueCount(entry, p) > 0) return metrics.value(entry, p, 0);
+		}
+		return 1L;
+	}
+	
+	/**
+	 * Returns a snapshot of the merged metrics of the last closed period. The snapshot is copied under this aggregator's lock
+	 * and re-used until the closed period changes or receives a late contribution, so readers render it without blocking the feeds.
+	 * @return the closed period snapshot
+	 */
+	public synchronized PeriodSnapshot snapshot() {
+		final long periodEnd = getLastClosedPeriodEnd();
+		if(snapshot.periodEnd!=periodEnd || snapshot.version!=closedChanges) {
+			snapshot = new PeriodSnapshot(store, layouts.toArray(new CollectorLayout[layouts.size()]), periodEnd - periodMs, periodEnd, closedChanges);
+		}
+		return snapshot;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.aggregate.FleetAggregatorMXBean#getMetrics(java.lang.String, int, int)
+	 */
+	@Override
+	public MetricTable getMetrics(String pattern, int offset, int limit) {
+		offset = Math.max(0, offset);
+		limit = Math.max(0, Math.min(limit, BulkMetricPublisherMXBean.MAX_PAGE_SIZE));
+		final PeriodSnapshot snapshot = snapshot();
+		Matcher matcher = pattern==null || pattern.trim().isEmpty() ? null : Pattern.compile(pattern).matcher("");
+		int[] selected = new int[Math.min(limit, snapshot.size())];
+		int total = 0, rows = 0;
+		for(int row = 0; row < snapshot.size(); row++) {
+			if(matcher!=null && !matcher.reset(snapshot.name(row)).matches()) continue;
+			if(total >= offset && rows < selected.length) {
+				selected[rows++] = row;
+			}
+			total++;
+		}
+		String[] names = new String[rows];
+		long[] periodStarts = new long[rows];
+		long[] periodEnds = new long[rows];
+		int[] rowLayouts = new int[rows];
+		int[] rowOffsets = new int[rows+1];
+		long[] values = new long[rows * 8];
+		Map<Long, Integer> rowLayoutIds = new HashMap<Long, Integer>();
+		List<String> columnLayouts = new ArrayList<String>();
+		int valueCount = 0;
+		for(int r = 0; r < rows; r++) {
+			int row = selected[r];
+			int layoutId = snapshot.layoutId(row);
+			CollectorLayout layout = snapshot.layout(layoutId);
+			int present = snapshot.present(row);
+			int value = snapshot.valueOffset(row);
+			names[r] = snapshot.name(row);
+			periodStarts[r] = snapshot.periodStart;
+			periodEnds[r] = snapshot.periodEnd;
+			rowOffsets[r] = valueCount;
+			Long layoutKey = ((long)layoutId << 32) | (present & 0xFFFFFFFFL);
+			Integer rowLayout = rowLayoutIds.get(layoutKey);
+			StringBuilder columns = rowLayout==null ? new StringBuilder("JVMS") : null;
+			if(valueCount + 1 + (AggregateStore.VALUE_COUNT) > values.length) {
+				values = Arrays.copyOf(values, Math.max(values.length * 2, valueCount + 1 + AggregateStore.VALUE_COUNT));
+			}
+			values[valueCount++] = snapshot.contributors(row);
+			for(int ordinal = 0; ordinal < AggregateStore.MAX_ORDINALS; ordinal++) {
+				if((present & (1 << ordinal))==0) continue;
+				int subCount = layout.subCount(ordinal);
+				for(int sub = 0; sub < subCount; sub++) {
+					values[valueCount++] = snapshot.value(value++);
+					if(columns!=null) {
+						columns.append(',').append(layout.name(ordinal));
+						if(subCount > 1) columns.append('.').append(layout.subNames(ordinal)[sub]);
+					}
+				}
+			}
+			if(rowLayout==null) {
+				rowLayout = columnLayouts.size();
+				columnLayouts.add(columns.toString());
+				rowLayoutIds.put(layoutKey, rowLayout);
+			}
+			rowLayouts[r] = rowLayout;
+		}
+		rowOffsets[rows] = valueCount;
+		return new MetricTable(total, offset, offset + rows < total ? offset + rows : -1, names, periodStarts, periodEnds, 
+				columnLayouts.toArray(new String[columnLayouts.size()]), rowLayouts, rowOffsets, Arrays.copyOf(values, valueCount));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.aggregate.FleetAggregatorMXBean#getAgentCount()
+	 */
+	@Override
+	public synchronized int getAgentCount() {
+		return agents.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.aggregate.FleetAggregatorMXBean#getReportingAgentCount()
+	 */
+	@Override
+	public int getReportingAgentCount() {
+		return agentActivity()[0];
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.aggregate.FleetAggregatorMXBean#getIdleAgentCount()
+	 */
+	@Override
+	public int getIdleAgentCount() {
+		return agentActivity()[1];
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.aggregate.FleetAggregatorMXBean#getDownAgentCount()
+	 */
+	@Override
+	public int getDownAgentCount() {
+		return agentActivity()[2];
+	}
+	
+	/**
+	 * Counts the agents by activity in the last closed period. Without a presence service every agent that has 
+	 * reported is assumed to be alive.
+	 * @return the number of reporting, idle and down agents
+	 */
+	protected synchronized int[] agentActivity() {
+		final long closed = getLastClosedPeriodEnd();
+		final int[] counts = new int[3];
+		if(presence==null) {
+			for(long periodEnd: reported.values()) {
+				counts[periodEnd >= closed && closed!=-1L ? 0 : 1]++;
+			}
+			return counts;
+		}
+		for(JVMState state: JVMState.values()) {
+			for(long key: presence.keys(state)) {
+				if(!state.isAlive()) counts[2]++;
+				else if(closed!=-1L && reported.get(key) >= closed) counts[0]++;
+				else counts[1]++;
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.aggregate.FleetAggregatorMXBean#getMetricNameCount()
+	 */
+	@Override
+	public synchronized int getMetricNameCount() {
+		return store.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.aggregate.FleetAggregatorMXBean#getMetricNameCapacity()
+	 */
+	@Override
+	public int getMetricNameCapacity() {
+		return store.capacity();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.aggregate.FleetAggregatorMXBean#getLastClosedPeriodEnd()
+	 */
+	@Override
+	public long getLastClosedPeriodEnd() {
+		final long latest = latestPeriodEnd;
+		return latest==-1L ? -1L : latest - periodMs;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.aggregate.FleetAggregatorMXBean#getMetricPacketCount()
+	 */
+	@Override
+	public long getMetricPacketCount() {
+		return metricPackets;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.aggregate.FleetAggregatorMXBean#getNamePacketCount()
+	 */
+	@Override
+	public long getNamePacketCount() {
+		return namePackets;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.aggregate.FleetAggregatorMXBean#getMergedCount()
+	 */
+	@Override
+	public long getMergedCount() {
+		return merged;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.aggregate.FleetAggregatorMXBean#getUnknownCount()
+	 */
+	@Override
+	public long getUnknownCount() {
+		return unknown;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.aggregate.FleetAggregatorMXBean#getLateCount()
+	 */
+	@Override
+	public long getLateCount() {
+		return late;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.aggregate.FleetAggregatorMXBean#getRefusedCount()
+	 */
+	@Override
+	public long getRefusedCount() {
+		return refused;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.aggregate.FleetAggregatorMXBean#getMismatchedCount()
+	 */
+	@Override
+	public long getMismatchedCount() {
+		return mismatched;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.aggregate.FleetAggregatorMXBean#getFutureCount()
+	 */
+	@Override
+	public long getFutureCount() {
+		return future;
+	}
+	
+	/**
+	 * Simple out formatted logger
+	 * @param fmt The format of the message
+	 * @param args The message arguments
+	 */
+	public static void log(String fmt, Object...args) {
+		System.out.println(String.format(fmt, args));
+	}
+	
+	/**
+	 * Simple err formatted logger
+	 * @param fmt The format of the message
+	 * @param t The throwable to print stack trace for
+	 * @param args The message arguments
+	 */
+	public static void loge(String fmt, Throwable t, Object...args) {
+		System.err.println(String.format(fmt, args));
+		t.printStackTrace(System.err);
+	}
+}
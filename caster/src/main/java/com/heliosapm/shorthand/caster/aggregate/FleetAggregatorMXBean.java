@@ -0,0 +1,143 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.caster.aggregate;
+
+import javax.management.ObjectName;
+
+import com.heliosapm.shorthand.jmx.MetricTable;
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+
+/**
+ * <p>Title: FleetAggregatorMXBean</p>
+ * <p>Description: JMX interface for the caster's fleet aggregator, serving the merged metrics of the last closed period in the same paged layout as the agent's bulk metric publisher</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.caster.aggregate.FleetAggregatorMXBean</code></p>
+ */
+
+public interface FleetAggregatorMXBean {
+	/** The fleet aggregator JMX ObjectName */
+	public static final ObjectName OBJECT_NAME = JMXHelper.objectName("com.heliosapm.shorthand.caster:service=FleetAggregator");
+	
+	/**
+	 * Returns the number of agents that have sent a name dictionary
+	 * @return the number of agents
+	 */
+	public int getAgentCount();
+	
+	/**
+	 * Returns the number of live agents that reported metrics for the last closed period
+	 * @return the number of reporting agents
+	 */
+	public int getReportingAgentCount();
+	
+	/**
+	 * Returns the number of live agents that reported no metrics for the last closed period
+	 * @return the number of idle agents
+	 */
+	public int getIdleAgentCount();
+	
+	/**
+	 * Returns the number of agents the presence service has detected as down
+	 * @return the number of down agents
+	 */
+	public int getDownAgentCount();
+	
+	/**
+	 * Returns the number of merged metric names
+	 * @return the number of metric names
+	 */
+	public int getMetricNameCount();
+	
+	/**
+	 * Returns the maximum number of merged metric names
+	 * @return the store capacity
+	 */
+	public int getMetricNameCapacity();
+	
+	/**
+	 * Returns the end time of the last closed period
+	 * @return the end time of the last closed period, or -1 if no period has closed
+	 */
+	public long getLastClosedPeriodEnd();
+	
+	/**
+	 * Returns the number of metric packets received
+	 * @return the number of metric packets
+	 */
+	public long getMetricPacketCount();
+	
+	/**
+	 * Returns the number of name dictionary packets received
+	 * @return the number of name dictionary packets
+	 */
+	public long getNamePacketCount();
+	
+	/**
+	 * Returns the number of agent metrics merged
+	 * @return the number of merged metrics
+	 */
+	public long getMergedCount();
+	
+	/**
+	 * Returns the number of agent metrics dropped because their name has not been received
+	 * @return the number of unknown metrics
+	 */
+	public long getUnknownCount();
+	
+	/**
+	 * Returns the number of agent metrics dropped because their period was older than all the kept periods
+	 * @return the number of late metrics
+	 */
+	public long getLateCount();
+	
+	/**
+	 * Returns the number of metric names refused because the store was full
+	 * @return the number of refused names
+	 */
+	public long getRefusedCount();
+	
+	/**
+	 * Returns the number of agent metric names refused because their collector type differs from the one the name was first seen with
+	 * @return the number of mismatched names
+	 */
+	public long getMismatchedCount();
+	
+	/**
+	 * Returns the number of metric packets dropped because their period ended more than one period after the current time
+	 * @return the number of future packets
+	 */
+	public long getFutureCount();
+	
+	/**
+	 * Returns a page of the merged metrics of the last closed period whose names match the passed pattern.
+	 * Each row starts with a <code>JVMS</code> column holding the number of contributing JVMs.
+	 * @param pattern The metric name regex. Null or empty matches all metrics
+	 * @param offset The offset of the first metric to return
+	 * @param limit The maximum number of metrics to return, capped at {@link com.heliosapm.shorthand.jmx.BulkMetricPublisherMXBean#MAX_PAGE_SIZE}
+	 * @return the page of merged metrics
+	 */
+	public MetricTable getMetrics(String pattern, int offset, int limit);
+}
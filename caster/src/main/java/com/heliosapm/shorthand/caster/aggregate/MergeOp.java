@@ -0,0 +1,88 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.caster.aggregate;
+
+/**
+ * <p>Title: MergeOp</p>
+ * <p>Description: Enumerates how a collector sub-metric's values from different JVMs are merged into one fleet value</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.caster.aggregate.MergeOp</code></p>
+ */
+
+public enum MergeOp {
+	/** Values are summed */
+	SUM,
+	/** The lowest value is kept. Unset minimums ({@link Long#MAX_VALUE}) are ignored */
+	MIN,
+	/** The highest value is kept. Unset maximums ({@link Long#MIN_VALUE}) are ignored */
+	MAX,
+	/** Values are weighted by the number of samples they were averaged over, summed and read back as their weighted mean. Unset averages (negative) are ignored */
+	AVG;
+	
+	/**
+	 * Decodes the merge op for the passed collector sub-metric name, defaulting to {@link #SUM}
+	 * @param subName The sub-metric name
+	 * @return the merge op
+	 */
+	public static MergeOp forSubName(String subName) {
+		if(subName==null) return SUM;
+		String name = subName.trim();
+		if("Min".equalsIgnoreCase(name)) return MIN;
+		if("Max".equalsIgnoreCase(name)) return MAX;
+		if("Avg".equalsIgnoreCase(name)) return AVG;
+		return SUM;
+	}
+	
+	/**
+	 * Indicates if the passed value is the unset value of this op's sub-metric and should not be merged
+	 * @param value The value
+	 * @return true if the value should be ignored
+	 */
+	public boolean isUnset(long value) {
+		switch(this) {
+			case MIN: return value==Long.MAX_VALUE;
+			case MAX: return value==Long.MIN_VALUE;
+			case AVG: return value < 0;
+			default: return false;
+		}
+	}
+	
+	/**
+	 * Merges a value into the current merged value
+	 * @param current The current merged value
+	 * @param value The value to merge
+	 * @param first true if this is the first value merged, in which case the current value is ignored
+	 * @return the new merged value
+	 */
+	public long merge(long current, long value, boolean first) {
+		if(first) return value;
+		switch(this) {
+			case MIN: return Math.min(current, value);
+			case MAX: return Math.max(current, value);
+			default: return current + value;
+		}
+	}
+}
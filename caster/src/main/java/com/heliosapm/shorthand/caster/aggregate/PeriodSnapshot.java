@@ -0,0 +1,213 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.caster.aggregate;
+
+import java.util.Arrays;
+
+/**
+ * <p>Title: PeriodSnapshot</p>
+ * <p>Description: An immutable copy of the fleet merged metrics of one closed period, with the averages resolved.
+ * The {@link FleetAggregator} takes a snapshot under its lock and readers render it without holding the lock,
+ * so rendering never stalls the merging of incoming feeds.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.caster.aggregate.PeriodSnapshot</code></p>
+ */
+
+public class PeriodSnapshot {
+	/** The start time of the period */
+	public final long periodStart;
+	/** The end time of the period, or -1 if no period has closed */
+	public final long periodEnd;
+	/** The aggregator's count of changes to closed periods when the snapshot was taken */
+	final long version;
+	/** The collector layouts keyed by layout id */
+	private final CollectorLayout[] layouts;
+	/** The number of metrics */
+	private final int size;
+	/** The metric names */
+	private final String[] names;
+	/** The collector layout id of each metric */
+	private final int[] layoutIds;
+	/** The number of contributing JVMs of each metric */
+	private final int[] contributors;
+	/** The mask of collector ordinals with merged values of each metric */
+	private final int[] present;
+	/** The offset of each metric's first value, with the end offset of the last metric at <code>size</code> */
+	private final int[] valueOffsets;
+	/** The merged values of the present collectors of each metric, in ordinal and sub-metric order */
+	private final long[] values;
+	
+	/**
+	 * Copies the entries of a closed period out of the store. Must be called holding the aggregator's lock.
+	 * @param store The store to copy from
+	 * @param layouts The collector layouts keyed by layout id
+	 * @param periodStart The start time of the period
+	 * @param periodEnd The end time of the period, or -1 for an empty snapshot
+	 * @param version The aggregator's count of changes to closed periods
+	 */
+	PeriodSnapshot(AggregateStore store, CollectorLayout[] layouts, long periodStart, long periodEnd, long version) {
+		this.layouts = layouts;
+		this.periodStart = periodStart;
+		this.periodEnd = periodEnd;
+		this.version = version;
+		final int slots = periodEnd==-1L ? 0 : store.size();
+		names = new String[slots];
+		layoutIds = new int[slots];
+		contributors = new int[slots];
+		present = new int[slots];
+		valueOffsets = new int[slots+1];
+		long[] vals = new long[slots * 4];
+		int rows = 0, valueCount = 0;
+		for(int slot = 0; slot < slots; slot++) {
+			final int entry = store.find(slot, periodEnd);
+			if(entry==-1) continue;
+			final int layoutId = store.layoutId(slot);
+			final CollectorLayout layout = layouts[layoutId];
+			final int mask = store.present(entry);
+			names[rows] = store.name(slot);
+			layoutIds[rows] = layoutId;
+			contributors[rows] = store.contributors(entry);
+			present[rows] = mask;
+			valueOffsets[rows] = valueCount;
+			for(int ordinal = 0; ordinal < AggregateStore.MAX_ORDINALS; ordinal++) {
+				if((mask & (1 << ordinal))==0) continue;
+				final int subCount = layout.subCount(ordinal);
+				if(valueCount + subCount > vals.length) {
+					vals = Arrays.copyOf(vals, Math.max(vals.length * 2, valueCount + subCount));
+				}
+				for(int sub = 0; sub < subCount; sub++) {
+					vals[valueCount++] = store.value(entry, ordinal, sub, layout.op(ordinal, sub));
+				}
+			}
+			rows++;
+		}
+		valueOffsets[rows] = valueCount;
+		size = rows;
+		values = vals;
+	}
+	
+	/**
+	 * Returns the number of metrics in the snapshot
+	 * @return the number of metrics
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the name of a metric
+	 * @param row The metric's row
+	 * @return the metric name
+	 */
+	public String name(int row) {
+		return names[row];
+	}
+	
+	/**
+	 * Returns the collector layout id of a metric
+	 * @param row The metric's row
+	 * @return the layout id
+	 */
+	public int layoutId(int row) {
+		return layoutIds[row];
+	}
+	
+	/**
+	 * Returns the collector layout with the passed id
+	 * @param layoutId The layout id
+	 * @return the collector layout
+	 */
+	public CollectorLayout layout(int layoutId) {
+		return layouts[layoutId];
+	}
+	
+	/**
+	 * Returns the number of JVMs that contributed to a metric
+	 * @param row The metric's row
+	 * @return the number of contributions
+	 */
+	public int contributors(int row) {
+		return contributors[row];
+	}
+	
+	/**
+	 * Returns the mask of collector ordinals with merged values of a metric
+	 * @param row The metric's row
+	 * @return the present mask
+	 */
+	public int present(int row) {
+		return present[row];
+	}
+	
+	/**
+	 * Returns the index of a metric's first value. The values of each present collector follow in ordinal order,
+	 * one per sub-metric of the collector's layout.
+	 * @param row The metric's row
+	 * @return the value index
+	 */
+	public int valueOffset(int row) {
+		return valueOffsets[row];
+	}
+	
+	/**
+	 * Returns a merged value
+	 * @param index The value index
+	 * @return the value
+	 */
+	public long value(int index) {
+		return values[index];
+	}
+	
+	/**
+	 * Returns the merged value of a metric's sub-metric
+	 * @param row The metric's row
+	 * @param ordinal The collector ordinal
+	 * @param sub The sub-metric index
+	 * @return the value, or -1 if the collector has no merged values
+	 */
+	public long value(int row, int ordinal, int sub) {
+		final int mask = present[row];
+		if((mask & (1 << ordinal))==0) return -1L;
+		final CollectorLayout layout = layouts[layoutIds[row]];
+		int index = valueOffsets[row];
+		for(int o = 0; o < ordinal; o++) {
+			if((mask & (1 << o))!=0) index += layout.subCount(o);
+		}
+		return values[index + sub];
+	}
+	
+	/**
+	 * Returns the row of the named metric
+	 * @param name The metric name
+	 * @return the row, or -1 if the metric has no entry in the period
+	 */
+	public int row(String name) {
+		for(int row = 0; row < size; row++) {
+			if(names[row].equals(name)) return row;
+		}
+		return -1;
+	}
+}
@@ -29,17 +29,17 @@ import static com.heliosapm.shorthand.ShorthandProperties.AGENT_BROADCAST_PORT_P
 import static com.heliosapm.shorthand.ShorthandProperties.DEFAULT_AGENT_BROADCAST_NETWORK;
 import static com.heliosapm.shorthand.ShorthandProperties.DEFAULT_AGENT_BROADCAST_PORT;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.FixedRecvByteBufAllocator;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioDatagramChannel;
-import io.netty.handler.logging.LogLevel;
-import io.netty.handler.logging.LoggingHandler;
 import io.netty.util.NetUtil;
 import io.netty.util.concurrent.GlobalEventExecutor;
 
@@ -55,6 +55,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import com.heliosapm.shorthand.ShorthandProperties;
 import com.heliosapm.shorthand.util.ConfigurationHelper;
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
 
 /**
  * <p>Title: BroadcastListener</p>
@@ -81,6 +82,8 @@ public class BroadcastListener implements ThreadFactory {
     private final ExecutorService taskThreadPool;
     /** The request router */
     private final BroadcastListenerRouter router;
+    /** The fixed size datagram receive buffer allocator */
+    private final FixedRecvByteBufAllocator recvAllocator;
 
     /** The channel group of bound channels */
     private final ChannelGroup boundChannels;
@@ -114,6 +117,8 @@ public class BroadcastListener implements ThreadFactory {
         	}
         });
         router = new BroadcastListenerRouter(taskThreadPool);
+        JMXHelper.registerMBean(BroadcastListenerRouterMBean.OBJECT_NAME, router);
+        recvAllocator = new FixedRecvByteBufAllocator(ConfigurationHelper.getIntSystemThenEnvProperty(ShorthandProperties.CASTER_BROADCAST_RECV_SIZE_PROP, ShorthandProperties.DEFAULT_CASTER_BROADCAST_RECV_SIZE));
         boundChannels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
         NetworkInterface nic = null;
         try {
@@ -155,11 +160,12 @@ public class BroadcastListener implements ThreadFactory {
 			        .option(ChannelOption.IP_MULTICAST_ADDR, isa.getAddress())
 			        .option(ChannelOption.SO_REUSEADDR, true)
 			        .option(ChannelOption.IP_MULTICAST_IF, NetUtil.LOOPBACK_IF)
+			        .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+			        .option(ChannelOption.RCVBUF_ALLOCATOR, recvAllocator)
 			        .handler(new ChannelInitializer<Channel>() {
 			            @Override
 			            protected void initChannel(Channel channel) throws Exception {
 			                ChannelPipeline pipeline = channel.pipeline();
-			                pipeline.addLast(new LoggingHandler(BroadcastListener.class, LogLevel.DEBUG));
 			                pipeline.addLast(router);
 			            }
 			        }).localAddress(isa)
@@ -174,11 +180,12 @@ public class BroadcastListener implements ThreadFactory {
 			channel  = bootstrap.group(group)
 	        .channel(NioDatagramChannel.class)        
 	        .option(ChannelOption.SO_BROADCAST, true)
+	        .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+	        .option(ChannelOption.RCVBUF_ALLOCATOR, recvAllocator)
 	        .handler(new ChannelInitializer<Channel>() {
 	            @Override
 	            protected void initChannel(Channel channel) throws Exception {
 	                ChannelPipeline pipeline = channel.pipeline();
-	                pipeline.addLast(new LoggingHandler(BroadcastListener.class, LogLevel.DEBUG));
 	                pipeline.addLast(router);
 	            }
 	        }).localAddress(isa).bind(isa).syncUninterruptibly().channel();
@@ -195,6 +202,14 @@ public class BroadcastListener implements ThreadFactory {
 
 	}
 	
+	/**
+	 * Returns the broadcast router, where metric feed listeners are registered
+	 * @return the broadcast router
+	 */
+	public BroadcastListenerRouter getRouter() {
+		return router;
+	}
+	
 	/**
 	 * Simple out formatted logger
 	 * @param fmt The format of the message
@@ -19,35 +19,88 @@
  * You should have received a copy of the GNU Lesser General Public
  * License along with this software; if not, write to the Free
  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
- * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
  *
  */
 package com.heliosapm.shorthand.caster.broadcast;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.socket.DatagramPacket;
-import io.netty.handler.codec.MessageToMessageDecoder;
 
-import java.util.List;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
-import com.heliosapm.shorthand.broadcast.BroadcastExecutable;
 import com.heliosapm.shorthand.broadcast.BroadcastType;
+import com.heliosapm.shorthand.broadcast.HeartbeatBroadcastPacketHandler.HeartbeatBroadcast;
+import com.heliosapm.shorthand.broadcast.MetricBroadcastPacketHandler.MetricBroadcast;
+import com.heliosapm.shorthand.broadcast.NameDictionaryBroadcastPacketHandler;
+import com.heliosapm.shorthand.broadcast.NameDictionaryBroadcastPacketHandler.NameDictionaryBroadcast;
+import com.heliosapm.shorthand.broadcast.StartupBroadcastPacketHandler;
+import com.heliosapm.shorthand.broadcast.StartupBroadcastPacketHandler.AgentStartupBroadcast;
 
 /**
  * <p>Title: BroadcastListenerRouter</p>
- * <p>Description: </p> 
+ * <p>Description: Decodes agent broadcasts in place on the event loop. Metric packets are decoded into a {@link MetricBroadcast}
+ * kept per event loop thread and delivered to the registered {@link MetricFeedListener}s inline, so the hot path neither allocates
+ * nor switches threads. Presence broadcasts are delivered inline to the registered {@link PresenceListener}s the same way.
+ * Only other control broadcasts, which carry real work, are handed to the task pool.</p> 
  * <p>Company: Helios Development Group LLC</p>
  * @author Whitehead (nwhitehead AT heliosdev DOT org)
  * <p><code>com.heliosapm.shorthand.caster.broadcast.BroadcastListenerRouter</code></p>
  */
 
-
-public class BroadcastListenerRouter extends MessageToMessageDecoder<DatagramPacket> {
+@Sharable
+public class BroadcastListenerRouter extends SimpleChannelInboundHandler<DatagramPacket> implements BroadcastListenerRouterMBean {
+	/** The broadcast types keyed by ordinal */
+	private static final BroadcastType[] TYPES = BroadcastType.values();
+	/** An empty feed listener array */
+	private static final MetricFeedListener[] EMPTY_LISTENERS = {};
+	/** An empty presence listener array */
+	private static final PresenceListener[] EMPTY_PRESENCE_LISTENERS = {};
+	
 	/** The task execution thread pool */
 	private final ExecutorService taskThreadPool;
+	/** The registered metric feed listeners, replaced on each change so delivery can iterate without allocating */
+	private volatile MetricFeedListener[] feedListeners = EMPTY_LISTENERS;
+	/** The registered presence listeners, replaced on each change */
+	private volatile PresenceListener[] presenceListeners = EMPTY_PRESENCE_LISTENERS;
+	/** The re-used metric broadcast of each event loop thread */
+	private final ThreadLocal<MetricBroadcast> metricBroadcasts = new ThreadLocal<MetricBroadcast>() {
+		@Override
+		protected MetricBroadcast initialValue() {
+			return new MetricBroadcast();
+		}
+	};
+	/** The re-used heartbeat of each event loop thread */
+	private final ThreadLocal<HeartbeatBroadcast> heartbeats = new ThreadLocal<HeartbeatBroadcast>() {
+		@Override
+		protected HeartbeatBroadcast initialValue() {
+			return new HeartbeatBroadcast();
+		}
+	};
 	
+	/** The number of received datagrams */
+	private final AtomicLong packets = new AtomicLong();
+	/** The number of received bytes */
+	private final AtomicLong bytes = new AtomicLong();
+	/** The number of delivered feed packets */
+	private final AtomicLong feedPackets = new AtomicLong();
+	/** The number of delivered presence packets */
+	private final AtomicLong presencePackets = new AtomicLong();
+	/** The number of offloaded control packets */
+	private final AtomicLong controlPackets = new AtomicLong();
+	/** The number of datagrams with an unknown type */
+	private final AtomicLong unknownPackets = new AtomicLong();
+	/** The number of datagrams that failed to decode */
+	private final AtomicLong malformedPackets = new AtomicLong();
+	/** The number of feed listener exceptions */
+	private final AtomicLong listenerErrors = new AtomicLong();
 	
 	/**
 	 * Creates a new BroadcastListenerRouter
@@ -58,15 +111,296 @@ public class BroadcastListenerRouter extends MessageToMessageDecoder<DatagramPac
 		this.taskThreadPool = taskThreadPool;
 	}
 
-
+	/**
+	 * {@inheritDoc}
+	 * @see io.netty.channel.SimpleChannelInboundHandler#channelRead0(io.netty.channel.ChannelHandlerContext, java.lang.Object)
+	 */
+	@Override
+	protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) throws Exception {
+		final ByteBuf data = msg.content();
+		final int size = data.readableBytes();
+		packets.incrementAndGet();
+		bytes.addAndGet(size);
+		if(size < 1) {
+			malformedPackets.incrementAndGet();
+			return;
+		}
+		final int msgType = data.getByte(data.readerIndex());
+		if(msgType < 0 || msgType >= TYPES.length) {
+			if(unknownPackets.incrementAndGet()==1) log("Ignoring unknown broadcast type [%s] from [%s]", msgType, msg.sender());
+			return;
+		}
+		final BroadcastType bt = TYPES[msgType];
+		// a pooled buffer's internal nio buffer is cached, so only composite content needs a new one
+		final ByteBuffer content = data.nioBufferCount()==1 ? data.internalNioBuffer(data.readerIndex()+1, size-1) : data.nioBuffer(data.readerIndex()+1, size-1);
+		try {
+			switch(bt) {
+				case METRICS:
+					deliver(metricBroadcasts.get().read(content, msg.sender()));
+					break;
+				case NAMES:
+					deliver(NameDictionaryBroadcastPacketHandler.INSTANCE.unmarshallPacket(content, msg.sender()));
+					break;
+				case HEARTBEAT:
+					deliver(heartbeats.get().read(content, msg.sender()));
+					break;
+				case STARTUP:
+					deliver(StartupBroadcastPacketHandler.INSTANCE.unmarshallPacket(content, msg.sender()));
+					break;
+				default:
+					controlPackets.incrementAndGet();
+					log("Processing Broadcast [%s]", bt.name());
+					taskThreadPool.execute(bt.unmarshallPacket(content, msg.sender()));
+			}
+		} catch (BufferUnderflowException ex) {
+			malformed(bt, msg);
+		} catch (IllegalArgumentException ex) {
+			malformed(bt, msg);
+		}
+	}
+	
+	/**
+	 * Delivers a decoded metric broadcast to the feed listeners
+	 * @param metrics The decoded metric broadcast
+	 */
+	private void deliver(MetricBroadcast metrics) {
+		feedPackets.incrementAndGet();
+		for(MetricFeedListener listener: feedListeners) {
+			try {
+				listener.onMetrics(metrics);
+			} catch (Exception ex) {
+				listenerError(listener, ex);
+			}
+		}
+	}
+	
+	/**
+	 * Delivers a decoded name dictionary broadcast to the feed listeners
+	 * @param names The decoded name dictionary broadcast
+	 */
+	private void deliver(NameDictionaryBroadcast names) {
+		feedPackets.incrementAndGet();
+		for(MetricFeedListener listener: feedListeners) {
+			try {
+				listener.onNameDictionary(names);
+			} catch (Exception ex) {
+				listenerError(listener, ex);
+			}
+		}
+	}
+	
+	/**
+	 * Delivers a decoded heartbeat to the presence listeners
+	 * @param heartbeat The decoded heartbeat
+	 */
+	private void deliver(HeartbeatBroadcast heartbeat) {
+		presencePackets.incrementAndGet();
+		for(PresenceListener listener: presenceListeners) {
+			try {
+				listener.onHeartbeat(heartbeat);
+			} catch (Exception ex) {
+				listenerError(listener, ex);
+			}
+		}
+	}
+	
+	/**
+	 * Delivers a decoded startup broadcast to the presence listeners
+	 * @param startup The decoded startup broadcast
+	 */
+	private void deliver(AgentStartupBroadcast startup) {
+		presencePackets.incrementAndGet();
+		log("Agent startup broadcast [%s]", startup);
+		for(PresenceListener listener: presenceListeners) {
+			try {
+				listener.onStartup(startup);
+			} catch (Exception ex) {
+				listenerError(listener, ex);
+			}
+		}
+	}
+	
+	/**
+	 * Counts a malformed datagram, logging the first one
+	 * @param bt The broadcast type of the datagram
+	 * @param msg The datagram
+	 */
+	private void malformed(BroadcastType bt, DatagramPacket msg) {
+		if(malformedPackets.incrementAndGet()==1) log("Dropping malformed [%s] broadcast from [%s]", bt.name(), msg.sender());
+	}
+	
+	/**
+	 * Counts a listener exception, logging the first one
+	 * @param listener The listener that threw
+	 * @param ex The thrown exception
+	 */
+	private void listenerError(Object listener, Exception ex) {
+		if(listenerErrors.incrementAndGet()==1) {
+			System.err.println(String.format("Broadcast listener [%s] failed", listener));
+			ex.printStackTrace(System.err);
+		}
+	}
+	
+	/**
+	 * Registers a listener on the metric feed
+	 * @param listener The listener to register
+	 */
+	public synchronized void addMetricFeedListener(MetricFeedListener listener) {
+		if(listener==null) return;
+		for(MetricFeedListener registered: feedListeners) {
+			if(registered.equals(listener)) return;
+		}
+		MetricFeedListener[] listeners = Arrays.copyOf(feedListeners, feedListeners.length+1);
+		listeners[listeners.length-1] = listener;
+		feedListeners = listeners;
+	}
+	
+	/**
+	 * Removes a registered metric feed listener
+	 * @param listener The listener to remove
+	 */
+	public synchronized void removeMetricFeedListener(MetricFeedListener listener) {
+		if(listener==null) return;
+		MetricFeedListener[] listeners = new MetricFeedListener[feedListeners.length];
+		int count = 0;
+		for(MetricFeedListener registered: feedListeners) {
+			if(!registered.equals(listener)) listeners[count++] = registered;
+		}
+		if(count!=listeners.length) feedListeners = Arrays.copyOf(listeners, count);
+	}
+	
+	/**
+	 * Registers a listener on the presence broadcasts
+	 * @param listener The listener to register
+	 */
+	public synchronized void addPresenceListener(PresenceListener listener) {
+		if(listener==null) return;
+		for(PresenceListener registered: presenceListeners) {
+			if(registered.equals(listener)) return;
+		}
+		PresenceListener[] listeners = Arrays.copyOf(presenceListeners, presenceListeners.length+1);
+		listeners[listeners.length-1] = listener;
+		presenceListeners = listeners;
+	}
+	
+	/**
+	 * Removes a registered presence listener
+	 * @param listener The listener to remove
+	 */
+	public synchronized void removePresenceListener(PresenceListener listener) {
+		if(listener==null) return;
+		PresenceListener[] listeners = new PresenceListener[presenceListeners.length];
+		int count = 0;
+		for(PresenceListener registered: presenceListeners) {
+			if(!registered.equals(listener)) listeners[count++] = registered;
+		}
+		if(count!=listeners.length) presenceListeners = Arrays.copyOf(listeners, count);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.broadcast.BroadcastListenerRouterMBean#getPacketCount()
+	 */
+	@Override
+	public long getPacketCount() {
+		return packets.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.broadcast.BroadcastListenerRouterMBean#getByteCount()
+	 */
+	@Override
+	public long getByteCount() {
+		return bytes.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.broadcast.BroadcastListenerRouterMBean#getFeedPacketCount()
+	 */
+	@Override
+	public long getFeedPacketCount() {
+		return feedPackets.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.broadcast.BroadcastListenerRouterMBean#getPresencePacketCount()
+	 */
+	@Override
+	public long getPresencePacketCount() {
+		return presencePackets.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.broadcast.BroadcastListenerRouterMBean#getControlPacketCount()
+	 */
+	@Override
+	public long getControlPacketCount() {
+		return controlPackets.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.broadcast.BroadcastListenerRouterMBean#getUnknownPacketCount()
+	 */
+	@Override
+	public long getUnknownPacketCount() {
+		return unknownPackets.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.broadcast.BroadcastListenerRouterMBean#getMalformedPacketCount()
+	 */
+	@Override
+	public long getMalformedPacketCount() {
+		return malformedPackets.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.broadcast.BroadcastListenerRouterMBean#getListenerErrorCount()
+	 */
+	@Override
+	public long getListenerErrorCount() {
+		return listenerErrors.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.broadcast.BroadcastListenerRouterMBean#getMetricFeedListenerCount()
+	 */
+	@Override
+	public int getMetricFeedListenerCount() {
+		return feedListeners.length;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.broadcast.BroadcastListenerRouterMBean#getPresenceListenerCount()
+	 */
+	@Override
+	public int getPresenceListenerCount() {
+		return presenceListeners.length;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.broadcast.BroadcastListenerRouterMBean#reset()
+	 */
 	@Override
-	protected void decode(ChannelHandlerContext ctx, DatagramPacket msg, List<Object> out) throws Exception {
-		ByteBuf data = msg.content();
-		byte msgType = data.readByte();
-		BroadcastType bt = BroadcastType.ORD2ENUM.get((int)msgType);
-		log("Processing Broadcast [%s]", bt.name());
-		BroadcastExecutable exec = bt.unmarshallPacket(data.nioBuffer(), msg.sender());
-		taskThreadPool.execute(exec);
+	public void reset() {
+		packets.set(0);
+		bytes.set(0);
+		feedPackets.set(0);
+		presencePackets.set(0);
+		controlPackets.set(0);
+		unknownPackets.set(0);
+		malformedPackets.set(0);
+		listenerErrors.set(0);
 	}
 	
 	/**
@@ -0,0 +1,107 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.caster.broadcast;
+
+import javax.management.ObjectName;
+
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+
+/**
+ * <p>Title: BroadcastListenerRouterMBean</p>
+ * <p>Description: JMX interface for the caster's broadcast router, exposing the receive and decode counters</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.caster.broadcast.BroadcastListenerRouterMBean</code></p>
+ */
+
+public interface BroadcastListenerRouterMBean {
+	/** The broadcast router JMX ObjectName */
+	public static final ObjectName OBJECT_NAME = JMXHelper.objectName("com.heliosapm.shorthand.caster:service=BroadcastRouter");
+	
+	/**
+	 * Returns the number of datagrams received
+	 * @return the number of datagrams
+	 */
+	public long getPacketCount();
+	
+	/**
+	 * Returns the number of bytes received
+	 * @return the number of bytes
+	 */
+	public long getByteCount();
+	
+	/**
+	 * Returns the number of metric feed packets delivered to the feed listeners
+	 * @return the number of metric feed packets
+	 */
+	public long getFeedPacketCount();
+	
+	/**
+	 * Returns the number of presence packets delivered to the presence listeners
+	 * @return the number of presence packets
+	 */
+	public long getPresencePacketCount();
+	
+	/**
+	 * Returns the number of control packets handed to the task pool
+	 * @return the number of control packets
+	 */
+	public long getControlPacketCount();
+	
+	/**
+	 * Returns the number of datagrams dropped because of an unknown broadcast type
+	 * @return the number of unknown datagrams
+	 */
+	public long getUnknownPacketCount();
+	
+	/**
+	 * Returns the number of datagrams dropped because they could not be decoded
+	 * @return the number of malformed datagrams
+	 */
+	public long getMalformedPacketCount();
+	
+	/**
+	 * Returns the number of exceptions thrown by metric feed listeners
+	 * @return the number of listener exceptions
+	 */
+	public long getListenerErrorCount();
+	
+	/**
+	 * Returns the number of registered metric feed listeners
+	 * @return the number of metric feed listeners
+	 */
+	public int getMetricFeedListenerCount();
+	
+	/**
+	 * Returns the number of registered presence listeners
+	 * @return the number of presence listeners
+	 */
+	public int getPresenceListenerCount();
+	
+	/**
+	 * Resets the counters
+	 */
+	public void reset();
+}
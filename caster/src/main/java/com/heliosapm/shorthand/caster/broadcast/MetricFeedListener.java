@@ -0,0 +1,53 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.caster.broadcast;
+
+import com.heliosapm.shorthand.broadcast.MetricBroadcastPacketHandler.MetricBroadcast;
+import com.heliosapm.shorthand.broadcast.NameDictionaryBroadcastPacketHandler.NameDictionaryBroadcast;
+
+/**
+ * <p>Title: MetricFeedListener</p>
+ * <p>Description: Defines a listener on the metric feed broadcast by shorthand agents on each period close.
+ * Agents identify metrics by name index, so listeners resolve the names from the name dictionary broadcasts,
+ * keyed by the broadcast source address and pid. Callbacks are invoked on the receiving event loop with a
+ * message instance that is re-used for the next packet, so listeners must not block and must copy anything they keep.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.caster.broadcast.MetricFeedListener</code></p>
+ */
+
+public interface MetricFeedListener {
+	/**
+	 * Callback when a name dictionary broadcast is received
+	 * @param names The received name dictionary entries
+	 */
+	public void onNameDictionary(NameDictionaryBroadcast names);
+	
+	/**
+	 * Callback when a closed period metric broadcast is received
+	 * @param metrics The received metrics
+	 */
+	public void onMetrics(MetricBroadcast metrics);
+}
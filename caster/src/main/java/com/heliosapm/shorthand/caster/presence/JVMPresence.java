@@ -0,0 +1,161 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.caster.presence;
+
+/**
+ * <p>Title: JVMPresence</p>
+ * <p>Description: A point in time snapshot of an agent JVM's presence registry entry</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.caster.presence.JVMPresence</code></p>
+ */
+
+public class JVMPresence {
+	/** The JVM's process id */
+	private final int pid;
+	/** The JVM's host address */
+	private final String host;
+	/** The agent's JMXMP port */
+	private final int jmxmpPort;
+	/** The number of live scripts compiled into the JVM, or -1 if no heartbeat has been received */
+	private final int scriptCount;
+	/** The presence state name */
+	private final String state;
+	/** The current phi */
+	private final double phi;
+	/** The timestamp of the first presence broadcast */
+	private final long firstSeen;
+	/** The timestamp of the last presence broadcast */
+	private final long lastSeen;
+	/** The mean heartbeat interval in ms. */
+	private final long meanInterval;
+	
+	/**
+	 * Creates a new JVMPresence
+	 * @param pid The JVM's process id
+	 * @param host The JVM's host address
+	 * @param jmxmpPort The agent's JMXMP port
+	 * @param scriptCount The number of live scripts compiled into the JVM
+	 * @param state The presence state
+	 * @param phi The current phi
+	 * @param firstSeen The timestamp of the first presence broadcast
+	 * @param lastSeen The timestamp of the last presence broadcast
+	 * @param meanInterval The mean heartbeat interval in ms.
+	 */
+	public JVMPresence(int pid, String host, int jmxmpPort, int scriptCount, JVMState state, double phi, long firstSeen, long lastSeen, long meanInterval) {
+		this.pid = pid;
+		this.host = host;
+		this.jmxmpPort = jmxmpPort;
+		this.scriptCount = scriptCount;
+		this.state = state.name();
+		this.phi = phi;
+		this.firstSeen = firstSeen;
+		this.lastSeen = lastSeen;
+		this.meanInterval = meanInterval;
+	}
+
+	/**
+	 * Returns the JVM's process id
+	 * @return the pid
+	 */
+	public int getPid() {
+		return pid;
+	}
+
+	/**
+	 * Returns the JVM's host address
+	 * @return the host address
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * Returns the agent's JMXMP port
+	 * @return the JMXMP port
+	 */
+	public int getJmxmpPort() {
+		return jmxmpPort;
+	}
+
+	/**
+	 * Returns the number of live scripts compiled into the JVM
+	 * @return the script count, or -1 if no heartbeat has been received
+	 */
+	public int getScriptCount() {
+		return scriptCount;
+	}
+
+	/**
+	 * Returns the presence state name
+	 * @return the state name
+	 */
+	public String getState() {
+		return state;
+	}
+
+	/**
+	 * Returns the phi at the time of the snapshot
+	 * @return the phi
+	 */
+	public double getPhi() {
+		return phi;
+	}
+
+	/**
+	 * Returns the timestamp of the first presence broadcast
+	 * @return the first seen timestamp
+	 */
+	public long getFirstSeen() {
+		return firstSeen;
+	}
+
+	/**
+	 * Returns the timestamp of the last presence broadcast
+	 * @return the last seen timestamp
+	 */
+	public long getLastSeen() {
+		return lastSeen;
+	}
+
+	/**
+	 * Returns the mean heartbeat interval in ms.
+	 * @return the mean heartbeat interval
+	 */
+	public long getMeanInterval() {
+		return meanInterval;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("JVMPresence [").append(pid).append("@").append(host)
+				.append(", jmxmpPort=").append(jmxmpPort)
+				.append(", scripts=").append(scriptCount)
+				.append(", state=").append(state)
+				.append(", phi=").append(phi).append("]");
+		return builder.toString();
+	}
+}
@@ -19,36 +19,133 @@
  * You should have received a copy of the GNU Lesser General Public
  * License along with this software; if not, write to the Free
  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
- * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
  *
  */
 package com.heliosapm.shorthand.caster.presence;
 
+import gnu.trove.map.hash.TLongIntHashMap;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanNotificationInfo;
+import javax.management.Notification;
+import javax.management.NotificationBroadcasterSupport;
+
+import com.heliosapm.shorthand.ShorthandProperties;
+import com.heliosapm.shorthand.broadcast.HeartbeatBroadcastPacketHandler.HeartbeatBroadcast;
+import com.heliosapm.shorthand.broadcast.StartupBroadcastPacketHandler.AgentStartupBroadcast;
+import com.heliosapm.shorthand.caster.broadcast.PresenceListener;
+import com.heliosapm.shorthand.util.ConfigurationHelper;
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
 
 /**
- * <p>Title: JMVPresenceService</p>
- * <p>Description: </p> 
+ * <p>Title: JVMPresenceService</p>
+ * <p>Description: Tracks the agent JVMs broadcasting on the segment from their startup and heartbeat broadcasts, so other services can tell
+ * a JVM with nothing to report from a dead one without polling it. Liveness is judged by a phi accrual failure detector: the heartbeat 
+ * inter-arrival times of each JVM are tracked as an exponentially weighted mean and variance, and phi is the negative log10 of the probability
+ * that a heartbeat is still on its way given the time since the last one. A JVM is suspect at half the phi threshold and down at the threshold,
+ * and down JVMs are dropped from the registry once expired.</p>
+ * <p>The registry is held in parallel primitive arrays indexed through a primitive map of agent keys, so heartbeats, which are delivered on 
+ * the receiving event loop, update it without allocating.</p> 
  * <p>Company: Helios Development Group LLC</p>
  * @author Whitehead (nwhitehead AT heliosdev DOT org)
- * <p><code>com.heliosapm.shorthand.caster.presence.JMVPresenceService</code></p>
+ * <p><code>com.heliosapm.shorthand.caster.presence.JVMPresenceService</code></p>
  */
 
-public class JVMPresenceService {
+public class JVMPresenceService extends NotificationBroadcasterSupport implements PresenceListener, JVMPresenceServiceMXBean, Runnable {
 	/** The singleton instance */	
 	private static volatile JVMPresenceService instance = null;
 	/** The singleton instance ctor lock */
 	private static final Object lock = new Object();
+	
+	/** The notification type sent when a JVM joins or comes back up */
+	public static final String NOTIF_UP = "shorthand.caster.presence.up";
+	/** The notification type sent when a JVM becomes suspect */
+	public static final String NOTIF_SUSPECT = "shorthand.caster.presence.suspect";
+	/** The notification type sent when a JVM is considered dead */
+	public static final String NOTIF_DOWN = "shorthand.caster.presence.down";
+	/** The heartbeat interval assumed for JVMs that have only sent a startup broadcast */
+	public static final int DEFAULT_INTERVAL = ShorthandProperties.DEFAULT_BROADCAST_HEARTBEAT;
+	/** The weight of a new inter-arrival sample in the mean and variance */
+	public static final double ALPHA = 0.1d;
+	/** The failure detector sweep period in ms. */
+	public static final long SWEEP_PERIOD = 1000L;
+	
+	/** The sweep thread factory */
+	private static final ThreadFactory SWEEP_THREAD_FACTORY = new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "JVMPresenceSweepThread");
+			t.setDaemon(true);
+			return t;
+		}
+	};
+	
+	private static final MBeanNotificationInfo[] NOTIFS = new MBeanNotificationInfo[]{
+		new MBeanNotificationInfo(new String[]{NOTIF_UP, NOTIF_SUSPECT, NOTIF_DOWN}, Notification.class.getName(), "Notification indicating a change in an agent JVM's presence state")
+	};
+	
+	/** The registry slots keyed by agent key */
+	protected final TLongIntHashMap slots = new TLongIntHashMap(64, 0.5f, -1L, -1);
+	/** The number of registered JVMs */
+	protected int size = 0;
+	/** The agent keys */
+	protected long[] keys = new long[16];
+	/** The process ids */
+	protected int[] pids = new int[16];
+	/** The host addresses */
+	protected InetAddress[] hosts = new InetAddress[16];
+	/** The JMXMP ports */
+	protected int[] jmxmpPorts = new int[16];
+	/** The live compiled script counts */
+	protected int[] scriptCounts = new int[16];
+	/** The last heartbeat sequences */
+	protected int[] sequences = new int[16];
+	/** The first seen timestamps */
+	protected long[] firstSeen = new long[16];
+	/** The last seen timestamps */
+	protected long[] lastSeen = new long[16];
+	/** The mean heartbeat inter-arrival times in ms. */
+	protected double[] means = new double[16];
+	/** The heartbeat inter-arrival time variances */
+	protected double[] variances = new double[16];
+	/** The presence state ordinals */
+	protected byte[] states = new byte[16];
+	
+	/** The phi at which a JVM is considered dead */
+	protected volatile double phiThreshold;
+	/** The time in ms. after which a down JVM is dropped */
+	protected final long expiry;
+	/** The failure detector sweep scheduler */
+	protected final ScheduledExecutorService scheduler;
+	/** The heartbeat counter */
+	protected final AtomicLong heartbeatCount = new AtomicLong();
+	/** The startup counter */
+	protected final AtomicLong startupCount = new AtomicLong();
+	/** The notification serial */
+	protected final AtomicLong notificationSerial = new AtomicLong();
 
 	/**
-	 * Returns the service singleton
-	 * @return the compiler singleton
+	 * Returns the service singleton, registering it in JMX and starting the failure detector on first call
+	 * @return the service singleton
 	 */
 	public static final JVMPresenceService getInstance() {
 		if(instance==null) {
 			synchronized(lock) {
 				if(instance==null) {
-					instance = new JVMPresenceService();
+					JVMPresenceService service = new JVMPresenceService(
+							ConfigurationHelper.getFloatSystemThenEnvProperty(ShorthandProperties.CASTER_PRESENCE_PHI_PROP, ShorthandProperties.DEFAULT_CASTER_PRESENCE_PHI),
+							ConfigurationHelper.getLongSystemThenEnvProperty(ShorthandProperties.CASTER_PRESENCE_EXPIRY_PROP, ShorthandProperties.DEFAULT_CASTER_PRESENCE_EXPIRY));
+					JMXHelper.registerMBean(OBJECT_NAME, service);
+					instance = service;
 				}
 			}
 		}
@@ -60,12 +157,468 @@ public class JVMPresenceService {
 	}
 	
 	/**
-	 * Creates a new JMVPresenceService
+	 * Creates a new JVMPresenceService
+	 * @param phiThreshold The phi at which a JVM is considered dead
+	 * @param expiry The time in ms. after which a down JVM is dropped
+	 */
+	private JVMPresenceService(double phiThreshold, long expiry) {
+		this(Executors.newSingleThreadScheduledExecutor(SWEEP_THREAD_FACTORY), phiThreshold, expiry);
+	}
+	
+	/**
+	 * Creates a new JVMPresenceService
+	 * @param scheduler The sweep scheduler, which also delivers the notifications off the event loop
+	 * @param phiThreshold The phi at which a JVM is considered dead
+	 * @param expiry The time in ms. after which a down JVM is dropped
+	 */
+	JVMPresenceService(ScheduledExecutorService scheduler, double phiThreshold, long expiry) {
+		super(scheduler, NOTIFS);
+		this.scheduler = scheduler;
+		this.phiThreshold = phiThreshold;
+		this.expiry = expiry;
+		scheduler.scheduleWithFixedDelay(this, SWEEP_PERIOD, SWEEP_PERIOD, TimeUnit.MILLISECONDS);
+		log("\n\t==================\n\tStarted JVMPresenceService. Phi Threshold [%s] Expiry [%s ms]\n\t==================", phiThreshold, expiry);
+	}
+	
+	/**
+	 * Computes the key of an agent JVM, the host address in the high int and the pid in the low int
+	 * @param host The agent's host address
+	 * @param pid The agent's process id
+	 * @return the agent key
+	 */
+	public static long agentKey(InetAddress host, int pid) {
+		// An IPv4 address hash code is the address
+		int address = host==null ? 0 : host.hashCode();
+		return ((long)address << 32) | (pid & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Computes the phi of a heartbeat arrival, approximating the normal distribution of the inter-arrival times with a logistic function
+	 * @param elapsed The time in ms. since the last heartbeat
+	 * @param mean The mean inter-arrival time in ms.
+	 * @param stdDev The inter-arrival time standard deviation in ms.
+	 * @return the phi
+	 */
+	public static double phi(long elapsed, double mean, double stdDev) {
+		double y = (elapsed - mean) / stdDev;
+		double e = Math.exp(-y * (1.5976d + 0.070566d * y * y));
+		if(elapsed > mean) return -Math.log10(e / (1.0d + e));
+		return -Math.log10(1.0d - 1.0d / (1.0d + e));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.broadcast.PresenceListener#onStartup(com.heliosapm.shorthand.broadcast.StartupBroadcastPacketHandler.AgentStartupBroadcast)
+	 */
+	@Override
+	public void onStartup(AgentStartupBroadcast startup) {
+		startupCount.incrementAndGet();
+		Notification notification = null;
+		synchronized(this) {
+			final long now = System.currentTimeMillis();
+			final long key = agentKey(startup.jmxmpHost, startup.pid);
+			int slot = slots.get(key);
+			if(slot==-1) {
+				slot = register(key, startup.pid, startup.jmxmpHost, now);
+				notification = notification(slot, NOTIF_UP, "JVM [%s] started");
+				log("%s", notification.getMessage());
+			} else if(states[slot]!=JVMState.UP.ordinal()) {
+				notification = transition(slot, JVMState.UP, 0d);
+			}
+			jmxmpPorts[slot] = startup.jmxmpPort;
+			// a startup restarts the heartbeat sequence
+			sequences[slot] = 0;
+			lastSeen[slot] = now;
+		}
+		if(notification!=null) sendNotification(notification);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.broadcast.PresenceListener#onHeartbeat(com.heliosapm.shorthand.broadcast.HeartbeatBroadcastPacketHandler.HeartbeatBroadcast)
+	 */
+	@Override
+	public void onHeartbeat(HeartbeatBroadcast heartbeat) {
+		onHeartbeat(heartbeat, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Registers a heartbeat and samples its inter-arrival time
+	 * @param heartbeat The heartbeat
+	 * @param now The arrival time of the heartbeat
+	 */
+	protected void onHeartbeat(HeartbeatBroadcast heartbeat, long now) {
+		heartbeatCount.incrementAndGet();
+		Notification notification = null;
+		synchronized(this) {
+			final InetAddress host = heartbeat.source==null ? null : heartbeat.source.getAddress();
+			final long key = agentKey(host, heartbeat.pid);
+			int slot = slots.get(key);
+			if(slot==-1) {
+				slot = register(key, heartbeat.pid, host, now);
+				means[slot] = heartbeat.interval;
+				variances[slot] = initialVariance(heartbeat.interval);
+				notification = notification(slot, NOTIF_UP, "JVM [%s] joined");
+				log("%s", notification.getMessage());
+			} else {
+				final int gap = heartbeat.sequence - sequences[slot];
+				if(gap > 0 && sequences[slot] > 0) {
+					// a lost heartbeat stretches the arrival, so the sample is spread over the gap
+					sample(slot, (double)(now - lastSeen[slot]) / gap);
+				} else if(gap <= 0) {
+					// the agent restarted its sequence, so its history no longer applies
+					means[slot] = heartbeat.interval;
+					variances[slot] = initialVariance(heartbeat.interval);
+				}
+				if(states[slot]!=JVMState.UP.ordinal()) notification = transition(slot, JVMState.UP, 0d);
+			}
+			jmxmpPorts[slot] = heartbeat.jmxmpPort;
+			scriptCounts[slot] = heartbeat.scriptCount;
+			sequences[slot] = heartbeat.sequence;
+			lastSeen[slot] = now;
+		}
+		if(notification!=null) sendNotification(notification);
+	}
+	
+	/**
+	 * Sweeps the registry, updating the state of late JVMs and dropping expired ones
+	 * {@inheritDoc}
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		try {
+			sweep(System.currentTimeMillis());
+		} catch (Exception ex) {
+			// an exception would cancel the sweep schedule
+			loge("JVM presence sweep failed", ex);
+		}
+	}
+	
+	/**
+	 * Updates the state of late JVMs and drops expired ones
+	 * @param now The time of the sweep
+	 */
+	protected void sweep(long now) {
+		Notification[] notifications = null;
+		int notificationCount = 0;
+		synchronized(this) {
+			final double threshold = phiThreshold;
+			for(int slot = size-1; slot >= 0; slot--) {
+				if(states[slot]==JVMState.DOWN.ordinal()) {
+					if(now - lastSeen[slot] > expiry) {
+						log("Dropping expired JVM [%s@%s]", pids[slot], address(slot));
+						remove(slot);
+					}
+					continue;
+				}
+				double phi = phi(slot, now);
+				JVMState state = phi >= threshold ? JVMState.DOWN : phi >= threshold/2 ? JVMState.SUSPECT : JVMState.UP;
+				if(state.ordinal()!=states[slot]) {
+					if(notifications==null) notifications = new Notification[size];
+					notifications[notificationCount++] = transition(slot, state, phi);
+				}
+			}
+		}
+		for(int i = 0; i < notificationCount; i++) {
+			sendNotification(notifications[i]);
+		}
+	}
+	
+	/**
+	 * Returns the phi of an agent JVM
+	 * @param key The agent key
+	 * @param now The time to compute the phi at
+	 * @return the phi, or -1 if the JVM is not registered
+	 */
+	public synchronized double phiOf(long key, long now) {
+		int slot = slots.get(key);
+		return slot==-1 ? -1d : phi(slot, now);
+	}
+	
+	/**
+	 * Returns the presence state of an agent JVM
+	 * @param key The agent key
+	 * @return the state, or null if the JVM is not registered
+	 */
+	public synchronized JVMState state(long key) {
+		int slot = slots.get(key);
+		return slot==-1 ? null : JVMState.forOrdinal(states[slot]);
+	}
+	
+	/**
+	 * Returns the presence state of an agent JVM
+	 * @param source The agent's address
+	 * @param pid The agent's process id
+	 * @return the state, or null if the JVM is not registered
+	 */
+	public JVMState state(InetSocketAddress source, int pid) {
+		return state(agentKey(source==null ? null : source.getAddress(), pid));
+	}
+	
+	/**
+	 * Returns the keys of the registered JVMs in the passed state
+	 * @param state The state to match
+	 * @return the matching agent keys
+	 */
+	public synchronized long[] keys(JVMState state) {
+		long[] matched = new long[size];
+		int count = 0;
+		for(int slot = 0; slot < size; slot++) {
+			if(states[slot]==state.ordinal()) matched[count++] = keys[slot];
+		}
+		return Arrays.copyOf(matched, count);
+	}
+	
+	/**
+	 * Counts the registered JVMs in the passed state
+	 * @param state The state to match
+	 * @return the number of JVMs in the state
+	 */
+	public synchronized int count(JVMState state) {
+		int count = 0;
+		for(int slot = 0; slot < size; slot++) {
+			if(states[slot]==state.ordinal()) count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Adds a JVM to the registry
+	 * @param key The agent key
+	 * @param pid The process id
+	 * @param host The host address
+	 * @param now The current time
+	 * @return the assigned slot
 	 */
-	private JVMPresenceService() {
-		log("\n\t==================\n\tStarting JVMPresenceService\n\t==================");
+	protected int register(long key, int pid, InetAddress host, long now) {
+		if(size==keys.length) grow();
+		final int slot = size++;
+		keys[slot] = key;
+		pids[slot] = pid;
+		hosts[slot] = host;
+		jmxmpPorts[slot] = -1;
+		scriptCounts[slot] = -1;
+		sequences[slot] = 0;
+		firstSeen[slot] = now;
+		lastSeen[slot] = now;
+		means[slot] = DEFAULT_INTERVAL;
+		variances[slot] = initialVariance(DEFAULT_INTERVAL);
+		states[slot] = (byte)JVMState.UP.ordinal();
+		slots.put(key, slot);
+		return slot;
 	}
 	
+	/**
+	 * Removes a JVM from the registry, moving the last entry into its slot
+	 * @param slot The slot to remove
+	 */
+	protected void remove(int slot) {
+		slots.remove(keys[slot]);
+		final int last = --size;
+		if(slot!=last) {
+			keys[slot] = keys[last];
+			pids[slot] = pids[last];
+			hosts[slot] = hosts[last];
+			jmxmpPorts[slot] = jmxmpPorts[last];
+			scriptCounts[slot] = scriptCounts[last];
+			sequences[slot] = sequences[last];
+			firstSeen[slot] = firstSeen[last];
+			lastSeen[slot] = lastSeen[last];
+			means[slot] = means[last];
+			variances[slot] = variances[last];
+			states[slot] = states[last];
+			slots.put(keys[slot], slot);
+		}
+		hosts[last] = null;
+	}
+	
+	/**
+	 * Doubles the capacity of the registry arrays
+	 */
+	protected void grow() {
+		final int capacity = keys.length * 2;
+		keys = Arrays.copyOf(keys, capacity);
+		pids = Arrays.copyOf(pids, capacity);
+		hosts = Arrays.copyOf(hosts, capacity);
+		jmxmpPorts = Arrays.copyOf(jmxmpPorts, capacity);
+		scriptCounts = Arrays.copyOf(scriptCounts, capacity);
+		sequences = Arrays.copyOf(sequences, capacity);
+		firstSeen = Arrays.copyOf(firstSeen, capacity);
+		lastSeen = Arrays.copyOf(lastSeen, capacity);
+		means = Arrays.copyOf(means, capacity);
+		variances = Arrays.copyOf(variances, capacity);
+		states = Arrays.copyOf(states, capacity);
+	}
+	
+	/**
+	 * Folds a heartbeat inter-arrival time into a JVM's mean and variance
+	 * @param slot The JVM's slot
+	 * @param interval The inter-arrival time in ms.
+	 */
+	protected void sample(int slot, double interval) {
+		final double diff = interval - means[slot];
+		means[slot] += ALPHA * diff;
+		variances[slot] = (1d - ALPHA) * (variances[slot] + ALPHA * diff * diff);
+	}
+	
+	/**
+	 * Computes the current phi of a JVM. The standard deviation is floored at a quarter of the mean 
+	 * so a very regular sender is not declared dead on the first slightly late heartbeat.
+	 * @param slot The JVM's slot
+	 * @param now The current time
+	 * @return the phi
+	 */
+	protected double phi(int slot, long now) {
+		final double mean = means[slot];
+		return phi(now - lastSeen[slot], mean, Math.max(Math.sqrt(variances[slot]), mean / 4d));
+	}
+	
+	/**
+	 * Returns the initial inter-arrival variance for the passed heartbeat interval
+	 * @param interval The heartbeat interval in ms.
+	 * @return the initial variance
+	 */
+	protected static double initialVariance(int interval) {
+		final double stdDev = interval / 4d;
+		return stdDev * stdDev;
+	}
+	
+	/**
+	 * Changes the state of a JVM
+	 * @param slot The JVM's slot
+	 * @param state The new state
+	 * @param phi The phi that caused the change
+	 * @return the notification to send once the registry lock is released
+	 */
+	protected Notification transition(int slot, JVMState state, double phi) {
+		states[slot] = (byte)state.ordinal();
+		String type = state==JVMState.UP ? NOTIF_UP : state==JVMState.SUSPECT ? NOTIF_SUSPECT : NOTIF_DOWN;
+		Notification notification = notification(slot, type, "JVM [%s] is " + state.name() + (phi > 0d ? String.format(" (phi=%.2f)", phi) : ""));
+		log("%s", notification.getMessage());
+		return notification;
+	}
+	
+	/**
+	 * Creates a presence notification with a snapshot of the JVM as the user data
+	 * @param slot The JVM's slot
+	 * @param type The notification type
+	 * @param fmt The message format, taking the JVM's <code>pid@host</code> as its only argument
+	 * @return the notification
+	 */
+	protected Notification notification(int slot, String type, String fmt) {
+		Notification notification = new Notification(type, OBJECT_NAME, notificationSerial.incrementAndGet(), System.currentTimeMillis(), String.format(fmt, pids[slot] + "@" + address(slot)));
+		notification.setUserData(snapshot(slot, System.currentTimeMillis()));
+		return notification;
+	}
+	
+	/**
+	 * Returns a snapshot of a registered JVM
+	 * @param slot The JVM's slot
+	 * @param now The current time
+	 * @return the snapshot
+	 */
+	protected JVMPresence snapshot(int slot, long now) {
+		return new JVMPresence(pids[slot], address(slot), jmxmpPorts[slot], scriptCounts[slot], JVMState.forOrdinal(states[slot]), 
+				phi(slot, now), firstSeen[slot], lastSeen[slot], (long)means[slot]);
+	}
+	
+	/**
+	 * Returns the host address of a registered JVM
+	 * @param slot The JVM's slot
+	 * @return the host address
+	 */
+	protected String address(int slot) {
+		return hosts[slot]==null ? "unknown" : hosts[slot].getHostAddress();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.presence.JVMPresenceServiceMXBean#getJVMCount()
+	 */
+	@Override
+	public synchronized int getJVMCount() {
+		return size;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.presence.JVMPresenceServiceMXBean#getUpCount()
+	 */
+	@Override
+	public int getUpCount() {
+		return count(JVMState.UP);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.presence.JVMPresenceServiceMXBean#getSuspectCount()
+	 */
+	@Override
+	public int getSuspectCount() {
+		return count(JVMState.SUSPECT);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.presence.JVMPresenceServiceMXBean#getDownCount()
+	 */
+	@Override
+	public int getDownCount() {
+		return count(JVMState.DOWN);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.presence.JVMPresenceServiceMXBean#getHeartbeatCount()
+	 */
+	@Override
+	public long getHeartbeatCount() {
+		return heartbeatCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.presence.JVMPresenceServiceMXBean#getStartupCount()
+	 */
+	@Override
+	public long getStartupCount() {
+		return startupCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.presence.JVMPresenceServiceMXBean#getPhiThreshold()
+	 */
+	@Override
+	public double getPhiThreshold() {
+		return phiThreshold;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.presence.JVMPresenceServiceMXBean#setPhiThreshold(double)
+	 */
+	@Override
+	public void setPhiThreshold(double threshold) {
+		if(threshold <= 0d) throw new IllegalArgumentException("The phi threshold [" + threshold + "] must be positive");
+		phiThreshold = threshold;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.shorthand.caster.presence.JVMPresenceServiceMXBean#getJVMs()
+	 */
+	@Override
+	public synchronized JVMPresence[] getJVMs() {
+		final long now = System.currentTimeMillis();
+		JVMPresence[] jvms = new JVMPresence[size];
+		for(int slot = 0; slot < size; slot++) {
+			jvms[slot] = snapshot(slot, now);
+		}
+		return jvms;
+	}
+
 	/**
 	 * Simple out formatted logger
 	 * @param fmt The format of the message
@@ -94,6 +647,4 @@ public class JVMPresenceService {
 		System.err.println(String.format(fmt, args));
 		t.printStackTrace(System.err);
 	}
-	
-
 }
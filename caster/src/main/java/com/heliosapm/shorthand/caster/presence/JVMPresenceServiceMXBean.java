@@ -0,0 +1,96 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.caster.presence;
+
+import javax.management.ObjectName;
+
+import com.heliosapm.shorthand.util.jmx.JMXHelper;
+
+/**
+ * <p>Title: JVMPresenceServiceMXBean</p>
+ * <p>Description: JMX interface for the caster's agent JVM presence registry</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.caster.presence.JVMPresenceServiceMXBean</code></p>
+ */
+
+public interface JVMPresenceServiceMXBean {
+	/** The presence service JMX ObjectName */
+	public static final ObjectName OBJECT_NAME = JMXHelper.objectName("com.heliosapm.shorthand.caster:service=JVMPresence");
+	
+	/**
+	 * Returns the number of registered JVMs
+	 * @return the number of registered JVMs
+	 */
+	public int getJVMCount();
+	
+	/**
+	 * Returns the number of JVMs that are up
+	 * @return the number of up JVMs
+	 */
+	public int getUpCount();
+	
+	/**
+	 * Returns the number of JVMs that are suspected of having failed
+	 * @return the number of suspect JVMs
+	 */
+	public int getSuspectCount();
+	
+	/**
+	 * Returns the number of JVMs that are considered dead
+	 * @return the number of down JVMs
+	 */
+	public int getDownCount();
+	
+	/**
+	 * Returns the number of heartbeats received
+	 * @return the number of heartbeats
+	 */
+	public long getHeartbeatCount();
+	
+	/**
+	 * Returns the number of startup broadcasts received
+	 * @return the number of startup broadcasts
+	 */
+	public long getStartupCount();
+	
+	/**
+	 * Returns the phi at which a JVM is considered dead
+	 * @return the phi failure threshold
+	 */
+	public double getPhiThreshold();
+	
+	/**
+	 * Sets the phi at which a JVM is considered dead
+	 * @param threshold the phi failure threshold
+	 */
+	public void setPhiThreshold(double threshold);
+	
+	/**
+	 * Returns a snapshot of all the registered JVMs
+	 * @return the registered JVMs
+	 */
+	public JVMPresence[] getJVMs();
+}
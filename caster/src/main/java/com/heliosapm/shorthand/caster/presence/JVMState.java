@@ -0,0 +1,62 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.caster.presence;
+
+/**
+ * <p>Title: JVMState</p>
+ * <p>Description: Enumerates the presence states of an agent JVM as seen by the caster's failure detector</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.caster.presence.JVMState</code></p>
+ */
+
+public enum JVMState {
+	/** Heartbeats are arriving as expected */
+	UP,
+	/** Heartbeats are late, with a phi of at least half the failure threshold */
+	SUSPECT,
+	/** Heartbeats are late past the failure threshold, so the JVM is considered dead */
+	DOWN;
+	
+	/** The members keyed by ordinal */
+	private static final JVMState[] ORD2ENUM = values();
+	
+	/**
+	 * Decodes the passed ordinal to a JVMState
+	 * @param ordinal The ordinal to decode
+	 * @return the decoded JVMState
+	 */
+	public static JVMState forOrdinal(int ordinal) {
+		return ORD2ENUM[ordinal];
+	}
+	
+	/**
+	 * Indicates if a JVM in this state is considered alive
+	 * @return true if alive, false if dead
+	 */
+	public boolean isAlive() {
+		return this!=DOWN;
+	}
+}
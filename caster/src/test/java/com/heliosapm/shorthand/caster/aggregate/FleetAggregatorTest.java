@@ -0,0 +1,254 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.caster.aggregate;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.heliosapm.shorthand.broadcast.MetricBroadcastPacketHandler;
+import com.heliosapm.shorthand.broadcast.MetricBroadcastPacketHandler.MetricBroadcast;
+import com.heliosapm.shorthand.broadcast.NameDictionaryBroadcastPacketHandler.NameDictionaryBroadcast;
+import com.heliosapm.shorthand.broadcast.VarInt;
+import com.heliosapm.shorthand.collectors.MethodInterceptor;
+
+/**
+ * <p>Title: FleetAggregatorTest</p>
+ * <p>Description: Tests the fleet merge math and the alignment of agent periods</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.caster.aggregate.FleetAggregatorTest</code></p>
+ */
+
+public class FleetAggregatorTest extends Assert {
+	/** The aggregation period */
+	public static final long PERIOD = 15000L;
+	/** The merged metric name */
+	public static final String METRIC = "fleet/test/metric";
+	/** The elapsed time collector ordinal */
+	public static final int ELAPSED = MethodInterceptor.ELAPSED.ordinal();
+	/** The invocation count collector ordinal */
+	public static final int INVOCATIONS = MethodInterceptor.INVOCATION_COUNT.ordinal();
+	
+	/** The store file */
+	protected File file;
+	/** The store under test */
+	protected AggregateStore store;
+	/** The aggregator under test */
+	protected FleetAggregator aggregator;
+	
+	/**
+	 * Creates a store and aggregator keeping two periods
+	 * @throws Exception thrown on any error
+	 */
+	@Before
+	public void createAggregator() throws Exception {
+		file = File.createTempFile("fleet-aggregator-test", ".store");
+		store = new AggregateStore(file, 16, 2);
+		aggregator = new FleetAggregator(store, PERIOD);
+	}
+	
+	/**
+	 * Closes and deletes the store
+	 */
+	@After
+	public void closeAggregator() {
+		store.close();
+		file.delete();
+	}
+	
+	/**
+	 * Averages are weighted by the agents' invocation counts, counts are summed and the extremes are kept
+	 */
+	@Test
+	public void testWeightedMerge() {
+		dictionary(1);
+		dictionary(2);
+		aggregator.onMetrics(elapsed(1, 30000L, 10, 100, 40, 1));
+		aggregator.onMetrics(elapsed(2, 30000L, 20, 300, 80, 3));
+		aggregator.onMetrics(elapsed(1, 45000L, 1, 1, 1, 1));
+		PeriodSnapshot snapshot = aggregator.snapshot();
+		assertEquals("Unexpected period end", 30000L, snapshot.periodEnd);
+		assertEquals("Unexpected period start", 15000L, snapshot.periodStart);
+		int row = snapshot.row(METRIC);
+		assertEquals("Unexpected contributors", 2, snapshot.contributors(row));
+		assertEquals("Unexpected min", 10L, snapshot.value(row, ELAPSED, 0));
+		assertEquals("Unexpected max", 300L, snapshot.value(row, ELAPSED, 1));
+		// (40 x 1 + 80 x 3) / 4, where the mean of the JVM averages would be 60
+		assertEquals("Unexpected avg", 70L, snapshot.value(row, ELAPSED, 2));
+		assertEquals("Unexpected invocations", 4L, snapshot.value(row, INVOCATIONS, 0));
+	}
+	
+	/**
+	 * A JVM with no invocations reports unset values, which leave the merged values of the other JVMs unchanged
+	 */
+	@Test
+	public void testUnsetValues() {
+		dictionary(1);
+		dictionary(2);
+		aggregator.onMetrics(elapsed(1, 30000L, 10, 100, 40, 5));
+		aggregator.onMetrics(elapsed(2, 30000L, Long.MAX_VALUE, Long.MIN_VALUE, -1L, 0));
+		aggregator.onMetrics(elapsed(1, 45000L, 1, 1, 1, 1));
+		PeriodSnapshot snapshot = aggregator.snapshot();
+		int row = snapshot.row(METRIC);
+		assertEquals("Unexpected contributors", 2, snapshot.contributors(row));
+		assertEquals("Unexpected min", 10L, snapshot.value(row, ELAPSED, 0));
+		assertEquals("Unexpected max", 100L, snapshot.value(row, ELAPSED, 1));
+		assertEquals("Unexpected avg", 40L, snapshot.value(row, ELAPSED, 2));
+		assertEquals("Unexpected invocations", 5L, snapshot.value(row, INVOCATIONS, 0));
+	}
+	
+	/**
+	 * Agent period ends are rounded to the nearest aggregation period, so skewed agent clocks merge into the same period
+	 */
+	@Test
+	public void testPeriodAlignment() {
+		assertEquals("Unexpected alignment", 30000L, aggregator.align(30000L));
+		assertEquals("Unexpected alignment", 30000L, aggregator.align(29990L));
+		assertEquals("Unexpected alignment", 30000L, aggregator.align(22500L));
+		assertEquals("Unexpected alignment", 30000L, aggregator.align(37499L));
+		assertEquals("Unexpected alignment", 45000L, aggregator.align(37500L));
+		dictionary(1);
+		dictionary(2);
+		aggregator.onMetrics(elapsed(1, 29990L, 10, 10, 10, 1));
+		aggregator.onMetrics(elapsed(2, 30020L, 20, 20, 20, 1));
+		aggregator.onMetrics(elapsed(1, 44995L, 1, 1, 1, 1));
+		assertEquals("Unexpected closed period", 30000L, aggregator.getLastClosedPeriodEnd());
+		PeriodSnapshot snapshot = aggregator.snapshot();
+		int row = snapshot.row(METRIC);
+		assertEquals("Unexpected contributors", 2, snapshot.contributors(row));
+		assertEquals("Unexpected invocations", 2L, snapshot.value(row, INVOCATIONS, 0));
+		// Older than both kept periods
+		aggregator.onMetrics(elapsed(2, 15000L, 1, 1, 1, 1));
+		assertEquals("Unexpected late count", 1L, aggregator.getLateCount());
+	}
+	
+	/**
+	 * A late contribution to the closed period replaces the snapshot, leaving snapshots already handed out unchanged
+	 */
+	@Test
+	public void testSnapshotIsolation() {
+		dictionary(1);
+		dictionary(2);
+		aggregator.onMetrics(elapsed(1, 30000L, 10, 10, 10, 1));
+		aggregator.onMetrics(elapsed(1, 45000L, 1, 1, 1, 1));
+		PeriodSnapshot first = aggregator.snapshot();
+		assertSame("Snapshot was not re-used", first, aggregator.snapshot());
+		aggregator.onMetrics(elapsed(2, 30000L, 20, 20, 20, 1));
+		PeriodSnapshot second = aggregator.snapshot();
+		assertNotSame("Snapshot was not replaced", first, second);
+		assertEquals("Snapshot was modified", 1, first.contributors(first.row(METRIC)));
+		assertEquals("Unexpected contributors", 2, second.contributors(second.row(METRIC)));
+		// Merges into the open period do not touch the closed period
+		aggregator.onMetrics(elapsed(2, 45000L, 1, 1, 1, 1));
+		assertSame("Snapshot was replaced", second, aggregator.snapshot());
+	}
+	
+	/**
+	 * A packet for a period more than one period in the future is dropped, so it cannot close the current period for the other agents
+	 */
+	@Test
+	public void testFuturePeriod() {
+		dictionary(1);
+		dictionary(2);
+		aggregator.onMetrics(elapsed(1, 30000L, 10, 10, 10, 1));
+		aggregator.onMetrics(elapsed(1, 45000L, 1, 1, 1, 1));
+		aggregator.onMetrics(elapsed(2, System.currentTimeMillis() + (PERIOD * 10), 1, 1, 1, 1));
+		assertEquals("Unexpected future count", 1L, aggregator.getFutureCount());
+		assertEquals("Unexpected closed period", 30000L, aggregator.getLastClosedPeriodEnd());
+		aggregator.onMetrics(elapsed(2, 30000L, 20, 20, 20, 1));
+		PeriodSnapshot snapshot = aggregator.snapshot();
+		assertEquals("Unexpected contributors", 2, snapshot.contributors(snapshot.row(METRIC)));
+	}
+	
+	/**
+	 * An agent reporting a name with another collector type than the name was first seen with is not merged into the name's values
+	 */
+	@Test
+	public void testLayoutMismatch() {
+		dictionary(1);
+		dictionary(2, "com.heliosapm.shorthand.collectors.OtherCollector");
+		assertEquals("Unexpected mismatched count", 1L, aggregator.getMismatchedCount());
+		aggregator.onMetrics(elapsed(1, 30000L, 10, 10, 10, 1));
+		aggregator.onMetrics(elapsed(2, 30000L, 20, 20, 20, 1));
+		aggregator.onMetrics(elapsed(1, 45000L, 1, 1, 1, 1));
+		assertEquals("Unexpected unknown count", 1L, aggregator.getUnknownCount());
+		PeriodSnapshot snapshot = aggregator.snapshot();
+		int row = snapshot.row(METRIC);
+		assertEquals("Unexpected contributors", 1, snapshot.contributors(row));
+		assertEquals("Unexpected max", 10L, snapshot.value(row, ELAPSED, 1));
+	}
+	
+	/**
+	 * Delivers the name dictionary of an agent, mapping name index 1 to the test metric
+	 * @param pid The agent's process id
+	 */
+	protected void dictionary(int pid) {
+		dictionary(pid, MethodInterceptor.class.getName());
+	}
+	
+	/**
+	 * Delivers the name dictionary of an agent, mapping name index 1 to the test metric
+	 * @param pid The agent's process id
+	 * @param collectorType The collector class name of the test metric
+	 */
+	protected void dictionary(int pid, String collectorType) {
+		final int bitMask = MethodInterceptor.getBitMaskFor(MethodInterceptor.ELAPSED, MethodInterceptor.INVOCATION_COUNT);
+		aggregator.onNameDictionary(new NameDictionaryBroadcast(pid, null, 0L, new long[]{1L}, new int[]{bitMask}, 
+				new String[]{collectorType}, new String[]{METRIC}));
+	}
+	
+	/**
+	 * Builds and decodes an agent's metric packet holding the elapsed time and invocation count of the test metric
+	 * @param pid The agent's process id
+	 * @param periodEnd The agent's period end
+	 * @param min The minimum elapsed time
+	 * @param max The maximum elapsed time
+	 * @param avg The average elapsed time
+	 * @param invocations The invocation count
+	 * @return the decoded metric broadcast
+	 */
+	protected static MetricBroadcast elapsed(int pid, long periodEnd, long min, long max, long avg, long invocations) {
+		ByteBuffer buf = ByteBuffer.allocate(256);
+		MetricBroadcastPacketHandler.INSTANCE.start(buf, 0L, periodEnd - PERIOD, periodEnd);
+		buf.putInt(1, pid);
+		VarInt.putVarLong(buf, 1L);
+		VarInt.putVarLong(buf, 2);
+		VarInt.putVarLong(buf, ELAPSED);
+		VarInt.putVarLong(buf, 3);
+		VarInt.putZigZag(buf, min);
+		VarInt.putZigZag(buf, max);
+		VarInt.putZigZag(buf, avg);
+		VarInt.putVarLong(buf, INVOCATIONS);
+		VarInt.putVarLong(buf, 1);
+		VarInt.putZigZag(buf, invocations);
+		byte[] packet = MetricBroadcastPacketHandler.INSTANCE.buildPacket(buf, 1);
+		return new MetricBroadcast().read(ByteBuffer.wrap(packet, 1, packet.length-1), null);
+	}
+}
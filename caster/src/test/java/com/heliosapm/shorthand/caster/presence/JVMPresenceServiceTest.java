@@ -0,0 +1,170 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+package com.heliosapm.shorthand.caster.presence;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.heliosapm.shorthand.broadcast.HeartbeatBroadcastPacketHandler.HeartbeatBroadcast;
+
+/**
+ * <p>Title: JVMPresenceServiceTest</p>
+ * <p>Description: Tests the phi accrual failure detector against deterministic heartbeat arrival sequences</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.shorthand.caster.presence.JVMPresenceServiceTest</code></p>
+ */
+
+public class JVMPresenceServiceTest extends Assert {
+	/** The heartbeat interval */
+	public static final int INTERVAL = 1000;
+	/** The phi threshold, suspect at half of it */
+	public static final double THRESHOLD = 8d;
+	/** The simulated agent's process id */
+	public static final int PID = 4242;
+	/** The simulated agent's key */
+	public static final long KEY = JVMPresenceService.agentKey(null, PID);
+	
+	/** The sweep scheduler */
+	protected ScheduledExecutorService scheduler;
+	/** The service under test */
+	protected JVMPresenceService service;
+	/** The heartbeat delivered to the service */
+	protected final HeartbeatBroadcast heartbeat = new HeartbeatBroadcast();
+	/** The simulated clock */
+	protected long now = 1000000L;
+	
+	/**
+	 * Creates a service whose sweeps are driven by the test
+	 */
+	@Before
+	public void createService() {
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+		service = new JVMPresenceService(scheduler, THRESHOLD, 600000L);
+		// Cancels the scheduled sweep. Notifications are not executed without listeners.
+		scheduler.shutdownNow();
+		heartbeat.pid = PID;
+		heartbeat.interval = INTERVAL;
+		heartbeat.sequence = 0;
+	}
+	
+	/**
+	 * Shuts down the sweep scheduler
+	 */
+	@After
+	public void stopService() {
+		scheduler.shutdownNow();
+	}
+	
+	/**
+	 * The logistic approximation matches the normal distribution's tail at known deviations
+	 */
+	@Test
+	public void testPhiFunction() {
+		assertEquals("Unexpected phi at the mean", Math.log10(2d), JVMPresenceService.phi(1000L, 1000d, 250d), 0.0001d);
+		// Normal tail probabilities of 0.1587, 0.02275 and 0.00135
+		assertEquals("Unexpected phi at 1 sigma", 0.80d, JVMPresenceService.phi(1250L, 1000d, 250d), 0.01d);
+		assertEquals("Unexpected phi at 2 sigma", 1.64d, JVMPresenceService.phi(1500L, 1000d, 250d), 0.01d);
+		assertEquals("Unexpected phi at 3 sigma", 2.87d, JVMPresenceService.phi(1750L, 1000d, 250d), 0.05d);
+		assertTrue("Phi is not accruing", JVMPresenceService.phi(1200L, 1000d, 250d) < JVMPresenceService.phi(1201L, 1000d, 250d));
+		assertTrue("Phi is not positive before the mean", JVMPresenceService.phi(500L, 1000d, 250d) > 0d);
+	}
+	
+	/**
+	 * A steady sender is suspect by 4 standard deviations and down by 6
+	 */
+	@Test
+	public void testSteadyHeartbeats() {
+		for(int i = 0; i < 20; i++) {
+			beat(INTERVAL);
+		}
+		assertEquals("Unexpected phi at the interval", Math.log10(2d), service.phiOf(KEY, now + INTERVAL), 0.0001d);
+		assertState(now + 1500L, JVMState.UP);
+		// Phi of about 4.7 at 4 standard deviations
+		assertState(now + 2000L, JVMState.SUSPECT);
+		// Phi of about 10.8 at 6 standard deviations
+		assertState(now + 2500L, JVMState.DOWN);
+		beat(2500);
+		assertEquals("JVM did not come back up", JVMState.UP, service.state(KEY));
+	}
+	
+	/**
+	 * A jittery sender's wider distribution tolerates a late heartbeat that a steady sender is suspected for
+	 */
+	@Test
+	public void testJitteredHeartbeats() {
+		for(int i = 0; i < 40; i++) {
+			beat(i % 2==0 ? 500 : 1500);
+		}
+		final double steadyPhi = JVMPresenceService.phi(2000L, INTERVAL, INTERVAL / 4d);
+		final double jitteredPhi = service.phiOf(KEY, now + 2000L);
+		assertTrue("Jittered phi [" + jitteredPhi + "] not below steady phi [" + steadyPhi + "]", jitteredPhi < steadyPhi);
+		assertTrue("Jittered phi [" + jitteredPhi + "] above the suspect threshold", jitteredPhi < THRESHOLD / 2);
+		assertState(now + 2000L, JVMState.UP);
+		assertState(now + 5000L, JVMState.DOWN);
+	}
+	
+	/**
+	 * Lost heartbeats are detected from the sequence gap, so the late arrival does not stretch the learned interval
+	 */
+	@Test
+	public void testMissedHeartbeats() {
+		for(int i = 0; i < 20; i++) {
+			beat(INTERVAL);
+		}
+		// Two heartbeats lost
+		assertState(now + 3000L, JVMState.DOWN);
+		heartbeat.sequence += 2;
+		beat(3000);
+		assertEquals("JVM did not come back up", JVMState.UP, service.state(KEY));
+		assertEquals("Unexpected phi at the interval", Math.log10(2d), service.phiOf(KEY, now + INTERVAL), 0.0001d);
+		assertState(now + 2000L, JVMState.SUSPECT);
+	}
+	
+	/**
+	 * Advances the clock and delivers the next heartbeat
+	 * @param elapsed The time since the last heartbeat
+	 */
+	protected void beat(long elapsed) {
+		now += elapsed;
+		heartbeat.sequence++;
+		service.onHeartbeat(heartbeat, now);
+	}
+	
+	/**
+	 * Sweeps the registry at the passed time and validates the simulated agent's state
+	 * @param time The sweep time
+	 * @param expected The expected state
+	 */
+	protected void assertState(long time, JVMState expected) {
+		service.sweep(time);
+		assertEquals("Unexpected state with phi [" + service.phiOf(KEY, time) + "]", expected, service.state(KEY));
+	}
+}